@@ -1,7 +1,7 @@
 package org.example.Authentication;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.example.Session.SessionCodec;
+import org.example.Session.SessionStore;
 
 /**
  * AuthCommand - обрабатывает команды и кнопки аутентификации.
@@ -11,10 +11,15 @@ public class AuthCommand {
     private final AuthService authService;
 
     // Состояния для входящих сообщений
-    private final Map<Long, String> userStates = new HashMap<>(); // chatId -> "waiting_login", "waiting_password" и тд
+    private final SessionStore.Slot<String> userStates; // chatId -> "waiting_login", "waiting_password" и тд
 
     public AuthCommand(AuthService authService) {
+        this(authService, new SessionStore());
+    }
+
+    public AuthCommand(AuthService authService, SessionStore sessionStore) {
         this.authService = authService;
+        this.userStates = sessionStore.slot(SessionStore.Kind.AUTH, String.class, SessionCodec.STRING);
     }
     private static final String START_MESSAGE_ACTIVATED = "🌍 *С возвращением в GlobeTalk!* 🌍\n\n" +
             "Рады снова видеть вас! Ваш персональный помощник в изучении иностранных языков готов к работе! 🎯\n\n" +
@@ -1,5 +1,8 @@
 package org.example.Authentication;
 
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.*;
@@ -10,46 +13,21 @@ import java.util.Set;
 /**
  * AuthServiceImpl - реализация работы с аутентификацией в SQLite.
  * Выполняет операции с базой данных пользователей.
+ * Соединения берутся из общего пула bot_auth.db,
+ * проверки по chatId идут через общий IdentityCache.
  */
 public class AuthServiceImpl implements AuthService {
-    private Connection connection;
+    private final SqliteDatabase database;
+    private final IdentityCache identityCache;
 
     /**
      * Конструктор - инициализирует подключение к БД
      */
     public AuthServiceImpl() {
-        initializeDatabase();
-    }
-
-    /**
-     * Инициализирует БД и создает таблицы если не существуют
-     */
-    private void initializeDatabase() {
-        try {
-            System.out.println("[Data Base] Инициализация базы данных аутентификации");
-            connection = DriverManager.getConnection("jdbc:sqlite:bot_auth.db");
-
-            String createTableSQL = """
-                    CREATE TABLE IF NOT EXISTS users (
-                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                        original_username TEXT UNIQUE NOT NULL,
-                        current_username TEXT UNIQUE NOT NULL,
-                        password_hash TEXT NOT NULL,
-                        telegram_chat_id INTEGER,
-                        discord_channel_id INTEGER,
-                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                    )
-                    """;
-
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(createTableSQL);
-                System.out.println("[Data Base] Таблица users создана");
-            }
-
-        } catch (SQLException e) {
-            System.err.println("[Data Base] Ошибка: " + e.getMessage());
-            throw new RuntimeException("Ошибка инициализации базы данных", e);
-        }
+        System.out.println("[Data Base] Инициализация базы данных аутентификации");
+        SchemaMigrator.migrate(SchemaMigrator.AUTH_DB, SchemaMigrator.AUTH_MIGRATIONS);
+        this.database = SqliteDatabase.forFile(SchemaMigrator.AUTH_DB);
+        this.identityCache = IdentityCache.getShared();
     }
 
     /**
@@ -65,7 +43,7 @@ public class AuthServiceImpl implements AuthService {
         String telegramSQL = "UPDATE users SET telegram_chat_id = NULL WHERE telegram_chat_id = ?";
         String discordSQL = "UPDATE users SET discord_channel_id = NULL WHERE discord_channel_id = ?";
 
-        try {
+        try (Connection connection = database.getConnection()) {
             boolean telegramUnlinked = false;
             boolean discordUnlinked = false;
 
@@ -90,6 +68,7 @@ public class AuthServiceImpl implements AuthService {
             }
 
             boolean result = telegramUnlinked || discordUnlinked;
+            identityCache.invalidate(chatId);
             System.out.println("[Auth] Текущий чат отвязан: " + result);
             return result;
 
@@ -112,7 +91,8 @@ public class AuthServiceImpl implements AuthService {
         String checkUserSQL = "SELECT COUNT(*) FROM users WHERE current_username = ? OR original_username = ?";
         String insertUserSQL = "INSERT INTO users (original_username, current_username, password_hash) VALUES (?, ?, ?)";
 
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkUserSQL);
+        try (Connection connection = database.getConnection();
+             PreparedStatement checkStmt = connection.prepareStatement(checkUserSQL);
              PreparedStatement insertStmt = connection.prepareStatement(insertUserSQL)) {
 
             checkStmt.setString(1, username);
@@ -152,7 +132,8 @@ public class AuthServiceImpl implements AuthService {
         System.out.println("[Auth] Аутентификация: " + username);
         String sql = "SELECT original_username, password_hash FROM users WHERE current_username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
             ResultSet rs = stmt.executeQuery();
 
@@ -188,13 +169,15 @@ public class AuthServiceImpl implements AuthService {
         System.out.println("[Auth] Смена пароля: " + username);
         String sql = "UPDATE users SET password_hash = ? WHERE current_username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            String originalUsername = getOriginalUsername(username);
-            if (originalUsername == null) {
-                System.out.println("[Auth] Оригинальный логин не найден");
-                return false;
-            }
+        // оригинальный логин читаем до того, как взять соединение для обновления
+        String originalUsername = getOriginalUsername(username);
+        if (originalUsername == null) {
+            System.out.println("[Auth] Оригинальный логин не найден");
+            return false;
+        }
 
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             String salt = generateSaltFromUsername(originalUsername);
             String newPasswordHash = hashPassword(newPassword, salt);
 
@@ -225,7 +208,8 @@ public class AuthServiceImpl implements AuthService {
         String checkUserSQL = "SELECT COUNT(*) FROM users WHERE current_username = ? OR original_username = ?";
         String updateUsernameSQL = "UPDATE users SET current_username = ? WHERE current_username = ?";
 
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkUserSQL);
+        try (Connection connection = database.getConnection();
+             PreparedStatement checkStmt = connection.prepareStatement(checkUserSQL);
              PreparedStatement updateStmt = connection.prepareStatement(updateUsernameSQL)) {
 
             checkStmt.setString(1, newUsername);
@@ -241,6 +225,9 @@ public class AuthServiceImpl implements AuthService {
 
             int rowsUpdated = updateStmt.executeUpdate();
             boolean result = rowsUpdated > 0;
+            if (result) {
+                identityCache.invalidateUsername(oldUsername);
+            }
             System.out.println("[Auth] Логин изменен: " + result);
             return result;
 
@@ -260,7 +247,8 @@ public class AuthServiceImpl implements AuthService {
     public String getOriginalUsername(String currentUsername) {
         String sql = "SELECT original_username FROM users WHERE current_username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, currentUsername);
             ResultSet rs = stmt.executeQuery();
             return rs.next() ? rs.getString("original_username") : null;
@@ -283,11 +271,15 @@ public class AuthServiceImpl implements AuthService {
         System.out.println("[Auth] Привязка Telegram: " + username + " -> " + telegramChatId);
         String sql = "UPDATE users SET telegram_chat_id = ? WHERE current_username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, telegramChatId);
             stmt.setString(2, username);
             int rowsUpdated = stmt.executeUpdate();
             boolean result = rowsUpdated > 0;
+            // сбрасываем и новый чат, и прежние чаты пользователя
+            identityCache.invalidate(telegramChatId);
+            identityCache.invalidateUsername(username);
             System.out.println("[Auth] Telegram привязан: " + result);
             return result;
 
@@ -309,11 +301,15 @@ public class AuthServiceImpl implements AuthService {
         System.out.println("[Auth] Привязка Discord: " + username + " -> " + discordChannelId);
         String sql = "UPDATE users SET discord_channel_id = ? WHERE current_username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, discordChannelId);
             stmt.setString(2, username);
             int rowsUpdated = stmt.executeUpdate();
             boolean result = rowsUpdated > 0;
+            // сбрасываем и новый чат, и прежние чаты пользователя
+            identityCache.invalidate(discordChannelId);
+            identityCache.invalidateUsername(username);
             System.out.println("[Auth] Discord привязан: " + result);
             return result;
 
@@ -331,12 +327,9 @@ public class AuthServiceImpl implements AuthService {
      */
     @Override
     public boolean isTelegramUserAuthorized(long telegramChatId) {
-        String sql = "SELECT COUNT(*) FROM users WHERE telegram_chat_id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, telegramChatId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.getInt(1) > 0;
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(telegramChatId);
+            return identity != null && identity.isTelegram();
 
         } catch (SQLException e) {
             System.err.println("[Auth] Ошибка проверки Telegram: " + e.getMessage());
@@ -352,12 +345,9 @@ public class AuthServiceImpl implements AuthService {
      */
     @Override
     public boolean isDiscordUserAuthorized(long discordChannelId) {
-        String sql = "SELECT COUNT(*) FROM users WHERE discord_channel_id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, discordChannelId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.getInt(1) > 0;
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(discordChannelId);
+            return identity != null && identity.isDiscord();
 
         } catch (SQLException e) {
             System.err.println("[Auth] Ошибка проверки Discord: " + e.getMessage());
@@ -373,12 +363,9 @@ public class AuthServiceImpl implements AuthService {
      */
     @Override
     public String getUsernameByTelegramChatId(long telegramChatId) {
-        String sql = "SELECT current_username FROM users WHERE telegram_chat_id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, telegramChatId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getString("current_username") : null;
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(telegramChatId);
+            return identity != null && identity.isTelegram() ? identity.getUsername() : null;
 
         } catch (SQLException e) {
             System.err.println("[Auth] Ошибка получения по Telegram ID: " + e.getMessage());
@@ -394,12 +381,9 @@ public class AuthServiceImpl implements AuthService {
      */
     @Override
     public String getUsernameByDiscordChannelId(long discordChannelId) {
-        String sql = "SELECT current_username FROM users WHERE discord_channel_id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, discordChannelId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getString("current_username") : null;
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(discordChannelId);
+            return identity != null && identity.isDiscord() ? identity.getUsername() : null;
 
         } catch (SQLException e) {
             System.err.println("[Auth] Ошибка получения по Discord ID: " + e.getMessage());
@@ -417,7 +401,8 @@ public class AuthServiceImpl implements AuthService {
         Set<Long> telegramUsers = new HashSet<>();
         String sql = "SELECT telegram_chat_id FROM users WHERE telegram_chat_id IS NOT NULL";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -445,7 +430,8 @@ public class AuthServiceImpl implements AuthService {
         Set<Long> discordUsers = new HashSet<>();
         String sql = "SELECT discord_channel_id FROM users WHERE discord_channel_id IS NOT NULL";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -510,16 +496,9 @@ public class AuthServiceImpl implements AuthService {
     }
 
     /**
-     * Закрывает подключение к базе данных
+     * Закрывает свободные соединения общего пула bot_auth.db
      */
     public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            System.err.println("[Data Base] Ошибка закрытия: " + e.getMessage());
-            throw new RuntimeException("Ошибка закрытия подключения к базе данных", e);
-        }
+        database.close();
     }
 }
\ No newline at end of file
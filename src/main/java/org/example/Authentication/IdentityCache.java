@@ -0,0 +1,215 @@
+package org.example.Authentication;
+
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdentityCache - общий кеш "chatId/channelId -> пользователь".
+ * Проверка авторизации и поиск userId становятся поиском в памяти,
+ * в БД идем только при промахе. Отсутствие пользователя тоже кешируется (коротко).
+ * AuthServiceImpl сбрасывает записи при привязке, отвязке и смене логина.
+ */
+public class IdentityCache {
+    private static final int DEFAULT_MAX_SIZE = 50_000;
+    // запись о привязанном чате живет долго - она сбрасывается явно
+    private static final long POSITIVE_TTL_MS = 10 * 60 * 1000;
+    // "чат не привязан" живет недолго - пользователь может вот-вот войти
+    private static final long NEGATIVE_TTL_MS = 30 * 1000;
+
+    private static volatile IdentityCache shared;
+
+    private final SqliteDatabase authDatabase;
+    private final int maxSize;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    // поколение сбросов: растет при каждом invalidate; загрузка, начатая до сброса, в кеш не попадает
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Пользователь, к которому привязан чат
+     */
+    public static class Identity {
+        private final long userId;
+        private final String username;
+        private final boolean telegram;
+        private final boolean discord;
+
+        public Identity(long userId, String username, boolean telegram, boolean discord) {
+            this.userId = userId;
+            this.username = username;
+            this.telegram = telegram;
+            this.discord = discord;
+        }
+
+        public long getUserId() { return userId; }
+
+        public String getUsername() { return username; }
+
+        /** @return true если это Telegram чат пользователя */
+        public boolean isTelegram() { return telegram; }
+
+        /** @return true если это Discord канал пользователя */
+        public boolean isDiscord() { return discord; }
+
+        /** @return "telegram" или "discord" */
+        public String getPlatform() { return telegram ? "telegram" : "discord"; }
+    }
+
+    /**
+     * Запись кеша (identity == null - чат не привязан)
+     */
+    private static class Entry {
+        final Identity identity;
+        final long expiresAt;
+        volatile long lastAccess;
+
+        Entry(Identity identity, long ttl) {
+            long now = System.currentTimeMillis();
+            this.identity = identity;
+            this.expiresAt = now + ttl;
+            this.lastAccess = now;
+        }
+    }
+
+    public IdentityCache(SqliteDatabase authDatabase, int maxSize) {
+        this.authDatabase = authDatabase;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Возвращает общий кеш для bot_auth.db
+     */
+    public static IdentityCache getShared() {
+        IdentityCache cache = shared;
+        if (cache == null) {
+            synchronized (IdentityCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    SchemaMigrator.migrate(SchemaMigrator.AUTH_DB, SchemaMigrator.AUTH_MIGRATIONS);
+                    cache = new IdentityCache(SqliteDatabase.forFile(SchemaMigrator.AUTH_DB), DEFAULT_MAX_SIZE);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Находит пользователя по chatId (сначала в кеше, затем в БД)
+     *
+     * @param chatId идентификатор Telegram чата или Discord канала
+     * @return пользователь или null если чат не привязан
+     * @throws SQLException если произошла ошибка БД
+     */
+    public Identity resolve(long chatId) throws SQLException {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(chatId);
+        if (entry != null && entry.expiresAt > now) {
+            entry.lastAccess = now;
+            hits.incrementAndGet();
+            return entry.identity;
+        }
+
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        Identity identity = load(chatId);
+        if (generation.get() != loadGeneration) {
+            // пока шел запрос, чат привязали или отвязали - прочитанное могло устареть, не кешируем
+            return identity;
+        }
+        Entry loaded = new Entry(identity, identity != null ? POSITIVE_TTL_MS : NEGATIVE_TTL_MS);
+        entries.put(chatId, loaded);
+        if (generation.get() != loadGeneration) {
+            // сброс успел между проверкой и записью - убираем только свою запись
+            entries.remove(chatId, loaded);
+        }
+        if (entries.size() > maxSize) {
+            evictOldest();
+        }
+        return identity;
+    }
+
+    /**
+     * Загружает пользователя одним запросом по обоим столбцам
+     */
+    protected Identity load(long chatId) throws SQLException {
+        String sql = "SELECT id, current_username, telegram_chat_id, discord_channel_id FROM users " +
+                "WHERE telegram_chat_id = ? OR discord_channel_id = ?";
+
+        try (Connection connection = authDatabase.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, chatId);
+            stmt.setLong(2, chatId);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                long telegramChatId = rs.getLong("telegram_chat_id");
+                boolean telegram = !rs.wasNull() && telegramChatId == chatId;
+                long discordChannelId = rs.getLong("discord_channel_id");
+                boolean discord = !rs.wasNull() && discordChannelId == chatId;
+                return new Identity(rs.getLong("id"), rs.getString("current_username"), telegram, discord);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Сбрасывает запись одного чата
+     */
+    public void invalidate(long chatId) {
+        generation.incrementAndGet();
+        entries.remove(chatId);
+    }
+
+    /**
+     * Сбрасывает все чаты пользователя (при привязке нового чата старый тоже меняется)
+     */
+    public void invalidateUsername(String username) {
+        if (username == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> entry.identity != null && username.equals(entry.identity.getUsername()));
+    }
+
+    /**
+     * Полностью очищает кеш
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Удаляет десятую часть самых давно использованных записей
+     */
+    private void evictOldest() {
+        int toRemove = Math.max(1, maxSize / 10);
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .limit(toRemove)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    /** @return количество записей в кеше */
+    public int size() { return entries.size(); }
+
+    /** @return количество ответов из кеша */
+    public long getHits() { return hits.get(); }
+
+    /** @return количество обращений к БД */
+    public long getMisses() { return misses.get(); }
+}
@@ -2,19 +2,38 @@ package org.example;
 
 import org.example.Data.BotResponse;
 import org.example.Data.KeyboardService;
+import org.example.TimePlaner.ScheduleCommand;
 import org.example.TimePlaner.UserService;
+import org.example.TimePlaner.UserStateRegistry;
 import org.example.SpeedTest.SpeedTestCommand;
 import org.example.SpeedTest.SpeedTestHandler;
 import org.example.StartTest.StartCommand;
 import org.example.StartTest.TestHandler;
 import org.example.Dictionary.DictionaryCommand;
-import org.example.Dictionary.DictionaryServiceImpl;
+import org.example.Dictionary.CachingDictionaryService;
 import org.example.Authentication.AuthCommand;
 import org.example.Authentication.AuthService;
 import org.example.Authentication.AuthServiceImpl;
 import org.example.ScheduledNewWord.Message;
 import org.example.ScheduledTests.ScheduleTests;
 import org.example.ScheduledOldWord.OldWord;
+import org.example.Session.SessionSnapshots;
+import org.example.Session.SessionStore;
+import org.example.RateLimit.RateLimitedException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * BotLogic - класс для обработки логики бота.
@@ -33,21 +52,40 @@ public class BotLogic {
     private final Message message;
     private final ScheduleTests scheduleTests;
     private final OldWord oldWord;
+    private final ScheduleCommand scheduleCommand;
+    // незавершенные тесты и ввод всех обработчиков
+    private final SessionStore sessionStore;
+    private volatile SessionSnapshots sessionSnapshots;
+
+    // Фоновая генерация контента ии, чтобы не держать поток событий бота
+    private final ExecutorService generationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Function<BotResponse, Boolean> deferredSender;
 
     public BotLogic() {
+        this(new AuthServiceImpl());
+    }
+
+    /**
+     * @param authService проверка авторизации чатов (в тестах - заглушка)
+     */
+    public BotLogic(AuthService authService) {
         this.userService = new UserService();
-        this.testHandler = new TestHandler();
-        this.speedTestHandler = new SpeedTestHandler();
+        this.sessionStore = new SessionStore();
+        this.sessionStore.startIdleEviction(SESSION_IDLE_TTL, SESSION_EVICTION_PERIOD);
+        this.testHandler = new TestHandler(sessionStore);
+        this.speedTestHandler = new SpeedTestHandler(sessionStore);
+        this.speedTestHandler.setTimeUpListener(this::sendTimeUp);
         this.startCommand = new StartCommand(this.testHandler);
         this.speedTestCommand = new SpeedTestCommand(this.speedTestHandler);
         this.keyboardService = new KeyboardService();
 
-        this.dictionaryCommand = new DictionaryCommand(new DictionaryServiceImpl());
-        this.authService = new AuthServiceImpl();
-        this.authCommand = new AuthCommand(authService);
+        this.dictionaryCommand = new DictionaryCommand(CachingDictionaryService.getShared(), sessionStore);
+        this.authService = authService;
+        this.authCommand = new AuthCommand(authService, sessionStore);
         this.message = new Message();
-        this.scheduleTests = new ScheduleTests();
-        this.oldWord = new OldWord();
+        this.scheduleTests = new ScheduleTests(CachingDictionaryService.getShared(), sessionStore);
+        this.oldWord = new OldWord(CachingDictionaryService.getShared(), sessionStore);
+        this.scheduleCommand = new ScheduleCommand();
     }
 
     public static final String COMMAND_HELP = "🌍 *GlobeTalk - Изучение иностранных языков* 🌍\n\n" +
@@ -60,7 +98,8 @@ public class BotLogic {
             "• /speed_test - Пройти тест на скорость\n" +
             "• /word - Получить новое английское слово\n" +
             "• /scheduled_test - Пройти отложенный тест по словам\n" +
-            "• /old_word - Повторить слово с низким приоритетом\n\n" +
+            "• /old_word - Повторить слово с низким приоритетом\n" +
+            "• /schedule - Часовой пояс, время и частота рассылок\n\n" +
 
             "🎯 **Как работает бот:**\n" +
             "GlobeTalk поможет вам в изучении иностранных языков через:\n" +
@@ -79,11 +118,145 @@ public class BotLogic {
 
             "🚀 **Начните с команды /start_test чтобы определить ваш уровень!**";
 
+    private static final String GENERATING_MESSAGE = "⏳ Генерирую... Это займет несколько секунд.";
+    private static final String GENERATION_FAILED_MESSAGE = "❌ Не удалось сгенерировать ответ. Попробуйте позже.";
+    private static final long GENERATION_DEADLINE_SECONDS = 120;
+    // через сколько занятость пользователя снимается, если действие брошено
+    private static final Duration BUSY_TTL = Duration.ofMinutes(30);
+    // через сколько простоя сессия считается брошенной и удаляется
+    private static final Duration SESSION_IDLE_TTL = Duration.ofMinutes(30);
+    private static final Duration SESSION_EVICTION_PERIOD = Duration.ofMinutes(5);
+    private static final Duration SESSION_SNAPSHOT_PERIOD = Duration.ofSeconds(30);
+
+    // Кнопки и команды, ответ на которые генерирует ии
+    // (know_button и more_word_button при пустом пуле слов генерируют новую пачку)
+    private static final Set<String> GENERATING_CALLBACKS = Set.of(
+            "yes_button", "speed_yes_button", "yes_schedule_test_button", "know_button", "more_word_button");
+    private static final Set<String> GENERATING_COMMANDS = Set.of("/word", "/old_word");
+
     private static final String COMMAND_UNKNOWN = "Неизвестная команда. Введите /help для списка доступных команд.";
     private static final String NOT_AUTHORIZED_MESSAGE = "❌ **Доступ запрещен!**\n\n" +
             "Для использования этой функции необходимо войти в аккаунт.\n\n" +
             "🔐 Используйте команду /start для регистрации или входа.";
 
+    /**
+     * Включает отложенную доставку: долгие ответы ии отправляются через sender,
+     * а пользователь сразу получает сообщение о генерации
+     */
+    public void setDeferredSender(Function<BotResponse, Boolean> deferredSender) {
+        this.deferredSender = deferredSender;
+        // вопросы генерируемых тестов, которых пользователь ждал, приходят отдельным сообщением
+        testHandler.setQuestionListener(this::sendNextQuestion);
+        scheduleTests.setQuestionListener(this::sendNextQuestion);
+    }
+
+    /**
+     * Включает снимки сессий: незавершенные тесты восстанавливаются из файла сразу,
+     * дальше снимок сохраняется периодически и при остановке бота
+     */
+    public void enableSessionSnapshots(Path file) {
+        SessionSnapshots snapshots = new SessionSnapshots(sessionStore, file);
+        snapshots.load();
+        speedTestHandler.resumeTimers();
+        snapshots.startPeriodicSave(SESSION_SNAPSHOT_PERIOD);
+        this.sessionSnapshots = snapshots;
+    }
+
+    /**
+     * Сохраняет снимок сессий (если снимки включены)
+     */
+    public void saveSessions() {
+        SessionSnapshots snapshots = sessionSnapshots;
+        if (snapshots != null) {
+            snapshots.saveQuietly();
+        }
+    }
+
+    /**
+     * Сообщает пользователю, что время на вопрос speed теста вышло, не дожидаясь нажатия кнопки.
+     * Отправка идет в фоне, чтобы не задерживать поток таймеров
+     */
+    private void sendTimeUp(long chatId, String text) {
+        sendInBackground(chatId, () -> new BotResponse(chatId, text, "speed_test_next"), "сообщение о конце времени");
+    }
+
+    /**
+     * Отправляет вопрос генерируемого теста, которого ждал пользователь, или итог теста.
+     * Отправка идет в фоне, чтобы не задерживать поток генерации
+     */
+    private void sendNextQuestion(long chatId, String text) {
+        sendInBackground(chatId, () -> {
+            boolean active = testHandler.isTestActive(chatId) || scheduleTests.isTestActive(chatId);
+            if (!active) {
+                // тест завершен или не засчитан - пользователь свободен
+                setUserState(chatId, false);
+            }
+            return new BotResponse(chatId, text, active ? "test_answers" : "main");
+        }, "следующий вопрос теста");
+    }
+
+    /**
+     * Отправляет сообщение через deferredSender в фоне
+     *
+     * @param what что отправляется (для лога ошибки)
+     */
+    private void sendInBackground(long chatId, Supplier<BotResponse> response, String what) {
+        Function<BotResponse, Boolean> sender = deferredSender;
+        if (sender == null) {
+            return;
+        }
+        generationExecutor.execute(() -> {
+            try {
+                sender.apply(response.get());
+            } catch (RuntimeException e) {
+                System.err.println("[Bot Logic] Не удалось отправить " + what + " для chatId " + chatId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Выполняет задачу в фоне и отправляет результат, когда он готов
+     */
+    private BotResponse deliverLater(long chatId, Supplier<BotResponse> task) {
+        Function<BotResponse, Boolean> sender = deferredSender;
+
+        // orTimeout сам задачу не прерывает - держим ее Future, чтобы отменить зависшую генерацию
+        CompletableFuture<BotResponse> result = new CompletableFuture<>();
+        Future<?> generation = generationExecutor.submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        result.orTimeout(GENERATION_DEADLINE_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(e -> {
+                    generation.cancel(true);
+                    System.err.println("[Bot Logic] Ошибка фоновой генерации для chatId " + chatId + ": " + e.getMessage());
+                    setUserState(chatId, false);
+                    return new BotResponse(chatId, GENERATION_FAILED_MESSAGE, "main");
+                })
+                .thenAccept(response -> {
+                    if (response != null && response.isValid()) {
+                        sender.apply(response);
+                    }
+                })
+                .whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        return;
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof RateLimitedException) {
+                        System.err.println("[Bot Logic] Ответ для chatId " + chatId + " не отправлен, превышен лимит: " + cause.getMessage());
+                    } else {
+                        System.err.println("[Bot Logic] Не удалось отправить ответ для chatId " + chatId + ": " + cause.getMessage());
+                    }
+                });
+
+        return new BotResponse(chatId, GENERATING_MESSAGE);
+    }
+
     /**
      * Проверяет авторизацию пользователя
      */
@@ -97,9 +270,12 @@ public class BotLogic {
 
         if (isAuthorized) {
             userService.addUser(chatId);
-            userService.unblockUser(chatId);
+            // снимаем неавторизованность и недоступность: после ошибки отправки чат отвязывается,
+            // так что привязанный чат снова достижим. Занятость тестом должна остаться
+            userService.clearState(chatId, UserStateRegistry.State.UNAUTHORIZED);
+            userService.clearState(chatId, UserStateRegistry.State.UNREACHABLE);
         } else {
-            userService.blockUser(chatId);
+            userService.setState(chatId, UserStateRegistry.State.UNAUTHORIZED, "чат не привязан", null);
         }
 
         return isAuthorized;
@@ -109,11 +285,9 @@ public class BotLogic {
      * Проверяет, занят ли пользователь другим процессом
      */
     public boolean isUserBusy(long chatId) {
-        boolean isBusy = userService.isUserBlocked(chatId) ||
-                testHandler.isTestActive(chatId) ||
-                speedTestHandler.isTestActive(chatId) ||
-                scheduleTests.isTestActive(chatId) ||
-                oldWord.isTestActive(chatId);
+        // все незавершенные тесты лежат в одном хранилище - одна проверка вместо опроса каждого обработчика
+        boolean isBusy = userService.hasState(chatId, UserStateRegistry.State.BUSY) ||
+                sessionStore.isBusy(chatId);
 
         if (isBusy) {
             System.out.println("[Bot Logic] Пользователь chatId " + chatId + " занят");
@@ -141,10 +315,11 @@ public class BotLogic {
      */
     private void setUserState(long chatId, boolean isBusy) {
         if (isBusy) {
-            userService.blockUser(chatId);
+            // срок жизни страхует от брошенных действий: занятость снимется сама
+            userService.setState(chatId, UserStateRegistry.State.BUSY, "действие в боте", BUSY_TTL);
             System.out.println("[Bot Logic] * Пользователь заблокирован: " + chatId);
         } else {
-            userService.unblockUser(chatId);
+            userService.clearState(chatId, UserStateRegistry.State.BUSY);
             System.out.println("[Bot Logic] Пользователь разблокирован: " + chatId);
         }
     }
@@ -206,6 +381,16 @@ public class BotLogic {
         }
     }
 
+    /**
+     * Отбирает чаты, у которых наступил срок повторения слов (для рассылки "старое слово")
+     *
+     * @param chats активные чаты платформы
+     * @return чаты, которым пора отправить повторение
+     */
+    public List<Long> takeDueOldWordChats(Collection<Long> chats) {
+        return oldWord.takeDueChats(chats);
+    }
+
     /**
      * Генерирует отложенное сообщение для повторения слов с низким приоритетом
      * Вызывается из TelegramBot/DiscordBot по таймеру
@@ -221,11 +406,11 @@ public class BotLogic {
             // Генерируем тест по слову с низким приоритетом
             System.out.println("[Bot Logic] Генерация отложенного повторения слова для пользователя " + chatId);
 
-            String testText = oldWord.startLowPriorityTest(chatId);
+            String testText = oldWord.startDueReview(chatId);
 
-            //Проверка на наличии мин слова, если словарь пустой, то будет ноль
+            //Проверка на наличие слова к повторению: если срок ни у одного слова не наступил, будет null
             if (testText == null) {
-                System.out.println("[Bot Logic] Слово не найдено для пользователя " + chatId + ", пропускаем отправку");
+                System.out.println("[Bot Logic] Нет слов к повторению для пользователя " + chatId + ", пропускаем отправку");
                 return null;
             }
 
@@ -306,7 +491,8 @@ public class BotLogic {
             if (testHandler.isTestActive(chatId)) {
                 setUserState(chatId, true);
                 String result = testHandler.handleAnswer(callbackData, chatId);
-                if (result.contains("Тест завершён")) {
+                // тест завершен или не засчитан - сессии больше нет
+                if (!testHandler.isTestActive(chatId)) {
                     setUserState(chatId, false);
                 }
                 return result;
@@ -320,7 +506,7 @@ public class BotLogic {
             } else if (scheduleTests.isTestActive(chatId)) {
                 setUserState(chatId, true);
                 String result = scheduleTests.handleTestAnswer(callbackData, chatId);
-                if (result.contains("Тест завершён") || result.contains("результаты теста")) {
+                if (!scheduleTests.isTestActive(chatId)) {
                     setUserState(chatId, false);
                 }
                 return result;
@@ -391,6 +577,14 @@ public class BotLogic {
         String responseText;
         String keyboardType = null;
 
+        // /schedule принимает аргументы, поэтому проверяется до switch
+        if (ScheduleCommand.isScheduleCommand(command)) {
+            if (!isUserAuthorized(chatId)) {
+                return new BotResponse(chatId, NOT_AUTHORIZED_MESSAGE, "sing_in_main");
+            }
+            return new BotResponse(chatId, scheduleCommand.handle(command, chatId), null);
+        }
+
         switch (command) {
             case "/start":
                 setUserState(chatId, false);
@@ -493,6 +687,16 @@ public class BotLogic {
      * Обрабатывает callback запросы от кнопок.
      */
     public BotResponse processCallback(String callbackData, long chatId) {
+        if (deferredSender != null && GENERATING_CALLBACKS.contains(callbackData)) {
+            return deliverLater(chatId, () -> buildCallbackResponse(callbackData, chatId));
+        }
+        return buildCallbackResponse(callbackData, chatId);
+    }
+
+    /**
+     * Формирует ответ на callback (синхронно)
+     */
+    private BotResponse buildCallbackResponse(String callbackData, long chatId) {
         // Обновляем активность пользователя
         userService.updateUserActivity(chatId);
 
@@ -515,12 +719,17 @@ public class BotLogic {
         userService.updateUserActivity(chatId);
 
         if (messageText.startsWith("/")) {
+            if (deferredSender != null && GENERATING_COMMANDS.contains(messageText)) {
+                return deliverLater(chatId, () -> handleCommand(messageText, chatId));
+            }
             return handleCommand(messageText, chatId);
         } else {
             // Обработка текстовых сообщений для аутентификации
             String authResponse = authCommand.handleTextMessage(messageText, chatId, true);
             if (!authResponse.equals(authCommand.getStartMessage())) {
                 System.out.println("[Bot Logic] Обработка аутентификации для chatId " + chatId);
+                // чат мог быть привязан заново - обновляем состояния, иначе рассылки его пропустят
+                isUserAuthorized(chatId);
                 String keyboardType = determineAuthKeyboardType(authResponse);
                 return new BotResponse(chatId, authResponse, keyboardType);
             }
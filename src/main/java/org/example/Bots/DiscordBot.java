@@ -13,9 +13,13 @@ import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import org.example.BotLogic;
 import org.example.Data.BotResponse;
+import org.example.RateLimit.OutboundQueue;
+import org.example.SpeedTest.SpeedTestYesButton;
+import org.example.StartTest.StartYesButton;
 import org.example.TimePlaner.DistributionService;
 import org.example.TimePlaner.UniversalDistributionService;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,12 +32,19 @@ public class DiscordBot extends ListenerAdapter {
     private JDA jda;
     private final BotLogic botLogic;
     private final Map<String, List<Button>> buttonCache = new HashMap<>();
+    // сообщения в каналы (рассылки и отложенные ответы) идут через очередь с лимитами Discord,
+    // ответы на взаимодействия отправляются сразу
+    private final OutboundQueue outboundQueue = OutboundQueue.forDiscord(this::deliverToChannel);
     private final DistributionService wordDistribution;
     private final DistributionService testDistribution;
     private final DistributionService oldWordDistribution;
 
     public DiscordBot(String botToken) {
         this.botLogic = new BotLogic();
+        // ответы ии доставляются отдельным сообщением, когда будут готовы
+        this.botLogic.setDeferredSender(this::sendMessageToChannel);
+        // незавершенные тесты переживают перезапуск
+        this.botLogic.enableSessionSnapshots(Path.of("discord_sessions.bin"));
 
         this.wordDistribution = new UniversalDistributionService(
                 botLogic,
@@ -82,7 +93,7 @@ public class DiscordBot extends ListenerAdapter {
     }
 
     /**
-     * Запускает все рассылки, с определенными параметрами задержек
+     * Запускает все рассылки: периоды - частота по умолчанию, пользователь может задать свою через /schedule
      */
     private void startDistributions() {
         wordDistribution.startDistribution(100, 3 * 60);
@@ -104,7 +115,8 @@ public class DiscordBot extends ListenerAdapter {
                 Commands.slash("dictionary", "ваш словарь"),
                 Commands.slash("word", "отложенные сообщения"),
                 Commands.slash("scheduled_test", "отложенный тест по словам"),
-                Commands.slash("old_word", "Забытое слово")
+                Commands.slash("old_word", "Забытое слово"),
+                Commands.slash("schedule", "настройки рассылок")
         ).queue();
     }
 
@@ -143,11 +155,21 @@ public class DiscordBot extends ListenerAdapter {
     }
 
     /**
-     * Универсальный метод отправки сообщения для рассылок
+     * Универсальный метод отправки сообщения для рассылок (через очередь с лимитами)
      * @param response данные сообщения
      * @return true если отправка успешна
      */
     private boolean sendMessageToChannel(BotResponse response) {
+        return outboundQueue.send(response);
+    }
+
+    /**
+     * Непосредственная отправка сообщения в канал.
+     * Ждет подтверждения Discord, поэтому результат отражает реальную доставку
+     * @param response данные сообщения
+     * @return true если отправка успешна
+     */
+    private boolean deliverToChannel(BotResponse response) {
         try {
             if (jda == null) {
                 System.err.println("JDA не инициализирован");
@@ -163,12 +185,12 @@ public class DiscordBot extends ListenerAdapter {
             if (response.hasKeyboard() && buttonCache.containsKey(response.getKeyboardType())) {
                 channel.sendMessage(response.getText())
                         .addActionRow(buttonCache.get(response.getKeyboardType()))
-                        .queue();
+                        .complete();
             } else {
-                channel.sendMessage(response.getText()).queue();
+                channel.sendMessage(response.getText()).complete();
             }
-
             return true;
+
         } catch (Exception e) {
             System.err.println("Ошибка отправки сообщения в Discord: " + e.getMessage());
             return false;
@@ -247,6 +269,10 @@ public class DiscordBot extends ListenerAdapter {
         wordDistribution.stopDistribution();
         testDistribution.stopDistribution();
         oldWordDistribution.stopDistribution();
+        botLogic.saveSessions();
+        // банки тестов: остановить пополнение и сохранить выданное с последней записи
+        StartYesButton.getSharedBank().stop();
+        SpeedTestYesButton.getSharedBank().stop();
 
         if (jda != null) {
             jda.shutdown();
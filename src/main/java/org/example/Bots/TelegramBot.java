@@ -2,6 +2,10 @@ package org.example.Bots;
 
 import org.example.BotLogic;
 import org.example.Data.BotResponse;
+import org.example.RateLimit.OutboundQueue;
+import org.example.RateLimit.RateLimitedException;
+import org.example.SpeedTest.SpeedTestYesButton;
+import org.example.StartTest.StartYesButton;
 import org.example.TimePlaner.DistributionService;
 import org.example.TimePlaner.UniversalDistributionService;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
@@ -13,7 +17,10 @@ import org.telegram.telegrambots.meta.api.objects.commands.scope.BotCommandScope
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +34,8 @@ public class TelegramBot extends TelegramLongPollingBot  {
     private final String botUsername;
     private final BotLogic botLogic;
     private final Map<String, InlineKeyboardMarkup> keyboardCache = new HashMap<>();
+    // рассылки и отложенные ответы идут через очередь с лимитами Telegram
+    private final OutboundQueue outboundQueue = OutboundQueue.forTelegram(this::executeMessage);
     private final DistributionService wordDistribution;
     private final DistributionService testDistribution;
     private final DistributionService oldWordDistribution;
@@ -35,6 +44,10 @@ public class TelegramBot extends TelegramLongPollingBot  {
         super(botToken);
         this.botUsername = botUsername;
         this.botLogic = new BotLogic();
+        // ответы ии доставляются отдельным сообщением, когда будут готовы
+        this.botLogic.setDeferredSender(this::sendMessage);
+        // незавершенные тесты переживают перезапуск
+        this.botLogic.enableSessionSnapshots(Path.of("telegram_sessions.bin"));
 
         this.wordDistribution = new UniversalDistributionService(
                 botLogic,
@@ -81,6 +94,7 @@ public class TelegramBot extends TelegramLongPollingBot  {
         commands.add(new BotCommand("word", "отложенные сообщения"));
         commands.add(new BotCommand("scheduled_test", "отложенный тест по словам"));
         commands.add(new BotCommand("old_word", "Забытое слово"));
+        commands.add(new BotCommand("schedule", "настройки рассылок"));
         return commands;
     }
 
@@ -98,7 +112,7 @@ public class TelegramBot extends TelegramLongPollingBot  {
     }
 
     /**
-     * Запускает все рассылки, с параметрами задержек
+     * Запускает все рассылки: периоды - частота по умолчанию, пользователь может задать свою через /schedule
      */
     private void startDistributions() {
         wordDistribution.startDistribution(100, 5 * 60);
@@ -108,15 +122,34 @@ public class TelegramBot extends TelegramLongPollingBot  {
     }
 
     /**
-     * Универсальный метод отправки сообщения
+     * Универсальный метод отправки сообщения (через очередь с лимитами)
      * @param response данные сообщения
      * @return true если отправка успешна
+     * @throws RateLimitedException если Telegram не принимает сообщения даже после повторов
      */
     private boolean sendMessage(BotResponse response) {
+        return outboundQueue.send(response);
+    }
+
+    /**
+     * Непосредственная отправка сообщения в Telegram
+     * @param response данные сообщения
+     * @return true если отправка успешна
+     * @throws RateLimitedException при ответе 429 (с retry-after от Telegram)
+     */
+    private boolean executeMessage(BotResponse response) {
         try {
             SendMessage message = createMessage(response);
             execute(message);
             return true;
+        } catch (TelegramApiRequestException e) {
+            if (e.getErrorCode() != null && e.getErrorCode() == 429) {
+                Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+                throw new RateLimitedException("Telegram: слишком много запросов",
+                        Duration.ofSeconds(retryAfter != null ? retryAfter : 1), false);
+            }
+            System.err.println("Ошибка отправки сообщения в Telegram: " + e.getMessage());
+            return false;
         } catch (TelegramApiException e) {
             System.err.println("Ошибка отправки сообщения в Telegram: " + e.getMessage());
             return false;
@@ -169,9 +202,13 @@ public class TelegramBot extends TelegramLongPollingBot  {
                 response = botLogic.processMessage(messageText, chatId);
             }
 
+            // ответ на обновление отправляется сразу: очередь с лимитами ждет токенов и retry-after,
+            // а этот поток long polling один на всех пользователей
             if (response != null && response.isValid()) {
-                sendMessage(response);
+                executeMessage(response);
             }
+        } catch (RateLimitedException e) {
+            System.err.println("Ответ в Telegram не отправлен, превышен лимит: " + e.getMessage());
         } catch (Exception e) {
             System.err.println("Ошибка Telegram API: " + e.getMessage());
             e.printStackTrace();
@@ -248,6 +285,11 @@ public class TelegramBot extends TelegramLongPollingBot  {
         wordDistribution.stopDistribution();
         testDistribution.stopDistribution();
         oldWordDistribution.stopDistribution();
+        botLogic.saveSessions();
+        // банки тестов: остановить пополнение и сохранить выданное с последней записи
+        StartYesButton.getSharedBank().stop();
+        SpeedTestYesButton.getSharedBank().stop();
+        System.out.println(outboundQueue.getStatistics());
         System.out.println("Все рассылки TelegramBot остановлены");
     }
 }
\ No newline at end of file
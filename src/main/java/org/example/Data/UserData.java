@@ -1,5 +1,10 @@
 package org.example.Data;
 
+import org.example.Session.SessionCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,6 +23,38 @@ public class UserData {
     private int totalScore = 0;
     /** Количество баллов за каждый вопрос теста */
     private List<Integer> questionPoints = new ArrayList<>();
+    /** Тест еще генерируется: вопросы дописываются по мере ответа ии (в снимок не попадает) */
+    private transient boolean streaming;
+    /** Генерация оборвалась посреди теста: вопросов меньше, чем должно быть, результат не засчитывается */
+    private transient boolean streamFailed;
+    /** Пользователь ответил быстрее генерации и ждет следующий вопрос */
+    private transient boolean waitingForQuestion;
+
+    /** Запись состояния теста в снимок сессий */
+    public static final SessionCodec<UserData> CODEC = new SessionCodec<>() {
+        @Override
+        public void write(DataOutput out, UserData data) throws IOException {
+            // списки могут дописываться потоком генерации
+            synchronized (data) {
+                SessionCodec.writeStrings(out, data.currentTest);
+                SessionCodec.writeStrings(out, data.correctAnswers);
+                SessionCodec.writeInts(out, data.questionPoints);
+                out.writeInt(data.currentIndex);
+                out.writeInt(data.totalScore);
+            }
+        }
+
+        @Override
+        public UserData read(DataInput in) throws IOException {
+            UserData data = new UserData();
+            data.currentTest = SessionCodec.readStrings(in);
+            data.correctAnswers = SessionCodec.readStrings(in);
+            data.questionPoints = SessionCodec.readInts(in);
+            data.currentIndex = in.readInt();
+            data.totalScore = in.readInt();
+            return data;
+        }
+    };
 
     /**
      * @return список вопросов текущего теста
@@ -88,4 +125,63 @@ public class UserData {
     public void setQuestionPoints(List<Integer> questionPoints) {
         this.questionPoints = questionPoints;
     }
-}
\ No newline at end of file
+
+    /**
+     * Начинает тест, который еще генерируется: дальше вопросы добавляет addQuestion
+     */
+    public synchronized void startStreaming() {
+        streaming = true;
+    }
+
+    /**
+     * Дописывает очередной вопрос генерируемого теста
+     */
+    public synchronized void addQuestion(String question, String answer, int points) {
+        currentTest.add(question);
+        correctAnswers.add(answer);
+        questionPoints.add(points);
+    }
+
+    /**
+     * Генерация закончилась (или оборвалась) - новых вопросов не будет
+     */
+    public synchronized void finishStreaming() {
+        streaming = false;
+    }
+
+    /**
+     * Генерация оборвалась - новых вопросов не будет, а дописанные вопросы - не весь тест
+     */
+    public synchronized void failStreaming() {
+        streamFailed = true;
+        finishStreaming();
+    }
+
+    /**
+     * @return true если генерация теста оборвалась
+     */
+    public synchronized boolean isStreamFailed() {
+        return streamFailed;
+    }
+
+    /**
+     * @return true если вопросы еще дописываются
+     */
+    public synchronized boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return true если пользователю нужно отправить следующий вопрос, как только он будет готов
+     */
+    public synchronized boolean isWaitingForQuestion() {
+        return waitingForQuestion;
+    }
+
+    /**
+     * @param waitingForQuestion ждет ли пользователь следующий вопрос генерируемого теста
+     */
+    public synchronized void setWaitingForQuestion(boolean waitingForQuestion) {
+        this.waitingForQuestion = waitingForQuestion;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.Database;
+
+import java.util.List;
+
+/**
+ * Migration - одно версионное изменение схемы БД
+ */
+public class Migration {
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    /**
+     * @param version номер версии (строго возрастает внутри одной БД)
+     * @param description описание для таблицы schema_version и логов
+     * @param statements SQL команды, выполняются в одной транзакции
+     */
+    public Migration(int version, String description, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    public int getVersion() { return version; }
+
+    public String getDescription() { return description; }
+
+    public List<String> getStatements() { return statements; }
+}
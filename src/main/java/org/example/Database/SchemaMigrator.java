@@ -0,0 +1,174 @@
+package org.example.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SchemaMigrator - применяет версионные миграции схемы.
+ * Текущая версия хранится в таблице schema_version, поэтому при каждом запуске
+ * выполняются только новые миграции. Каждая миграция - отдельная транзакция.
+ *
+ * Новое изменение схемы = новая Migration в конце нужного списка (старые не меняются).
+ */
+public class SchemaMigrator {
+    public static final String AUTH_DB = "bot_auth.db";
+    public static final String DICTIONARY_DB = "dictionary.db";
+
+    /**
+     * Миграции базы пользователей
+     */
+    public static final List<Migration> AUTH_MIGRATIONS = List.of(
+            new Migration(1, "таблица users", """
+                    CREATE TABLE IF NOT EXISTS users (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        original_username TEXT UNIQUE NOT NULL,
+                        current_username TEXT UNIQUE NOT NULL,
+                        password_hash TEXT NOT NULL,
+                        telegram_chat_id INTEGER,
+                        discord_channel_id INTEGER,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """),
+            new Migration(2, "индексы по telegram_chat_id и discord_channel_id",
+                    "CREATE INDEX IF NOT EXISTS idx_users_telegram_chat_id ON users (telegram_chat_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_users_discord_channel_id ON users (discord_channel_id)"),
+            new Migration(3, "настройки рассылок пользователя", """
+                    CREATE TABLE IF NOT EXISTS user_preferences (
+                        user_id INTEGER PRIMARY KEY,
+                        time_zone TEXT NOT NULL,
+                        window_start INTEGER NOT NULL,
+                        window_end INTEGER NOT NULL,
+                        word_period_minutes INTEGER,
+                        test_period_minutes INTEGER,
+                        updated_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """)
+    );
+
+    /**
+     * Миграции базы словарей
+     */
+    public static final List<Migration> DICTIONARY_MIGRATIONS = List.of(
+            new Migration(1, "таблица dictionary", """
+                    CREATE TABLE IF NOT EXISTS dictionary (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        user_id BIGINT NOT NULL,
+                        english_word TEXT NOT NULL,
+                        translation TEXT NOT NULL,
+                        priority INTEGER NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """),
+            new Migration(2, "индексы (user_id, priority) и (user_id, LOWER(english_word))",
+                    "CREATE INDEX IF NOT EXISTS idx_dictionary_user_priority ON dictionary (user_id, priority)",
+                    // выражение совпадает с условием в getWordByEnglish, поэтому индекс используется
+                    "CREATE INDEX IF NOT EXISTS idx_dictionary_user_word ON dictionary (user_id, LOWER(english_word))"),
+            new Migration(3, "расписание интервальных повторений (SM-2)",
+                    // due_at = 0 - слово ждет первого повторения
+                    "ALTER TABLE dictionary ADD COLUMN due_at INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE dictionary ADD COLUMN interval_minutes INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE dictionary ADD COLUMN ease REAL NOT NULL DEFAULT 2.5",
+                    "ALTER TABLE dictionary ADD COLUMN repetitions INTEGER NOT NULL DEFAULT 0",
+                    "CREATE INDEX IF NOT EXISTS idx_dictionary_user_due ON dictionary (user_id, due_at)")
+    );
+
+    // базы, которые уже проверены в этом процессе
+    private static final Set<String> MIGRATED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Применяет миграции ко всем базам приложения (вызывается при старте)
+     */
+    public static void migrateAll() {
+        migrate(AUTH_DB, AUTH_MIGRATIONS);
+        migrate(DICTIONARY_DB, DICTIONARY_MIGRATIONS);
+    }
+
+    /**
+     * Применяет миграции к базе один раз за процесс (повторные вызовы ничего не делают)
+     *
+     * @param fileName файл БД
+     * @param migrations список миграций по возрастанию версий
+     */
+    public static void migrate(String fileName, List<Migration> migrations) {
+        if (MIGRATED.contains(fileName)) {
+            return;
+        }
+        synchronized (SchemaMigrator.class) {
+            if (MIGRATED.contains(fileName)) {
+                return;
+            }
+            try {
+                apply(SqliteDatabase.forFile(fileName), migrations);
+                MIGRATED.add(fileName);
+            } catch (SQLException e) {
+                System.err.println("[Data Base] Ошибка миграции " + fileName + ": " + e.getMessage());
+                throw new RuntimeException("Ошибка миграции базы данных " + fileName, e);
+            }
+        }
+    }
+
+    /**
+     * Выполняет миграции, версия которых больше текущей
+     *
+     * @return версия схемы после миграции
+     */
+    static int apply(SqliteDatabase database, List<Migration> migrations) throws SQLException {
+        try (Connection connection = database.getConnection()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_version (
+                            version INTEGER PRIMARY KEY,
+                            description TEXT NOT NULL,
+                            applied_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                        )
+                        """);
+            }
+
+            int current = currentVersion(connection);
+            for (Migration migration : migrations) {
+                if (migration.getVersion() <= current) {
+                    continue;
+                }
+
+                connection.setAutoCommit(false);
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : migration.getStatements()) {
+                        stmt.execute(sql);
+                    }
+                    try (PreparedStatement insert = connection.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        insert.setInt(1, migration.getVersion());
+                        insert.setString(2, migration.getDescription());
+                        insert.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw new SQLException("Миграция " + migration.getVersion() + " не применена: " + e.getMessage(), e);
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+
+                current = migration.getVersion();
+                System.out.println("[Data Base] Миграция " + current + " применена: " + migration.getDescription());
+            }
+            return current;
+        }
+    }
+
+    /**
+     * @return текущая версия схемы (0 если миграций еще не было)
+     */
+    static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
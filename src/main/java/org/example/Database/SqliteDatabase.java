@@ -0,0 +1,262 @@
+package org.example.Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SqliteDatabase - общий пул соединений к одному файлу SQLite.
+ * Для каждого файла существует один экземпляр (forFile), его используют все сервисы.
+ * Каждое соединение настраивается под WAL (читатели не блокируют писателя),
+ * а подготовленные запросы кешируются на соединении и переиспользуются.
+ *
+ * Соединение берется через getConnection() и обязательно закрывается (try-with-resources):
+ * close() возвращает его в пул, а close() у PreparedStatement оставляет запрос в кеше.
+ */
+public class SqliteDatabase {
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    // сколько ждем свободное соединение из пула
+    private static final long BORROW_TIMEOUT_MS = 10000;
+
+    private static final Map<String, SqliteDatabase> DATABASES = new ConcurrentHashMap<>();
+
+    private final String url;
+    private final int maxSize;
+    private final BlockingQueue<Connection> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    // кеш подготовленных запросов каждого физического соединения
+    private final Map<Connection, Map<String, PreparedStatement>> statementCaches = new ConcurrentHashMap<>();
+
+    private SqliteDatabase(String fileName, int maxSize) {
+        this.url = "jdbc:sqlite:" + fileName;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Возвращает общий пул для файла БД
+     * @param fileName имя файла (например "bot_auth.db")
+     */
+    public static SqliteDatabase forFile(String fileName) {
+        return DATABASES.computeIfAbsent(fileName, name -> new SqliteDatabase(name, DEFAULT_POOL_SIZE));
+    }
+
+    /**
+     * Берет соединение из пула (или открывает новое, пока пул не заполнен)
+     * @return соединение, close() которого возвращает его в пул
+     * @throws SQLException если соединение не удалось открыть или дождаться
+     */
+    public Connection getConnection() throws SQLException {
+        Connection physical = idle.poll();
+
+        if (physical == null && created.incrementAndGet() <= maxSize) {
+            try {
+                physical = openConnection();
+            } catch (SQLException e) {
+                created.decrementAndGet();
+                throw e;
+            }
+        } else if (physical == null) {
+            created.decrementAndGet();
+            try {
+                physical = idle.poll(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Ожидание соединения прервано", e);
+            }
+            if (physical == null) {
+                throw new SQLException("Нет свободных соединений к " + url);
+            }
+        }
+
+        return wrapConnection(physical);
+    }
+
+    /**
+     * Открывает физическое соединение и настраивает pragma
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA journal_mode = WAL");
+            // в WAL режиме NORMAL безопасен и не делает fsync на каждый коммит
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            // ~8 МБ кеша страниц на соединение
+            stmt.execute("PRAGMA cache_size = -8000");
+            stmt.execute("PRAGMA mmap_size = 67108864");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+        }
+        statementCaches.put(connection, new HashMap<>());
+        System.out.println("[Data Base] Открыто соединение " + url + " (" + created.get() + "/" + maxSize + ")");
+        return connection;
+    }
+
+    /**
+     * Возвращает физическое соединение в пул
+     */
+    private void release(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                discard(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (!idle.offer(physical)) {
+                discard(physical);
+            }
+        } catch (SQLException e) {
+            System.err.println("[Data Base] Соединение повреждено, закрываем: " + e.getMessage());
+            discard(physical);
+        }
+    }
+
+    private void discard(Connection physical) {
+        statementCaches.remove(physical);
+        created.decrementAndGet();
+        try {
+            physical.close();
+        } catch (SQLException ignored) {
+            // соединение уже непригодно
+        }
+    }
+
+    /**
+     * Закрывает все свободные соединения (при остановке приложения)
+     */
+    public void close() {
+        Connection physical;
+        while ((physical = idle.poll()) != null) {
+            discard(physical);
+        }
+    }
+
+    /**
+     * Обертка соединения: close() возвращает в пул, prepareStatement(sql) берет запрос из кеша
+     */
+    private Connection wrapConnection(Connection physical) {
+        Map<String, PreparedStatement> cache = statementCaches.get(physical);
+
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            release(physical);
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || physical.isClosed();
+                    case "prepareStatement":
+                        if (closed) {
+                            throw new SQLException("Соединение уже возвращено в пул");
+                        }
+                        if (args.length == 1) {
+                            return cachedStatement(physical, cache, (String) args[0]);
+                        }
+                        break;
+                    case "unwrap":
+                        if (((Class<?>) args[0]).isInstance(physical)) {
+                            return physical;
+                        }
+                        break;
+                    default:
+                        if (closed && !method.getName().equals("hashCode") && !method.getName().equals("equals")) {
+                            throw new SQLException("Соединение уже возвращено в пул");
+                        }
+                }
+                return invokeTarget(physical, method, args);
+            }
+        };
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Возвращает подготовленный запрос из кеша соединения (или готовит новый)
+     */
+    private PreparedStatement cachedStatement(Connection physical, Map<String, PreparedStatement> cache,
+                                              String sql) throws SQLException {
+        PreparedStatement statement = cache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = physical.prepareStatement(sql);
+            cache.put(sql, statement);
+        }
+        PreparedStatement target = statement;
+
+        InvocationHandler handler = new InvocationHandler() {
+            // результат последнего запроса - закрываем при возврате запроса в кеш
+            private ResultSet lastResultSet;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        // сам запрос остается в кеше, освобождаем только результат и параметры
+                        if (lastResultSet != null) {
+                            lastResultSet.close();
+                            lastResultSet = null;
+                        }
+                        target.clearParameters();
+                        return null;
+                    case "executeQuery":
+                        if (lastResultSet != null) {
+                            lastResultSet.close();
+                        }
+                        lastResultSet = (ResultSet) invokeTarget(target, method, args);
+                        return lastResultSet;
+                    default:
+                        return invokeTarget(target, method, args);
+                }
+            }
+        };
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return количество открытых физических соединений
+     */
+    public int getOpenConnections() {
+        return created.get();
+    }
+
+    /**
+     * @return количество свободных соединений в пуле
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,321 @@
+package org.example.Dictionary;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CachingDictionaryService - кеш словарей активных пользователей поверх DictionaryService.
+ * Слова пользователя загружаются один раз и хранятся по id, по уровням приоритета и по английскому слову,
+ * поэтому выборки по приоритету не проходят по всему словарю.
+ * Запись идет сначала в БД, затем в кеш (write-through). Число пользователей в кеше ограничено,
+ * вытесняется тот, к чьему словарю дольше всего не обращались (LRU).
+ */
+public class CachingDictionaryService implements DictionaryService {
+    private static final int DEFAULT_MAX_USERS = 1000;
+
+    // порядок слов одного уровня приоритета
+    private static final Comparator<Word> BY_ID = Comparator.comparingInt(Word::getId);
+
+    private static volatile CachingDictionaryService shared;
+
+    private final DictionaryService delegate;
+    private final LinkedHashMap<Long, UserWords> users;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Слова одного пользователя. Все операции - под блокировкой этого объекта
+     */
+    private static class UserWords {
+        boolean loaded = false;
+        final TreeMap<Integer, Word> byId = new TreeMap<>();
+        // уровень приоритета -> слова этого уровня по возрастанию id
+        final TreeMap<Integer, List<Word>> byPriority = new TreeMap<>();
+        final Map<String, Word> byEnglish = new HashMap<>();
+
+        void load(List<Word> words) {
+            byId.clear();
+            byPriority.clear();
+            byEnglish.clear();
+            for (Word word : words) {
+                put(word);
+            }
+            loaded = true;
+        }
+
+        void put(Word word) {
+            byId.put(word.getId(), word);
+            List<Word> level = byPriority.computeIfAbsent(word.getPriority(), p -> new ArrayList<>());
+            int index = Collections.binarySearch(level, word, BY_ID);
+            level.add(index < 0 ? -index - 1 : index, word);
+            byEnglish.putIfAbsent(key(word.getEnglishWord()), word);
+        }
+
+        void remove(int wordId) {
+            Word old = byId.remove(wordId);
+            if (old == null) {
+                return;
+            }
+            List<Word> level = byPriority.get(old.getPriority());
+            level.remove(Collections.binarySearch(level, old, BY_ID));
+            if (level.isEmpty()) {
+                byPriority.remove(old.getPriority());
+            }
+            String key = key(old.getEnglishWord());
+            if (byEnglish.get(key) == old) {
+                byEnglish.remove(key);
+                // если есть другое слово с тем же написанием - оно становится первым
+                for (Word word : byId.values()) {
+                    if (key(word.getEnglishWord()).equals(key)) {
+                        byEnglish.put(key, word);
+                        break;
+                    }
+                }
+            }
+        }
+
+        void replace(Word word) {
+            remove(word.getId());
+            put(word);
+        }
+
+        static String key(String englishWord) {
+            return englishWord.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param delegate хранилище слов (обычно DictionaryServiceImpl)
+     * @param maxUsers сколько словарей держать в памяти
+     */
+    public CachingDictionaryService(DictionaryService delegate, int maxUsers) {
+        this.delegate = delegate;
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserWords> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Возвращает общий кеш поверх SQLite словаря
+     */
+    public static CachingDictionaryService getShared() {
+        CachingDictionaryService cache = shared;
+        if (cache == null) {
+            synchronized (CachingDictionaryService.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = new CachingDictionaryService(new DictionaryServiceImpl(), DEFAULT_MAX_USERS);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Возвращает запись пользователя (загруженную из БД)
+     */
+    private UserWords loadedEntry(long userId) throws SQLException {
+        UserWords entry = entry(userId);
+        synchronized (entry) {
+            if (!entry.loaded) {
+                entry.load(delegate.getAllWords(userId));
+                loads.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+        }
+        return entry;
+    }
+
+    private UserWords entry(long userId) {
+        synchronized (users) {
+            return users.computeIfAbsent(userId, id -> new UserWords());
+        }
+    }
+
+    /**
+     * После записи: если запись пользователя успели вытеснить и создать заново,
+     * новая могла загрузиться до записи в БД - сбрасываем ее
+     */
+    private void dropIfReplaced(long userId, UserWords entry) {
+        synchronized (users) {
+            UserWords current = users.get(userId);
+            if (current != null && current != entry) {
+                users.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает словарь пользователя из кеша
+     */
+    public void invalidate(long userId) {
+        synchronized (users) {
+            users.remove(userId);
+        }
+    }
+
+    @Override
+    public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        UserWords entry = entry(userId);
+        int wordId;
+        synchronized (entry) {
+            wordId = delegate.addWord(userId, englishWord, translation, priority);
+            // id вернула БД - новое слово сразу попадает во все индексы, словарь не перечитывается
+            if (entry.loaded) {
+                entry.put(new Word(wordId, userId, englishWord, translation, priority));
+            }
+        }
+        dropIfReplaced(userId, entry);
+        return wordId;
+    }
+
+    @Override
+    public List<Word> getAllWords(long userId) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        synchronized (entry) {
+            return new ArrayList<>(entry.byId.values());
+        }
+    }
+
+    @Override
+    public List<Word> getWordsByPriority(long userId, int priority) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        synchronized (entry) {
+            return new ArrayList<>(entry.byPriority.getOrDefault(priority, List.of()));
+        }
+    }
+
+    @Override
+    public List<Word> topKByPriority(long userId, int k) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        List<Word> top = new ArrayList<>(Math.max(0, k));
+        synchronized (entry) {
+            // уровни от старшего к младшему, пока не наберется k слов
+            for (List<Word> level : entry.byPriority.descendingMap().values()) {
+                if (top.size() >= k) {
+                    break;
+                }
+                top.addAll(level.subList(0, Math.min(level.size(), k - top.size())));
+            }
+        }
+        return top;
+    }
+
+    @Override
+    public Word randomAmongMinPriority(long userId) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        synchronized (entry) {
+            Map.Entry<Integer, List<Word>> lowest = entry.byPriority.firstEntry();
+            if (lowest == null) {
+                return null;
+            }
+            List<Word> level = lowest.getValue();
+            return level.get(ThreadLocalRandom.current().nextInt(level.size()));
+        }
+    }
+
+    @Override
+    public Word getWordById(long userId, int wordId) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        synchronized (entry) {
+            return entry.byId.get(wordId);
+        }
+    }
+
+    @Override
+    public Word getWordByEnglish(long userId, String englishWord) throws SQLException {
+        UserWords entry = loadedEntry(userId);
+        synchronized (entry) {
+            return entry.byEnglish.get(UserWords.key(englishWord));
+        }
+    }
+
+    @Override
+    public void updateWord(long userId, int wordId, String newEnglishWord, String newTranslation, Integer newPriority) throws SQLException {
+        UserWords entry = entry(userId);
+        synchronized (entry) {
+            delegate.updateWord(userId, wordId, newEnglishWord, newTranslation, newPriority);
+            if (entry.loaded && entry.byId.containsKey(wordId)) {
+                // приоритет по умолчанию такой же, как в DictionaryServiceImpl
+                entry.replace(new Word(wordId, userId, newEnglishWord, newTranslation, newPriority != null ? newPriority : 2));
+            }
+        }
+        dropIfReplaced(userId, entry);
+    }
+
+    @Override
+    public void updateWordPriority(long userId, int wordId, int newPriority) throws SQLException {
+        UserWords entry = entry(userId);
+        synchronized (entry) {
+            delegate.updateWordPriority(userId, wordId, newPriority);
+            Word old = entry.loaded ? entry.byId.get(wordId) : null;
+            if (old != null) {
+                entry.replace(new Word(wordId, userId, old.getEnglishWord(), old.getTranslation(), newPriority));
+            }
+        }
+        dropIfReplaced(userId, entry);
+    }
+
+    @Override
+    public void deleteWord(long userId, int wordId) throws SQLException {
+        UserWords entry = entry(userId);
+        synchronized (entry) {
+            delegate.deleteWord(userId, wordId);
+            if (entry.loaded) {
+                entry.remove(wordId);
+            }
+        }
+        dropIfReplaced(userId, entry);
+    }
+
+    // расписание повторений меняется отдельно от слов и в кеше не хранится
+
+    @Override
+    public Word nextDueWord(long userId, long now) throws SQLException {
+        return delegate.nextDueWord(userId, now);
+    }
+
+    @Override
+    public Long earliestDueAt(long userId) throws SQLException {
+        return delegate.earliestDueAt(userId);
+    }
+
+    @Override
+    public void recordReview(long userId, int wordId, boolean correct, long now) throws SQLException {
+        delegate.recordReview(userId, wordId, correct, now);
+    }
+
+    @Override
+    public long getUserIdByChatId(long chatId) throws SQLException {
+        return delegate.getUserIdByChatId(chatId);
+    }
+
+    /** @return количество словарей в кеше */
+    public int getCachedUsers() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    /** @return количество обращений, обслуженных из памяти */
+    public long getHits() { return hits.get(); }
+
+    /** @return количество загрузок словарей из БД */
+    public long getLoads() { return loads.get(); }
+}
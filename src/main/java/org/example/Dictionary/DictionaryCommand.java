@@ -1,9 +1,10 @@
 package org.example.Dictionary;
 
+import org.example.Session.SessionCodec;
+import org.example.Session.SessionStore;
+
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * DictionaryCommand - обрабатывает команды и кнопки словаря.
@@ -11,7 +12,7 @@ import java.util.Map;
  */
 public class DictionaryCommand {
     private final DictionaryService dictionaryService;
-    private final Map<Long, String> userStates = new HashMap<>(); // chatId -> "delete:wordId" или "edit:wordId"
+    private final SessionStore.Slot<String> userStates; // chatId -> "delete:wordId" или "edit:wordId"
 
     //Константа приоритета по умолчанию
     private static final int DEFAULT_PRIORITY = 2;
@@ -74,7 +75,12 @@ public class DictionaryCommand {
     private static final String UNKNOWN_CLICK = "Неизвестная команда";
 
     public DictionaryCommand(DictionaryService dictionaryService) {
+        this(dictionaryService, new SessionStore());
+    }
+
+    public DictionaryCommand(DictionaryService dictionaryService, SessionStore sessionStore) {
         this.dictionaryService = dictionaryService;
+        this.userStates = sessionStore.slot(SessionStore.Kind.DICTIONARY, String.class, SessionCodec.STRING);
     }
 
     /**
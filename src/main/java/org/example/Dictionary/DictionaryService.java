@@ -1,7 +1,11 @@
 package org.example.Dictionary;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * DictionaryService - интерфейс для работы с хранилищем слов.
@@ -11,8 +15,10 @@ public interface DictionaryService {
 
     /**
      * Добавить слово с указанным приоритетом
+     *
+     * @return id нового слова
      */
-    void addWord(long userId, String englishWord, String translation, int priority) throws SQLException;
+    int addWord(long userId, String englishWord, String translation, int priority) throws SQLException;
 
     /**
      * Получить все слова пользователя
@@ -24,6 +30,78 @@ public interface DictionaryService {
      */
     List<Word> getWordsByPriority(long userId, int priority) throws SQLException;
 
+    /**
+     * Получить до k слов с наибольшим приоритетом (при равном приоритете - раньше добавленные).
+     * Реализация по умолчанию проходит по всем словам с кучей размера k,
+     * хранилища переопределяют ее запросом с LIMIT.
+     */
+    default List<Word> topKByPriority(long userId, int k) throws SQLException {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // в вершине кучи - худшее из отобранных слов
+        Comparator<Word> order = Comparator.comparingInt(Word::getPriority).reversed().thenComparingInt(Word::getId);
+        PriorityQueue<Word> heap = new PriorityQueue<>(k, order.reversed());
+        for (Word word : getAllWords(userId)) {
+            heap.offer(word);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<Word> top = new ArrayList<>(heap);
+        top.sort(order);
+        return top;
+    }
+
+    /**
+     * Получить случайное слово среди слов с наименьшим приоритетом
+     *
+     * @return слово или null если словарь пуст
+     */
+    default Word randomAmongMinPriority(long userId) throws SQLException {
+        Word selected = null;
+        int minPriority = Integer.MAX_VALUE;
+        int seen = 0;
+        // выбор за один проход: каждое слово минимального приоритета выбирается с вероятностью 1/seen
+        for (Word word : getAllWords(userId)) {
+            if (word.getPriority() < minPriority) {
+                minPriority = word.getPriority();
+                seen = 0;
+            }
+            if (word.getPriority() == minPriority && ThreadLocalRandom.current().nextInt(++seen) == 0) {
+                selected = word;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Получить слово, срок повторения которого наступил (самое просроченное).
+     * Хранилище без расписания считает все слова готовыми к повторению.
+     *
+     * @param now текущее время (мс)
+     * @return слово или null если повторять нечего
+     */
+    default Word nextDueWord(long userId, long now) throws SQLException {
+        return randomAmongMinPriority(userId);
+    }
+
+    /**
+     * Получить время ближайшего повторения среди слов пользователя
+     *
+     * @return время (мс) или null если словарь пуст
+     */
+    default Long earliestDueAt(long userId) throws SQLException {
+        return getAllWords(userId).isEmpty() ? null : 0L;
+    }
+
+    /**
+     * Записать ответ на повторение и перенести слово по расписанию SM-2.
+     * Хранилище без расписания ответ не учитывает.
+     */
+    default void recordReview(long userId, int wordId, boolean correct, long now) throws SQLException {
+    }
+
     /**
      * Получить слово по ID
      */
@@ -1,5 +1,9 @@
 package org.example.Dictionary;
 
+import org.example.Authentication.IdentityCache;
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,55 +11,23 @@ import java.util.List;
 /**
  * DictionaryServiceImpl - реализация работы со словарем в SQLite.
  * Выполняет Create, Read, Update, Delete операции с базой данных слов.
+ * Соединения берутся из общего пула dictionary.db, userId - из общего IdentityCache.
  */
 public class DictionaryServiceImpl implements DictionaryService {
-    private Connection connection;
+    private final SqliteDatabase database;
+    private final IdentityCache identityCache;
 
     /**
-     * Конструктор - инициализирует БД и создает таблицы
+     * Конструктор - подключается к общим пулам и применяет миграции схемы
      */
     public DictionaryServiceImpl() {
-        initDatabase();
-    }
-
-    /**
-     * Инициализирует соединение с БД SQLite
-     */
-    private void initDatabase() {
-        try {
-            String url = "jdbc:sqlite:dictionary.db";
-            connection = DriverManager.getConnection(url);
-            createTable();
-        } catch (SQLException e) {
-            System.err.println("[Dictionary] Ошибка инициализации БД: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Создает таблицу dictionary если она не существует
-     */
-    private void createTable() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS dictionary (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                user_id BIGINT NOT NULL,
-                english_word TEXT NOT NULL,
-                translation TEXT NOT NULL,
-                priority INTEGER NOT NULL,
-                created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-            )
-            """;
-
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("[Dictionary] Таблица dictionary создана/проверена");
-        } catch (SQLException e) {
-            System.err.println("[Dictionary] Ошибка создания таблицы: " + e.getMessage());
-        }
+        SchemaMigrator.migrate(SchemaMigrator.DICTIONARY_DB, SchemaMigrator.DICTIONARY_MIGRATIONS);
+        this.database = SqliteDatabase.forFile(SchemaMigrator.DICTIONARY_DB);
+        this.identityCache = IdentityCache.getShared();
     }
 
     /**
-     * Получает ID пользователя из БД аутентификации по chatId
+     * Получает ID пользователя по chatId (из кеша, при промахе - из БД аутентификации)
      *
      * @param chatId идентификатор чата пользователя
      * @return ID пользователя из системы аутентификации
@@ -63,26 +35,18 @@ public class DictionaryServiceImpl implements DictionaryService {
      */
     @Override
     public long getUserIdByChatId(long chatId) throws SQLException {
-        String authDbUrl = "jdbc:sqlite:bot_auth.db";
-        try (Connection authConn = DriverManager.getConnection(authDbUrl);
-             PreparedStatement pstmt = authConn.prepareStatement(
-                     "SELECT id FROM users WHERE telegram_chat_id = ? OR discord_channel_id = ?")) {
-
-            pstmt.setLong(1, chatId);
-            pstmt.setLong(2, chatId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                int userId = rs.getInt("id");
-                System.out.println("[Dictionary] Найден userId: " + userId + " для chatId: " + chatId);
-                return userId;
-            }
-            throw new SQLException("Пользователь не найден для chatId: " + chatId);
-
+        IdentityCache.Identity identity;
+        try {
+            identity = identityCache.resolve(chatId);
         } catch (SQLException e) {
             System.err.println("[Dictionary] Ошибка получения userId: " + e.getMessage());
             throw new SQLException("Не удалось найти пользователя в системе аутентификации", e);
         }
+
+        if (identity == null) {
+            throw new SQLException("Не удалось найти пользователя в системе аутентификации (chatId: " + chatId + ")");
+        }
+        return identity.getUserId();
     }
 
     /**
@@ -91,19 +55,30 @@ public class DictionaryServiceImpl implements DictionaryService {
      * @param englishWord английское слово
      * @param translation перевод слова
      * @param priority приоритет слова (1-низкий, 2-средний, 3-высокий)
+     * @return id нового слова (сгенерирован БД)
      * @throws SQLException если произошла ошибка при работе с БД
      */
     @Override
-    public void addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
-        String sql = "INSERT INTO dictionary (user_id, english_word, translation, priority) VALUES (?, ?, ?, ?)";
+    public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        String sql = "INSERT INTO dictionary (user_id, english_word, translation, priority, due_at) VALUES (?, ?, ?, ?, ?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setLong(1, userId);
             pstmt.setString(2, englishWord);
             pstmt.setString(3, translation);
             pstmt.setInt(4, priority);
+            // новое слово впервые повторяется через день
+            pstmt.setLong(5, SpacedRepetition.firstDueAt(System.currentTimeMillis()));
             pstmt.executeUpdate();
             System.out.println("[Dictionary] Слово добавлено: " + englishWord + " для userId: " + userId);
+
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("БД не вернула id нового слова");
+                }
+                return keys.getInt(1);
+            }
         }
     }
 
@@ -118,7 +93,8 @@ public class DictionaryServiceImpl implements DictionaryService {
         List<Word> words = new ArrayList<>();
         String sql = "SELECT * FROM dictionary WHERE user_id = ? ORDER BY id";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, userId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -148,7 +124,8 @@ public class DictionaryServiceImpl implements DictionaryService {
     public Word getWordById(long userId, int wordId) throws SQLException {
         String sql = "SELECT * FROM dictionary WHERE user_id = ? AND id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, userId);
             pstmt.setInt(2, wordId);
             ResultSet rs = pstmt.executeQuery();
@@ -179,7 +156,8 @@ public class DictionaryServiceImpl implements DictionaryService {
     public Word getWordByEnglish(long userId, String englishWord) throws SQLException {
         String sql = "SELECT * FROM dictionary WHERE user_id = ? AND LOWER(english_word) = LOWER(?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, userId);
             pstmt.setString(2, englishWord.trim());
             ResultSet rs = pstmt.executeQuery();
@@ -213,7 +191,8 @@ public class DictionaryServiceImpl implements DictionaryService {
     public void updateWord(long userId, int wordId, String newEnglishWord, String newTranslation, Integer newPriority) throws SQLException {
         String sql = "UPDATE dictionary SET english_word = ?, translation = ?, priority = ? WHERE user_id = ? AND id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, newEnglishWord);
             pstmt.setString(2, newTranslation);
             pstmt.setInt(3, newPriority != null ? newPriority : 2);
@@ -234,7 +213,8 @@ public class DictionaryServiceImpl implements DictionaryService {
     public void deleteWord(long userId, int wordId) throws SQLException {
         String sql = "DELETE FROM dictionary WHERE user_id = ? AND id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, userId);
             pstmt.setInt(2, wordId);
             pstmt.executeUpdate();
@@ -249,7 +229,8 @@ public class DictionaryServiceImpl implements DictionaryService {
         List<Word> words = new ArrayList<>();
         String sql = "SELECT * FROM dictionary WHERE user_id = ? AND priority = ? ORDER BY id";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, userId);
             pstmt.setInt(2, priority);
             ResultSet rs = pstmt.executeQuery();
@@ -268,6 +249,148 @@ public class DictionaryServiceImpl implements DictionaryService {
         System.out.println("[Dictionary] Загружено " + words.size() + " слов с приоритетом " + priority + " для userId: " + userId);
         return words;
     }
+
+    /**
+     * Получает до k слов с наибольшим приоритетом (сортировка и LIMIT по индексу (user_id, priority))
+     */
+    @Override
+    public List<Word> topKByPriority(long userId, int k) throws SQLException {
+        List<Word> words = new ArrayList<>();
+        if (k <= 0) {
+            return words;
+        }
+        String sql = "SELECT * FROM dictionary WHERE user_id = ? ORDER BY priority DESC, id LIMIT ?";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            pstmt.setInt(2, k);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                words.add(new Word(
+                        rs.getInt("id"),
+                        rs.getLong("user_id"),
+                        rs.getString("english_word"),
+                        rs.getString("translation"),
+                        rs.getInt("priority")
+                ));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Получает случайное слово среди слов с наименьшим приоритетом.
+     * Минимум берется из начала индекса (user_id, priority), случайное слово - только среди слов этого уровня
+     */
+    @Override
+    public Word randomAmongMinPriority(long userId) throws SQLException {
+        String sql = "SELECT * FROM dictionary WHERE user_id = ? AND priority = " +
+                "(SELECT MIN(priority) FROM dictionary WHERE user_id = ?) ORDER BY RANDOM() LIMIT 1";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            pstmt.setLong(2, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return new Word(
+                        rs.getInt("id"),
+                        rs.getLong("user_id"),
+                        rs.getString("english_word"),
+                        rs.getString("translation"),
+                        rs.getInt("priority")
+                );
+            }
+        }
+        return null;
+    }
+    /**
+     * Находит самое просроченное слово (диапазон по индексу (user_id, due_at)).
+     * При одинаковом сроке первым идет слово с меньшим приоритетом
+     */
+    @Override
+    public Word nextDueWord(long userId, long now) throws SQLException {
+        String sql = "SELECT * FROM dictionary WHERE user_id = ? AND due_at <= ? ORDER BY due_at, priority, id LIMIT 1";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            pstmt.setLong(2, now);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return new Word(
+                        rs.getInt("id"),
+                        rs.getLong("user_id"),
+                        rs.getString("english_word"),
+                        rs.getString("translation"),
+                        rs.getInt("priority")
+                );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Находит время ближайшего повторения пользователя
+     */
+    @Override
+    public Long earliestDueAt(long userId) throws SQLException {
+        String sql = "SELECT MIN(due_at) FROM dictionary WHERE user_id = ?";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                long dueAt = rs.getLong(1);
+                return rs.wasNull() ? null : dueAt;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Записывает ответ на повторение: пересчитывает интервал по SM-2 и переносит due_at
+     */
+    @Override
+    public void recordReview(long userId, int wordId, boolean correct, long now) throws SQLException {
+        String select = "SELECT repetitions, interval_minutes, ease FROM dictionary WHERE user_id = ? AND id = ?";
+        String update = "UPDATE dictionary SET repetitions = ?, interval_minutes = ?, ease = ?, due_at = ? WHERE user_id = ? AND id = ?";
+
+        try (Connection connection = database.getConnection()) {
+            SpacedRepetition.ReviewState current;
+            try (PreparedStatement pstmt = connection.prepareStatement(select)) {
+                pstmt.setLong(1, userId);
+                pstmt.setInt(2, wordId);
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) {
+                    System.out.println("[Dictionary] Слово для повторения не найдено: " + wordId);
+                    return;
+                }
+                current = new SpacedRepetition.ReviewState(
+                        rs.getInt("repetitions"), rs.getLong("interval_minutes"), rs.getDouble("ease"), now);
+            }
+
+            SpacedRepetition.ReviewState next = SpacedRepetition.review(current, correct, now);
+            try (PreparedStatement pstmt = connection.prepareStatement(update)) {
+                pstmt.setInt(1, next.getRepetitions());
+                pstmt.setLong(2, next.getIntervalMinutes());
+                pstmt.setDouble(3, next.getEase());
+                pstmt.setLong(4, next.getDueAt());
+                pstmt.setLong(5, userId);
+                pstmt.setInt(6, wordId);
+                pstmt.executeUpdate();
+            }
+            System.out.println("[Dictionary] Повторение слова " + wordId + " перенесено на " +
+                    next.getIntervalMinutes() + " мин (повторений подряд: " + next.getRepetitions() + ")");
+        }
+    }
+
     /**
      * Обновляет приоритет слова в словаре
      * @param userId идентификатор пользователя
@@ -279,7 +402,8 @@ public class DictionaryServiceImpl implements DictionaryService {
     public void updateWordPriority(long userId, int wordId, int newPriority) throws SQLException {
         String sql = "UPDATE dictionary SET priority = ? WHERE user_id = ? AND id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, newPriority);
             pstmt.setLong(2, userId);
             pstmt.setInt(3, wordId);
@@ -0,0 +1,93 @@
+package org.example.Dictionary;
+
+/**
+ * SpacedRepetition - расчет следующего повторения слова по алгоритму SM-2.
+ * Каждое слово хранит число успешных повторений подряд, текущий интервал и коэффициент легкости.
+ * Правильный ответ увеличивает интервал (1 день, 6 дней, затем интервал * легкость),
+ * ошибка сбрасывает серию и возвращает слово через несколько минут.
+ */
+public class SpacedRepetition {
+    public static final double DEFAULT_EASE = 2.5;
+    public static final double MIN_EASE = 1.3;
+
+    // оценки ответа по шкале SM-2 (0-5): тесты дают только "верно/неверно"
+    public static final int QUALITY_CORRECT = 4;
+    public static final int QUALITY_WRONG = 1;
+
+    public static final long LAPSE_INTERVAL_MINUTES = 10;
+    public static final long FIRST_INTERVAL_MINUTES = 24 * 60;
+    public static final long SECOND_INTERVAL_MINUTES = 6 * 24 * 60;
+
+    /**
+     * Состояние повторений одного слова
+     */
+    public static class ReviewState {
+        private final int repetitions;
+        private final long intervalMinutes;
+        private final double ease;
+        private final long dueAt;
+
+        public ReviewState(int repetitions, long intervalMinutes, double ease, long dueAt) {
+            this.repetitions = repetitions;
+            this.intervalMinutes = intervalMinutes;
+            this.ease = ease;
+            this.dueAt = dueAt;
+        }
+
+        /** @return успешных повторений подряд */
+        public int getRepetitions() { return repetitions; }
+
+        /** @return интервал до следующего повторения в минутах */
+        public long getIntervalMinutes() { return intervalMinutes; }
+
+        /** @return коэффициент легкости слова */
+        public double getEase() { return ease; }
+
+        /** @return время следующего повторения (мс) */
+        public long getDueAt() { return dueAt; }
+    }
+
+    /**
+     * Рассчитывает состояние после ответа
+     *
+     * @param current текущее состояние слова
+     * @param quality оценка ответа 0-5 (меньше 3 - ошибка)
+     * @param now время ответа (мс)
+     * @return новое состояние с временем следующего повторения
+     */
+    public static ReviewState review(ReviewState current, int quality, long now) {
+        int q = Math.max(0, Math.min(5, quality));
+        double ease = Math.max(MIN_EASE, current.getEase() + (0.1 - (5 - q) * (0.08 + (5 - q) * 0.02)));
+
+        int repetitions;
+        long interval;
+        if (q < 3) {
+            repetitions = 0;
+            interval = LAPSE_INTERVAL_MINUTES;
+        } else {
+            repetitions = current.getRepetitions() + 1;
+            if (repetitions == 1) {
+                interval = FIRST_INTERVAL_MINUTES;
+            } else if (repetitions == 2) {
+                interval = SECOND_INTERVAL_MINUTES;
+            } else {
+                interval = Math.round(Math.max(current.getIntervalMinutes(), FIRST_INTERVAL_MINUTES) * ease);
+            }
+        }
+        return new ReviewState(repetitions, interval, ease, now + interval * 60_000L);
+    }
+
+    /**
+     * Рассчитывает состояние после ответа "верно/неверно"
+     */
+    public static ReviewState review(ReviewState current, boolean correct, long now) {
+        return review(current, correct ? QUALITY_CORRECT : QUALITY_WRONG, now);
+    }
+
+    /**
+     * @return время первого повторения нового слова
+     */
+    public static long firstDueAt(long now) {
+        return now + FIRST_INTERVAL_MINUTES * 60_000L;
+    }
+}
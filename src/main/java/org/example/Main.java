@@ -2,6 +2,7 @@ package org.example;
 
 import org.example.Bots.DiscordBot;
 import org.example.Bots.TelegramBot;
+import org.example.Database.SchemaMigrator;
 import org.example.Tokens.TokenTelegram;
 import org.example.Tokens.TokenDiscord;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
@@ -15,6 +16,9 @@ import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
  */
 public class Main {
     public static void main(String[] args) {
+        // Схема БД обновляется до запуска ботов
+        SchemaMigrator.migrateAll();
+
         // Запуск Telegram бота в отдельном потоке
         new Thread(() -> {
             try {
@@ -0,0 +1,113 @@
+package org.example.OpenRouter;
+
+import java.time.Duration;
+
+/**
+ * CircuitBreaker - предохранитель запросов к ии.
+ * После failureThreshold отказов подряд размыкается: запросы не отправляются openDuration,
+ * затем один пробный запрос решает, замкнуться снова или подождать еще.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,     // запросы идут
+        OPEN,       // сервис недоступен, запросы отклоняются сразу
+        HALF_OPEN   // идет пробный запрос
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long probeStartedAt;
+    private long rejectedCount;
+
+    /**
+     * @param name             имя для логов
+     * @param failureThreshold сколько отказов подряд размыкают предохранитель
+     * @param openDuration     сколько не отправлять запросы после размыкания
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Разрешение на запрос. В разомкнутом состоянии после паузы пропускает один пробный запрос.
+     *
+     * @return true если запрос можно отправить
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    probeStartedAt = now;
+                    System.out.println("[CircuitBreaker] " + name + ": пробный запрос");
+                    return true;
+                }
+                break;
+            case HALF_OPEN:
+                // пробный запрос потерялся (отменен) - разрешаем следующий
+                if (now - probeStartedAt >= openNanos) {
+                    probeStartedAt = now;
+                    return true;
+                }
+                break;
+        }
+        rejectedCount++;
+        return false;
+    }
+
+    /**
+     * Проверка без захвата пробного запроса: пропустит ли предохранитель запрос сейчас
+     */
+    public synchronized boolean isCallPermitted() {
+        long now = System.nanoTime();
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> now - openedAt >= openNanos;
+            case HALF_OPEN -> now - probeStartedAt >= openNanos;
+        };
+    }
+
+    /**
+     * Сервис ответил: предохранитель замыкается
+     */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("[CircuitBreaker] " + name + ": сервис снова доступен");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Сервис не ответил или отказал
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            System.err.println("[CircuitBreaker] " + name + ": " + consecutiveFailures +
+                    " отказов подряд, запросы приостановлены на " + Duration.ofNanos(openNanos).toSeconds() + " с");
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** @return сколько запросов отклонено без отправки */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.OpenRouter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * JsonSchema - сборка JSON схем для структурированных ответов модели.
+ * Схемы строгие (strict): все поля обязательны, лишние поля запрещены.
+ */
+public final class JsonSchema {
+
+    private JsonSchema() {
+    }
+
+    public static JSONObject string() {
+        return new JSONObject().put("type", "string");
+    }
+
+    public static JSONObject enumOf(String... values) {
+        return new JSONObject().put("type", "string").put("enum", new JSONArray(values));
+    }
+
+    public static JSONObject array(JSONObject items) {
+        return new JSONObject().put("type", "array").put("items", items);
+    }
+
+    public static JSONObject array(JSONObject items, int minItems, int maxItems) {
+        return array(items).put("minItems", minItems).put("maxItems", maxItems);
+    }
+
+    /**
+     * Объект из пар "имя поля, схема поля"
+     */
+    public static JSONObject object(Object... nameSchemaPairs) {
+        JSONObject properties = new JSONObject();
+        JSONArray required = new JSONArray();
+        for (int i = 0; i + 1 < nameSchemaPairs.length; i += 2) {
+            String name = (String) nameSchemaPairs[i];
+            properties.put(name, nameSchemaPairs[i + 1]);
+            required.put(name);
+        }
+        return new JSONObject()
+                .put("type", "object")
+                .put("properties", properties)
+                .put("required", required)
+                .put("additionalProperties", false);
+    }
+}
@@ -0,0 +1,254 @@
+package org.example.OpenRouter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * JsonWriter - потоковая запись JSON сразу в UTF-8 байты переиспользуемого буфера.
+ * Строки экранируются по RFC 8259: кавычки, обратный слеш, управляющие символы, одиночные суррогаты;
+ * поэтому переводы строк, слеши и слова пользователей в промпте не ломают тело запроса.
+ * Запятые и двоеточия расставляются сами по уровню вложенности.
+ * Не потокобезопасен: на поток свой экземпляр (см. forThread).
+ */
+public final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // буфер больше этого после записи не держим - иначе один огромный промпт занимал бы память потока навсегда
+    private static final int MAX_RETAINED = 64 * 1024;
+    private static final int MAX_DEPTH = 64;
+
+    private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(() -> new JsonWriter(1024));
+
+    private byte[] buffer;
+    private int size;
+    // на каждом уровне: был ли уже элемент (нужна запятая перед следующим)
+    private final boolean[] hasElement = new boolean[MAX_DEPTH];
+    private int depth;
+    // после name() значение пишется без запятой
+    private boolean afterName;
+
+    public JsonWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Переиспользуемый писатель текущего потока, очищенный для новой записи
+     */
+    public static JsonWriter forThread() {
+        return WRITERS.get().reset();
+    }
+
+    /**
+     * Очищает писатель для новой записи (буфер остается, если он не слишком вырос)
+     */
+    public JsonWriter reset() {
+        if (buffer.length > MAX_RETAINED) {
+            buffer = new byte[1024];
+        }
+        size = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Имя поля объекта, следующим вызовом пишется его значение
+     */
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Строковое значение (null - JSON null)
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        return raw(Long.toString(value));
+    }
+
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("В JSON нет числа " + value);
+        }
+        return raw(Double.toString(value));
+    }
+
+    public JsonWriter value(boolean value) {
+        return raw(value ? "true" : "false");
+    }
+
+    public JsonWriter nullValue() {
+        return raw("null");
+    }
+
+    /**
+     * Уже готовый JSON как значение (например, схема JSONObject.toString()) - вставляется без проверки
+     */
+    public JsonWriter jsonValue(String json) {
+        beforeValue();
+        // готовый JSON может содержать не-ASCII строки (например, enum схемы на русском) - кодируем в UTF-8
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    /**
+     * @return копия записанных байт (буфер остается писателю)
+     */
+    public byte[] toByteArray() {
+        if (depth != 0) {
+            throw new IllegalStateException("JSON не закрыт: вложенность " + depth);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /** @return сколько байт записано */
+    public int size() {
+        return size;
+    }
+
+    private JsonWriter open(char bracket) {
+        beforeValue();
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Слишком глубокая вложенность JSON");
+        }
+        writeByte(bracket);
+        hasElement[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Нечего закрывать: " + bracket);
+        }
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    /**
+     * Запятая перед элементом, если на этом уровне он не первый
+     */
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElement[depth - 1]) {
+                writeByte(',');
+            }
+            hasElement[depth - 1] = true;
+        }
+    }
+
+    /**
+     * Числа и литералы true/false/null - только ASCII, копируются побайтно
+     */
+    private JsonWriter raw(String text) {
+        beforeValue();
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[size++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Строка в кавычках: ASCII копируется как есть, остальное кодируется в UTF-8 на месте
+     */
+    private void writeString(String text) {
+        int length = text.length();
+        // худший случай - \\uXXXX (6 байт) на символ
+        ensure(length * 6 + 2);
+        byte[] out = buffer;
+        int pos = size;
+        out[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out[pos++] = (byte) c;
+            } else if (c < 0x80) {
+                out[pos++] = '\\';
+                switch (c) {
+                    case '"' -> out[pos++] = '"';
+                    case '\\' -> out[pos++] = '\\';
+                    case '\n' -> out[pos++] = 'n';
+                    case '\r' -> out[pos++] = 'r';
+                    case '\t' -> out[pos++] = 't';
+                    case '\b' -> out[pos++] = 'b';
+                    case '\f' -> out[pos++] = 'f';
+                    default -> pos = writeUnicodeEscape(out, pos - 1, c);
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c) || c == '\u2028' || c == '\u2029') {
+                // одиночный суррогат в UTF-8 не кодируется; разделители строк экранируем для JavaScript
+                pos = writeUnicodeEscape(out, pos, c);
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[pos++] = '"';
+        size = pos;
+    }
+
+    private static int writeUnicodeEscape(byte[] out, int pos, char c) {
+        out[pos++] = '\\';
+        out[pos++] = 'u';
+        out[pos++] = HEX[(c >> 12) & 0xF];
+        out[pos++] = HEX[(c >> 8) & 0xF];
+        out[pos++] = HEX[(c >> 4) & 0xF];
+        out[pos++] = HEX[c & 0xF];
+        return pos;
+    }
+
+    private void writeByte(char c) {
+        ensure(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
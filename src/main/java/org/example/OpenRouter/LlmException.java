@@ -0,0 +1,103 @@
+package org.example.OpenRouter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * LlmException - типизированная ошибка запроса к ии.
+ * Вид ошибки определяет, повторять ли запрос, переходить ли к запасной модели
+ * и считать ли ошибку отказом самого сервиса (для CircuitBreaker).
+ */
+public class LlmException extends IOException {
+
+    public enum Kind {
+        // 429: лимит запросов
+        RATE_LIMITED(true, true, true),
+        // 5xx и сетевые ошибки: сервис или провайдер модели недоступен
+        UNAVAILABLE(true, true, true),
+        // истек таймаут запроса
+        TIMEOUT(true, true, true),
+        // 404: модель не найдена или у нее нет провайдеров
+        MODEL_UNAVAILABLE(false, true, false),
+        // ответ не удалось разобрать
+        INVALID_RESPONSE(false, true, false),
+        // 400, 422...: запрос некорректен, другая модель не поможет
+        BAD_REQUEST(false, false, false),
+        // 401, 402, 403: ключ или баланс
+        AUTH(false, false, false),
+        // запрос не отправлялся: сервис недавно отказывал, CircuitBreaker разомкнут
+        CIRCUIT_OPEN(false, false, false);
+
+        private final boolean retryable;
+        private final boolean fallback;
+        private final boolean upstreamFailure;
+
+        Kind(boolean retryable, boolean fallback, boolean upstreamFailure) {
+            this.retryable = retryable;
+            this.fallback = fallback;
+            this.upstreamFailure = upstreamFailure;
+        }
+
+        /** @return true если тот же запрос к той же модели имеет смысл повторить */
+        public boolean isRetryable() { return retryable; }
+
+        /** @return true если запрос имеет смысл отправить следующей модели из списка */
+        public boolean isFallback() { return fallback; }
+
+        /** @return true если ошибка говорит о недоступности сервиса */
+        public boolean isUpstreamFailure() { return upstreamFailure; }
+
+        /**
+         * Вид ошибки по HTTP статусу ответа
+         */
+        public static Kind ofStatus(int statusCode) {
+            if (statusCode == 408) {
+                return TIMEOUT;
+            }
+            if (statusCode == 429) {
+                return RATE_LIMITED;
+            }
+            if (statusCode == 401 || statusCode == 402 || statusCode == 403) {
+                return AUTH;
+            }
+            if (statusCode == 404) {
+                return MODEL_UNAVAILABLE;
+            }
+            return statusCode >= 500 ? UNAVAILABLE : BAD_REQUEST;
+        }
+    }
+
+    private final Kind kind;
+    private final int statusCode;
+    private final String model;
+    private final Duration retryAfter;
+
+    public LlmException(Kind kind, String message) {
+        this(kind, message, 0, null, null, null);
+    }
+
+    public LlmException(Kind kind, String message, Throwable cause) {
+        this(kind, message, 0, null, null, cause);
+    }
+
+    /**
+     * @param statusCode HTTP статус (0 - ответа не было)
+     * @param model      модель, к которой шел запрос (может быть null)
+     * @param retryAfter через сколько сервис просит повторить (заголовок Retry-After, может быть null)
+     */
+    public LlmException(Kind kind, String message, int statusCode, String model, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.kind = kind;
+        this.statusCode = statusCode;
+        this.model = model;
+        this.retryAfter = retryAfter;
+    }
+
+    public Kind getKind() { return kind; }
+
+    public int getStatusCode() { return statusCode; }
+
+    public String getModel() { return model; }
+
+    public Duration getRetryAfter() { return retryAfter; }
+}
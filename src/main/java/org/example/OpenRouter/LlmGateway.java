@@ -0,0 +1,250 @@
+package org.example.OpenRouter;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * LlmGateway - политика отправки запросов к ии поверх одной попытки:
+ * повторы с экспоненциальной задержкой и случайным разбросом, переход по списку запасных моделей
+ * и CircuitBreaker, который перестает отправлять запросы, пока сервис недоступен.
+ * Все укладывается в общий дедлайн запроса.
+ */
+public class LlmGateway {
+
+    // модели по порядку: основная, затем запасные
+    public static final List<String> DEFAULT_MODELS = List.of("gpt-3.5-turbo", "openai/gpt-4o-mini");
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(8);
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(60);
+
+    /**
+     * Одна попытка запроса к конкретной модели
+     */
+    public interface Attempt<T> {
+        CompletableFuture<T> send(String model, Duration timeout);
+    }
+
+    private final List<String> models;
+    private final int maxAttemptsPerModel;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * @param models              модели по порядку (первая - основная)
+     * @param maxAttemptsPerModel сколько раз пробовать одну модель при временных ошибках
+     * @param baseDelay           задержка перед первым повтором (дальше удваивается)
+     * @param maxDelay            максимальная задержка между повторами
+     * @param circuitBreaker      предохранитель сервиса
+     */
+    public LlmGateway(List<String> models, int maxAttemptsPerModel, Duration baseDelay, Duration maxDelay,
+                      CircuitBreaker circuitBreaker) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Нужна хотя бы одна модель");
+        }
+        this.models = List.copyOf(models);
+        this.maxAttemptsPerModel = Math.max(1, maxAttemptsPerModel);
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Шлюз с настройками по умолчанию и своим предохранителем
+     */
+    public static LlmGateway createDefault() {
+        return createDefault(DEFAULT_MODELS);
+    }
+
+    /**
+     * Шлюз с настройками по умолчанию для своего списка моделей
+     */
+    public static LlmGateway createDefault(List<String> models) {
+        return new LlmGateway(models, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY,
+                new CircuitBreaker("openrouter", DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION));
+    }
+
+    public List<String> getModels() {
+        return models;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Выполняет запрос: повторы и запасные модели, пока не истек дедлайн.
+     * Ошибка future - всегда LlmException (кроме отмены и прерывания).
+     * Отмена возвращенного future отменяет текущую попытку.
+     */
+    public <T> CompletableFuture<T> execute(Attempt<T> attempt, Duration deadline) {
+        return execute(attempt, deadline, () -> true);
+    }
+
+    /**
+     * Выполняет запрос, повторяя его только пока canRetry разрешает
+     * (потоковый ответ можно повторить, пока получателю не отдано ни одного куска)
+     */
+    public <T> CompletableFuture<T> execute(Attempt<T> attempt, Duration deadline, BooleanSupplier canRetry) {
+        Call<T> call = new Call<>(attempt, System.nanoTime() + deadline.toNanos(), canRetry);
+        call.result.whenComplete((value, error) -> {
+            CompletableFuture<?> current = call.current.get();
+            if (error != null && current != null) {
+                current.cancel(true);
+            }
+        });
+        call.next(null);
+        return call.result;
+    }
+
+    /**
+     * Задержка перед повтором номер retry (с 0): половина экспоненциальной задержки
+     * плюс случайная добавка до второй половины, чтобы повторы разных пользователей не совпадали
+     */
+    public Duration backoff(int retry) {
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(retry, 20));
+        long half = cap / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(cap - half + 1));
+    }
+
+    /**
+     * Состояние одного запроса: текущая модель и номер попытки
+     */
+    private final class Call<T> {
+        private final Attempt<T> attempt;
+        private final long deadlineNanos;
+        private final BooleanSupplier canRetry;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicReference<CompletableFuture<?>> current = new AtomicReference<>();
+        private int modelIndex;
+        private int attemptNumber;
+
+        Call(Attempt<T> attempt, long deadlineNanos, BooleanSupplier canRetry) {
+            this.attempt = attempt;
+            this.deadlineNanos = deadlineNanos;
+            this.canRetry = canRetry;
+        }
+
+        /**
+         * Следующая попытка после ошибки lastError (null - первая попытка)
+         */
+        void next(LlmException lastError) {
+            if (result.isDone()) {
+                return;
+            }
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                result.completeExceptionally(lastError != null ? lastError
+                        : new LlmException(LlmException.Kind.TIMEOUT, "Дедлайн запроса к ии истек"));
+                return;
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                result.completeExceptionally(new LlmException(LlmException.Kind.CIRCUIT_OPEN,
+                        "Сервис ии временно недоступен, запрос не отправлен", 0, null, null, lastError));
+                return;
+            }
+
+            String model = models.get(modelIndex);
+            attemptNumber++;
+            CompletableFuture<T> future;
+            try {
+                future = attempt.send(model, Duration.ofNanos(remaining));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            current.set(future);
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    circuitBreaker.onSuccess();
+                    result.complete(value);
+                } else {
+                    onError(model, unwrap(error));
+                }
+            });
+        }
+
+        private void onError(String model, Throwable error) {
+            if (!(error instanceof LlmException llmError)) {
+                // отмена, прерывание или ошибка в коде - не повторяем
+                result.completeExceptionally(error);
+                return;
+            }
+            LlmException.Kind kind = llmError.getKind();
+            if (kind.isUpstreamFailure()) {
+                circuitBreaker.onFailure();
+            } else {
+                // сервис ответил, пусть и ошибкой - он доступен
+                circuitBreaker.onSuccess();
+            }
+            if (!canRetry.getAsBoolean()) {
+                result.completeExceptionally(llmError);
+                return;
+            }
+
+            Duration retryAfter = llmError.getRetryAfter();
+            boolean retrySameModel = kind.isRetryable() && attemptNumber < maxAttemptsPerModel &&
+                    (retryAfter == null || retryAfter.compareTo(maxDelay) <= 0);
+            if (retrySameModel) {
+                Duration delay = backoff(attemptNumber - 1);
+                if (retryAfter != null && retryAfter.compareTo(delay) > 0) {
+                    delay = retryAfter;
+                }
+                if (System.nanoTime() + delay.toNanos() >= deadlineNanos) {
+                    result.completeExceptionally(llmError);
+                    return;
+                }
+                System.out.println("[LlmGateway] " + model + ": " + kind + ", повтор через " + delay.toMillis() + " мс");
+                CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> next(llmError));
+                return;
+            }
+
+            if (kind.isFallback() && modelIndex + 1 < models.size()) {
+                modelIndex++;
+                attemptNumber = 0;
+                System.out.println("[LlmGateway] " + model + ": " + kind + ", переход к модели " + models.get(modelIndex));
+                next(llmError);
+                return;
+            }
+            result.completeExceptionally(llmError);
+        }
+    }
+
+    /**
+     * Приводит ошибку попытки к LlmException, если это ошибка сети или ответа
+     */
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof LlmException || cause instanceof CancellationException || cause instanceof InterruptedException) {
+            return cause;
+        }
+        if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+            return new LlmException(LlmException.Kind.TIMEOUT, "Превышено время ожидания ответа ии", cause);
+        }
+        if (cause instanceof IOException) {
+            return new LlmException(LlmException.Kind.UNAVAILABLE, "Сетевая ошибка: " + cause.getMessage(), cause);
+        }
+        if (cause instanceof JSONException) {
+            return new LlmException(LlmException.Kind.INVALID_RESPONSE, "Некорректный ответ ии: " + cause.getMessage(), cause);
+        }
+        return cause;
+    }
+}
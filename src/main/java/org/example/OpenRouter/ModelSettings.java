@@ -0,0 +1,121 @@
+package org.example.OpenRouter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * ModelSettings - параметры запросов к ии: модели (основная и запасные), temperature, max_tokens
+ * и системный промпт. Читаются из openrouter.properties рядом с токеном; без файла - значения по умолчанию.
+ * Пустые temperature и max_tokens не отправляются - тогда действуют значения модели.
+ */
+public class ModelSettings {
+    public static final Path DEFAULT_FILE = Path.of("src/main/resources/openrouter.properties");
+    public static final String DEFAULT_SYSTEM_PROMPT = "You are a helpful assistant.";
+
+    private final List<String> models;
+    private final Double temperature;
+    private final Integer maxTokens;
+    private final String systemPrompt;
+
+    /**
+     * @param models       модели по порядку (первая - основная)
+     * @param temperature  temperature запроса (null - не отправлять)
+     * @param maxTokens    max_tokens запроса (null - не отправлять)
+     * @param systemPrompt системное сообщение
+     */
+    public ModelSettings(List<String> models, Double temperature, Integer maxTokens, String systemPrompt) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Нужна хотя бы одна модель");
+        }
+        if (temperature != null && (temperature.isNaN() || temperature < 0 || temperature > 2)) {
+            throw new IllegalArgumentException("temperature должна быть от 0 до 2: " + temperature);
+        }
+        if (maxTokens != null && maxTokens <= 0) {
+            throw new IllegalArgumentException("max_tokens должен быть положительным: " + maxTokens);
+        }
+        this.models = List.copyOf(models);
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+        this.systemPrompt = systemPrompt == null || systemPrompt.isBlank() ? DEFAULT_SYSTEM_PROMPT : systemPrompt;
+    }
+
+    public static ModelSettings createDefault() {
+        return new ModelSettings(LlmGateway.DEFAULT_MODELS, null, null, DEFAULT_SYSTEM_PROMPT);
+    }
+
+    /**
+     * Загружает параметры из DEFAULT_FILE
+     */
+    public static ModelSettings load() {
+        return load(DEFAULT_FILE);
+    }
+
+    /**
+     * Загружает параметры из файла: models (через запятую), temperature, max_tokens, system_prompt.
+     * Нет файла или значения некорректны - параметры по умолчанию
+     */
+    public static ModelSettings load(Path file) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return createDefault();
+        } catch (IOException e) {
+            System.err.println("[ModelSettings] Ошибка чтения " + file + ": " + e.getMessage());
+            return createDefault();
+        }
+
+        try {
+            List<String> models = new ArrayList<>();
+            for (String model : properties.getProperty("models", "").split(",")) {
+                if (!model.isBlank()) {
+                    models.add(model.trim());
+                }
+            }
+            ModelSettings settings = new ModelSettings(models.isEmpty() ? LlmGateway.DEFAULT_MODELS : models,
+                    parse(properties.getProperty("temperature"), Double::valueOf),
+                    parse(properties.getProperty("max_tokens"), Integer::valueOf),
+                    properties.getProperty("system_prompt"));
+            System.out.println("[ModelSettings] Загружены параметры: " + settings);
+            return settings;
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ModelSettings] Некорректные параметры в " + file + ": " + e.getMessage());
+            return createDefault();
+        }
+    }
+
+    private static <T> T parse(String value, Function<String, T> parser) {
+        return value == null || value.isBlank() ? null : parser.apply(value.trim());
+    }
+
+    public List<String> getModels() {
+        return models;
+    }
+
+    /** @return temperature или null */
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    /** @return max_tokens или null */
+    public Integer getMaxTokens() {
+        return maxTokens;
+    }
+
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    @Override
+    public String toString() {
+        return "models=" + models + ", temperature=" + temperature + ", max_tokens=" + maxTokens;
+    }
+}
@@ -3,137 +3,640 @@ package org.example.OpenRouter;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import org.example.Tokens.TokenOpenRouter;
+
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Function;
 
 
 import org.json.*;
 
 /**
  * OpenRouterClient - класс работы с ии.
+ * Один долгоживущий HttpClient (HTTP/2, keep-alive) переиспользуется всеми генераторами,
+ * поэтому TLS рукопожатие и установка соединения происходят один раз, а не на каждый запрос.
+ * Повторы, запасные модели и защита от недоступного сервиса - в LlmGateway,
+ * ошибки api приходят типизированными LlmException.
+ * Длинные ответы можно получать потоком (streamRequestAsync) - кусками по мере генерации.
  */
 
 public class OpenRouterClient {
+    public static final URI DEFAULT_ENDPOINT = URI.create("https://openrouter.ai/api/v1/chat/completions");
+
+    // параметры транспорта по умолчанию
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(90);
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final String KEEP_ALIVE_SECONDS = "300";
+
+    // виртуальные потоки для ожидания слота асинхронными запросами
+    private static final Executor PERMIT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    // общий клиент для всех генераторов (создается лениво)
+    private static volatile OpenRouterClient shared;
+
     private final String apiKey;
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final LlmGateway gateway;
+    // temperature, max_tokens и системный промпт запросов
+    private final ModelSettings settings;
+    // ответы на одинаковые промпты (вводный и speed тест, повторение слова)
+    private final ResponseCache responseCache = ResponseCache.createDefault();
+    private final Duration requestTimeout;
+    private final Semaphore inFlight; // ограничение одновременных запросов к api
+    // сбрасывается, если модель отказалась от response_format - дальше генераторы сразу идут текстом
+    private volatile boolean structuredOutputSupported = true;
 
     public OpenRouterClient(String apiKey) {
+        this(apiKey, ModelSettings.createDefault());
+    }
+
+    /**
+     * @param settings - модели, temperature, max_tokens и системный промпт
+     */
+    public OpenRouterClient(String apiKey, ModelSettings settings) {
+        this(apiKey, createHttpClient(), DEFAULT_ENDPOINT, REQUEST_TIMEOUT, MAX_IN_FLIGHT,
+                LlmGateway.createDefault(settings.getModels()), settings);
+    }
+
+    /**
+     * Конструктор с настройкой транспорта (для тестов и тонкой настройки)
+     *
+     * @param apiKey         - токен OpenRouter
+     * @param httpClient     - общий HTTP клиент
+     * @param requestTimeout - таймаут одного запроса
+     * @param maxInFlight    - максимум одновременных запросов
+     */
+    public OpenRouterClient(String apiKey, HttpClient httpClient, Duration requestTimeout, int maxInFlight) {
+        this(apiKey, httpClient, DEFAULT_ENDPOINT, requestTimeout, maxInFlight, LlmGateway.createDefault());
+    }
+
+    /**
+     * Полная настройка: адрес api (например, локальная заглушка в тестах) и политика повторов
+     *
+     * @param endpoint - адрес chat/completions
+     * @param gateway  - повторы, запасные модели и предохранитель
+     */
+    public OpenRouterClient(String apiKey, HttpClient httpClient, URI endpoint, Duration requestTimeout,
+                            int maxInFlight, LlmGateway gateway) {
+        this(apiKey, httpClient, endpoint, requestTimeout, maxInFlight, gateway, ModelSettings.createDefault());
+    }
+
+    /**
+     * Полная настройка вместе с параметрами запросов (модели берутся из gateway)
+     *
+     * @param settings - temperature, max_tokens и системный промпт
+     */
+    public OpenRouterClient(String apiKey, HttpClient httpClient, URI endpoint, Duration requestTimeout,
+                            int maxInFlight, LlmGateway gateway, ModelSettings settings) {
+        this.settings = settings;
         this.apiKey = apiKey;
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+        this.requestTimeout = requestTimeout;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.gateway = gateway;
+    }
+
+    /**
+     * Возвращает общий клиент, токен загружается один раз при первом обращении
+     */
+    public static OpenRouterClient getShared() {
+        OpenRouterClient client = shared;
+        if (client == null) {
+            synchronized (OpenRouterClient.class) {
+                client = shared;
+                if (client == null) {
+                    TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
+                    tokenOpenRouter.load();
+                    client = new OpenRouterClient(tokenOpenRouter.get(), ModelSettings.load());
+                    shared = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Создает HTTP клиент с HTTP/2 мультиплексированием и пулом keep-alive соединений
+     */
+    public static HttpClient createHttpClient() {
+        // время жизни простаивающего соединения в пуле (читается при создании первого клиента)
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", KEEP_ALIVE_SECONDS);
+        }
+
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * @return true если токен загружен
+     */
+    public boolean hasApiKey() {
+        return apiKey != null && !apiKey.isEmpty();
+    }
+
+    /**
+     * @return false пока предохранитель не пропускает запросы (сервис недавно не отвечал)
+     */
+    public boolean isAvailable() {
+        return gateway.getCircuitBreaker().isCallPermitted();
+    }
+
+    public LlmGateway getGateway() {
+        return gateway;
+    }
+
+    public ModelSettings getSettings() {
+        return settings;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
     }
 
 
     /**
      * отправка запроса через OpenRouter.
+     * Блокирующая обертка над sendRequestAsync - для вызова из фоновых потоков.
      *
      * @param userPrompt - наш запрос, который мы задали в StartYesButton
      * @return - возвращаем ответ на запрос в виде строки
-     * @throws IOException          - если проблемы с сетью или с вводом/выводом
+     * @throws LlmException         - типизированная ошибка api, сети или таймаута
      * @throws InterruptedException - если поток был вызван ожидания ответа
      */
 
     public String sendRequest(String userPrompt) throws IOException, InterruptedException {
-        String requestBody = createRequestBody(userPrompt); //создание запрос в формате json, чуть позже объясню почему так (не забудь спросить)
-        HttpRequest request = createHttpRequest(requestBody); //создание запроса HTTP с определенными заголовками и параметрами
+        return await(sendRequestAsync(userPrompt));
+    }
 
-        HttpClient client = HttpClient.newHttpClient(); //создание клиента дял HTTP запроса
-        //отпарвка запроса и ответ
-        // BodyHandlers.ofString() - указывает что тело ответа нужно преобразовать в строку
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Запрос, ответ на который можно выдать повторно: одинаковый промпт отвечается из ResponseCache
+     * (несколько вариантов по кругу), одновременные одинаковые запросы ждут один запрос к ии.
+     * Только для промптов без личных данных пользователя.
+     *
+     * @param cacheable годится ли ответ для повторной выдачи (например, разбирается ли тест)
+     */
+    public String sendCachedRequest(String userPrompt, Predicate<String> cacheable) throws IOException, InterruptedException {
+        return await(responseCache.get(ResponseCache.key("text", userPrompt),
+                () -> sendRequestAsync(userPrompt), cacheable));
+    }
 
-        //обрабатываем и получаем рез
-        return processResponse(response);
+    /**
+     * Структурированный запрос через ResponseCache (см. sendCachedRequest).
+     * Каждый вызов получает свою копию JSON объекта.
+     */
+    public JSONObject sendCachedStructuredRequest(String userPrompt, String schemaName, JSONObject schema,
+                                                  Predicate<JSONObject> cacheable) throws IOException, InterruptedException {
+        String json = await(responseCache.get(ResponseCache.key("json", schemaName, schema.toString(), userPrompt),
+                () -> sendStructuredRequestAsync(userPrompt, schemaName, schema, requestTimeout).thenApply(JSONObject::toString),
+                value -> cacheable.test(new JSONObject(value))));
+        return new JSONObject(json);
     }
 
+    /**
+     * Запрос со структурированным ответом: модель обязана вернуть JSON по схеме (response_format json_schema).
+     * Блокирующая обертка над sendStructuredRequestAsync.
+     *
+     * @param userPrompt - наш запрос
+     * @param schemaName - имя схемы (латиница, цифры, _)
+     * @param schema     - JSON схема ответа
+     * @return разобранный JSON объект ответа
+     * @throws IOException - сеть, ошибка api или ответ не JSON
+     */
+    public JSONObject sendStructuredRequest(String userPrompt, String schemaName, JSONObject schema)
+            throws IOException, InterruptedException {
+        return await(sendStructuredRequestAsync(userPrompt, schemaName, schema, requestTimeout));
+    }
 
     /**
-     * createRequestBody - метод для создания тела HTTP запроса в формате json
+     * Ожидает результат асинхронного запроса и разворачивает исключения
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // поток прервали - отменяем и сам запрос
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new LlmException(LlmException.Kind.TIMEOUT, "Превышено время ожидания ответа OpenRouter", cause);
+            }
+            cause = LlmGateway.unwrap(cause);
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * асинхронная отправка запроса с дедлайном по умолчанию (таймаут запроса)
      *
      * @param userPrompt - наш запрос
-     * @return - возвращает json строку с телом запроса
+     * @return future с текстом ответа ии
      */
-    private String createRequestBody(String userPrompt) {
-        // String.format - подставляет значение userPrompt в шаблон
-        // replace("\"", "\\\"") - экранирует кавычки в промпте чтобы не сломать JSON
-        return String.format("""
-                    {
-                      "model": "gpt-3.5-turbo",
-                      "messages": [
-                        {"role": "system", "content": "You are a helpful assistant."},
-                        {"role": "user", "content": "%s"}
-                      ]
-                    }
-                """, userPrompt.replace("\"", "\\\""));
+    public CompletableFuture<String> sendRequestAsync(String userPrompt) {
+        return sendRequestAsync(userPrompt, requestTimeout);
+    }
+
+    /**
+     * асинхронная отправка запроса, не блокирует вызывающий поток.
+     * Дедлайн включает ожидание свободного слота; отмена future (cancel или истечение дедлайна)
+     * прерывает и сам HTTP обмен.
+     *
+     * @param userPrompt - наш запрос
+     * @param deadline   - максимальное время до получения ответа
+     * @return future с текстом ответа ии
+     */
+    public CompletableFuture<String> sendRequestAsync(String userPrompt, Duration deadline) {
+        //создание запрос в формате json - для каждой модели свое тело
+        return sendAsync(model -> createRequestBody(userPrompt, model, false), deadline, this::processResponse);
+    }
+
+    /**
+     * Потоковый запрос ("stream": true) с дедлайном по умолчанию
+     *
+     * @param onDelta - получатель кусков текста ответа по мере генерации
+     * @return future со всем текстом ответа ии
+     */
+    public CompletableFuture<String> streamRequestAsync(String userPrompt, Consumer<String> onDelta) {
+        return streamRequestAsync(userPrompt, requestTimeout, onDelta);
+    }
+
+    /**
+     * Потоковый запрос: ответ приходит событиями server-sent events, каждый кусок текста
+     * сразу отдается onDelta (из потока HttpClient, по порядку), future завершается всем текстом ответа.
+     * Повтор и запасная модель - только пока не отдано ни одного куска, иначе получатель увидел бы текст дважды.
+     *
+     * @param userPrompt - наш запрос
+     * @param deadline   - максимальное время до конца ответа
+     * @param onDelta    - получатель кусков текста
+     * @return future со всем текстом ответа ии
+     */
+    public CompletableFuture<String> streamRequestAsync(String userPrompt, Duration deadline, Consumer<String> onDelta) {
+        AtomicBoolean delivered = new AtomicBoolean();
+        Consumer<String> tracked = delta -> {
+            delivered.set(true);
+            onDelta.accept(delta);
+        };
+        return gateway.execute((model, timeout) -> {
+            ServerSentEvents events = new ServerSentEvents(model, tracked);
+            CompletableFuture<String> attempt = sendOnce(createRequestBody(userPrompt, model, true), model, timeout,
+                    events, this::processStream);
+            // отмененная попытка больше ничего не отдает получателю
+            attempt.whenComplete((text, error) -> {
+                if (error != null) {
+                    events.close();
+                }
+            });
+            return attempt;
+        }, deadline, () -> !delivered.get()).orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * асинхронный запрос со структурированным ответом по JSON схеме
+     *
+     * @param userPrompt - наш запрос
+     * @param schemaName - имя схемы
+     * @param schema     - JSON схема ответа
+     * @param deadline   - максимальное время до получения ответа
+     * @return future с разобранным JSON ответом модели
+     */
+    public CompletableFuture<JSONObject> sendStructuredRequestAsync(String userPrompt, String schemaName,
+                                                                    JSONObject schema, Duration deadline) {
+        return sendAsync(model -> createStructuredRequestBody(userPrompt, schemaName, schema, model),
+                deadline, this::processStructuredResponse);
+    }
+
+    /**
+     * @return true если модель пока не отказывалась от структурированного ответа
+     */
+    public boolean isStructuredOutputSupported() {
+        return structuredOutputSupported;
+    }
+
+    /**
+     * Разбор HTTP ответа одной попытки
+     */
+    private interface ResponseParser<B, T> {
+        T parse(HttpResponse<B> response, String model) throws LlmException;
+    }
+
+    /**
+     * Общая отправка через шлюз: повторы и запасные модели в пределах дедлайна
+     *
+     * @param bodyForModel - тело запроса для модели
+     */
+    private <T> CompletableFuture<T> sendAsync(Function<String, byte[]> bodyForModel, Duration deadline,
+                                              ResponseParser<String, T> parser) {
+        return gateway.execute((model, timeout) -> sendOnce(bodyForModel.apply(model), model, timeout,
+                        HttpResponse.BodyHandlers.ofString(), parser), deadline)
+                .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Одна попытка: ожидание слота, HTTP обмен, разбор ответа parser'ом.
+     * Слот занят до конца тела ответа (у потокового ответа - до последнего события)
+     *
+     * @param bodyHandler - чтение тела ответа (строка целиком или поток событий)
+     */
+    private <B, T> CompletableFuture<T> sendOnce(byte[] requestBody, String model, Duration deadline,
+                                                 HttpResponse.BodyHandler<B> bodyHandler, ResponseParser<B, T> parser) {
+        HttpRequest request = createHttpRequest(requestBody, deadline); //создание запроса HTTP с определенными заголовками и параметрами
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        // ожидание слота в виртуальном потоке, чтобы не занимать вызывающий
+        PERMIT_EXECUTOR.execute(() -> {
+            try {
+                long waitNanos = deadlineNanos - System.nanoTime();
+                if (!inFlight.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                    result.completeExceptionally(new LlmException(LlmException.Kind.TIMEOUT, "Нет свободного слота для запроса к OpenRouter"));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            // запрос отменили, пока ждали слот
+            if (result.isDone()) {
+                inFlight.release();
+                return;
+            }
+
+            // BodyHandlers.ofString() - тело ответа строкой, ServerSentEvents - поток событий
+            CompletableFuture<HttpResponse<B>> exchange = httpClient.sendAsync(request, bodyHandler);
+
+            exchange.whenComplete((response, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                    return;
+                }
+                try {
+                    //обрабатываем и получаем рез
+                    result.complete(parser.parse(response, model));
+                } catch (LlmException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+
+            // отмена или дедлайн - обрываем HTTP обмен
+            result.whenComplete((text, error) -> {
+                if (error != null) {
+                    exchange.cancel(true);
+                }
+            });
+        });
+
+        return result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * createRequestBody - метод для создания тела HTTP запроса в формате json.
+     * Пишется JsonWriter'ом сразу в байты: переводы строк, слеши и кавычки в промпте экранируются
+     *
+     * @param userPrompt - наш запрос
+     * @param stream     - потоковый ответ
+     * @return - тело запроса в UTF-8
+     */
+    private byte[] createRequestBody(String userPrompt, String model, boolean stream) {
+        JsonWriter json = JsonWriter.forThread().beginObject();
+        writeCommonFields(json, model, settings.getSystemPrompt(), userPrompt);
+        // stream - ответ событиями по мере генерации
+        json.name("stream").value(stream);
+        return json.endObject().toByteArray();
+    }
+
+    /**
+     * Тело запроса со структурированным ответом (response_format json_schema)
+     */
+    private byte[] createStructuredRequestBody(String userPrompt, String schemaName, JSONObject schema, String model) {
+        JsonWriter json = JsonWriter.forThread().beginObject();
+        writeCommonFields(json, model,
+                settings.getSystemPrompt() + " Reply only with JSON that matches the schema.", userPrompt);
+        json.name("response_format").beginObject()
+                .name("type").value("json_schema")
+                .name("json_schema").beginObject()
+                .name("name").value(schemaName)
+                .name("strict").value(true)
+                .name("schema").jsonValue(schema.toString())
+                .endObject()
+                .endObject();
+        return json.endObject().toByteArray();
+    }
+
+    /**
+     * Общие поля запроса: модель, сообщения и параметры генерации из ModelSettings
+     */
+    private void writeCommonFields(JsonWriter json, String model, String systemPrompt, String userPrompt) {
+        json.name("model").value(model)
+                .name("messages").beginArray()
+                .beginObject().name("role").value("system").name("content").value(systemPrompt).endObject()
+                .beginObject().name("role").value("user").name("content").value(userPrompt).endObject()
+                .endArray();
+        if (settings.getTemperature() != null) {
+            json.name("temperature").value(settings.getTemperature());
+        }
+        if (settings.getMaxTokens() != null) {
+            json.name("max_tokens").value(settings.getMaxTokens());
+        }
     }
 
     /**
      * createHttpRequest - метод для создания HTTP запроса
      *
-     * @param requestBody - тело в формате json (предыдущий метод)
+     * @param requestBody - тело в формате json (байты UTF-8)
+     * @param timeout     - таймаут на весь запрос
      * @return настроенный объект HttpRequest
      */
 
-    private HttpRequest createHttpRequest(String requestBody) {
+    private HttpRequest createHttpRequest(byte[] requestBody, Duration timeout) {
 
         // builder для пошагового создания запроса
         return HttpRequest.newBuilder()
-                .uri(URI.create("https://openrouter.ai/api/v1/chat/completions")) //ссылка endpoint API OpenRouter
+                .uri(endpoint) //ссылка endpoint API OpenRouter
+                .timeout(timeout) //таймаут на весь запрос
                 .header("Content-Type", "application/json") // заголовок указывающий тип (json)
                 .header("Authorization", "Bearer " + apiKey) //заголовок авторизация Bearer и токеном
                 .header("HTTP-Referer", "https://example.com") //заголовок источник запроса указывает типо так required by OpenRouter
                 .header("X-Title", "Java Test App")//заголовок название приложения
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody)) //указываем метод post и передеаем тело запроса
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody)) //указываем метод post и передеаем тело запроса
                 .build();
     }
 
+    /**
+     * Разбор структурированного ответа: текст ответа модели читается JSONTokener'ом как JSON объект.
+     * Отказ api от response_format запоминается, чтобы не тратить на него следующие запросы
+     */
+    private JSONObject processStructuredResponse(HttpResponse<String> response, String model) throws LlmException {
+        if (response.statusCode() == 400 && response.body() != null &&
+                (response.body().contains("response_format") || response.body().contains("json_schema"))) {
+            structuredOutputSupported = false;
+            System.err.println("[OpenRouter] Модель не поддерживает структурированный ответ, дальше только текст");
+        }
+        String content = processResponse(response, model);
+
+        // модели иногда оборачивают JSON в ```json ... ```
+        int start = content.indexOf('{');
+        int end = content.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new LlmException(LlmException.Kind.INVALID_RESPONSE, "Ответ модели не содержит JSON объекта",
+                    response.statusCode(), model, null, null);
+        }
+        try {
+            return new JSONObject(new JSONTokener(content.substring(start, end + 1)));
+        } catch (JSONException e) {
+            throw new LlmException(LlmException.Kind.INVALID_RESPONSE, "Ответ модели - некорректный JSON: " + e.getMessage(),
+                    response.statusCode(), model, null, e);
+        }
+    }
+
     /**
      * processResponse - метод обработки HTTp ответ от APi
      *
      * @param response - ответ от сервера
+     * @param model    - модель, к которой шел запрос
      * @return - возвращаем текст от ии
-     * @throws JSONException - ошибка парсинга json
+     * @throws LlmException - ошибка api (вид по статусу) или ответ без текста
      */
-
-    private String processResponse(HttpResponse<String> response) throws JSONException {
+    private String processResponse(HttpResponse<String> response, String model) throws LlmException {
         // вывод статус кода, 200 - все рабоатет
         //если 400 какаято то впн значит отваллися
         System.out.println("Status code: " + response.statusCode());
+        return processResponse(response.statusCode(), response.body(), response.headers(), model);
+    }
 
+    /**
+     * Разбор потокового ответа после последнего события: ошибки api и ошибки в потоке
+     * становятся LlmException, как у обычного ответа
+     *
+     * @return - весь текст ответа ии
+     */
+    private String processStream(HttpResponse<ServerSentEvents> response, String model) throws LlmException {
+        System.out.println("Status code: " + response.statusCode() + " (stream)");
+        ServerSentEvents events = response.body();
+        if (response.statusCode() != 200 || !events.isEventStream()) {
+            // ошибка api или сервер ответил без потока - разбор как обычного ответа
+            String content = processResponse(response.statusCode(), events.getBody(), response.headers(), model);
+            // получатель кусков получает весь ответ одним куском
+            events.deliver(content);
+            events.throwIfFailed();
+            return content;
+        }
+        events.throwIfFailed();
+        String content = events.getContent().trim();
+        if (content.isEmpty()) {
+            throw new LlmException(LlmException.Kind.INVALID_RESPONSE, "Потоковый ответ OpenRouter без текста",
+                    200, model, null, null);
+        }
+        return content;
+    }
+
+    /**
+     * Разбор тела ответа: статус, объект error или текст choices[0].message.content
+     */
+    private String processResponse(int statusCode, String body, HttpHeaders headers, String model) throws LlmException {
         //парсим JSON ответ в объект для удобного доступа к полям
-        JSONObject json = new JSONObject(response.body());
+        // (прокси при 502/504 отдают html - тогда тела нет)
+        JSONObject json;
+        try {
+            json = new JSONObject(body);
+        } catch (JSONException e) {
+            json = new JSONObject();
+            if (statusCode == 200) {
+                throw new LlmException(LlmException.Kind.INVALID_RESPONSE, "Ответ OpenRouter не JSON",
+                        200, model, null, e);
+            }
+        }
+
+        // OpenRouter может вернуть 200 с объектом error (ошибка провайдера), тогда статус берем из error.code
+        if (statusCode == 200 && json.has("error") && !json.has("choices")) {
+            statusCode = json.getJSONObject("error").optInt("code", 502);
+        }
 
         // проверка статус кода HTTP, то что написано выше
-        if (response.statusCode() != 200) {
-            String errorMessage = "HTTP Error: " + response.statusCode();
+        if (statusCode != 200) {
+            String errorMessage = "HTTP Error: " + statusCode + " (" + model + ")";
 
             // ивлекаем сообщение об ошибке
             if (json.has("error")) {
                 // если есть объект error, берем сообщение из него
                 JSONObject error = json.getJSONObject("error");
-                errorMessage += " - " + error.getString("message");
+                errorMessage += " - " + error.optString("message");
                 if (error.has("type")) {
-                    errorMessage += " (Type: " + error.getString("type") + ")";
+                    errorMessage += " (Type: " + error.optString("type") + ")";
                 }
             } else if (json.has("message")) {
                 // альтернативный вариант - поле message
-                errorMessage += " - " + json.getString("message");
+                errorMessage += " - " + json.optString("message");
             }
-            //бросаем исключение с информацией об ошибке
-            throw new RuntimeException(errorMessage);
+            //бросаем типизированное исключение: по виду шлюз решает, повторять ли запрос
+            throw new LlmException(LlmException.Kind.ofStatus(statusCode), errorMessage, statusCode, model,
+                    retryAfter(headers), null);
         }
 
         // проверяем наличие поля "choices" (массив) в ответе
         if (!json.has("choices")) {
-            throw new RuntimeException("Error: 'choices' field not found in response. Available keys: " + json.keySet());
+            throw new LlmException(LlmException.Kind.INVALID_RESPONSE,
+                    "Error: 'choices' field not found in response. Available keys: " + json.keySet(), 200, model, null, null);
         }
 
         // извлекаем текст ответа ии из структуры JSON:
         // json -> choices (массив) -> первый элемент -> message -> content
-        return json.getJSONArray("choices") // получаем массив choices
-                .getJSONObject(0) //забираем первый элемент массива
-                .getJSONObject("message") // получаем объект message
-                .getString("content") // извлекаем текст ответа
-                .trim(); // убираем лишние пробелы по краям
+        try {
+            return json.getJSONArray("choices") // получаем массив choices
+                    .getJSONObject(0) //забираем первый элемент массива
+                    .getJSONObject("message") // получаем объект message
+                    .getString("content") // извлекаем текст ответа
+                    .trim(); // убираем лишние пробелы по краям
+        } catch (JSONException e) {
+            throw new LlmException(LlmException.Kind.INVALID_RESPONSE, "Ответ OpenRouter без текста: " + e.getMessage(),
+                    200, model, null, e);
+        }
+    }
+
+    /**
+     * Заголовок Retry-After в секундах (null - нет или не число)
+     */
+    private static Duration retryAfter(HttpHeaders headers) {
+        try {
+            return headers.firstValue("Retry-After")
+                    .map(value -> Duration.ofSeconds(Long.parseLong(value.trim())))
+                    .orElse(null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
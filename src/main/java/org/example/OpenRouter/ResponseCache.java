@@ -0,0 +1,178 @@
+package org.example.OpenRouter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * ResponseCache - кеш ответов ии по содержимому запроса (ключ - SHA-256 промпта).
+ * Для одного промпта хранится до variantsPerPrompt разных ответов: пока их меньше, запрос идет в ии
+ * и ответ добавляется как новый вариант, дальше варианты выдаются по кругу.
+ * Одинаковые запросы, пришедшие одновременно, ждут один общий запрос к ии.
+ * Варианты живут ttl, число промптов ограничено (вытесняется давно не запрошенный).
+ */
+public class ResponseCache {
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final Duration DEFAULT_TTL = Duration.ofHours(6);
+    private static final int DEFAULT_VARIANTS = 3;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int variantsPerPrompt;
+    // порядок доступа: первым идет давно не запрошенный промпт
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Ответы одного промпта. Все поля - под блокировкой кеша
+     */
+    private static class Entry {
+        final List<Variant> variants = new ArrayList<>();
+        int nextVariant;
+        // запрос к ии, который сейчас идет за новым вариантом
+        CompletableFuture<String> loading;
+    }
+
+    private record Variant(String value, long expiresAt) {
+    }
+
+    /**
+     * @param maxEntries        максимум промптов в кеше
+     * @param ttl               время жизни одного варианта
+     * @param variantsPerPrompt сколько разных ответов собирать на один промпт
+     */
+    public ResponseCache(int maxEntries, Duration ttl, int variantsPerPrompt) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttl.toMillis();
+        this.variantsPerPrompt = Math.max(1, variantsPerPrompt);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                // промпт с идущим запросом не вытесняем - его ждут пользователи
+                return size() > ResponseCache.this.maxEntries && eldest.getValue().loading == null;
+            }
+        };
+    }
+
+    public static ResponseCache createDefault() {
+        return new ResponseCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_VARIANTS);
+    }
+
+    /**
+     * Ключ по содержимому запроса: SHA-256 от частей (тип запроса, схема, промпт...)
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                // длина перед частью - чтобы ("ab", "c") и ("a", "bc") давали разные ключи
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Ответ для ключа: из кеша, из уже идущего запроса или новым запросом loader.
+     * Ошибки не кешируются. Отмена возвращенного future не отменяет общий запрос для остальных.
+     *
+     * @param key       ключ промпта (см. key)
+     * @param loader    запрос к ии
+     * @param cacheable годится ли ответ для повторной выдачи (неразбираемый ответ отдается только запросившим)
+     */
+    public CompletableFuture<String> get(String key, Supplier<CompletableFuture<String>> loader,
+                                         Predicate<String> cacheable) {
+        CompletableFuture<String> loading;
+        synchronized (this) {
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+            long now = System.currentTimeMillis();
+            entry.variants.removeIf(variant -> variant.expiresAt() <= now);
+
+            int size = entry.variants.size();
+            boolean full = size >= variantsPerPrompt;
+            // набор вариантов полон, либо новый вариант уже запрошен, а старые есть - отдаем по кругу
+            if (full || (entry.loading != null && size > 0)) {
+                hits.incrementAndGet();
+                Variant variant = entry.variants.get(entry.nextVariant++ % size);
+                return CompletableFuture.completedFuture(variant.value());
+            }
+            if (entry.loading != null) {
+                coalesced.incrementAndGet();
+                return entry.loading.copy();
+            }
+            loads.incrementAndGet();
+            loading = new CompletableFuture<>();
+            entry.loading = loading;
+        }
+
+        CompletableFuture<String> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            boolean keep = error == null && value != null && isCacheable(cacheable, value);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.loading == loading) {
+                    entry.loading = null;
+                    if (keep) {
+                        entry.variants.add(new Variant(value, System.currentTimeMillis() + ttlMillis));
+                    }
+                }
+            }
+            if (error != null) {
+                loading.completeExceptionally(error);
+            } else {
+                loading.complete(value);
+            }
+        });
+        return loading.copy();
+    }
+
+    private static boolean isCacheable(Predicate<String> cacheable, String value) {
+        try {
+            return cacheable.test(value);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сбрасывает все ответы
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /** @return количество промптов в кеше */
+    public synchronized int size() { return entries.size(); }
+
+    /** @return количество ответов из кеша */
+    public long getHits() { return hits.get(); }
+
+    /** @return количество запросов к ии */
+    public long getLoads() { return loads.get(); }
+
+    /** @return количество запросов, дождавшихся чужого запроса к ии */
+    public long getCoalesced() { return coalesced.get(); }
+}
@@ -0,0 +1,181 @@
+package org.example.OpenRouter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * ServerSentEvents - разбор потокового ответа chat/completions ("stream": true) по мере прихода строк.
+ * Каждое событие "data: {...}" несет кусок текста в choices[0].delta.content, он сразу отдается получателю;
+ * строки-комментарии ": ..." (OpenRouter так держит соединение) пропускаются, "data: [DONE]" - конец ответа.
+ * Ошибка посреди потока приходит событием с объектом error - запоминается и отдается после конца ответа.
+ * Если сервер ответил не потоком (ошибка или обычный JSON), строки копятся как тело ответа.
+ * Одна попытка - один экземпляр: он же обработчик тела ответа для HttpClient.
+ */
+final class ServerSentEvents implements HttpResponse.BodyHandler<ServerSentEvents>, Flow.Subscriber<String> {
+    private static final String DONE = "[DONE]";
+
+    private final String model;
+    private final Consumer<String> onDelta;
+    private final StringBuilder content = new StringBuilder(4096);
+    // тело ответа, если это не поток событий
+    private final StringBuilder body = new StringBuilder();
+    // строки data: текущего события
+    private final StringBuilder data = new StringBuilder();
+
+    private int statusCode;
+    private boolean eventsSeen;
+    private boolean done;
+    private RuntimeException consumerError;
+    private LlmException error;
+    // попытка завершилась (отмена, дедлайн) - куски больше не отдаются
+    private volatile boolean closed;
+
+    /**
+     * @param model   модель попытки (для ошибок)
+     * @param onDelta получатель кусков текста ответа
+     */
+    ServerSentEvents(String model, Consumer<String> onDelta) {
+        this.model = model;
+        this.onDelta = onDelta;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<ServerSentEvents> apply(HttpResponse.ResponseInfo responseInfo) {
+        statusCode = responseInfo.statusCode();
+        // null - любой разделитель строк (\n, \r\n, \r)
+        return HttpResponse.BodySubscribers.fromLineSubscriber(this, events -> events, StandardCharsets.UTF_8, null);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (statusCode != 200) {
+            body.append(line).append('\n');
+            return;
+        }
+        if (line.isEmpty()) {
+            dispatch();
+        } else if (line.startsWith("data:")) {
+            eventsSeen = true;
+            int from = line.length() > 5 && line.charAt(5) == ' ' ? 6 : 5;
+            if (!data.isEmpty()) {
+                data.append('\n');
+            }
+            data.append(line, from, line.length());
+        } else if (!eventsSeen && !line.startsWith(":")) {
+            // не поток событий: сервер проигнорировал stream и прислал обычный ответ
+            body.append(line).append('\n');
+        }
+        // остальное - комментарии и поля event:/id:/retry:, они не нужны
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // ошибку транспорта получит future HTTP обмена
+    }
+
+    @Override
+    public void onComplete() {
+        dispatch();
+    }
+
+    /**
+     * Разбирает накопленное событие
+     */
+    private void dispatch() {
+        if (data.isEmpty()) {
+            return;
+        }
+        String event = data.toString();
+        data.setLength(0);
+        if (done || error != null || consumerError != null) {
+            return;
+        }
+        if (DONE.equals(event)) {
+            done = true;
+            return;
+        }
+
+        String delta;
+        try {
+            JSONObject chunk = new JSONObject(event);
+            JSONObject chunkError = chunk.optJSONObject("error");
+            if (chunkError != null) {
+                int code = chunkError.optInt("code", 502);
+                error = new LlmException(LlmException.Kind.ofStatus(code),
+                        "Ошибка в потоке ответа: " + code + " (" + model + ") - " + chunkError.optString("message"),
+                        code, model, null, null);
+                return;
+            }
+            JSONArray choices = chunk.optJSONArray("choices");
+            JSONObject choice = choices == null ? null : choices.optJSONObject(0);
+            JSONObject deltaObject = choice == null ? null : choice.optJSONObject("delta");
+            delta = deltaObject == null ? "" : deltaObject.optString("content", "");
+        } catch (JSONException e) {
+            error = new LlmException(LlmException.Kind.INVALID_RESPONSE,
+                    "Некорректное событие в потоке ответа: " + e.getMessage(), 200, model, null, e);
+            return;
+        }
+
+        deliver(delta);
+    }
+
+    /**
+     * Отдает кусок текста получателю (и весь ответ, если сервер прислал его не потоком)
+     */
+    void deliver(String delta) {
+        if (delta.isEmpty() || closed || consumerError != null) {
+            return;
+        }
+        content.append(delta);
+        try {
+            onDelta.accept(delta);
+        } catch (RuntimeException e) {
+            consumerError = e;
+        }
+    }
+
+    /**
+     * Больше не отдавать куски получателю (попытка отменена или истек дедлайн)
+     */
+    void close() {
+        closed = true;
+    }
+
+    /** @return true если пришло хотя бы одно событие data: */
+    boolean isEventStream() {
+        return eventsSeen;
+    }
+
+    /** @return весь текст ответа, собранный из кусков */
+    String getContent() {
+        return content.toString();
+    }
+
+    /** @return тело ответа, если это был не поток событий */
+    String getBody() {
+        return body.toString();
+    }
+
+    /**
+     * Бросает ошибку, пришедшую в потоке, или ошибку получателя кусков
+     */
+    void throwIfFailed() throws LlmException {
+        if (consumerError != null) {
+            throw consumerError;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package org.example.Parsing;
+
+import org.example.ScheduledTests.TestsData;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * TestTextParser - общий однопроходный разбор текстов тестов от ии без регулярных выражений.
+ * Два формата:
+ * - вводный и speed тест: "N. (points)", вопрос, строки "A." - "D.", "Answer: X";
+ * - отложенный тест: блоки "Вопрос:" со строками вариантов "A)" - "D)", "Ответ:", "Тип:", "Слово: en - ru".
+ * Текст читается один раз по строкам как CharSequence, поля - это границы в исходном тексте,
+ * строка создается только для готового вопроса. Блок с нарушенной структурой отбрасывается сразу,
+ * как только встречается неожиданная строка.
+ * Оба формата можно разбирать и по мере генерации ответа (PointsTestStream, WordTestStream).
+ */
+public final class TestTextParser {
+
+    public static final String TYPE_NEW = "НОВОЕ";
+    public static final String TYPE_PRIORITY = "ПРИОРИТЕТНОЕ";
+
+    private static final String[] ANSWERS = {"A", "B", "C", "D"};
+    private static final String PLACEHOLDER_OPTIONS =
+            "\nA) вариант перевода 1\nB) вариант перевода 2\nC) вариант перевода 3\nD) вариант перевода 4";
+
+    // состояния разбора блока вводного теста
+    private static final int SEEK_HEADER = 0;
+    private static final int IN_QUESTION = 1;
+    // IN_QUESTION + 1 .. IN_QUESTION + 4 - варианты A..D
+
+    private TestTextParser() {
+    }
+
+    /**
+     * Получатель вопросов вводного теста по мере разбора
+     */
+    public interface QuestionConsumer {
+        void accept(String question, String answer, int points);
+    }
+
+    /**
+     * Потоковый разбор теста: куски ответа ии подаются по мере прихода
+     */
+    public interface TestStream {
+        /** Дописывает кусок ответа */
+        void append(CharSequence chunk);
+
+        /** Конец ответа; @return сколько всего вопросов распознано */
+        int finish();
+
+        /** @return сколько вопросов уже распознано */
+        int getParsed();
+    }
+
+    /**
+     * Разбирает вводный или speed тест и дописывает вопросы в списки
+     *
+     * @param questions текст вопроса с вариантами ("вопрос\nA. ..\nB. ..\nC. ..\nD. ..")
+     * @param answers правильные ответы (A-D)
+     * @param points баллы за вопрос
+     * @return сколько вопросов распознано
+     */
+    public static int parsePointsTest(CharSequence text, List<String> questions, List<String> answers, List<Integer> points) {
+        if (text == null) {
+            return 0;
+        }
+        PointsTestStream stream = new PointsTestStream((question, answer, blockPoints) -> {
+            questions.add(question);
+            answers.add(answer);
+            points.add(blockPoints);
+        });
+        stream.scan(text, true);
+        return stream.parsed;
+    }
+
+    /**
+     * Разбирает отложенный тест по словам и дописывает вопросы в testsData
+     *
+     * @return сколько вопросов распознано
+     */
+    public static int parseWordTest(CharSequence text, TestsData testsData) {
+        if (text == null) {
+            return 0;
+        }
+        WordTestStream stream = new WordTestStream(testsData::addQuestion);
+        stream.scan(text, true);
+        stream.finishBlock(text);
+        return stream.parsed;
+    }
+
+    /**
+     * Потоковый разбор вводного теста: текст приходит кусками (ответ ии по мере генерации),
+     * вопрос отдается получателю, как только пришла его строка "Answer:".
+     * Разбор тот же, что у parsePointsTest; куски копятся в одном буфере, границы полей - в нем.
+     * Не потокобезопасен: куски подаются по очереди из одного потока.
+     */
+    public static final class PointsTestStream implements TestStream {
+        private final QuestionConsumer consumer;
+        private final StringBuilder text = new StringBuilder(4096);
+        private final StringBuilder question = new StringBuilder(256);
+        // границы вопроса и вариантов A-D: [начало, конец) в тексте
+        private final int[] bounds = new int[10];
+        private int state = SEEK_HEADER;
+        private int blockPoints;
+        private int parsed;
+        // начало первой еще не разобранной строки
+        private int lineStart;
+
+        public PointsTestStream(QuestionConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Дописывает кусок ответа и разбирает все строки, которые в нем завершились
+         */
+        @Override
+        public void append(CharSequence chunk) {
+            text.append(chunk);
+            scan(text, false);
+        }
+
+        /**
+         * Конец ответа: разбирает последнюю строку без перевода строки
+         *
+         * @return сколько всего вопросов распознано
+         */
+        @Override
+        public int finish() {
+            scan(text, true);
+            return parsed;
+        }
+
+        /** @return сколько вопросов уже распознано */
+        @Override
+        public int getParsed() {
+            return parsed;
+        }
+
+        /**
+         * Разбирает строки с lineStart; незавершенная последняя строка ждет следующего куска, если не last
+         */
+        private void scan(CharSequence text, boolean last) {
+            int length = text.length();
+            while (lineStart < length) {
+                int lineEnd = indexOf(text, '\n', lineStart, length);
+                if (lineEnd == length && !last) {
+                    return;
+                }
+                line(text, lineStart, lineEnd);
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        private void line(CharSequence text, int lineStart, int lineEnd) {
+            int headerPoints = parseHeader(text, lineStart, lineEnd);
+            if (headerPoints >= 0) {
+                // новый заголовок: недописанный блок отбрасывается
+                state = IN_QUESTION;
+                blockPoints = headerPoints;
+                bounds[0] = -1;
+            } else if (state == IN_QUESTION) {
+                if (startsWith(text, lineStart, lineEnd, "A.")) {
+                    if (bounds[0] < 0 || isBlank(text, bounds[0], bounds[1])) {
+                        state = SEEK_HEADER; // вариант без вопроса
+                    } else {
+                        state = IN_QUESTION + 1;
+                        bounds[2] = lineStart;
+                        bounds[3] = lineEnd;
+                    }
+                } else {
+                    if (bounds[0] < 0) {
+                        bounds[0] = lineStart;
+                    }
+                    bounds[1] = lineEnd;
+                }
+            } else if (state > IN_QUESTION) {
+                int option = state - IN_QUESTION; // 1..4 - текущий вариант
+                if (option < 4 && startsWith(text, lineStart, lineEnd, (char) ('A' + option) + ".")) {
+                    state++;
+                    bounds[2 * option + 2] = lineStart;
+                    bounds[2 * option + 3] = lineEnd;
+                } else if (option == 4 && startsWith(text, lineStart, lineEnd, "Answer:")) {
+                    int length = text.length();
+                    int answer = skipWhitespace(text, lineStart + "Answer:".length(), length);
+                    char letter = answer < length ? text.charAt(answer) : 0;
+                    if (letter >= 'A' && letter <= 'D') {
+                        question.setLength(0);
+                        for (int field = 0; field < 5; field++) {
+                            if (field > 0) {
+                                question.append('\n');
+                            }
+                            appendTrimmed(question, text, bounds[2 * field], bounds[2 * field + 1]);
+                        }
+                        parsed++;
+                        consumer.accept(question.toString(), ANSWERS[letter - 'A'], blockPoints);
+                    }
+                    state = SEEK_HEADER;
+                } else {
+                    // продолжение текущего варианта на следующей строке
+                    bounds[2 * option + 1] = lineEnd;
+                }
+            }
+        }
+    }
+
+    /**
+     * Потоковый разбор отложенного теста: блок "Вопрос:" отдается получателю, когда пришел
+     * заголовок следующего блока (или закончился ответ) - так результат совпадает с parseWordTest.
+     * Не потокобезопасен: куски подаются по очереди из одного потока.
+     */
+    public static final class WordTestStream implements TestStream {
+        private final Consumer<TestsData.QuestionData> consumer;
+        private final StringBuilder text = new StringBuilder(4096);
+        private final StringBuilder question = new StringBuilder(256);
+        private int blockStart;
+        private int lineStart;
+        private int parsed;
+        private boolean finished;
+
+        public WordTestStream(Consumer<TestsData.QuestionData> consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Дописывает кусок ответа; готовые блоки сразу отдаются получателю
+         */
+        @Override
+        public void append(CharSequence chunk) {
+            text.append(chunk);
+            scan(text, false);
+        }
+
+        /**
+         * Конец ответа: разбирает последний блок
+         *
+         * @return сколько всего вопросов распознано
+         */
+        @Override
+        public int finish() {
+            if (!finished) {
+                scan(text, true);
+                finishBlock(text);
+            }
+            return parsed;
+        }
+
+        /** @return сколько вопросов уже распознано */
+        @Override
+        public int getParsed() {
+            return parsed;
+        }
+
+        private void scan(CharSequence text, boolean last) {
+            int length = text.length();
+            while (lineStart < length) {
+                int lineEnd = indexOf(text, '\n', lineStart, length);
+                if (lineEnd == length && !last) {
+                    return;
+                }
+                if (lineStart > blockStart && isQuestionHeader(text, lineStart, lineEnd)) {
+                    addBlock(text, lineStart);
+                    blockStart = lineStart;
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        private void finishBlock(CharSequence text) {
+            addBlock(text, text.length());
+            blockStart = text.length();
+            finished = true;
+        }
+
+        private void addBlock(CharSequence text, int end) {
+            TestsData.QuestionData data = parseWordBlock(text, blockStart, end, question);
+            if (data != null) {
+                parsed++;
+                consumer.accept(data);
+            }
+        }
+    }
+
+    /**
+     * Разбирает один блок "Вопрос:" за проход по его строкам
+     *
+     * @return вопрос или null, если в блоке нет слова с переводом
+     */
+    private static TestsData.QuestionData parseWordBlock(CharSequence text, int start, int end, StringBuilder question) {
+        int from = skipWhitespace(text, start, end);
+        int to = trimEnd(text, from, end);
+        // заголовки ответа ии и обрывки пропускаются
+        if (to - from < 20 || startsWith(text, from, to, "ТЕСТ НА ЗНАНИЕ") || startsWith(text, from, to, "Проверьте свой")) {
+            return null;
+        }
+
+        String englishWord = null;
+        String translation = null;
+        String wordType = TYPE_NEW;
+        String correctAnswer = "A";
+        boolean inQuestion = false;
+        boolean bodyFound = false;
+        int optionsCount = 0;
+        question.setLength(0);
+
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = indexOf(text, '\n', lineStart, to);
+            int s = skipWhitespace(text, lineStart, lineEnd);
+            int e = trimEnd(text, s, lineEnd);
+            lineStart = lineEnd + 1;
+            if (s == e) {
+                continue;
+            }
+
+            // служебные строки: извлекаем поля, в текст вопроса они не попадают
+            if (startsWith(text, s, e, "Ответ:")) {
+                int letter = skipWhitespace(text, s + "Ответ:".length(), e);
+                char c = letter < e ? Character.toUpperCase(text.charAt(letter)) : 0;
+                if (c >= 'A' && c <= 'D') {
+                    correctAnswer = ANSWERS[c - 'A'];
+                }
+                continue;
+            }
+            if (startsWith(text, s, e, "Тип:")) {
+                int value = skipWhitespace(text, s + "Тип:".length(), e);
+                if (startsWithIgnoreCase(text, value, e, TYPE_PRIORITY)) {
+                    wordType = TYPE_PRIORITY;
+                } else if (startsWithIgnoreCase(text, value, e, TYPE_NEW)) {
+                    wordType = TYPE_NEW;
+                }
+                continue;
+            }
+            if (startsWith(text, s, e, "Слово") || startsWith(text, s, e, "Слова")) {
+                if (englishWord == null) {
+                    int value = s + "Слово".length();
+                    if (value < e && text.charAt(value) == ':') {
+                        value++;
+                    }
+                    value = skipWhitespace(text, value, e);
+                    int dash = indexOf(text, '-', value, e);
+                    if (dash < e && dash > value) {
+                        englishWord = trimmed(text, value, dash);
+                        translation = trimmed(text, dash + 1, e);
+                    }
+                }
+                continue;
+            }
+
+            // текст вопроса: строки до первого варианта, затем до четырех вариантов "A)" - "D)"
+            boolean option = isWordOption(text, s, e);
+            if (!inQuestion && !option) {
+                inQuestion = true;
+            }
+            if (!inQuestion || optionsCount >= 4) {
+                continue;
+            }
+            if (option) {
+                if (optionsCount == 0 && bodyFound) {
+                    question.append('\n');
+                }
+                question.append(text, s, e).append('\n');
+                optionsCount++;
+            } else if (optionsCount == 0) {
+                question.append(text, s, e).append('\n');
+                bodyFound = true;
+            }
+        }
+
+        if (englishWord == null || englishWord.isEmpty() || englishWord.equals("Н/Д") ||
+                translation == null || translation.isEmpty()) {
+            return null;
+        }
+
+        if (question.length() == 0) {
+            question.append("Выберите правильный перевод слова \"").append(englishWord).append("\"");
+        }
+        int textEnd = trimEnd(question, 0, question.length());
+        question.setLength(textEnd);
+        if (optionsCount < 4) {
+            question.append(PLACEHOLDER_OPTIONS);
+        }
+
+        return new TestsData.QuestionData(question.toString(), correctAnswer, wordType, englishWord, translation);
+    }
+
+    /**
+     * Собирает текст вопроса из структурированного ответа в том же виде, что и при разборе текста:
+     * вопрос, пустая строка, варианты "A) " - "D) " (буквы, которые модель уже добавила, не дублируются)
+     *
+     * @return текст вопроса или null, если вопрос пустой или вариантов не 4
+     */
+    public static String formatQuestion(String question, List<String> options) {
+        if (question == null || question.isBlank() || options == null || options.size() != 4) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(question.length() + 128);
+        appendTrimmed(text, question, 0, question.length());
+        text.append('\n');
+        for (int i = 0; i < 4; i++) {
+            String option = options.get(i);
+            if (option == null || option.isBlank()) {
+                return null;
+            }
+            int from = skipWhitespace(option, 0, option.length());
+            // "A) текст" или "A. текст" - букву модель уже поставила
+            if (option.length() - from >= 2 && option.charAt(from) == ANSWERS[i].charAt(0) &&
+                    (option.charAt(from + 1) == ')' || option.charAt(from + 1) == '.')) {
+                from += 2;
+            }
+            text.append('\n').append(ANSWERS[i]).append(") ");
+            appendTrimmed(text, option, from, option.length());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Заголовок вопроса вводного теста: "...N. (P points)" в конце строки
+     *
+     * @return баллы или -1, если строка не заголовок
+     */
+    private static int parseHeader(CharSequence text, int start, int end) {
+        int close = trimEnd(text, start, end) - 1;
+        if (close <= start || text.charAt(close) != ')') {
+            return -1;
+        }
+        // внутри скобок: цифры, пробелы, буквы из "points"
+        int i = close - 1;
+        while (i > start && "points".indexOf(text.charAt(i)) >= 0) {
+            i--;
+        }
+        while (i > start && Character.isWhitespace(text.charAt(i))) {
+            i--;
+        }
+        int digitsEnd = i + 1;
+        while (i > start && isDigit(text.charAt(i))) {
+            i--;
+        }
+        if (text.charAt(i) != '(' || digitsEnd - i < 2) {
+            return -1;
+        }
+        int points = 0;
+        for (int d = i + 1; d < digitsEnd; d++) {
+            points = points * 10 + (text.charAt(d) - '0');
+        }
+        // перед скобкой: номер вопроса, один любой символ ("1." или "1)") и пробелы
+        int j = i - 1;
+        while (j >= start && Character.isWhitespace(text.charAt(j))) {
+            j--;
+        }
+        if (j >= start && !isDigit(text.charAt(j))) {
+            j--;
+        }
+        return j >= start && isDigit(text.charAt(j)) ? points : -1;
+    }
+
+    /**
+     * Начало блока отложенного теста: "Вопрос:", "Вопрос 2:"
+     */
+    private static boolean isQuestionHeader(CharSequence text, int start, int end) {
+        int s = skipWhitespace(text, start, end);
+        if (!startsWith(text, s, end, "Вопрос")) {
+            return false;
+        }
+        int i = skipWhitespace(text, s + "Вопрос".length(), end);
+        while (i < end && isDigit(text.charAt(i))) {
+            i++;
+        }
+        return i < end && text.charAt(i) == ':';
+    }
+
+    /**
+     * Вариант ответа отложенного теста: "A) текст"
+     */
+    private static boolean isWordOption(CharSequence text, int start, int end) {
+        if (end - start < 3) {
+            return false;
+        }
+        char letter = text.charAt(start);
+        return letter >= 'A' && letter <= 'D' && text.charAt(start + 1) == ')';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static int skipWhitespace(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(CharSequence text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isBlank(CharSequence text, int from, int to) {
+        return skipWhitespace(text, from, to) == to;
+    }
+
+    private static boolean startsWith(CharSequence text, int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence text, int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toUpperCase(text.charAt(from + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendTrimmed(StringBuilder out, CharSequence text, int from, int to) {
+        int s = skipWhitespace(text, from, to);
+        out.append(text, s, trimEnd(text, s, to));
+    }
+
+    private static String trimmed(CharSequence text, int from, int to) {
+        int s = skipWhitespace(text, from, to);
+        return text.subSequence(s, trimEnd(text, s, to)).toString();
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.RateLimit;
+
+import org.example.Data.BotResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * OutboundQueue - очередь исходящих сообщений одной платформы.
+ * Каждая отправка ждет токен в ведре своего чата и в общем ведре бота,
+ * при ответе 429 ведро замораживается на retry-after и отправка повторяется.
+ * Количество ожидающих отправок ограничено: если очередь заполнена,
+ * вызывающий поток (рассылка) ждет - это и есть обратное давление.
+ */
+public class OutboundQueue {
+    private static final int MAX_RETRIES = 3;
+    // после стольких ведер чатов неактивные ведра удаляются
+    private static final int MAX_CHAT_BUCKETS = 10_000;
+
+    private final String platform;
+    private final Function<BotResponse, Boolean> transport;
+    private final TokenBucket globalBucket;
+    private final double perChatRate;
+    private final int perChatBurst;
+    private final ConcurrentHashMap<Long, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    private final Semaphore pending;
+    private final Duration maxWait;
+
+    // метрики
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param platform название платформы для логов
+     * @param transport непосредственная отправка (может бросить RateLimitedException)
+     * @param globalRate сообщений в секунду на весь бот
+     * @param globalBurst допустимая вспышка на весь бот
+     * @param perChatRate сообщений в секунду в один чат
+     * @param perChatBurst допустимая вспышка в один чат
+     * @param maxPending сколько отправок может ждать одновременно
+     * @param maxWait сколько отправка ждет места в очереди
+     */
+    public OutboundQueue(String platform,
+                         Function<BotResponse, Boolean> transport,
+                         double globalRate, int globalBurst,
+                         double perChatRate, int perChatBurst,
+                         int maxPending, Duration maxWait) {
+        this.platform = platform;
+        this.transport = transport;
+        this.globalBucket = new TokenBucket(globalRate, globalBurst);
+        this.perChatRate = perChatRate;
+        this.perChatBurst = perChatBurst;
+        this.pending = new Semaphore(maxPending, true);
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Лимиты Telegram: около 30 сообщений в секунду на бота и 1 в секунду в чат
+     */
+    public static OutboundQueue forTelegram(Function<BotResponse, Boolean> transport) {
+        return new OutboundQueue("telegram", transport, 25, 25, 1, 3, 200, Duration.ofMinutes(2));
+    }
+
+    /**
+     * Лимиты Discord: 5 сообщений за 5 секунд в канал и около 50 запросов в секунду на бота
+     */
+    public static OutboundQueue forDiscord(Function<BotResponse, Boolean> transport) {
+        return new OutboundQueue("discord", transport, 40, 40, 1, 5, 200, Duration.ofMinutes(2));
+    }
+
+    /**
+     * Отправляет сообщение с соблюдением лимитов (блокирует поток до отправки)
+     * @param response сообщение
+     * @return результат транспорта
+     * @throws RateLimitedException если очередь переполнена, лимит не снят после повторов
+     *                              или ожидание прервано
+     */
+    public boolean send(BotResponse response) {
+        try {
+            if (!pending.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RateLimitedException("Очередь отправки " + platform + " переполнена", maxWait, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RateLimitedException("Ожидание очереди " + platform + " прервано", Duration.ZERO, true);
+        }
+
+        long chatId = response.getChatId();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                awaitTurn(chatId);
+                try {
+                    boolean result = transport.apply(response);
+                    (result ? sent : failed).incrementAndGet();
+                    return result;
+                } catch (RateLimitedException e) {
+                    rateLimited.incrementAndGet();
+                    TokenBucket bucket = e.isGlobal() ? globalBucket : chatBucket(chatId);
+                    bucket.pause(e.getRetryAfter().toNanos());
+                    System.out.println("[RateLimit] " + platform + " 429 для " + chatId +
+                            ", повтор через " + e.getRetryAfter().toMillis() + " мс (попытка " + (attempt + 1) + ")");
+                    if (attempt >= MAX_RETRIES) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RateLimitedException("Отправка в " + platform + " прервана", Duration.ZERO, false);
+        } finally {
+            pending.release();
+        }
+    }
+
+    /**
+     * Ждет токен сначала в ведре чата, затем в общем ведре
+     */
+    private void awaitTurn(long chatId) throws InterruptedException {
+        long chatWait = chatBucket(chatId).reserve();
+        if (chatWait > 0) {
+            delayed.incrementAndGet();
+            TimeUnit.NANOSECONDS.sleep(chatWait);
+        }
+
+        long globalWait = globalBucket.reserve();
+        if (globalWait > 0) {
+            delayed.incrementAndGet();
+            TimeUnit.NANOSECONDS.sleep(globalWait);
+        }
+    }
+
+    private TokenBucket chatBucket(long chatId) {
+        if (chatBuckets.size() > MAX_CHAT_BUCKETS) {
+            chatBuckets.values().removeIf(TokenBucket::isIdle);
+        }
+        return chatBuckets.computeIfAbsent(chatId, id -> new TokenBucket(perChatRate, perChatBurst));
+    }
+
+    // Метрики
+
+    /** @return успешно отправлено */
+    public long getSent() { return sent.get(); }
+
+    /** @return транспорт вернул false */
+    public long getFailed() { return failed.get(); }
+
+    /** @return сколько раз отправка ждала токен */
+    public long getDelayed() { return delayed.get(); }
+
+    /** @return сколько ответов 429 получено */
+    public long getRateLimited() { return rateLimited.get(); }
+
+    /** @return сколько отправок отклонено из-за переполнения очереди */
+    public long getRejected() { return rejected.get(); }
+
+    /**
+     * @return строка со статистикой для логов
+     */
+    public String getStatistics() {
+        return "[RateLimit] " + platform + ": отправлено=" + sent.get() +
+                ", ошибок=" + failed.get() +
+                ", ожиданий=" + delayed.get() +
+                ", 429=" + rateLimited.get() +
+                ", отклонено=" + rejected.get() +
+                ", в очереди=" + pending.getQueueLength();
+    }
+}
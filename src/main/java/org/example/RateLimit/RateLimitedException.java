@@ -0,0 +1,38 @@
+package org.example.RateLimit;
+
+import java.time.Duration;
+
+/**
+ * RateLimitedException - платформа ответила "слишком много запросов" (429)
+ * или очередь отправки переполнена. Это временная ситуация, а не ошибка пользователя:
+ * его нельзя блокировать или отвязывать из-за такого исключения.
+ */
+public class RateLimitedException extends RuntimeException {
+    private final Duration retryAfter;
+    private final boolean global;
+
+    /**
+     * @param message описание
+     * @param retryAfter через сколько можно повторить
+     * @param global true если ограничение на весь бот, а не на один чат
+     */
+    public RateLimitedException(String message, Duration retryAfter, boolean global) {
+        super(message);
+        this.retryAfter = retryAfter;
+        this.global = global;
+    }
+
+    /**
+     * @return через сколько можно повторить отправку
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return true если ограничение действует на весь бот
+     */
+    public boolean isGlobal() {
+        return global;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.RateLimit;
+
+/**
+ * TokenBucket - ведро токенов для ограничения частоты отправки.
+ * Токены восстанавливаются равномерно, ведро вмещает не больше burst токенов.
+ * Вместо отказа ведро выдает резерв: сколько нужно подождать до своего токена,
+ * поэтому одновременные отправители выстраиваются в очередь без busy-wait.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double nanosPerToken;
+
+    // сколько токенов было в момент lastRefill (может уходить в минус - это выданные резервы)
+    private double tokens;
+    private long lastRefill;
+    // до этого момента ведро "заморожено" (retry-after от платформы)
+    private long blockedUntil;
+
+    /**
+     * @param ratePerSecond сколько токенов восстанавливается в секунду
+     * @param burst максимальное количество токенов в ведре
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("ratePerSecond и burst должны быть положительными");
+        }
+        this.capacity = burst;
+        this.nanosPerToken = 1_000_000_000L / ratePerSecond;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Резервирует один токен
+     * @return сколько наносекунд нужно подождать перед отправкой (0 - можно сразу)
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+
+        long wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens * nanosPerToken);
+        return Math.max(wait, blockedUntil - now);
+    }
+
+    /**
+     * Пытается взять токен без ожидания
+     * @return true если токен получен
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        refill(now);
+        if (tokens >= 1 && now >= blockedUntil) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Замораживает ведро после ответа 429: до истечения паузы токены не выдаются
+     * @param pauseNanos пауза, которую запросила платформа
+     */
+    public synchronized void pause(long pauseNanos) {
+        long now = System.nanoTime();
+        refill(now);
+        blockedUntil = Math.max(blockedUntil, now + pauseNanos);
+        // накопленный запас сгорает, чтобы после паузы не было новой вспышки
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * @return true если ведро полное и не заморожено (его можно безопасно удалить)
+     */
+    public synchronized boolean isIdle() {
+        long now = System.nanoTime();
+        refill(now);
+        return tokens >= capacity && now >= blockedUntil;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed / nanosPerToken);
+            lastRefill = now;
+        }
+    }
+}
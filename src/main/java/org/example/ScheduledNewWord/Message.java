@@ -1,10 +1,13 @@
 package org.example.ScheduledNewWord;
 
+import org.example.Dictionary.CachingDictionaryService;
 import org.example.Dictionary.DictionaryService;
-import org.example.Dictionary.DictionaryServiceImpl;
 import org.example.Dictionary.Word;
+import org.json.JSONObject;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -14,20 +17,27 @@ public class Message {
     private final MessageParser messageParser;
     private final ScheduleGenerateMessage generator;
     private final DictionaryService dictionaryService;
+    // Пул заранее сгенерированных слов (null - генерируем напрямую)
+    private final WordPool wordPool;
 
     // Храним последние показанные слова для каждого пользователя
     private final ConcurrentHashMap<Long, WordData> lastShownWords = new ConcurrentHashMap<>();
 
     // Основной конструктор
     public Message() {
-        this(new DictionaryServiceImpl(), new ScheduleGenerateMessage(), new MessageParser());
+        this(CachingDictionaryService.getShared(), new ScheduleGenerateMessage(), new MessageParser(), WordPool.getShared());
     }
 
     // Для тестирования с инъекцией зависимостей
     public Message(DictionaryService dictionaryService, ScheduleGenerateMessage generator, MessageParser parser) {
+        this(dictionaryService, generator, parser, null);
+    }
+
+    public Message(DictionaryService dictionaryService, ScheduleGenerateMessage generator, MessageParser parser, WordPool wordPool) {
         this.dictionaryService = dictionaryService;
         this.generator = generator;
         this.messageParser = parser;
+        this.wordPool = wordPool;
         System.out.println("✅ Message service инициализирован");
     }
 
@@ -37,58 +47,82 @@ public class Message {
     public String getUniqueWordForUser(long chatId) {
         try {
             long userId = dictionaryService.getUserIdByChatId(chatId);
-
-            // Пытаемся сгенерировать уникальное слово (максимум 10 попыток)
-            for (int attempt = 0; attempt < 10; attempt++) {
-                WordData wordData = generateWord();
-                if (wordData == null) {
-                    return "❌ Не удалось сгенерировать слово";
+            // Слова из пула, которые уже есть у пользователя - вернем их для других пользователей
+            List<WordData> rejectedPooledWords = new ArrayList<>();
+
+            try {
+                return pickUniqueWord(chatId, userId, rejectedPooledWords);
+            } finally {
+                if (wordPool != null) {
+                    rejectedPooledWords.forEach(wordPool::offer);
                 }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Ошибка проверки словаря для chatId " + chatId + ": " + e.getMessage());
+            return "❌ Ошибка при проверке словаря. Попробуйте позже.";
+        }
+    }
+
+    /**
+     * Подбирает слово, которого нет в словаре пользователя (максимум 10 попыток)
+     */
+    private String pickUniqueWord(long chatId, long userId, List<WordData> rejectedPooledWords) throws SQLException {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            boolean fromPool = false;
+            WordData wordData = wordPool != null ? wordPool.poll() : null;
+            if (wordData != null) {
+                fromPool = true;
+            } else {
+                // Промах пула - генерируем пачку сразу, лишние слова уходят в пул
+                wordData = wordPool != null ? wordPool.generateAndTake() : generateWord();
+            }
+            if (wordData == null) {
+                return "❌ Не удалось сгенерировать слово";
+            }
 
-                // Проверяем, есть ли такое слово в словаре пользователя
-                Word existingWord = dictionaryService.getWordByEnglish(userId, wordData.getWord());
+            // Проверяем, есть ли такое слово в словаре пользователя
+            Word existingWord = dictionaryService.getWordByEnglish(userId, wordData.getWord());
 
-                if (existingWord == null) {
-                    // Слово уникальное - используем его
-                    System.out.println("Сгенерировано уникальное слово для пользователя " + chatId + " (userId: " + userId + "): " + wordData.getWord());
+            if (existingWord == null) {
+                // Слово уникальное - используем его
+                System.out.println("Сгенерировано уникальное слово для пользователя " + chatId + " (userId: " + userId + "): " + wordData.getWord());
+
+                // СРАЗУ добавляем слово в словарь с приоритетом 5 (изучаю)
+                try {
+                    dictionaryService.addWord(userId, wordData.getWord(), wordData.getTranslation(), 5);
+                    System.out.println("Слово '" + wordData.getWord() + "' добавлено в словарь с приоритетом 5");
+                } catch (SQLException e) {
+                    System.err.println("Ошибка добавления слова в словарь: " + e.getMessage());
+                }
 
-                    // СРАЗУ добавляем слово в словарь с приоритетом 5 (изучаю)
-                    try {
-                        dictionaryService.addWord(userId, wordData.getWord(), wordData.getTranslation(), 5);
-                        System.out.println("Слово '" + wordData.getWord() + "' добавлено в словарь с приоритетом 5");
-                    } catch (SQLException e) {
-                        System.err.println("Ошибка добавления слова в словарь: " + e.getMessage());
-                    }
+                // Сохраняем последнее показанное слово
+                lastShownWords.put(chatId, wordData);
+
+                return formatWordMessage(wordData);
+            } else {
+                // Слово уже есть в словаре - проверяем перевод
+                if (!existingWord.getTranslation().equals(wordData.getTranslation())) {
+                    // Переводы разные - оставляем слово с сообщением
+                    String baseMessage = formatWordMessage(wordData);
+                    String messageWithNote = baseMessage + "\n\n💡 **Примечание:** Это слово уже есть в вашем словаре, но с другим переводом!";
+                    System.out.println("Слово '" + wordData.getWord() + "' уже есть в словаре, но перевод отличается. Оставляем.");
 
                     // Сохраняем последнее показанное слово
                     lastShownWords.put(chatId, wordData);
 
-                    return formatWordMessage(wordData);
+                    return messageWithNote;
                 } else {
-                    // Слово уже есть в словаре - проверяем перевод
-                    if (!existingWord.getTranslation().equals(wordData.getTranslation())) {
-                        // Переводы разные - оставляем слово с сообщением
-                        String baseMessage = formatWordMessage(wordData);
-                        String messageWithNote = baseMessage + "\n\n💡 **Примечание:** Это слово уже есть в вашем словаре, но с другим переводом!";
-                        System.out.println("Слово '" + wordData.getWord() + "' уже есть в словаре, но перевод отличается. Оставляем.");
-
-                        // Сохраняем последнее показанное слово
-                        lastShownWords.put(chatId, wordData);
-
-                        return messageWithNote;
-                    } else {
-                        // Слово и перевод одинаковые - генерируем новое слово
-                        System.out.println("Слово '" + wordData.getWord() + "' уже есть в словаре с таким же переводом. Генерируем новое. Попытка: " + (attempt + 1));
+                    // Слово и перевод одинаковые - генерируем новое слово
+                    System.out.println("Слово '" + wordData.getWord() + "' уже есть в словаре с таким же переводом. Генерируем новое. Попытка: " + (attempt + 1));
+                    if (fromPool) {
+                        rejectedPooledWords.add(wordData);
                     }
                 }
             }
-
-            return "❌ Не удалось сгенерировать уникальное слово после 10 попыток";
-
-        } catch (SQLException e) {
-            System.err.println("Ошибка проверки словаря для chatId " + chatId + ": " + e.getMessage());
-            return "❌ Ошибка при проверке словаря. Попробуйте позже.";
         }
+
+        return "❌ Не удалось сгенерировать уникальное слово после 10 попыток";
     }
 
     /**
@@ -121,6 +155,13 @@ public class Message {
      */
     private WordData generateWord() {
         try {
+            // структурированный ответ не требует разбора текста
+            JSONObject json = generator.generateStructuredWords(1);
+            List<WordData> structured = json != null ? messageParser.parseWordsJson(json) : List.of();
+            if (!structured.isEmpty()) {
+                return structured.get(0);
+            }
+
             String generatedText = generator.generateWord();
 
             if (generatedText == null || generatedText.isEmpty()) {
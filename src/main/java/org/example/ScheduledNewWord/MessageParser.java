@@ -1,13 +1,22 @@
 package org.example.ScheduledNewWord;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import java.util.*;
 
 /**
  * MessageParser - класс для парсинга структурированных учебных материалов
- * Использует построчный парсинг вместо регулярных выражений
+ * Использует построчный парсинг вместо регулярных выражений,
+ * поддерживает ответ как с одним, так и с несколькими словами
  */
 public class MessageParser {
 
+    // Поля, которые ии возвращает для каждого слова
+    private static final Set<String> KNOWN_KEYS = Set.of(
+            "WORD", "TRANSLATION", "LEVEL", "PART_OF_SPEECH",
+            "EXAMPLE", "EXAMPLE_TRANSLATION", "RELATED_WORDS", "TOPIC");
+
     /**
      * Парсит текст с одним словом и возвращает WordData
      * Возвращает null если не удалось распарсить
@@ -17,28 +26,148 @@ public class MessageParser {
             return null;
         }
 
-        String[] lines = text.split("\n");
         Map<String, String> fields = new HashMap<>();
+        int lineStart = 0;
+        while (lineStart <= text.length()) {
+            int lineEnd = lineEnd(text, lineStart);
+            readField(text, lineStart, lineEnd, fields);
+            lineStart = lineEnd + 1;
+        }
+
+        return createWordData(fields);
+    }
+
+    /**
+     * Парсит ответ с несколькими словами (пакетная генерация).
+     * Текст проходится один раз по строкам без предварительного split:
+     * каждая новая строка WORD: закрывает предыдущее слово.
+     * Слова без обязательных полей пропускаются.
+     */
+    public List<WordData> parseWords(CharSequence text) {
+        List<WordData> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        int lineStart = 0;
+        while (lineStart <= text.length()) {
+            int lineEnd = lineEnd(text, lineStart);
+            String key = readKey(text, lineStart, lineEnd);
 
-        for (String line : lines) {
-            line = line.trim();
+            // Начало следующего слова - сохраняем накопленное
+            if ("WORD".equals(key) && fields.containsKey("WORD")) {
+                addIfValid(words, fields);
+                fields = new HashMap<>();
+            }
+            if (key != null) {
+                readField(text, lineStart, lineEnd, fields);
+            }
+            lineStart = lineEnd + 1;
+        }
+        addIfValid(words, fields);
 
-            if (line.startsWith("WORD:") || line.startsWith("TRANSLATION:") ||
-                    line.startsWith("LEVEL:") || line.startsWith("PART_OF_SPEECH:") ||
-                    line.startsWith("EXAMPLE:") || line.startsWith("EXAMPLE_TRANSLATION:") ||
-                    line.startsWith("RELATED_WORDS:") || line.startsWith("TOPIC:")) {
+        return words;
+    }
+
+    /**
+     * Парсит структурированный ответ {"words": [{"word": ..., "translation": ..., ...}]}.
+     * Поля те же, что и в текстовом формате, слова без обязательных полей пропускаются.
+     */
+    public List<WordData> parseWordsJson(JSONObject json) {
+        List<WordData> words = new ArrayList<>();
+        JSONArray items = json == null ? null : json.optJSONArray("words");
+        if (items == null) {
+            return words;
+        }
 
-                // Извлекаем ключ и значение
-                int colonIndex = line.indexOf(":");
-                if (colonIndex > 0) {
-                    String key = line.substring(0, colonIndex).trim();
-                    String value = line.substring(colonIndex + 1).trim();
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject item = items.optJSONObject(i);
+            if (item == null) {
+                continue;
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (String key : KNOWN_KEYS) {
+                if (key.equals("RELATED_WORDS")) {
+                    continue;
+                }
+                String value = item.optString(key.toLowerCase(), "").trim();
+                if (!value.isEmpty()) {
                     fields.put(key, value);
                 }
             }
+            WordData wordData = createWordData(fields);
+            if (wordData == null) {
+                continue;
+            }
+            JSONArray related = item.optJSONArray("related_words");
+            List<String> relatedWords = new ArrayList<>();
+            if (related != null) {
+                for (int r = 0; r < related.length(); r++) {
+                    String relatedWord = related.optString(r, "").trim();
+                    if (!relatedWord.isEmpty()) {
+                        relatedWords.add(relatedWord);
+                    }
+                }
+            }
+            wordData.setRelatedWords(relatedWords);
+            words.add(wordData);
         }
+        return words;
+    }
 
-        return createWordData(fields);
+    /**
+     * Возвращает позицию конца строки (перевода строки или конца текста)
+     */
+    private int lineEnd(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * Возвращает известный ключ строки "KEY: value" или null
+     */
+    private String readKey(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ':') {
+                String key = text.subSequence(start, i).toString();
+                return KNOWN_KEYS.contains(key) ? key : null;
+            }
+            if (c != '_' && (c < 'A' || c > 'Z')) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Извлекает ключ и значение из строки и кладет их в fields
+     */
+    private void readField(CharSequence text, int start, int end, Map<String, String> fields) {
+        String key = readKey(text, start, end);
+        if (key == null) {
+            return;
+        }
+        int colonIndex = start;
+        while (text.charAt(colonIndex) != ':') {
+            colonIndex++;
+        }
+        fields.put(key, text.subSequence(colonIndex + 1, end).toString().trim());
+    }
+
+    private void addIfValid(List<WordData> words, Map<String, String> fields) {
+        WordData wordData = createWordData(fields);
+        if (wordData != null) {
+            words.add(wordData);
+        }
     }
 
     /**
@@ -1,20 +1,20 @@
 package org.example.ScheduledNewWord;
 
+import org.example.OpenRouter.JsonSchema;
 import org.example.OpenRouter.OpenRouterClient;
-import org.example.Tokens.TokenOpenRouter;
+import org.json.JSONObject;
 
 import java.io.IOException;
 
 /**
  * Хранит запрос (PROMT),
- * подгружает api token openrouter,
- * вызывает метод отправки нашего запроса непосредственно ии
+ * вызывает метод отправки нашего запроса непосредственно ии через общий OpenRouterClient
  */
 public class ScheduleGenerateMessage {
-    //наш запрос
-    private static final String PROMPT= "Генерируй учебные материалы для изучения английского языка СТРОГО в указанном формате без каких-либо дополнительных комментариев или пояснений.\n" +
-            "\n" +
-            "**ФОРМАТ ДЛЯ СЛОВА:**\n" +
+    private final OpenRouterClient openRouterClient;
+
+    //формат одного слова в текстовом ответе
+    private static final String FORMAT = "**ФОРМАТ ДЛЯ СЛОВА:**\n" +
             "WORD: [английское слово]\n" +
             "TRANSLATION: [перевод на русский и только ОДНО слово]\n" +
             "LEVEL: [A1/A2/B1/B2/C1/C2]\n" +
@@ -23,8 +23,10 @@ public class ScheduleGenerateMessage {
             "EXAMPLE_TRANSLATION: [перевод примера на русский]\n" +
             "RELATED_WORDS: [слово1, слово2, слово3]\n" +
             "TOPIC: [тема/категория]\n" +
-            "\n" +
-            "**ТРЕБОВАНИЯ:**\n" +
+            "\n";
+
+    //требования к словам (общие для текстового и структурированного ответа)
+    private static final String REQUIREMENTS = "**ТРЕБОВАНИЯ:**\n" +
             "- Уровень сложности должен соответствовать реальной сложности слова\n" +
             "- Примеры должны быть практичными и полезными для повседневного общения\n" +
             "- Темы должны охватывать разные сферы жизни\n" +
@@ -40,32 +42,114 @@ public class ScheduleGenerateMessage {
             "- Здоровье (health)\n" +
             "- Образование (education)\n" +
             "- Хобби и развлечения (hobbies & entertainment)\n" +
-            "\n" +
-            "Сгенерируй ТОЛЬКО 1 слово";
+            "\n";
+
+    //наш запрос (общая часть для одного слова и для пачки)
+    private static final String PROMPT_BASE = "Генерируй учебные материалы для изучения английского языка СТРОГО в указанном формате без каких-либо дополнительных комментариев или пояснений.\n" +
+            "\n" + FORMAT + REQUIREMENTS;
+
+    private static final String PROMPT = PROMPT_BASE + "Сгенерируй ТОЛЬКО 1 слово";
+
+    // схема структурированного ответа: те же поля, что и в текстовом формате
+    static final JSONObject WORDS_SCHEMA = JsonSchema.object("words", JsonSchema.array(JsonSchema.object(
+            "word", JsonSchema.string(),
+            "translation", JsonSchema.string(),
+            "level", JsonSchema.enumOf("A1", "A2", "B1", "B2", "C1", "C2"),
+            "part_of_speech", JsonSchema.enumOf("noun", "verb", "adjective", "adverb", "preposition", "conjunction"),
+            "example", JsonSchema.string(),
+            "example_translation", JsonSchema.string(),
+            "related_words", JsonSchema.array(JsonSchema.string()),
+            "topic", JsonSchema.string())));
+
+    // ограничение на размер пачки, чтобы ответ уместился в один completion
+    public static final int MAX_BATCH_SIZE = 10;
+
+    public ScheduleGenerateMessage() {
+        this(OpenRouterClient.getShared());
+    }
+
+    // Для подмены клиента
+    public ScheduleGenerateMessage(OpenRouterClient openRouterClient) {
+        this.openRouterClient = openRouterClient;
+    }
 
     /**
      * Метод для генерации теста и сохранение в txt файл
      */
     public String generateWord() {
         try {
-            // загружаем API ключ через Token_Openrouter, ОЧЕНЬ ВАЖНО: мы работаем не напрямую с гпт
-            //Опен Роутер - это "лпатформа-посредник"
-            TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
-            tokenOpenRouter.load();
-
-            String apiKey = tokenOpenRouter.get();
-
+            // ОЧЕНЬ ВАЖНО: мы работаем не напрямую с гпт, Опен Роутер - это "лпатформа-посредник"
             //оносительно бесполезная вещь
-            if (apiKey == null || apiKey.isEmpty()) {
+            if (!openRouterClient.hasApiKey()) {
                 return "API ключ не найден";
             }
 
-            //создаем экземпляр класса OpenRouterClient и закидываем тут наш токен опенроутера
-            OpenRouterClient openRouterClient = new OpenRouterClient(apiKey);
             return openRouterClient.sendRequest(PROMPT);
 
         } catch (IOException | InterruptedException e) {
             return "ошибка при генерации теста: " + e.getMessage();
         }
     }
+
+    /**
+     * Генерирует сразу несколько слов одним запросом.
+     * Слова идут в том же формате WORD:/TRANSLATION:/..., разделенные пустой строкой
+     * @param count количество слов (от 1 до MAX_BATCH_SIZE)
+     */
+    public String generateWords(int count) {
+        int batchSize = Math.max(1, Math.min(count, MAX_BATCH_SIZE));
+        if (batchSize == 1) {
+            return generateWord();
+        }
+
+        try {
+            if (!openRouterClient.hasApiKey()) {
+                return "API ключ не найден";
+            }
+
+            return openRouterClient.sendRequest(createBatchPrompt(batchSize));
+
+        } catch (IOException | InterruptedException e) {
+            return "ошибка при генерации теста: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Генерирует пачку слов структурированным ответом (JSON по схеме WORDS_SCHEMA)
+     * @param count количество слов (от 1 до MAX_BATCH_SIZE)
+     * @return JSON ответа или null, если структурированный ответ недоступен или не удался - тогда нужен текстовый запрос
+     */
+    public JSONObject generateStructuredWords(int count) {
+        if (!openRouterClient.hasApiKey() || !openRouterClient.isStructuredOutputSupported()) {
+            return null;
+        }
+        int batchSize = Math.max(1, Math.min(count, MAX_BATCH_SIZE));
+        try {
+            return openRouterClient.sendStructuredRequest(createStructuredPrompt(batchSize), "words", WORDS_SCHEMA);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[ScheduleGenerateMessage] Структурированный ответ не получен: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Запрос структурированного ответа: формат задает схема, в тексте только требования
+     */
+    static String createStructuredPrompt(int count) {
+        return "Генерируй учебные материалы для изучения английского языка.\n\n" + REQUIREMENTS +
+                "Сгенерируй РОВНО " + count + " разных слов на разные темы и уровни. " +
+                "translation - перевод на русский и только ОДНО слово.";
+    }
+
+    /**
+     * Собирает запрос на пачку из count разных слов
+     */
+    static String createBatchPrompt(int count) {
+        return PROMPT_BASE +
+                "Сгенерируй РОВНО " + count + " разных слов на разные темы и уровни.\n" +
+                "Каждое слово начинай со строки WORD:, между словами оставляй одну пустую строку, без нумерации.";
+    }
 }
@@ -0,0 +1,314 @@
+package org.example.ScheduledNewWord;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WordPool - пул заранее сгенерированных слов.
+ * Слова группируются по LEVEL и TOPIC и пополняются в фоне пачками
+ * (одна пачка - один запрос к ии),
+ * поэтому выдача слова пользователю - это извлечение из пула, а не запрос к ии.
+ */
+public class WordPool {
+    private static final int DEFAULT_CAPACITY = 60;
+    private static final int DEFAULT_BATCH_SIZE = 5;
+    private static final int REFILL_PERIOD_SECONDS = 30;
+
+    // общий пул для всех ботов (создается и запускается лениво)
+    private static volatile WordPool shared;
+
+    private final ScheduleGenerateMessage generator;
+    private final MessageParser parser;
+    private final int capacity;
+    private final int batchSize;
+
+    // группа "LEVEL/TOPIC" -> очередь слов
+    private final ConcurrentHashMap<String, Queue<WordData>> groups = new ConcurrentHashMap<>();
+    // слова, которые сейчас лежат в пуле (чтобы не хранить дубликаты)
+    private final Set<String> pooledWords = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+    private ScheduledExecutorService refillScheduler;
+
+    // метрики
+    private final long createdAt = System.currentTimeMillis();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refilledWords = new AtomicLong();
+    private final AtomicLong refillBatches = new AtomicLong();
+    private final AtomicLong failedGenerations = new AtomicLong();
+    private volatile long lastRefillAt = 0;
+
+    public WordPool(ScheduleGenerateMessage generator, MessageParser parser) {
+        this(generator, parser, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param generator генератор слов через ии
+     * @param parser парсер ответа ии
+     * @param capacity максимальное количество слов в пуле
+     * @param batchSize сколько слов генерируется за одно пополнение
+     */
+    public WordPool(ScheduleGenerateMessage generator, MessageParser parser, int capacity, int batchSize) {
+        this.generator = generator;
+        this.parser = parser;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Возвращает общий пул и запускает его фоновое пополнение
+     */
+    public static WordPool getShared() {
+        WordPool pool = shared;
+        if (pool == null) {
+            synchronized (WordPool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = new WordPool(new ScheduleGenerateMessage(), new MessageParser());
+                    pool.start(REFILL_PERIOD_SECONDS);
+                    shared = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Запускает фоновое пополнение пула
+     * @param periodSeconds период между пополнениями в секундах
+     */
+    public synchronized void start(int periodSeconds) {
+        if (refillScheduler != null) {
+            return;
+        }
+        refillScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "word-pool-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refillScheduler.scheduleWithFixedDelay(this::refill, 0, periodSeconds, TimeUnit.SECONDS);
+        System.out.println("[WordPool] Фоновое пополнение запущено, емкость " + capacity + ", пачка " + batchSize);
+    }
+
+    /**
+     * Останавливает фоновое пополнение
+     */
+    public synchronized void stop() {
+        if (refillScheduler != null) {
+            refillScheduler.shutdownNow();
+            refillScheduler = null;
+        }
+    }
+
+    /**
+     * Извлекает слово из случайной непустой группы
+     * @return слово или null если пул пуст (промах)
+     */
+    public WordData poll() {
+        List<Queue<WordData>> nonEmpty = new ArrayList<>();
+        for (Queue<WordData> queue : groups.values()) {
+            if (!queue.isEmpty()) {
+                nonEmpty.add(queue);
+            }
+        }
+
+        // случайная группа - чтобы темы и уровни чередовались
+        while (!nonEmpty.isEmpty()) {
+            int index = ThreadLocalRandom.current().nextInt(nonEmpty.size());
+            WordData word = nonEmpty.get(index).poll();
+            if (word != null) {
+                size.decrementAndGet();
+                pooledWords.remove(normalize(word.getWord()));
+                hits.incrementAndGet();
+                return word;
+            }
+            nonEmpty.remove(index);
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Кладет слово в пул, если есть место и такого слова там еще нет
+     * @return true если слово добавлено
+     */
+    public boolean offer(WordData word) {
+        if (word == null || word.getWord() == null) {
+            return false;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        if (!pooledWords.add(normalize(word.getWord()))) {
+            size.decrementAndGet();
+            return false;
+        }
+        groups.computeIfAbsent(groupKey(word), key -> new ConcurrentLinkedQueue<>()).offer(word);
+        return true;
+    }
+
+    /**
+     * Пополняет пул одной пачкой слов (один запрос к ии)
+     * @return количество добавленных слов
+     */
+    public int refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        try {
+            int missing = Math.min(batchSize, capacity - size.get());
+            if (missing <= 0) {
+                return 0;
+            }
+
+            int added = 0;
+            for (WordData word : generateBatch(missing)) {
+                if (offer(word)) {
+                    added++;
+                }
+            }
+
+            if (added > 0) {
+                refilledWords.addAndGet(added);
+                refillBatches.incrementAndGet();
+                lastRefillAt = System.currentTimeMillis();
+                System.out.println("[WordPool] Пополнение: +" + added + " слов. " + getStatistics());
+            }
+            return added;
+        } catch (Exception e) {
+            System.err.println("[WordPool] Ошибка пополнения: " + e.getMessage());
+            return 0;
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * Синхронная генерация при промахе: генерирует пачку,
+     * первое слово отдает сразу, остальные кладет в пул
+     * @return слово или null если генерация не удалась
+     */
+    public WordData generateAndTake() {
+        List<WordData> words = generateBatch(batchSize);
+        if (words.isEmpty()) {
+            return null;
+        }
+
+        int added = 0;
+        for (int i = 1; i < words.size(); i++) {
+            if (offer(words.get(i))) {
+                added++;
+            }
+        }
+        if (added > 0) {
+            refilledWords.addAndGet(added);
+            System.out.println("[WordPool] После промаха в пул добавлено " + added + " слов");
+        }
+        return words.get(0);
+    }
+
+    /**
+     * Генерирует и парсит пачку слов одним запросом.
+     * Сначала структурированным ответом (JSON по схеме), при отказе - текстом с разбором MessageParser
+     */
+    private List<WordData> generateBatch(int count) {
+        JSONObject json = generator.generateStructuredWords(count);
+        List<WordData> words = json != null ? parser.parseWordsJson(json) : List.of();
+        if (words.isEmpty()) {
+            words = parser.parseWords(generator.generateWords(count));
+        }
+        if (words.isEmpty()) {
+            failedGenerations.incrementAndGet();
+        }
+        return words;
+    }
+
+    /**
+     * Ключ группы: уровень и тема слова
+     */
+    static String groupKey(WordData word) {
+        String level = word.getLevel() != null ? word.getLevel().trim().toUpperCase() : "?";
+        String topic = word.getTopic() != null ? word.getTopic().trim().toLowerCase() : "?";
+        return level + "/" + topic;
+    }
+
+    private static String normalize(String word) {
+        return word.trim().toLowerCase();
+    }
+
+    // Метрики
+
+    /** @return текущее количество слов в пуле */
+    public int getSize() { return size.get(); }
+
+    /** @return емкость пула */
+    public int getCapacity() { return capacity; }
+
+    /** @return количество выдач из пула */
+    public long getHits() { return hits.get(); }
+
+    /** @return количество обращений к пустому пулу */
+    public long getMisses() { return misses.get(); }
+
+    /** @return сколько всего слов добавлено пополнениями */
+    public long getRefilledWords() { return refilledWords.get(); }
+
+    /** @return количество успешных пополнений */
+    public long getRefillBatches() { return refillBatches.get(); }
+
+    /** @return количество ответов ии, из которых не удалось получить ни одного слова */
+    public long getFailedGenerations() { return failedGenerations.get(); }
+
+    /** @return время последнего пополнения (мс) или 0 */
+    public long getLastRefillAt() { return lastRefillAt; }
+
+    /**
+     * @return средняя скорость пополнения (слов в минуту) с момента создания пула
+     */
+    public double getRefillRatePerMinute() {
+        double minutes = Math.max(1, System.currentTimeMillis() - createdAt) / 60000.0;
+        return refilledWords.get() / minutes;
+    }
+
+    /**
+     * @return глубина пула по группам "LEVEL/topic"
+     */
+    public Map<String, Integer> getDepthByGroup() {
+        Map<String, Integer> depth = new LinkedHashMap<>();
+        groups.forEach((key, queue) -> depth.put(key, queue.size()));
+        return depth;
+    }
+
+    /**
+     * @return строка со статистикой для логов
+     */
+    public String getStatistics() {
+        long total = hits.get() + misses.get();
+        int hitRate = total == 0 ? 0 : (int) (hits.get() * 100 / total);
+        return "глубина=" + size.get() + "/" + capacity +
+                ", групп=" + groups.size() +
+                ", попаданий=" + hits.get() +
+                ", промахов=" + misses.get() + " (" + hitRate + "% из пула)" +
+                ", пополнено=" + refilledWords.get() +
+                String.format(", скорость=%.1f слов/мин", getRefillRatePerMinute());
+    }
+}
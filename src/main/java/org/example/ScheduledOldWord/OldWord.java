@@ -2,37 +2,53 @@ package org.example.ScheduledOldWord;
 
 import org.example.Dictionary.Word;
 import org.example.Dictionary.DictionaryService;
-import org.example.Dictionary.DictionaryServiceImpl;
+import org.example.Dictionary.CachingDictionaryService;
+import org.example.Session.SessionStore;
+import org.json.JSONObject;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Класс для работы со словами с низким приоритетом
  * Находит одно слово с минимальным приоритетом и генерирует по нему тест
+ * Плановые повторения идут по расписанию SM-2: чат попадает в рассылку, только когда у него есть слово к повторению
  */
 public class OldWord {
+    // через сколько проверить чат снова, если повторение не состоялось (занят, нет ответа)
+    private static final long RETRY_MS = 10 * 60 * 1000;
+    // чат сверяется с БД не реже раза в сутки (добавленные слова могут быть раньше расписания)
+    private static final long MAX_HORIZON_MS = 24 * 60 * 60 * 1000;
+
     private DictionaryService dictionaryService;
     private final OldWordGenerator testGenerator;
     private final OldWordParser testParser;
 
-    // Храним активные тесты для пользователей (по chatId)
-    private final ConcurrentHashMap<Long, OldWordData> activeTests = new ConcurrentHashMap<>();
+    // Храним активные тесты для пользователей (по chatId, в общем хранилище сессий)
+    private final SessionStore.Slot<OldWordData> activeTests;
+
+    // чаты по времени ближайшего повторения
+    private final ReviewQueue reviewQueue = new ReviewQueue();
 
     public OldWord() {
-        this.dictionaryService = new DictionaryServiceImpl();
-        this.testGenerator = new OldWordGenerator(this);
-        this.testParser = new OldWordParser();
+        this(CachingDictionaryService.getShared(), new SessionStore());
     }
 
     // Конструктор для тестирования
     public OldWord(DictionaryService dictionaryService) {
+        this(dictionaryService, new SessionStore());
+    }
+
+    public OldWord(DictionaryService dictionaryService, SessionStore sessionStore) {
         this.dictionaryService = dictionaryService;
         this.testGenerator = new OldWordGenerator(this);
         this.testParser = new OldWordParser();
+        this.activeTests = sessionStore.slot(SessionStore.Kind.OLD_WORD, OldWordData.class, OldWordData.CODEC);
     }
 
     /**
@@ -54,33 +70,8 @@ public class OldWord {
      */
     public Word findWordWithLowestPriority(long userId) {
         try {
-            List<Word> allWords = dictionaryService.getAllWords(userId);
-
-            if (allWords.isEmpty()) {
-                return null;
-            }
-
-            // Находим минимальный приоритет
-            int minPriority = 11;
-            for (Word word : allWords) {
-                if (word.getPriority() < minPriority) {
-                    minPriority = word.getPriority();
-                }
-            }
-
-            // Собираем все слова с минимальным приоритетом
-            List<Word> lowestPriorityWords = new ArrayList<>();
-            for (Word word : allWords) {
-                if (word.getPriority() == minPriority) {
-                    lowestPriorityWords.add(word);
-                }
-            }
-
-            // Выбираем случайное слово из слов с минимальным приоритетом
-            Random random = new Random();
-            Word selectedWord = lowestPriorityWords.get(random.nextInt(lowestPriorityWords.size()));
-
-            return selectedWord;
+            // минимум и случайный выбор выполняются в хранилище, без загрузки всего словаря
+            return dictionaryService.randomAmongMinPriority(userId);
 
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка получения слов: " + e.getMessage());
@@ -106,8 +97,9 @@ public class OldWord {
                 newPriority = Math.min(10, currentPriority + 1);
             }
 
-            // Обновляем приоритет в базе данных
+            // Обновляем приоритет в базе данных и переносим следующее повторение
             dictionaryService.updateWordPriority(userId, wordId, newPriority);
+            dictionaryService.recordReview(userId, wordId, isCorrect, System.currentTimeMillis());
 
             // Формируем отчет
             return formatPriorityReport(englishWord, translation, isCorrect, correctAnswer);
@@ -119,17 +111,58 @@ public class OldWord {
 
     /**
      * Запускает процесс тестирования слова с низким приоритетом
+     * Сначала берется слово, срок повторения которого наступил, иначе - слово с минимальным приоритетом
      * Возвращает отформатированный текст теста для пользователя
      */
     public String startLowPriorityTest(long chatId) {
         try {
             long userId = getUserId(chatId);
-            Word word = findWordWithLowestPriority(userId);
+            Word word = dictionaryService.nextDueWord(userId, System.currentTimeMillis());
+            if (word == null) {
+                word = findWordWithLowestPriority(userId);
+            }
+            if (word == null) {
+                return null;
+            }
+            return startTest(chatId, word);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка доступа к словарю: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Запускает плановое повторение: только если у пользователя есть слово, срок которого наступил
+     *
+     * @return текст теста или null если повторять нечего (чат переносится на ближайший срок)
+     */
+    public String startDueReview(long chatId) {
+        try {
+            long userId = getUserId(chatId);
+            long now = System.currentTimeMillis();
+            Word word = dictionaryService.nextDueWord(userId, now);
             if (word == null) {
+                reviewQueue.schedule(chatId, nextReviewAt(userId, now));
                 return null;
             }
+            return startTest(chatId, word);
 
-            // Генерируем тест
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка доступа к словарю: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Генерирует тест по слову и сохраняет его как активный
+     */
+    private String startTest(long chatId, Word word) {
+        // Сначала структурированный ответ - он не требует разбора текста
+        JSONObject json = testGenerator.generateStructuredTest(word.getEnglishWord(), word.getTranslation());
+        OldWordData parsedData = json != null
+                ? testParser.parseTestJson(json, word.getEnglishWord(), word.getTranslation()) : null;
+
+        if (parsedData == null) {
+            // Генерируем тест текстом
             String testText = testGenerator.generateTest(word.getEnglishWord(), word.getTranslation());
 
             if (testText.contains("ошибка") || testText.contains("API ключ")) {
@@ -137,19 +170,79 @@ public class OldWord {
             }
 
             // Парсим тест и передаем полную информацию о слове
-            OldWordData parsedData = testParser.parseTest(testText, word.getEnglishWord(), word.getTranslation());
+            parsedData = testParser.parseTest(testText, word.getEnglishWord(), word.getTranslation());
+        }
 
-            // Сохраняем ID слова из базы данных для последующего обновления
-            parsedData.setWordId(word.getId());
-            parsedData.setCurrentPriority(word.getPriority());
+        // Сохраняем ID слова из базы данных для последующего обновления
+        parsedData.setWordId(word.getId());
+        parsedData.setCurrentPriority(word.getPriority());
 
-            // Сохраняем активный тест
-            activeTests.put(chatId, parsedData);
+        // Сохраняем активный тест
+        activeTests.put(chatId, parsedData);
+
+        return formatTestForDisplay(parsedData);
+    }
 
-            return formatTestForDisplay(parsedData);
+    /**
+     * Забирает чаты, у которых наступил срок повторения.
+     * Чаты, которых еще нет в очереди, один раз сверяются с БД; остальные ждут в очереди своего срока.
+     * Каждому отданному чату ставится повторная проверка через RETRY_MS - ответ на тест заменит ее точным сроком.
+     *
+     * @param activeChats чаты, которые сейчас могут получать рассылку
+     * @return чаты, которым пора отправить повторение
+     */
+    public List<Long> takeDueChats(Collection<Long> activeChats) {
+        long now = System.currentTimeMillis();
+        Set<Long> active = new HashSet<>(activeChats);
+        List<Long> due = new ArrayList<>();
+
+        for (Long chatId : reviewQueue.pollDue(now)) {
+            // чат, который пропал из рассылки, при возвращении будет сверен с БД заново
+            if (active.contains(chatId)) {
+                due.add(chatId);
+                reviewQueue.schedule(chatId, now + RETRY_MS);
+            }
+        }
 
+        for (Long chatId : active) {
+            if (reviewQueue.isScheduled(chatId)) {
+                continue;
+            }
+            long dueAt;
+            try {
+                dueAt = nextReviewAt(getUserId(chatId), now);
+            } catch (SQLException e) {
+                System.err.println("[OldWord] Не удалось получить расписание для " + chatId + ": " + e.getMessage());
+                dueAt = now + RETRY_MS;
+            }
+            if (dueAt <= now) {
+                due.add(chatId);
+                dueAt = now + RETRY_MS;
+            }
+            reviewQueue.schedule(chatId, dueAt);
+        }
+
+        System.out.println("[OldWord] Повторений к отправке: " + due.size() + ", чатов в очереди: " + reviewQueue.size());
+        return due;
+    }
+
+    /**
+     * Время следующей проверки пользователя: ближайший срок повторения, но не дальше суток
+     */
+    private long nextReviewAt(long userId, long now) throws SQLException {
+        Long earliest = dictionaryService.earliestDueAt(userId);
+        long horizon = now + MAX_HORIZON_MS;
+        return earliest == null ? horizon : Math.min(earliest, horizon);
+    }
+
+    /**
+     * Переносит чат в очереди на ближайший срок повторения (после ответа на тест)
+     */
+    private void rescheduleChat(long chatId, long userId) {
+        try {
+            reviewQueue.schedule(chatId, nextReviewAt(userId, System.currentTimeMillis()));
         } catch (SQLException e) {
-            throw new RuntimeException("Ошибка доступа к словарю: " + e.getMessage());
+            System.err.println("[OldWord] Не удалось перенести повторение для " + chatId + ": " + e.getMessage());
         }
     }
 
@@ -190,8 +283,9 @@ public class OldWord {
             // Обрабатываем ответ
             String result = handleAnswer(userId, testData, isCorrect, testData.getCorrectAnswer());
 
-            // Очищаем активный тест
+            // Очищаем активный тест и ставим чат на следующее повторение
             activeTests.remove(chatId);
+            rescheduleChat(chatId, userId);
 
             return result;
 
@@ -239,8 +333,15 @@ public class OldWord {
     /**
      * Получает активные тесты (для тестирования)
      */
-    public ConcurrentHashMap<Long, OldWordData> getActiveTests() {
-        return activeTests;
+    public Map<Long, OldWordData> getActiveTests() {
+        return activeTests.snapshot();
+    }
+
+    /**
+     * Получает очередь повторений (для тестирования)
+     */
+    public ReviewQueue getReviewQueue() {
+        return reviewQueue;
     }
 
     /**
@@ -1,5 +1,11 @@
 package org.example.ScheduledOldWord;
 
+import org.example.Session.SessionCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Класс для хранения данных о распарсенном тесте
  */
@@ -11,6 +17,28 @@ public class OldWordData {
     private int wordId;
     private int currentPriority;
 
+    /** Запись активного теста в снимок сессий */
+    public static final SessionCodec<OldWordData> CODEC = new SessionCodec<>() {
+        @Override
+        public void write(DataOutput out, OldWordData data) throws IOException {
+            SessionCodec.writeString(out, data.fullQuestion);
+            SessionCodec.writeString(out, data.correctAnswer);
+            SessionCodec.writeString(out, data.englishWord);
+            SessionCodec.writeString(out, data.translation);
+            out.writeInt(data.wordId);
+            out.writeInt(data.currentPriority);
+        }
+
+        @Override
+        public OldWordData read(DataInput in) throws IOException {
+            OldWordData data = new OldWordData(SessionCodec.readString(in), SessionCodec.readString(in),
+                    SessionCodec.readString(in), SessionCodec.readString(in));
+            data.wordId = in.readInt();
+            data.currentPriority = in.readInt();
+            return data;
+        }
+    };
+
     public OldWordData(String fullQuestion, String correctAnswer, String englishWord, String translation) {
         this.fullQuestion = fullQuestion;
         this.correctAnswer = correctAnswer;
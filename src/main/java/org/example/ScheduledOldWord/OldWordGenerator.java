@@ -1,7 +1,8 @@
 package org.example.ScheduledOldWord;
 
+import org.example.OpenRouter.JsonSchema;
 import org.example.OpenRouter.OpenRouterClient;
-import org.example.Tokens.TokenOpenRouter;
+import org.json.JSONObject;
 
 import java.io.IOException;
 
@@ -11,9 +12,21 @@ import java.io.IOException;
  */
 public class OldWordGenerator {
     private final OldWord wordProcessor;
+    private final OpenRouterClient openRouterClient;
+
+    // схема структурированного ответа: один вопрос с четырьмя вариантами и буквой ответа
+    static final JSONObject TEST_SCHEMA = JsonSchema.object(
+            "question", JsonSchema.string(),
+            "options", JsonSchema.array(JsonSchema.string(), 4, 4),
+            "answer", JsonSchema.enumOf("A", "B", "C", "D"));
 
     public OldWordGenerator(OldWord wordProcessor) {
+        this(wordProcessor, OpenRouterClient.getShared());
+    }
+
+    public OldWordGenerator(OldWord wordProcessor, OpenRouterClient openRouterClient) {
         this.wordProcessor = wordProcessor;
+        this.openRouterClient = openRouterClient;
     }
 
     /**
@@ -24,25 +37,50 @@ public class OldWordGenerator {
             // Создаем динамический промпт
             String dynamicPrompt = createPrompt(englishWord, translation);
 
-            // Загружаем API ключ через Token_Openrouter
-            TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
-            tokenOpenRouter.load();
-
-            String apiKey = tokenOpenRouter.get();
-
-            if (apiKey == null || apiKey.isEmpty()) {
+            if (!openRouterClient.hasApiKey()) {
                 return "❌ API ключ не найден";
             }
 
-            // Создаем экземпляр класса OpenRouterClient
-            OpenRouterClient openRouterClient = new OpenRouterClient(apiKey);
-            return openRouterClient.sendRequest(dynamicPrompt);
+            // Отправляем через общий OpenRouterClient: промпт зависит только от слова, ответы кешируются
+            return openRouterClient.sendCachedRequest(dynamicPrompt, test -> test.contains("Ответ:"));
 
         } catch (IOException | InterruptedException e) {
             return "❌ Ошибка при генерации теста: " + e.getMessage();
         }
     }
 
+    /**
+     * Генерирует тест по слову структурированным ответом (JSON по схеме TEST_SCHEMA)
+     * @return JSON ответа или null, если структурированный ответ недоступен или не удался - тогда нужен текстовый запрос
+     */
+    public JSONObject generateStructuredTest(String englishWord, String translation) {
+        if (!openRouterClient.hasApiKey() || !openRouterClient.isStructuredOutputSupported()) {
+            return null;
+        }
+        try {
+            return openRouterClient.sendCachedStructuredRequest(createStructuredPrompt(englishWord, translation), "word_review",
+                    TEST_SCHEMA, json -> new OldWordParser().parseTestJson(json, englishWord, translation) != null);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[OldWordGenerator] Структурированный ответ не получен: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Промпт для структурированного ответа: формат задает схема
+     */
+    private String createStructuredPrompt(String englishWord, String translation) {
+        return "Создай один вопрос теста на слово: " + englishWord + " - " + translation + "\n\n" +
+                "ТРЕБОВАНИЯ:\n" +
+                "- 4 варианта ответа (options, без букв), одна правильная буква (answer)\n" +
+                "- Правильный ответ должен быть связан со словом на английском: " + englishWord + "\n" +
+                "- Неправильные варианты - правдоподобные\n" +
+                "- Вопрос на перевод, определение, заполнение пропуска или синоним; хоть одна часть на английском";
+    }
+
     /**
      * Создает промпт для генерации теста по одному слову
      */
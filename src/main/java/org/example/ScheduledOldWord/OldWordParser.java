@@ -1,5 +1,12 @@
 package org.example.ScheduledOldWord;
 
+import org.example.Parsing.TestTextParser;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Класс для парсинга сгенерированного теста
  */
@@ -30,6 +37,31 @@ public class OldWordParser {
         }
     }
 
+    /**
+     * Парсит структурированный ответ {"question": ..., "options": [4 варианта], "answer": "A-D"}
+     *
+     * @return данные теста или null, если ответ не соответствует схеме
+     */
+    public OldWordData parseTestJson(JSONObject json, String englishWord, String translation) {
+        if (json == null) {
+            return null;
+        }
+        List<String> options = new ArrayList<>();
+        JSONArray array = json.optJSONArray("options");
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                options.add(array.optString(i, null));
+            }
+        }
+        String fullQuestion = TestTextParser.formatQuestion(json.optString("question", null), options);
+        String correctAnswer = json.optString("answer", "").trim().toUpperCase();
+        if (fullQuestion == null || !correctAnswer.matches("[A-D]")) {
+            System.out.println("[LowPriorityTestParser] Структурированный ответ не соответствует схеме");
+            return null;
+        }
+        return new OldWordData(fullQuestion, correctAnswer, englishWord, translation);
+    }
+
     /**
      * Извлекает весь вопрос с вариантами ответов (до "Ответ:")
      */
@@ -0,0 +1,84 @@
+package org.example.ScheduledOldWord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ReviewQueue - очередь чатов по времени ближайшего повторения.
+ * Тик рассылки забирает только чаты, срок которых наступил, а не перебирает всех пользователей.
+ * Перенос чата не удаляет старую запись из кучи: она отбрасывается при извлечении,
+ * если время в ней уже не совпадает с актуальным.
+ */
+public class ReviewQueue {
+    /**
+     * Запись очереди: чат и время, на которое он поставлен
+     */
+    private static class Due {
+        final long chatId;
+        final long dueAt;
+
+        Due(long chatId, long dueAt) {
+            this.chatId = chatId;
+            this.dueAt = dueAt;
+        }
+    }
+
+    private final PriorityQueue<Due> queue = new PriorityQueue<>((a, b) -> Long.compare(a.dueAt, b.dueAt));
+    // актуальное время каждого чата в очереди
+    private final Map<Long, Long> scheduled = new ConcurrentHashMap<>();
+
+    /**
+     * Ставит чат на указанное время (предыдущее время чата отменяется)
+     */
+    public synchronized void schedule(long chatId, long dueAt) {
+        scheduled.put(chatId, dueAt);
+        queue.offer(new Due(chatId, dueAt));
+    }
+
+    /**
+     * Забирает из очереди все чаты, срок которых наступил
+     *
+     * @param now текущее время (мс)
+     * @return чаты по возрастанию срока
+     */
+    public synchronized List<Long> pollDue(long now) {
+        List<Long> due = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().dueAt <= now) {
+            Due entry = queue.poll();
+            // устаревшая запись - чат уже перенесен
+            if (scheduled.remove(entry.chatId, entry.dueAt)) {
+                due.add(entry.chatId);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return true если чат стоит в очереди
+     */
+    public boolean isScheduled(long chatId) {
+        return scheduled.containsKey(chatId);
+    }
+
+    /**
+     * @return время, на которое поставлен чат, или null
+     */
+    public Long getDueAt(long chatId) {
+        return scheduled.get(chatId);
+    }
+
+    /**
+     * Убирает чат из очереди
+     */
+    public void remove(long chatId) {
+        scheduled.remove(chatId);
+    }
+
+    /** @return количество чатов в очереди */
+    public int size() {
+        return scheduled.size();
+    }
+}
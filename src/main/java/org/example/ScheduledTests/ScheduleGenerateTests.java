@@ -1,21 +1,40 @@
 package org.example.ScheduledTests;
 
+import org.example.OpenRouter.JsonSchema;
+import org.example.OpenRouter.LlmException;
 import org.example.OpenRouter.OpenRouterClient;
-import org.example.Tokens.TokenOpenRouter;
+import org.example.Parsing.TestTextParser;
+import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Хранит запрос (PROMT),
- * подгружает api token openrouter,
- * вызывает метод отправки нашего запроса непосредственно ии
+ * вызывает метод отправки нашего запроса непосредственно ии через общий OpenRouterClient
  */
 public class ScheduleGenerateTests {
     private final ScheduleTests scheduleTests;
+    private final OpenRouterClient openRouterClient;
+
+    // схема структурированного ответа: вопросы с четырьмя вариантами, буквой ответа, типом и словом
+    static final JSONObject TEST_SCHEMA = JsonSchema.object("questions", JsonSchema.array(JsonSchema.object(
+            "question", JsonSchema.string(),
+            "options", JsonSchema.array(JsonSchema.string(), 4, 4),
+            "answer", JsonSchema.enumOf("A", "B", "C", "D"),
+            "type", JsonSchema.enumOf(TestTextParser.TYPE_PRIORITY, TestTextParser.TYPE_NEW),
+            "word", JsonSchema.string(),
+            "translation", JsonSchema.string())));
 
     public ScheduleGenerateTests(ScheduleTests scheduleTests) {
+        this(scheduleTests, OpenRouterClient.getShared());
+    }
+
+    public ScheduleGenerateTests(ScheduleTests scheduleTests, OpenRouterClient openRouterClient) {
         this.scheduleTests = scheduleTests;
+        this.openRouterClient = openRouterClient;
     }
 
     /**
@@ -26,18 +45,11 @@ public class ScheduleGenerateTests {
             // Создаем динамический промпт
             String dynamicPrompt = createPrompt(userId);
 
-            // загружаем API ключ через Token_Openrouter
-            TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
-            tokenOpenRouter.load();
-
-            String apiKey = tokenOpenRouter.get();
-
-            if (apiKey == null || apiKey.isEmpty()) {
+            if (!openRouterClient.hasApiKey()) {
                 return "API ключ не найден";
             }
 
-            // создаем экземпляр класса OpenRouterClient
-            OpenRouterClient openRouterClient = new OpenRouterClient(apiKey);
+            // отправляем через общий OpenRouterClient
             return openRouterClient.sendRequest(dynamicPrompt);
 
         } catch (IOException | InterruptedException e) {
@@ -45,6 +57,56 @@ public class ScheduleGenerateTests {
         }
     }
 
+    /**
+     * Генерирует тест текстом потоком: куски отдаются onDelta по мере генерации
+     *
+     * @return future со всем текстом теста (ошибка - если генерация не удалась)
+     */
+    public CompletableFuture<String> streamTest(long userId, Consumer<String> onDelta) {
+        if (!openRouterClient.hasApiKey()) {
+            return CompletableFuture.failedFuture(new LlmException(LlmException.Kind.AUTH, "API ключ не найден"));
+        }
+        return openRouterClient.streamRequestAsync(createPrompt(userId), onDelta);
+    }
+
+    /**
+     * Генерирует тест структурированным ответом (JSON по схеме TEST_SCHEMA)
+     * @return JSON ответа или null, если структурированный ответ недоступен или не удался - тогда нужен текстовый запрос
+     */
+    public JSONObject generateStructuredTest(long userId) {
+        if (!openRouterClient.hasApiKey() || !openRouterClient.isStructuredOutputSupported()) {
+            return null;
+        }
+        try {
+            return openRouterClient.sendStructuredRequest(createStructuredPrompt(userId), "word_test", TEST_SCHEMA);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[ScheduleGenerateTests] Структурированный ответ не получен: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Промпт для структурированного ответа: формат задает схема, в тексте только содержание теста
+     */
+    private String createStructuredPrompt(long userId) {
+        String priorityWordsString = formatPriorityWordsForPrompt(scheduleTests.getWordsWithMaxPriority(userId));
+
+        return "Создай тест по английскому языку для изучения слов.\n" +
+                "\n" +
+                "ТРЕБОВАНИЯ:\n" +
+                "- Ровно 10 вопросов, у каждого 4 варианта ответа (options, без букв) и одна правильная буква (answer)\n" +
+                "- 6 вопросов на слова из списка: " + priorityWordsString + " - для них type = ПРИОРИТЕТНОЕ\n" +
+                "- 4 вопроса на новые полезные слова уровня intermediate - для них type = НОВОЕ\n" +
+                "- word - английское слово вопроса, translation - его перевод\n" +
+                "- Вопросы разнообразные: выбор перевода, слово по описанию, пропуск в предложении, синоним, антоним\n" +
+                "- Варианты правдоподобные, но не очевидные\n" +
+                "\n" +
+                "Текст вопросов на русском языке, английские слова в оригинале.";
+    }
+
     /**
      * Создает промпт с автоматической подстановкой приоритетных слов
      */
@@ -1,7 +1,13 @@
 package org.example.ScheduledTests;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.example.Parsing.TestTextParser;
+import org.example.Session.SessionStore;
+import org.example.Session.StreamingTestStart;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Обработчик теста для отложенных тестов
@@ -9,12 +15,24 @@ import java.util.Map;
  */
 public class ScheduleTestHandler {
 
-    // Храним состояние теста для каждого пользователя
-    private final Map<Long, TestSession> userSessions = new HashMap<>();
+    // Храним состояние теста для каждого пользователя (в общем хранилище сессий)
+    private final SessionStore.Slot<TestSession> userSessions;
     private final ScheduleTests scheduleTests;
 
+    private static final String NEXT_QUESTION_GENERATING = "⏳ Следующий вопрос генерируется…";
+    private static final String STREAM_FAILED = "❌ Генерация теста оборвалась, результат не засчитан.\n\n" +
+            "Пройдите тест заново командой /scheduled_test.";
+
+    // получатель вопросов, которых пользователь ждал, пока тест генерировался
+    private volatile BiConsumer<Long, String> questionListener;
+
     public ScheduleTestHandler(ScheduleTests scheduleTests) {
+        this(scheduleTests, new SessionStore());
+    }
+
+    public ScheduleTestHandler(ScheduleTests scheduleTests, SessionStore sessionStore) {
         this.scheduleTests = scheduleTests;
+        this.userSessions = sessionStore.slot(SessionStore.Kind.SCHEDULED_TEST, TestSession.class, TestSession.CODEC);
         System.out.println("[ScheduleTestHandler] Инициализирован");
     }
 
@@ -38,6 +56,65 @@ public class ScheduleTestHandler {
         return firstQuestion;
     }
 
+    /**
+     * Включает отложенную доставку вопросов: если пользователь ответил быстрее генерации,
+     * следующий вопрос (или итог теста) отправляется через listener, как только готов.
+     * Без listener пользователь получает его следующим нажатием кнопки
+     */
+    public void setQuestionListener(BiConsumer<Long, String> questionListener) {
+        this.questionListener = questionListener;
+    }
+
+    /**
+     * Начинает тест по мере генерации: сессия создается, как только разобран первый вопрос,
+     * остальные вопросы дописываются в нее, пока идет ответ ии.
+     *
+     * @param generation запуск потоковой генерации: получает куски текста, future завершается концом ответа
+     * @return первый вопрос или null, если генерация не дала ни одного вопроса (тогда нужен обычный запуск)
+     */
+    public String startStreamingTest(long chatId, long userId, Function<Consumer<String>, CompletableFuture<String>> generation) {
+        TestSession session = new TestSession(new TestsData(), userId);
+        session.startStreaming();
+        StreamingTestStart start = new StreamingTestStart("[ScheduleTestHandler]", chatId);
+
+        TestTextParser.WordTestStream parser = new TestTextParser.WordTestStream(question -> {
+            session.addQuestion(question);
+            start.questionParsed(() -> userSessions.put(chatId, session), session::getCurrentQuestion);
+            deliverWaiting(chatId, session);
+        });
+
+        return start.run(generation, parser, failed -> {
+            if (failed) {
+                session.failStreaming();
+            } else {
+                session.finishStreaming();
+            }
+            deliverWaiting(chatId, session);
+        });
+    }
+
+    /**
+     * Отправляет пользователю, который ждет следующий вопрос, то, что теперь готово: вопрос или итог теста
+     */
+    private void deliverWaiting(long chatId, TestSession session) {
+        BiConsumer<Long, String> listener = questionListener;
+        if (listener == null) {
+            return;
+        }
+        String next;
+        synchronized (session) {
+            if (!session.isWaitingForQuestion() || userSessions.get(chatId) != session) {
+                return;
+            }
+            next = nextStep(chatId, session);
+            if (next == null) {
+                return;
+            }
+            session.setWaitingForQuestion(false);
+        }
+        listener.accept(chatId, next);
+    }
+
     /**
      * Получает текущий вопрос для пользователя
      */
@@ -64,6 +141,23 @@ public class ScheduleTestHandler {
             return "❌ Тест не активен.";
         }
 
+        // вопросы генерируемого теста дописываются из другого потока
+        synchronized (session) {
+            return handleAnswer(chatId, session, callbackData);
+        }
+    }
+
+    private String handleAnswer(long chatId, TestSession session, String callbackData) {
+        // нажатие, пока следующий вопрос генерируется: ответа не было, отдаем вопрос, если он уже готов
+        if (session.isTestCompleted()) {
+            String next = nextStep(chatId, session);
+            if (next == null) {
+                return NEXT_QUESTION_GENERATING;
+            }
+            session.setWaitingForQuestion(false);
+            return next;
+        }
+
         // Извлекаем букву ответа из callback_data (например, "B_button" -> "B")
         String answer = extractAnswerFromCallback(callbackData);
 
@@ -74,17 +168,43 @@ public class ScheduleTestHandler {
         // Переходим к следующему вопросу
         session.nextQuestion();
 
-        if (session.isTestCompleted()) {
-            // Тест завершен - обновляем приоритеты и возвращаем результат
-            System.out.println("[ScheduleTestHandler] Тест завершен для chatId: " + chatId);
-            String result = completeTest(chatId, session);
-            userSessions.remove(chatId);
-            return result;
-        } else {
-            String nextQuestion = getCurrentQuestion(chatId);
+        String next = nextStep(chatId, session);
+        if (next == null) {
+            // ответ быстрее генерации: вопрос придет через listener, поток обработки не ждет
+            System.out.println("[ScheduleTestHandler] Следующий вопрос для chatId " + chatId + " еще генерируется");
+            session.setWaitingForQuestion(true);
+            return NEXT_QUESTION_GENERATING;
+        }
+        return next;
+    }
+
+    /**
+     * Что показать после ответа: текущий вопрос, результат теста или сообщение об оборванной генерации.
+     * Вызывается под блокировкой session
+     *
+     * @return null если текущий вопрос еще генерируется
+     */
+    private String nextStep(long chatId, TestSession session) {
+        if (!session.isTestCompleted()) {
             System.out.println("[ScheduleTestHandler] Следующий вопрос отправлен");
-            return nextQuestion;
+            return session.getCurrentQuestion();
         }
+        if (session.isStreaming()) {
+            return null;
+        }
+
+        if (session.isStreamFailed()) {
+            // оборванный тест не оцениваем: приоритеты слов не меняются
+            System.out.println("[ScheduleTestHandler] Тест для chatId " + chatId + " не засчитан: генерация оборвалась");
+            userSessions.remove(chatId, session);
+            return STREAM_FAILED;
+        }
+
+        // Тест завершен - обновляем приоритеты и возвращаем результат
+        System.out.println("[ScheduleTestHandler] Тест завершен для chatId: " + chatId);
+        String result = completeTest(chatId, session);
+        userSessions.remove(chatId, session);
+        return result;
     }
 
     /**
@@ -200,7 +320,9 @@ public class ScheduleTestHandler {
      */
     public boolean isTestActive(long chatId) {
         TestSession session = userSessions.get(chatId);
-        boolean isActive = session != null && !session.isTestCompleted();
+        // пока тест генерируется или не сообщено об оборванной генерации, сессия активна
+        boolean isActive = session != null &&
+                (!session.isTestCompleted() || session.isStreaming() || session.isStreamFailed());
         System.out.println("[ScheduleTestHandler] Проверка активности теста для chatId " + chatId + ": " + isActive);
         return isActive;
     }
@@ -1,34 +1,41 @@
 package org.example.ScheduledTests;
 
+import org.example.Dictionary.CachingDictionaryService;
 import org.example.Dictionary.DictionaryService;
-import org.example.Dictionary.DictionaryServiceImpl;
 import org.example.Dictionary.Word;
+import org.example.Session.SessionStore;
+import org.json.JSONObject;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * ScheduleTests - класс для работы с отложенными тестами на повторение слов
  */
 public class ScheduleTests {
+    // сколько слов с наибольшим приоритетом попадает в тест
+    private static final int MAX_TEST_WORDS = 6;
+
     private final DictionaryService dictionaryService;
     private final ScheduleGenerateTests scheduleGenerateTests;
     private final TestsParser testsParser;
     private final ScheduleTestHandler scheduleTestHandler;
 
     public ScheduleTests() {
-        this.dictionaryService = new DictionaryServiceImpl();
-        this.scheduleGenerateTests = new ScheduleGenerateTests(this);
-        this.testsParser = new TestsParser();
-        this.scheduleTestHandler = new ScheduleTestHandler(this);
+        this(CachingDictionaryService.getShared(), new SessionStore());
     }
 
     // Конструктор для тестирования
     public ScheduleTests(DictionaryService dictionaryService) {
+        this(dictionaryService, new SessionStore());
+    }
+
+    public ScheduleTests(DictionaryService dictionaryService, SessionStore sessionStore) {
         this.dictionaryService = dictionaryService;
         this.scheduleGenerateTests = new ScheduleGenerateTests(this);
         this.testsParser = new TestsParser();
-        this.scheduleTestHandler = new ScheduleTestHandler(this);
+        this.scheduleTestHandler = new ScheduleTestHandler(this, sessionStore);
     }
 
     /**
@@ -57,18 +64,27 @@ public class ScheduleTests {
             long userId = getUserId(chatId);
             System.out.println("[ScheduleTests] Запуск отложенного теста для userId: " + userId);
 
-            // Генерируем тест
-            String testText = scheduleGenerateTests.generateTest(userId);
-
-            if (testText.contains("ошибка") || testText.contains("API ключ")) {
-                return "❌ Не удалось сгенерировать тест. Попробуйте позже.";
+            // Сначала текст потоком - тест начинается, как только готов первый вопрос
+            String firstQuestion = scheduleTestHandler.startStreamingTest(chatId, userId,
+                    onDelta -> scheduleGenerateTests.streamTest(userId, onDelta));
+            if (firstQuestion != null) {
+                return firstQuestion;
             }
 
-            // Парсим тест
-            TestsData testsData = testsParser.parseTest(testText);
+            // Поток не удался - структурированный ответ, он не требует разбора текста
+            JSONObject json = scheduleGenerateTests.generateStructuredTest(userId);
+            TestsData testsData = json != null ? testsParser.parseTestJson(json) : new TestsData();
+
+            if (testsData.getQuestions().isEmpty()) {
+                // Генерируем тест текстом
+                String testText = scheduleGenerateTests.generateTest(userId);
+
+                if (testText.contains("ошибка") || testText.contains("API ключ")) {
+                    return "❌ Не удалось сгенерировать тест. Попробуйте позже.";
+                }
 
-            for (int i = 0; i < testsData.getQuestions().size(); i++) {
-                TestsData.QuestionData q = testsData.getQuestions().get(i);
+                // Парсим тест
+                testsData = testsParser.parseTest(testText);
             }
 
             if (testsData.getQuestions().isEmpty()) {
@@ -95,6 +111,13 @@ public class ScheduleTests {
         return scheduleTestHandler.handleAnswer(chatId, callbackData);
     }
 
+    /**
+     * Включает отложенную доставку вопросов генерируемого теста (см. ScheduleTestHandler.setQuestionListener)
+     */
+    public void setQuestionListener(BiConsumer<Long, String> questionListener) {
+        scheduleTestHandler.setQuestionListener(questionListener);
+    }
+
     /**
      * Проверяет, активен ли тест для пользователя
      */
@@ -142,36 +165,16 @@ public class ScheduleTests {
      */
     public List<String[]> getWordsWithMaxPriority(long userId) {
         try {
-            List<Word> allWords = dictionaryService.getAllWords(userId);
+            // сортировка и ограничение выполняются в хранилище (индекс или кеш), а не по всему словарю
+            List<Word> topWords = dictionaryService.topKByPriority(userId, MAX_TEST_WORDS);
 
-            if (allWords.isEmpty()) {
+            if (topWords.isEmpty()) {
                 System.out.println("[ScheduleTests] У пользователя " + userId + " нет слов в словаре");
                 return Collections.emptyList();
             }
 
-            // Если слов меньше или равно 6, возвращаем все что есть
-            if (allWords.size() <= 6) {
-                Collections.sort(allWords, (w1, w2) -> w2.getPriority() - w1.getPriority());
-                System.out.println("[ScheduleTests] Найдено " + allWords.size() +
-                        " слов (все доступные) для пользователя " + userId);
-                return convertToPairs(allWords);
-            }
-
-            // Создаем список для топ-6 слов
-            List<Word> topWords = new ArrayList<>(6);
-
-            for (Word word : allWords) {
-                if (topWords.size() < 6) {
-                    topWords.add(word);
-                    Collections.sort(topWords, (w1, w2) -> w2.getPriority() - w1.getPriority());
-                } else {
-                    if (word.getPriority() > topWords.get(5).getPriority()) {
-                        topWords.set(5, word);
-                        Collections.sort(topWords, (w1, w2) -> w2.getPriority() - w1.getPriority());
-                    }
-                }
-            }
-
+            System.out.println("[ScheduleTests] Найдено " + topWords.size() +
+                    " приоритетных слов для пользователя " + userId);
             return convertToPairs(topWords);
 
         } catch (SQLException e) {
@@ -1,5 +1,10 @@
 package org.example.ScheduledTests;
 
+import org.example.Session.SessionCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,6 +17,12 @@ public class TestSession {
     private final long userId;
     private int currentQuestionIndex;
     private int correctAnswersCount;
+    // тест еще генерируется: вопросы дописываются по мере ответа ии (в снимок не попадает)
+    private transient boolean streaming;
+    // генерация оборвалась посреди теста: вопросов меньше, чем должно быть, результат не засчитывается
+    private transient boolean streamFailed;
+    // пользователь ответил быстрее генерации и ждет следующий вопрос
+    private transient boolean waitingForQuestion;
 
     // Списки для распределения слов по результатам теста
     private final List<String> priorityCorrectWords = new ArrayList<>();
@@ -25,6 +36,58 @@ public class TestSession {
     private final List<String> newCorrectTranslations = new ArrayList<>();
     private final List<String> newWrongTranslations = new ArrayList<>();
 
+    /** Запись сессии теста в снимок сессий: вопросы, прогресс и уже распределенные слова */
+    public static final SessionCodec<TestSession> CODEC = new SessionCodec<>() {
+        @Override
+        public void write(DataOutput out, TestSession session) throws IOException {
+            // вопросы могут дописываться потоком генерации
+            synchronized (session) {
+                writeSession(out, session);
+            }
+        }
+
+        private void writeSession(DataOutput out, TestSession session) throws IOException {
+            out.writeLong(session.userId);
+            out.writeInt(session.currentQuestionIndex);
+            out.writeInt(session.correctAnswersCount);
+
+            List<TestsData.QuestionData> questions = session.testsData.getQuestions();
+            out.writeInt(questions.size());
+            for (TestsData.QuestionData question : questions) {
+                SessionCodec.writeString(out, question.getQuestionText());
+                SessionCodec.writeString(out, question.getCorrectAnswer());
+                SessionCodec.writeString(out, question.getWordType());
+                SessionCodec.writeString(out, question.getEnglishWord());
+                SessionCodec.writeString(out, question.getTranslation());
+            }
+            for (List<String> words : session.wordLists()) {
+                SessionCodec.writeStrings(out, words);
+            }
+        }
+
+        @Override
+        public TestSession read(DataInput in) throws IOException {
+            long userId = in.readLong();
+            int currentQuestionIndex = in.readInt();
+            int correctAnswersCount = in.readInt();
+
+            TestsData testsData = new TestsData();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                testsData.addQuestion(new TestsData.QuestionData(SessionCodec.readString(in), SessionCodec.readString(in),
+                        SessionCodec.readString(in), SessionCodec.readString(in), SessionCodec.readString(in)));
+            }
+
+            TestSession session = new TestSession(testsData, userId);
+            session.currentQuestionIndex = currentQuestionIndex;
+            session.correctAnswersCount = correctAnswersCount;
+            for (List<String> words : session.wordLists()) {
+                words.addAll(SessionCodec.readStrings(in));
+            }
+            return session;
+        }
+    };
+
     /**
      * Создает новую сессию теста
      * @param testsData данные теста
@@ -41,7 +104,7 @@ public class TestSession {
      * Возвращает текущий вопрос с номером
      * @return текст вопроса с номером или сообщение о завершении
      */
-    public String getCurrentQuestion() {
+    public synchronized String getCurrentQuestion() {
         if (currentQuestionIndex >= testsData.getQuestions().size()) {
             return "Тест завершен.";
         }
@@ -50,7 +113,9 @@ public class TestSession {
         int questionNumber = currentQuestionIndex + 1;
         int totalQuestions = testsData.getQuestions().size();
 
-        return "Вопрос " + questionNumber + " из " + totalQuestions + ":\n\n" +
+        // пока тест генерируется, число вопросов еще неизвестно
+        String total = streaming ? "" : " из " + totalQuestions;
+        return "Вопрос " + questionNumber + total + ":\n\n" +
                 question.getQuestionText();
     }
 
@@ -118,11 +183,68 @@ public class TestSession {
         currentQuestionIndex++;
     }
 
+    /**
+     * Начинает тест, который еще генерируется: дальше вопросы добавляет addQuestion
+     */
+    public synchronized void startStreaming() {
+        streaming = true;
+    }
+
+    /**
+     * Дописывает очередной вопрос генерируемого теста
+     */
+    public synchronized void addQuestion(TestsData.QuestionData question) {
+        testsData.addQuestion(question);
+    }
+
+    /**
+     * Генерация закончилась (или оборвалась) - новых вопросов не будет
+     */
+    public synchronized void finishStreaming() {
+        streaming = false;
+    }
+
+    /**
+     * @return true если вопросы еще дописываются
+     */
+    public synchronized boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Генерация оборвалась - новых вопросов не будет, а дописанные вопросы - не весь тест
+     */
+    public synchronized void failStreaming() {
+        streamFailed = true;
+        finishStreaming();
+    }
+
+    /**
+     * @return true если генерация теста оборвалась
+     */
+    public synchronized boolean isStreamFailed() {
+        return streamFailed;
+    }
+
+    /**
+     * @return true если пользователю нужно отправить следующий вопрос, как только он будет готов
+     */
+    public synchronized boolean isWaitingForQuestion() {
+        return waitingForQuestion;
+    }
+
+    /**
+     * @param waitingForQuestion ждет ли пользователь следующий вопрос генерируемого теста
+     */
+    public synchronized void setWaitingForQuestion(boolean waitingForQuestion) {
+        this.waitingForQuestion = waitingForQuestion;
+    }
+
     /**
      * Проверяет завершен ли тест
      * @return true если тест завершен
      */
-    public boolean isTestCompleted() {
+    public synchronized boolean isTestCompleted() {
         return currentQuestionIndex >= testsData.getQuestions().size();
     }
 
@@ -130,7 +252,7 @@ public class TestSession {
      * Возвращает общее количество вопросов
      * @return количество вопросов в тесте
      */
-    public int getTotalQuestions() {
+    public synchronized int getTotalQuestions() {
         return testsData.getQuestions().size();
     }
 
@@ -181,4 +303,10 @@ public class TestSession {
 
     /** @return идентификатор пользователя */
     public long getUserId() { return userId; }
+
+    /** Все списки распределенных слов в постоянном порядке (для снимка) */
+    private List<List<String>> wordLists() {
+        return List.of(priorityCorrectWords, priorityWrongWords, newCorrectWords, newWrongWords,
+                priorityCorrectTranslations, priorityWrongTranslations, newCorrectTranslations, newWrongTranslations);
+    }
 }
\ No newline at end of file
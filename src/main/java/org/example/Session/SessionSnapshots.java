@@ -0,0 +1,209 @@
+package org.example.Session;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SessionSnapshots - снимки SessionStore на диск, чтобы после перезапуска бота
+ * незавершенные тесты и ввод продолжились без повторной генерации ии.
+ * Формат компактный двоичный: заголовок, затем записи "chatId, вид, длина, данные", в конце CRC32.
+ * Снимок пишется во временный файл и атомарно заменяет прежний, поэтому падение во время записи
+ * оставляет предыдущий целый снимок. Поврежденный или чужой файл при загрузке пропускается.
+ */
+public class SessionSnapshots {
+    private static final int MAGIC = 0x47545353; // "GTSS"
+    private static final int VERSION = 1;
+
+    private static final ScheduledExecutorService SNAPSHOT_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SessionStore store;
+    private final Path file;
+
+    public SessionSnapshots(SessionStore store, Path file) {
+        this.store = store;
+        this.file = file;
+    }
+
+    /**
+     * Записывает снимок всех сохраняемых сессий
+     *
+     * @return сколько сессий записано
+     */
+    public synchronized int save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written;
+
+        try (OutputStream fileOut = Files.newOutputStream(tmp)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileOut, crc)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+
+            // данные сессии пишутся в буфер отдельно: поврежденную или неизвестную запись можно пропустить
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            DataOutputStream record = new DataOutputStream(buffer);
+            int[] count = new int[1];
+            IOException[] failure = new IOException[1];
+
+            store.forEachSession((chatId, kind, session) -> {
+                SessionCodec<Object> codec = store.getCodec(kind);
+                if (codec == null || failure[0] != null) {
+                    return;
+                }
+                try {
+                    buffer.reset();
+                    codec.write(record, session);
+                    record.flush();
+                } catch (IOException | RuntimeException e) {
+                    // сессию меняют прямо сейчас - она попадет в следующий снимок
+                    System.err.println("[Sessions] Сессия " + kind + " чата " + chatId + " пропущена в снимке: " + e.getMessage());
+                    return;
+                }
+                try {
+                    out.writeBoolean(true);
+                    out.writeLong(chatId);
+                    out.writeByte(kind.ordinal());
+                    out.writeInt(buffer.size());
+                    buffer.writeTo(out);
+                    count[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            out.writeBoolean(false);
+            out.flush();
+            // CRC считается по всему, что записано до него
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            written = count[0];
+        }
+
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return written;
+    }
+
+    /**
+     * Загружает сессии из снимка в хранилище (кодеки видов уже должны быть зарегистрированы)
+     *
+     * @return сколько сессий восстановлено
+     */
+    public synchronized int load() {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long startedAt = System.currentTimeMillis();
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            System.err.println("[Sessions] Не удалось прочитать снимок " + file + ": " + e.getMessage());
+            return 0;
+        }
+        if (data.length < Long.BYTES || !checksumMatches(data)) {
+            System.err.println("[Sessions] Снимок " + file + " поврежден, пропускаем");
+            return 0;
+        }
+
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Long.BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("[Sessions] Неизвестный формат снимка " + file + ", пропускаем");
+                return 0;
+            }
+            in.readLong(); // время снимка
+
+            SessionStore.Kind[] kinds = SessionStore.Kind.values();
+            while (in.readBoolean()) {
+                long chatId = in.readLong();
+                int ordinal = in.readUnsignedByte();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+
+                SessionCodec<Object> codec = ordinal < kinds.length ? store.getCodec(kinds[ordinal]) : null;
+                if (codec == null) {
+                    continue;
+                }
+                try {
+                    Object session = codec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+                    store.put(chatId, kinds[ordinal], session);
+                    restored++;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[Sessions] Сессия " + kinds[ordinal] + " чата " + chatId + " не восстановлена: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Sessions] Ошибка чтения снимка " + file + ": " + e.getMessage());
+        }
+
+        System.out.println("[Sessions] Восстановлено сессий: " + restored + " за " +
+                (System.currentTimeMillis() - startedAt) + " мс");
+        return restored;
+    }
+
+    private static boolean checksumMatches(byte[] data) {
+        int bodyLength = data.length - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, bodyLength);
+        long stored = 0;
+        for (int i = bodyLength; i < data.length; i++) {
+            stored = (stored << 8) | (data[i] & 0xFF);
+        }
+        return stored == crc.getValue();
+    }
+
+    /**
+     * Запускает периодическое сохранение снимков
+     */
+    public ScheduledFuture<?> startPeriodicSave(Duration every) {
+        return SNAPSHOT_TIMER.scheduleWithFixedDelay(this::saveQuietly, every.toMillis(), every.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Сохраняет снимок, ошибки только логируются
+     */
+    public void saveQuietly() {
+        try {
+            int written = save();
+            System.out.println("[Sessions] Снимок сохранен: " + written + " сессий");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Sessions] Ошибка сохранения снимка " + file + ": " + e.getMessage());
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
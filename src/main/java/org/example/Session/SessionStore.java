@@ -0,0 +1,331 @@
+package org.example.Session;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * SessionStore - единое хранилище незавершенных действий пользователей:
+ * тесты всех видов, повторение слова, ввод в словаре и в авторизации.
+ * Все сессии чата лежат в одной записи ConcurrentHashMap, изменения одного чата атомарны (compute по ключу),
+ * поэтому проверка "занят ли пользователь" - одно чтение. Сессии, к которым давно не обращались,
+ * удаляются, и память брошенных тестов освобождается.
+ */
+public class SessionStore {
+    // общий таймер очистки для всех хранилищ
+    private static final ScheduledExecutorService EVICTION_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Вид сессии
+     */
+    public enum Kind {
+        PLACEMENT_TEST(true),
+        SPEED_TEST(true),
+        SCHEDULED_TEST(true),
+        OLD_WORD(true),
+        DICTIONARY(false),
+        AUTH(false);
+
+        // пока есть такая сессия, пользователь занят и не получает рассылки
+        private final boolean busy;
+
+        Kind(boolean busy) {
+            this.busy = busy;
+        }
+
+        public boolean isBusy() {
+            return busy;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * Все сессии одного чата. Массив не изменяется после публикации, изменение - новая запись
+     */
+    private static final class ChatSessions {
+        final Object[] values;
+        final boolean busy;
+        volatile long lastAccess;
+
+        ChatSessions(Object[] values, long now) {
+            this.values = values;
+            boolean anyBusy = false;
+            for (Kind kind : KINDS) {
+                anyBusy |= kind.busy && values[kind.ordinal()] != null;
+            }
+            this.busy = anyBusy;
+            this.lastAccess = now;
+        }
+
+        boolean isEmpty() {
+            for (Object value : values) {
+                if (value != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, ChatSessions> chats = new ConcurrentHashMap<>();
+    private final AtomicLong evicted = new AtomicLong();
+    // как сохранять сессии каждого вида в снимок (регистрирует обработчик)
+    private final ConcurrentHashMap<Kind, SessionCodec<?>> codecs = new ConcurrentHashMap<>();
+    // что освободить, когда сессия вида удалена по простою (например, таймер), - регистрирует обработчик
+    private final ConcurrentHashMap<Kind, LongConsumer> evictionCallbacks = new ConcurrentHashMap<>();
+
+    /**
+     * Доступ к сессиям одного вида - замена отдельной Map в обработчике
+     */
+    public <T> Slot<T> slot(Kind kind, Class<T> type) {
+        return new Slot<>(this, kind, type);
+    }
+
+    /**
+     * Доступ к сессиям одного вида, которые сохраняются в снимок
+     */
+    public <T> Slot<T> slot(Kind kind, Class<T> type, SessionCodec<T> codec) {
+        codecs.put(kind, codec);
+        return new Slot<>(this, kind, type);
+    }
+
+    /**
+     * Задает, что сделать с ресурсами сессии вида, когда она удалена по простою
+     *
+     * @param onEvict получает chatId удаленной сессии
+     */
+    public void onEvict(Kind kind, LongConsumer onEvict) {
+        evictionCallbacks.put(kind, onEvict);
+    }
+
+    /**
+     * @return кодек сессий вида или null, если вид не сохраняется
+     */
+    @SuppressWarnings("unchecked")
+    SessionCodec<Object> getCodec(Kind kind) {
+        return (SessionCodec<Object>) codecs.get(kind);
+    }
+
+    /**
+     * Обход всех сессий (для снимка)
+     */
+    void forEachSession(SessionVisitor visitor) {
+        chats.forEach((chatId, sessions) -> {
+            for (Kind kind : KINDS) {
+                Object value = sessions.values[kind.ordinal()];
+                if (value != null) {
+                    visitor.visit(chatId, kind, value);
+                }
+            }
+        });
+    }
+
+    interface SessionVisitor {
+        void visit(long chatId, Kind kind, Object session);
+    }
+
+    /**
+     * Сессия чата указанного вида или null
+     */
+    public Object get(long chatId, Kind kind) {
+        ChatSessions sessions = chats.get(chatId);
+        if (sessions == null) {
+            return null;
+        }
+        sessions.lastAccess = System.currentTimeMillis();
+        return sessions.values[kind.ordinal()];
+    }
+
+    /**
+     * Атомарно изменяет сессию чата: функция получает текущую сессию (или null)
+     * и возвращает новую (null - удалить)
+     *
+     * @return новая сессия
+     */
+    public Object compute(long chatId, Kind kind, UnaryOperator<Object> update) {
+        Object[] result = new Object[1];
+        chats.compute(chatId, (id, current) -> {
+            Object previous = current == null ? null : current.values[kind.ordinal()];
+            Object next = update.apply(previous);
+            result[0] = next;
+            if (next == previous && current != null) {
+                current.lastAccess = System.currentTimeMillis();
+                return current;
+            }
+            Object[] values = current == null ? new Object[KINDS.length] : current.values.clone();
+            values[kind.ordinal()] = next;
+            ChatSessions updated = new ChatSessions(values, System.currentTimeMillis());
+            return updated.isEmpty() ? null : updated;
+        });
+        return result[0];
+    }
+
+    /**
+     * Сохраняет сессию чата
+     */
+    public void put(long chatId, Kind kind, Object session) {
+        compute(chatId, kind, previous -> session);
+    }
+
+    /**
+     * Удаляет сессию чата
+     *
+     * @return удаленная сессия или null
+     */
+    public Object remove(long chatId, Kind kind) {
+        Object[] removed = new Object[1];
+        compute(chatId, kind, previous -> {
+            removed[0] = previous;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Удаляет сессию, только если она все еще та же самая
+     */
+    public boolean remove(long chatId, Kind kind, Object expected) {
+        boolean[] removed = new boolean[1];
+        compute(chatId, kind, previous -> {
+            if (previous != expected) {
+                return previous;
+            }
+            removed[0] = previous != null;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * @return true если у чата есть хотя бы одна незавершенная сессия, занимающая пользователя
+     */
+    public boolean isBusy(long chatId) {
+        ChatSessions sessions = chats.get(chatId);
+        return sessions != null && sessions.busy;
+    }
+
+    /**
+     * Удаляет сессии чатов, к которым не обращались дольше maxIdle
+     *
+     * @return сколько чатов очищено
+     */
+    public int evictIdle(Duration maxIdle) {
+        long threshold = System.currentTimeMillis() - maxIdle.toMillis();
+        int removed = 0;
+        for (Map.Entry<Long, ChatSessions> entry : chats.entrySet()) {
+            ChatSessions sessions = entry.getValue();
+            if (sessions.lastAccess < threshold && chats.remove(entry.getKey(), sessions)) {
+                removed++;
+                for (Kind kind : KINDS) {
+                    LongConsumer callback = evictionCallbacks.get(kind);
+                    if (callback != null && sessions.values[kind.ordinal()] != null) {
+                        callback.accept(entry.getKey());
+                    }
+                }
+            }
+        }
+        if (removed > 0) {
+            evicted.addAndGet(removed);
+            System.out.println("[Sessions] Удалены брошенные сессии: " + removed + ", осталось чатов: " + chats.size());
+        }
+        return removed;
+    }
+
+    /**
+     * Запускает периодическую очистку брошенных сессий
+     */
+    public ScheduledFuture<?> startIdleEviction(Duration maxIdle, Duration every) {
+        return EVICTION_TIMER.scheduleWithFixedDelay(() -> {
+            try {
+                evictIdle(maxIdle);
+            } catch (RuntimeException e) {
+                System.err.println("[Sessions] Ошибка очистки сессий: " + e.getMessage());
+            }
+        }, every.toMillis(), every.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Сессии одного вида по чатам (копия, для статистики и тестов)
+     */
+    public Map<Long, Object> snapshot(Kind kind) {
+        Map<Long, Object> result = new HashMap<>();
+        chats.forEach((chatId, sessions) -> {
+            Object value = sessions.values[kind.ordinal()];
+            if (value != null) {
+                result.put(chatId, value);
+            }
+        });
+        return result;
+    }
+
+    /** @return количество чатов с сессиями */
+    public int size() {
+        return chats.size();
+    }
+
+    /** @return сколько чатов очищено по простою за все время */
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    /**
+     * Типизированный доступ к сессиям одного вида
+     */
+    public static final class Slot<T> {
+        private final SessionStore store;
+        private final Kind kind;
+        private final Class<T> type;
+
+        private Slot(SessionStore store, Kind kind, Class<T> type) {
+            this.store = store;
+            this.kind = kind;
+            this.type = type;
+        }
+
+        public T get(long chatId) {
+            return type.cast(store.get(chatId, kind));
+        }
+
+        public boolean containsKey(long chatId) {
+            return store.get(chatId, kind) != null;
+        }
+
+        public void put(long chatId, T session) {
+            store.put(chatId, kind, session);
+        }
+
+        public T remove(long chatId) {
+            return type.cast(store.remove(chatId, kind));
+        }
+
+        public boolean remove(long chatId, T expected) {
+            return store.remove(chatId, kind, expected);
+        }
+
+        /**
+         * Атомарно изменяет сессию чата (null на входе - сессии нет, null на выходе - удалить)
+         */
+        public T compute(long chatId, UnaryOperator<T> update) {
+            return type.cast(store.compute(chatId, kind, previous -> update.apply(type.cast(previous))));
+        }
+
+        public Map<Long, T> snapshot() {
+            Map<Long, T> result = new HashMap<>();
+            store.snapshot(kind).forEach((chatId, value) -> result.put(chatId, type.cast(value)));
+            return result;
+        }
+    }
+}
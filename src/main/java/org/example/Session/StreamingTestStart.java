@@ -0,0 +1,111 @@
+package org.example.Session;
+
+import org.example.Parsing.TestTextParser;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * StreamingTestStart - запуск теста по мере генерации, общий для вводного и отложенного тестов.
+ * Ждет первый разобранный вопрос не дольше FIRST_QUESTION_TIMEOUT: сессия регистрируется вместе с ним,
+ * а если он не успел - генерация отменяется и сессия не появляется (тест запустится обычным путем).
+ * Один запуск - один экземпляр.
+ */
+public final class StreamingTestStart {
+    // сколько ждать первый вопрос генерируемого теста
+    public static final Duration FIRST_QUESTION_TIMEOUT = Duration.ofSeconds(60);
+
+    private final String tag;
+    private final long chatId;
+    private final long started = System.nanoTime();
+    private final CompletableFuture<String> firstQuestion = new CompletableFuture<>();
+
+    /**
+     * @param tag    префикс логов обработчика, например "[TestHandler]"
+     * @param chatId чат, для которого генерируется тест
+     */
+    public StreamingTestStart(String tag, long chatId) {
+        this.tag = tag;
+        this.chatId = chatId;
+    }
+
+    /**
+     * Вопрос разобран: на первом регистрирует сессию и отдает его ожидающему.
+     * После таймаута ожидания сессия уже не регистрируется
+     *
+     * @param register регистрация сессии в хранилище
+     * @param question текст первого вопроса для пользователя
+     */
+    public synchronized void questionParsed(Runnable register, Supplier<String> question) {
+        if (!firstQuestion.isDone()) {
+            register.run();
+            firstQuestion.complete(question.get());
+        }
+    }
+
+    /**
+     * Запускает генерацию и ждет первый вопрос
+     *
+     * @param generation запуск потоковой генерации: получает куски текста, future завершается концом ответа
+     * @param parser     разбор кусков; его получатель вопросов вызывает questionParsed
+     * @param onFinished конец генерации: false - ответ пришел целиком, true - оборвался
+     * @return первый вопрос или null, если генерация не дала ни одного вопроса вовремя
+     */
+    public String run(Function<Consumer<String>, CompletableFuture<String>> generation,
+                      TestTextParser.TestStream parser, Consumer<Boolean> onFinished) {
+        CompletableFuture<String> response;
+        try {
+            response = generation.apply(parser::append);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((text, error) -> {
+            if (error == null) {
+                parser.finish();
+            } else {
+                System.err.println(tag + " Генерация теста потоком оборвалась: " + error.getMessage());
+            }
+            onFinished.accept(error != null);
+            System.out.println(tag + " Тест для chatId " + chatId + " догенерирован: вопросов " + parser.getParsed());
+            abandon();
+        });
+
+        try {
+            String question = firstQuestion.get(FIRST_QUESTION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            if (question != null) {
+                System.out.println(tag + " Первый вопрос через " +
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " мс");
+            }
+            return question;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            System.err.println(tag + " Первый вопрос для chatId " + chatId + " не готов за " +
+                    FIRST_QUESTION_TIMEOUT.toSeconds() + " с");
+        }
+
+        // первый вопрос не дождались - отменяем генерацию, если он не пришел в последний момент
+        if (abandon()) {
+            response.cancel(true);
+            return null;
+        }
+        return firstQuestion.getNow(null);
+    }
+
+    /**
+     * Больше не ждем первый вопрос
+     *
+     * @return true если он так и не пришел
+     */
+    private synchronized boolean abandon() {
+        return firstQuestion.complete(null);
+    }
+}
@@ -1,14 +1,30 @@
 package org.example.SpeedTest;
 
+import org.example.TestBank.BankedTest;
+import org.example.TestBank.TestBank;
+
 /**
  * SpeedTestCommand - управление тестом на скорость
  * Наследует логику обычного теста через StartCommand
  */
 public class SpeedTestCommand{
     private final SpeedTestHandler speedTestHandler;
+    private final SpeedTestYesButton generator;
+    // готовые тесты (null - всегда генерировать)
+    private final TestBank testBank;
 
     public SpeedTestCommand(SpeedTestHandler speedTestHandler) {
+        this(speedTestHandler, new SpeedTestYesButton(), SpeedTestYesButton.getSharedBank());
+    }
+
+    public SpeedTestCommand(SpeedTestHandler speedTestHandler, SpeedTestYesButton generator) {
+        this(speedTestHandler, generator, null);
+    }
+
+    public SpeedTestCommand(SpeedTestHandler speedTestHandler, SpeedTestYesButton generator, TestBank testBank) {
         this.speedTestHandler = speedTestHandler;
+        this.generator = generator;
+        this.testBank = testBank;
     }
 
     private static final String START_MESSAGE = "🌍 *Добро пожаловать в тест на скорость!* 🌍\n\n" +
@@ -47,7 +63,11 @@ public class SpeedTestCommand{
     public String handleButtonClick(String callbackData, long chatId) {
         switch (callbackData) {
             case "speed_yes_button": {
-                SpeedTestYesButton generator = new SpeedTestYesButton();
+                // готовый тест из банка - без ожидания ии
+                BankedTest banked = testBank != null ? testBank.take() : null;
+                if (banked != null) {
+                    return speedTestHandler.startTest(chatId, banked.getQuestions(), banked.getAnswers(), banked.getPoints());
+                }
                 String test = generator.generateTest();
                 return speedTestHandler.generateTest(chatId, test);
             }
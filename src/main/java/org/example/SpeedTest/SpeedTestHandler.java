@@ -1,9 +1,11 @@
 package org.example.SpeedTest;
 
+import org.example.Parsing.TestTextParser;
+import org.example.Session.SessionStore;
+
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.BiConsumer;
 
 /**
  * Обработка логики speed теста:
@@ -13,19 +15,16 @@ import java.util.regex.Pattern;
  */
 public class SpeedTestHandler {
 
-    // храним данные для каждого пользователя
-    private final Map<Long, List<String>> currentTests = new HashMap<>();
-    private final Map<Long, List<String>> correctAnswers = new HashMap<>();
-    private final Map<Long, Integer> currentIndexes = new HashMap<>();
-    private final Map<Long, Integer> totalScore = new HashMap<>();
-    private final Map<Long, List<Integer>> questionPoints = new HashMap<>();
+    // храним данные для каждого пользователя (в общем хранилище сессий)
+    private final SessionStore.Slot<SpeedTestSession> sessions;
+    // сроки ответов всех пользователей: один поток и колесо таймеров вместо таймера на каждый вопрос
+    private final TimerWheel timers;
+    // кому сообщить, что время на вопрос вышло (бот отправляет сообщение сам, не дожидаясь нажатия)
+    private volatile BiConsumer<Long, String> timeUpListener;
 
-    // таймеры для каждого пользователя
-    private final ConcurrentHashMap<Long, ScheduledFuture<?>> userTimers = new ConcurrentHashMap<>();
-    //ScheduledExecutorService - планировщик задач, который выполняет код через время
-    private static final ScheduledExecutorService TIMER_POOL =
-            //создание потоков планировщиков
-            Executors.newScheduledThreadPool(20);
+    // точность таймеров и число корзин колеса: один оборот (25.6 с) покрывает самый долгий вопрос
+    private static final Duration TIMER_TICK = Duration.ofMillis(100);
+    private static final int TIMER_WHEEL_SIZE = 256;
 
     // констатны ответов на задач в секундах
     private static final int TIME_FOR_1_POINT = 5;
@@ -34,6 +33,25 @@ public class SpeedTestHandler {
 
     private static final String ANSWER_ERROR = "Не удалось распознать вопросы в тесте.";
     private static final String AGAIN_TEST = "Сначала начните тест командой /speed_test.";
+    private static final String TIME_UP_HINT = "\n\nНажмите «Дальше», чтобы перейти к следующему вопросу.";
+
+    public SpeedTestHandler() {
+        this(new SessionStore());
+    }
+
+    public SpeedTestHandler(SessionStore sessionStore) {
+        this.sessions = sessionStore.slot(SessionStore.Kind.SPEED_TEST, SpeedTestSession.class, SpeedTestSession.CODEC);
+        this.timers = new TimerWheel("speed-test-timer", TIMER_TICK, TIMER_WHEEL_SIZE, this::onQuestionExpired);
+        // брошенный тест удаляется по простою - его таймер больше не нужен
+        sessionStore.onEvict(SessionStore.Kind.SPEED_TEST, timers::cancel);
+    }
+
+    /**
+     * Задает получателя сообщений "время вышло" (chatId, текст)
+     */
+    public void setTimeUpListener(BiConsumer<Long, String> timeUpListener) {
+        this.timeUpListener = timeUpListener;
+    }
 
     /**
      * Разбирает текст теста, извлекает вопросы, варианты ответов и правильные ответы.
@@ -42,53 +60,26 @@ public class SpeedTestHandler {
      *
      */
     public String generateTest(long chatId, String test) {
-        Pattern pattern = Pattern.compile(
-                "(\\d+).?\\s*\\((\\d+)\\s*[points]*\\)\\s*\\n" +
-                        "(.+?)\\n" +
-                        "(A\\..+?)\\n" +
-                        "(B\\..+?)\\n" +
-                        "(C\\..+?)\\n" +
-                        "(D\\..+?)\\n" +
-                        "Answer:\\s*?([A-D])",
-                Pattern.DOTALL
-        );
-
-        Matcher matcher = pattern.matcher(test);
         List<String> questions = new ArrayList<>();
         List<String> answers = new ArrayList<>();
         List<Integer> pointsList = new ArrayList<>();
 
-        // Обрабатываем каждый вопрос
-        while (matcher.find()) {
-            String points = matcher.group(2);
-            String question = matcher.group(3).trim();
-            String answerA = matcher.group(4).trim();
-            String answerB = matcher.group(5).trim();
-            String answerC = matcher.group(6).trim();
-            String answerD = matcher.group(7).trim();
-            String correctAnswer = matcher.group(8).trim();
-
-            // Сохраняем только текст вопроса без номера и баллов
-            String questionText = question + "\n" +
-                    answerA + "\n" +
-                    answerB + "\n" +
-                    answerC + "\n" +
-                    answerD;
-
-            questions.add(questionText);
-            answers.add(correctAnswer);
-            pointsList.add(Integer.parseInt(points));
-        }
+        // разбор общим однопроходным парсером (текст вопроса - без номера и баллов)
+        TestTextParser.parsePointsTest(test, questions, answers, pointsList);
 
+        return startTest(chatId, questions, answers, pointsList);
+    }
+
+    /**
+     * Запускает уже разобранный тест (например, готовый тест из банка) и таймер первого вопроса.
+     * Возвращает первый вопрос для отображения.
+     */
+    public String startTest(long chatId, List<String> questions, List<String> answers, List<Integer> pointsList) {
         if (questions.isEmpty()) {
             return ANSWER_ERROR;
         }
 
-        currentTests.put(chatId, questions);
-        correctAnswers.put(chatId, answers);
-        currentIndexes.put(chatId, 0);
-        totalScore.put(chatId, 0);
-        questionPoints.put(chatId, pointsList);
+        sessions.put(chatId, new SpeedTestSession(new ArrayList<>(questions), new ArrayList<>(answers), new ArrayList<>(pointsList)));
 
         startQuestionTimer(chatId);
 
@@ -121,29 +112,29 @@ public class SpeedTestHandler {
     public Map<String, Object> handleAnswerWithFeedback(String callbackData, long chatId) {
         Map<String, Object> result = new HashMap<>();
 
-        if (!isTestActive(chatId)) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null || !session.isActive()) {
             result.put("feedback", AGAIN_TEST);
             result.put("isCorrect", false);
             return result;
         }
-        //получает таймер и смотрит не истекло ли
-        ScheduledFuture<?> timer = userTimers.get(chatId);
-        if (timer != null && timer.isDone() && !timer.isCancelled()) {
-            // если время истекло - удаляем таймер и возвращаем сообщение
-            userTimers.remove(chatId);
-            result.put("feedback", "Время вышло! Ответ не засчитан.");
+        //принимаем ответ, только если вопрос ждет ответа и время не вышло
+        if (!session.tryAnswer(System.currentTimeMillis())) {
+            boolean timedOut = session.getQuestionState() == SpeedTestSession.QuestionState.TIMED_OUT;
+            timers.cancel(chatId);
+            result.put("feedback", timedOut ? "Время вышло! Ответ не засчитан." : "Ответ на этот вопрос уже принят.");
             result.put("isCorrect", false);
             return result;
         }
 
-        //остановка таймера (пользователь ответи)
-        stopTimer(chatId);
+        //остановка таймера (пользователь ответил)
+        timers.cancel(chatId);
         //извлекаем выбранную кнопку
         String chosen = callbackData.substring(0, 1);
         //получаем данные пользоватля
-        int index = currentIndexes.get(chatId);//текущий номер вопсроа
-        List<String> correct = correctAnswers.get(chatId); //правильный ответ
-        List<Integer> pointsList = questionPoints.get(chatId); //баллы
+        int index = session.getCurrentIndex();//текущий номер вопсроа
+        List<String> correct = session.getCorrectAnswers(); //правильный ответ
+        List<Integer> pointsList = session.getQuestionPoints(); //баллы
 
         //сравниваем ответы
         String correctAnswer = correct.get(index);
@@ -151,9 +142,7 @@ public class SpeedTestHandler {
 
         String feedback;
         if (isCorrect) {
-            int score = totalScore.get(chatId);
-            score += pointsList.get(index);
-            totalScore.put(chatId, score);
+            session.setTotalScore(session.getTotalScore() + pointsList.get(index));
             feedback = "Правильно!";
         } else {
             feedback = "Вы ошиблись, правильный ответ: " + correctAnswer;
@@ -172,18 +161,18 @@ public class SpeedTestHandler {
      * Переход к следующему вопросу
      */
     public String moveToNextQuestion(long chatId) {
-        if (!isTestActive(chatId)) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null || !session.isActive()) {
             return AGAIN_TEST;
         }
         //обновляем индекс вопроса
-        int index = currentIndexes.get(chatId);
-        index++;
-        currentIndexes.put(chatId, index);
+        int index = session.getCurrentIndex() + 1;
+        session.setCurrentIndex(index);
 
-        List<String> questions = currentTests.get(chatId);
+        List<String> questions = session.getQuestions();
         //проверка на конец теста
         if (index >= questions.size()) {
-            return finishTest(chatId);
+            return finishTest(chatId, session);
         }
         //запускаем таймер для нового вопроса
         startQuestionTimer(chatId);
@@ -215,73 +204,94 @@ public class SpeedTestHandler {
         return result;
     }
 
+    /**
+     * Срабатывание таймера колеса: отмечает вопрос как просроченный и сообщает об этом боту
+     */
+    private void onQuestionExpired(long chatId) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null || !session.isActive() || !session.tryExpire(System.currentTimeMillis())) {
+            return;
+        }
+        String feedback = (String) handleTimeExpired(chatId).get("feedback");
+        BiConsumer<Long, String> listener = timeUpListener;
+        if (listener != null) {
+            listener.accept(chatId, feedback + TIME_UP_HINT);
+        }
+    }
+
     /**
      * запускает таймер для текущего вопроса
      */
     public void startQuestionTimer(long chatId) {
-        if (!isTestActive(chatId)) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null || !session.isActive()) {
             return;
         }
         //определяет тайм лимит
-        int timeLimit = getTimeForPoints(getCurrentQuestionPoints(chatId));
-        //останавливаем предыдущий, чтобы избежать наложения
-        stopTimer(chatId);
-
-        //создаем новый таймер в общем потоке
-        ScheduledFuture<?> timer = TIMER_POOL.schedule(() -> {
-            handleTimeExpired(chatId);
-        }, timeLimit, TimeUnit.SECONDS);
-        //сохраняем ссылку на таймер, чтобы если что его оставновить
-        userTimers.put(chatId, timer);
+        int timeLimit = getTimeForPoints(session.getQuestionPoints().get(session.getCurrentIndex()));
+        Duration limit = Duration.ofSeconds(timeLimit);
+
+        //срок ответа в сессии, таймер в колесе заменяет предыдущий таймер чата
+        session.startQuestion(System.currentTimeMillis() + limit.toMillis());
+        timers.schedule(chatId, limit);
+    }
+
+    /**
+     * Запускает заново таймеры восстановленных из снимка тестов
+     *
+     * @return сколько тестов продолжено
+     */
+    public int resumeTimers() {
+        int resumed = 0;
+        for (Long chatId : sessions.snapshot().keySet()) {
+            startQuestionTimer(chatId);
+            resumed++;
+        }
+        return resumed;
     }
 
     /**
      * Останавка таймер
      */
     public void stopTimer(long chatId) {
-        //достаем таймер из мапа и одновременно удаляем его
-        ScheduledFuture<?> timer = userTimers.remove(chatId);
-        if (timer != null) {
-            timer.cancel(false);
-        }
+        timers.cancel(chatId);
     }
 
     /**
      * получает правильный ответ для текущего вопроса
      */
     public String getCurrentCorrectAnswer(long chatId) {
-        if (!isTestActive(chatId)) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null) {
             return null;
         }
-
-        int index = currentIndexes.get(chatId);
-        List<String> correct = correctAnswers.get(chatId);
-        return correct.get(index);
+        // индекс читаем один раз - состояние может меняться из другого потока
+        int index = session.getCurrentIndex();
+        return index < session.getQuestions().size() ? session.getCorrectAnswers().get(index) : null;
     }
 
     /**
      * получает баллы за текущий вопрос
      */
     public int getCurrentQuestionPoints(long chatId) {
-        if (!isTestActive(chatId)) {
+        SpeedTestSession session = sessions.get(chatId);
+        if (session == null) {
             return 0;
         }
-
-        int index = currentIndexes.get(chatId);
-        List<Integer> pointsList = questionPoints.get(chatId);
-        return pointsList.get(index);
+        int index = session.getCurrentIndex();
+        return index < session.getQuestions().size() ? session.getQuestionPoints().get(index) : 0;
     }
 
     /**
      * Завершает тест и возвращает результат
      */
-    private String finishTest(long chatId) {
-        List<Integer> pointsList = questionPoints.get(chatId);
+    private String finishTest(long chatId, SpeedTestSession session) {
+        List<Integer> pointsList = session.getQuestionPoints();
         //считыем макс возможное колво ьаллов
         int totalPoints = pointsList.stream().mapToInt(Integer::intValue).sum();
-        int earnedPoints = totalScore.get(chatId); //фактическое
+        int earnedPoints = session.getTotalScore(); //фактическое
 
-        cleanupTestData(chatId);
+        cleanupTestData(chatId, session);
         //делаем фиальное сообщение
         return generateSpeedTestResult(earnedPoints, totalPoints);
     }
@@ -317,21 +327,22 @@ public class SpeedTestHandler {
     /**
      * очищает все данные теста
      */
-    private void cleanupTestData(long chatId) {
-        stopTimer(chatId);
-        currentTests.remove(chatId);
-        currentIndexes.remove(chatId);
-        correctAnswers.remove(chatId);
-        totalScore.remove(chatId);
-        questionPoints.remove(chatId);
+    private void cleanupTestData(long chatId, SpeedTestSession session) {
+        if (sessions.remove(chatId, session)) {
+            timers.cancel(chatId);
+        }
+    }
+
+    /** @return количество запущенных таймеров вопросов */
+    public int getActiveTimerCount() {
+        return timers.size();
     }
 
     /**
      * проверка на активность теста
      */
     public boolean isTestActive(long chatId) {
-        return currentTests.containsKey(chatId) &&
-                currentIndexes.containsKey(chatId) &&
-                currentIndexes.get(chatId) < currentTests.get(chatId).size();
+        SpeedTestSession session = sessions.get(chatId);
+        return session != null && session.isActive();
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.example.SpeedTest;
+
+import org.example.Session.SessionCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Состояние speed теста одного пользователя: вопросы, правильные ответы, баллы,
+ * текущий вопрос, набранный счет, срок ответа и состояние текущего вопроса
+ */
+public class SpeedTestSession {
+
+    /**
+     * Состояние текущего вопроса
+     */
+    public enum QuestionState {
+        WAITING,
+        ANSWERED,
+        TIMED_OUT
+    }
+
+    private final List<String> questions;
+    private final List<String> correctAnswers;
+    private final List<Integer> questionPoints;
+    private volatile int currentIndex;
+    private volatile int totalScore;
+    // срок ответа и состояние текущего вопроса меняются вместе под блокировкой сессии
+    private long deadline = Long.MAX_VALUE;
+    private QuestionState questionState = QuestionState.WAITING;
+
+    /** Запись состояния теста в снимок сессий (срок ответа отсчитывается заново после загрузки) */
+    public static final SessionCodec<SpeedTestSession> CODEC = new SessionCodec<>() {
+        @Override
+        public void write(DataOutput out, SpeedTestSession session) throws IOException {
+            SessionCodec.writeStrings(out, session.questions);
+            SessionCodec.writeStrings(out, session.correctAnswers);
+            SessionCodec.writeInts(out, session.questionPoints);
+            out.writeInt(session.currentIndex);
+            out.writeInt(session.totalScore);
+        }
+
+        @Override
+        public SpeedTestSession read(DataInput in) throws IOException {
+            SpeedTestSession session = new SpeedTestSession(SessionCodec.readStrings(in),
+                    SessionCodec.readStrings(in), SessionCodec.readInts(in));
+            session.currentIndex = in.readInt();
+            session.totalScore = in.readInt();
+            return session;
+        }
+    };
+
+    public SpeedTestSession(List<String> questions, List<String> correctAnswers, List<Integer> questionPoints) {
+        this.questions = questions;
+        this.correctAnswers = correctAnswers;
+        this.questionPoints = questionPoints;
+    }
+
+    public List<String> getQuestions() { return questions; }
+
+    public List<String> getCorrectAnswers() { return correctAnswers; }
+
+    public List<Integer> getQuestionPoints() { return questionPoints; }
+
+    public int getCurrentIndex() { return currentIndex; }
+
+    public void setCurrentIndex(int currentIndex) { this.currentIndex = currentIndex; }
+
+    public int getTotalScore() { return totalScore; }
+
+    public void setTotalScore(int totalScore) { this.totalScore = totalScore; }
+
+    /**
+     * @return true если текущий вопрос еще не последний отвеченный
+     */
+    public boolean isActive() {
+        return currentIndex < questions.size();
+    }
+
+    /**
+     * Начинает отсчет времени на текущий вопрос
+     */
+    public synchronized void startQuestion(long deadline) {
+        this.deadline = deadline;
+        this.questionState = QuestionState.WAITING;
+    }
+
+    /**
+     * Принимает ответ на текущий вопрос, если он еще ждет ответа и срок не вышел
+     * (вышедший срок сразу отмечается - таймер колеса мог еще не сработать)
+     *
+     * @return true если ответ засчитывается
+     */
+    public synchronized boolean tryAnswer(long now) {
+        if (questionState != QuestionState.WAITING) {
+            return false;
+        }
+        if (now > deadline) {
+            questionState = QuestionState.TIMED_OUT;
+            return false;
+        }
+        questionState = QuestionState.ANSWERED;
+        return true;
+    }
+
+    /**
+     * Отмечает, что время на текущий вопрос вышло. Срабатывание старого таймера
+     * (вопрос уже сменился и срок еще не наступил) ничего не меняет
+     *
+     * @return true если вопрос только что перешел в состояние "время вышло"
+     */
+    public synchronized boolean tryExpire(long now) {
+        if (questionState != QuestionState.WAITING || now < deadline) {
+            return false;
+        }
+        questionState = QuestionState.TIMED_OUT;
+        return true;
+    }
+
+    public synchronized QuestionState getQuestionState() {
+        return questionState;
+    }
+}
@@ -1,15 +1,27 @@
 package org.example.SpeedTest;
 
 import org.example.OpenRouter.OpenRouterClient;
-import org.example.Tokens.TokenOpenRouter;
+import org.example.Parsing.TestTextParser;
+import org.example.TestBank.TestBank;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 
 /**
  * SpeedTestYesButton - класс, который хранит запрос (PROMPT) для теста на скорость,
- * подгружает API токен OpenRouter и отправляет запрос для генерации теста.
+ * и отправляет запрос для генерации теста через общий OpenRouterClient.
  */
 public class SpeedTestYesButton {
+    private final OpenRouterClient openRouterClient;
+
+    // банк готовых speed тестов, общий для всех ботов (создается и запускается лениво)
+    private static volatile TestBank sharedBank;
+    private static final int BANK_CAPACITY = 20;
+    private static final int BANK_LOW_WATERMARK = 3;
+    private static final Duration BANK_MAX_AGE = Duration.ofDays(7);
+    private static final Duration BANK_REFILL_PERIOD = Duration.ofMinutes(2);
 
     // Наш новый промпт на 12 вопросов
     private static final String PROMPT = """
@@ -36,27 +48,69 @@ public class SpeedTestYesButton {
             6. Расположи вопросы в случайном порядке сложности
             """;
 
+    public SpeedTestYesButton() {
+        this(OpenRouterClient.getShared());
+    }
+
+    public SpeedTestYesButton(OpenRouterClient openRouterClient) {
+        this.openRouterClient = openRouterClient;
+    }
+
     /**
      * Метод для генерации теста через OpenRouter
      */
     public String generateTest() {
         try {
-            // Загружаем API ключ через TokenOpenRouter
-            TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
-            tokenOpenRouter.load();
+            if (!openRouterClient.hasApiKey()) {
+                return "API ключ не найден";
+            }
 
-            String apiKey = tokenOpenRouter.get();
+            // Отправляем запрос через общий клиент OpenRouter (одинаковый промпт - из кеша ответов)
+            return openRouterClient.sendCachedRequest(PROMPT, SpeedTestYesButton::isParsable);
 
-            if (apiKey == null || apiKey.isEmpty()) {
+        } catch (IOException | InterruptedException e) {
+            return "Ошибка при генерации теста: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Генерирует новый тест мимо кеша ответов - для пополнения банка нужны разные тесты
+     */
+    public String generateFreshTest() {
+        try {
+            if (!openRouterClient.hasApiKey()) {
                 return "API ключ не найден";
             }
-
-            // Создаём клиент OpenRouter и отправляем запрос
-            OpenRouterClient openRouterClient = new OpenRouterClient(apiKey);
             return openRouterClient.sendRequest(PROMPT);
-
         } catch (IOException | InterruptedException e) {
             return "Ошибка при генерации теста: " + e.getMessage();
         }
     }
+
+    /**
+     * Возвращает общий банк speed тестов и запускает его фоновое пополнение
+     */
+    public static TestBank getSharedBank() {
+        TestBank bank = sharedBank;
+        if (bank == null) {
+            synchronized (SpeedTestYesButton.class) {
+                bank = sharedBank;
+                if (bank == null) {
+                    SpeedTestYesButton generator = new SpeedTestYesButton();
+                    bank = new TestBank("speed", generator::generateFreshTest, generator.openRouterClient::hasApiKey,
+                            12, BANK_CAPACITY, BANK_LOW_WATERMARK, BANK_MAX_AGE, Path.of("speed_tests.bin"));
+                    bank.start(BANK_REFILL_PERIOD);
+                    sharedBank = bank;
+                }
+            }
+        }
+        return bank;
+    }
+
+    /**
+     * В кеш попадает только тест, из которого разбирается хотя бы один вопрос
+     */
+    private static boolean isParsable(String test) {
+        return TestTextParser.parsePointsTest(test, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()) > 0;
+    }
 }
@@ -0,0 +1,207 @@
+package org.example.SpeedTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TimerWheel - хешированное колесо таймеров с ключом по chatId.
+ * Колесо - массив корзин, каждая корзина - двусвязный список таймеров, срок которых попадает в ее тик.
+ * Постановка и отмена таймера - O(1) (вставка в список и вырезание из него), у чата не больше одного таймера:
+ * новый таймер заменяет прежний. Колесо крутит один поток, он сам завершается, когда таймеров нет,
+ * и запускается заново при следующей постановке. Истекшие таймеры передаются обработчику вне блокировки.
+ */
+public class TimerWheel {
+
+    /**
+     * Получатель истекших таймеров (вызывается в потоке колеса)
+     */
+    public interface ExpiryHandler {
+        void onExpired(long key);
+    }
+
+    /**
+     * Таймер в корзине колеса
+     */
+    private static final class Timeout {
+        final long key;
+        final long deadlineTick;
+        Timeout prev;
+        Timeout next;
+        int bucket;
+
+        Timeout(long key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final String name;
+    private final long tickMillis;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final Map<Long, Timeout> timeouts = new HashMap<>();
+    private final ExpiryHandler handler;
+    private final long startTime = System.currentTimeMillis();
+
+    // последний обработанный тик (меняется только под блокировкой)
+    private long processedTick;
+    private Thread worker;
+    private long expiredCount;
+
+    /**
+     * @param tick точность срабатывания
+     * @param wheelSize число корзин (округляется вверх до степени двойки)
+     */
+    public TimerWheel(String name, Duration tick, int wheelSize, ExpiryHandler handler) {
+        if (tick.toMillis() <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Тик и размер колеса должны быть положительными");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickMillis = tick.toMillis();
+        this.mask = size - 1;
+        this.buckets = new Timeout[size];
+        this.handler = handler;
+    }
+
+    /**
+     * Ставит таймер для ключа, прежний таймер этого ключа отменяется
+     */
+    public synchronized void schedule(long key, Duration delay) {
+        unlink(timeouts.remove(key));
+
+        long currentTick = currentTick();
+        if (worker == null) {
+            // колесо стояло пустым - начинаем отсчет с текущего момента
+            processedTick = currentTick;
+        }
+        // срабатывает не раньше срока: тик округляется вверх
+        long deadline = System.currentTimeMillis() + Math.max(0, delay.toMillis()) - startTime;
+        long deadlineTick = Math.max((deadline + tickMillis - 1) / tickMillis, processedTick + 1);
+
+        Timeout timeout = new Timeout(key, deadlineTick);
+        timeout.bucket = (int) (deadlineTick & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        timeouts.put(key, timeout);
+
+        if (worker == null) {
+            worker = new Thread(this::run, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Отменяет таймер ключа
+     *
+     * @return true если таймер был
+     */
+    public synchronized boolean cancel(long key) {
+        Timeout timeout = timeouts.remove(key);
+        unlink(timeout);
+        return timeout != null;
+    }
+
+    /** @return true если у ключа есть таймер */
+    public synchronized boolean isScheduled(long key) {
+        return timeouts.containsKey(key);
+    }
+
+    /** @return количество поставленных таймеров */
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    /** @return сколько таймеров истекло за все время */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout == null) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private long currentTick() {
+        return (System.currentTimeMillis() - startTime) / tickMillis;
+    }
+
+    /**
+     * Цикл потока колеса: ждет следующий тик, собирает истекшие таймеры и передает их обработчику
+     */
+    private void run() {
+        List<Long> expired = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                while (expired.isEmpty()) {
+                    if (timeouts.isEmpty()) {
+                        worker = null;
+                        return;
+                    }
+                    long currentTick = currentTick();
+                    while (processedTick < currentTick) {
+                        processedTick++;
+                        expireBucket(processedTick, expired);
+                    }
+                    if (expired.isEmpty()) {
+                        long sleep = startTime + (processedTick + 1) * tickMillis - System.currentTimeMillis();
+                        try {
+                            wait(Math.max(1, sleep));
+                        } catch (InterruptedException e) {
+                            worker = null;
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                expiredCount += expired.size();
+            }
+
+            for (long key : expired) {
+                try {
+                    handler.onExpired(key);
+                } catch (RuntimeException e) {
+                    System.err.println("[Timer Wheel] Ошибка обработки таймера " + key + ": " + e.getMessage());
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Забирает из корзины тика таймеры, срок которых наступил (остальные - на следующих оборотах колеса)
+     */
+    private void expireBucket(long tick, List<Long> expired) {
+        Timeout timeout = buckets[(int) (tick & mask)];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineTick <= tick) {
+                timeouts.remove(timeout.key);
+                unlink(timeout);
+                expired.add(timeout.key);
+            }
+            timeout = next;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.StartTest;
 
+import org.example.TestBank.BankedTest;
+import org.example.TestBank.TestBank;
 
 /**StartBot.java - класс который обрабатывает команнду /start,
  * а именно: высылает создает приветсвенное письмо и кнопки под ним,
@@ -8,9 +10,22 @@ package org.example.StartTest;
 
 public class StartCommand {
     private final TestHandler testHandler;
+    private final StartYesButton testGeneration;
+    // готовые тесты (null - всегда генерировать)
+    private final TestBank testBank;
 
     public StartCommand(TestHandler testHandler) {
+        this(testHandler, new StartYesButton(), StartYesButton.getSharedBank());
+    }
+
+    public StartCommand(TestHandler testHandler, StartYesButton testGeneration) {
+        this(testHandler, testGeneration, null);
+    }
+
+    public StartCommand(TestHandler testHandler, StartYesButton testGeneration, TestBank testBank) {
         this.testHandler = testHandler;
+        this.testGeneration = testGeneration;
+        this.testBank = testBank;
     }
 
     private static final String START_MESSAGE =
@@ -40,11 +55,20 @@ public class StartCommand {
     public String handleButtonClick(String callbackData, long chatId){
         switch (callbackData){
             case "yes_button": {
-                //ВНИАМНИЕ: тут класс создания и генерирования ответов
+                // готовый тест из банка - без ожидания ии
+                BankedTest banked = testBank != null ? testBank.take() : null;
+                if (banked != null) {
+                    return testHandler.startTest(chatId, banked.getQuestions(), banked.getAnswers(), banked.getPoints());
+                }
+
+                // банк пуст - тест по мере генерации: первый вопрос, как только ии его допишет
+                String firstQuestion = testHandler.startStreamingTest(chatId, testGeneration::streamTest);
+                if (firstQuestion != null) {
+                    return firstQuestion;
+                }
 
-                //создаем экземпляр класса StartYesButton
-                StartYesButton testGeneration = new StartYesButton();
-                // генерация теста и возвращение его
+                //ВНИАМНИЕ: тут класс создания и генерирования ответов
+                // поток не удался - генерация теста целиком и возвращение его
                 String test = testGeneration.generateTest();
 
                 return testHandler.generateTest(chatId, test);
@@ -1,17 +1,32 @@
 package org.example.StartTest;
 
+import org.example.OpenRouter.LlmException;
 import org.example.OpenRouter.OpenRouterClient;
-import org.example.Tokens.TokenOpenRouter;
+import org.example.Parsing.TestTextParser;
+import org.example.TestBank.TestBank;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /** StartYesButton - класс, который хранит запрос (PROMT),
- * подгружает api token openrouter,
- * вызывает метод отправки нашего запроса непосредственно ии
+ * вызывает метод отправки нашего запроса непосредственно ии через общий OpenRouterClient
  */
 
 
 public class StartYesButton {
+    private final OpenRouterClient openRouterClient;
+
+    // банк готовых вводных тестов, общий для всех ботов (создается и запускается лениво)
+    private static volatile TestBank sharedBank;
+    private static final int BANK_CAPACITY = 20;
+    private static final int BANK_LOW_WATERMARK = 3;
+    private static final Duration BANK_MAX_AGE = Duration.ofDays(7);
+    private static final Duration BANK_REFILL_PERIOD = Duration.ofMinutes(2);
+
     //наш запрос
     private static final String PROMPT= "Сгенерируй тест на 9 вопросов на проверку уровня английского языка:\n" +
             "- 3 вопроса уровня A1-A2 (по 1 баллу каждый)\n" +
@@ -35,29 +50,83 @@ public class StartYesButton {
             "5. Вопросы должны быть разнообразными: грамматика, лексика, понимание\n" +
             "6. Расположи вопросы в случайном порядке сложности";
 
+    public StartYesButton() {
+        this(OpenRouterClient.getShared());
+    }
+
+    public StartYesButton(OpenRouterClient openRouterClient) {
+        this.openRouterClient = openRouterClient;
+    }
+
     /**
      * Метод для генерации теста и сохранение в txt файл
      */
     public String generateTest() {
         try {
-            // загружаем API ключ через Token_Openrouter, ОЧЕНЬ ВАЖНО: мы работаем не напрямую с гпт
-            //Опен Роутер - это "лпатформа-посредник"
-            TokenOpenRouter tokenOpenRouter = new TokenOpenRouter();
-            tokenOpenRouter.load();
-
-            String apiKey = tokenOpenRouter.get();
-
+            // ОЧЕНЬ ВАЖНО: мы работаем не напрямую с гпт, Опен Роутер - это "лпатформа-посредник"
             //оносительно бесполезная вещь
-            if (apiKey == null || apiKey.isEmpty()) {
+            if (!openRouterClient.hasApiKey()) {
                 return "API ключ не найден";
             }
 
-            //создаем экземпляр класса OpenRouterClient и закидываем тут наш токен опенроутера
-            OpenRouterClient openRouterClient = new OpenRouterClient(apiKey);
-            return openRouterClient.sendRequest(PROMPT);
+            // промпт одинаковый для всех - ответ из кеша или общий запрос с другими пользователями
+            return openRouterClient.sendCachedRequest(PROMPT, StartYesButton::isParsable);
 
         } catch (IOException | InterruptedException e) {
             return "ошибка при генерации теста: " + e.getMessage();
         }
     }
+
+    /**
+     * Генерирует тест потоком: куски текста отдаются onDelta по мере генерации
+     *
+     * @return future со всем текстом теста (ошибка - если генерация не удалась)
+     */
+    public CompletableFuture<String> streamTest(Consumer<String> onDelta) {
+        if (!openRouterClient.hasApiKey()) {
+            return CompletableFuture.failedFuture(new LlmException(LlmException.Kind.AUTH, "API ключ не найден"));
+        }
+        return openRouterClient.streamRequestAsync(PROMPT, onDelta);
+    }
+
+    /**
+     * Генерирует новый тест мимо кеша ответов - для пополнения банка нужны разные тесты
+     */
+    public String generateFreshTest() {
+        try {
+            if (!openRouterClient.hasApiKey()) {
+                return "API ключ не найден";
+            }
+            return openRouterClient.sendRequest(PROMPT);
+        } catch (IOException | InterruptedException e) {
+            return "ошибка при генерации теста: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Возвращает общий банк вводных тестов и запускает его фоновое пополнение
+     */
+    public static TestBank getSharedBank() {
+        TestBank bank = sharedBank;
+        if (bank == null) {
+            synchronized (StartYesButton.class) {
+                bank = sharedBank;
+                if (bank == null) {
+                    StartYesButton generator = new StartYesButton();
+                    bank = new TestBank("placement", generator::generateFreshTest, generator.openRouterClient::hasApiKey,
+                            9, BANK_CAPACITY, BANK_LOW_WATERMARK, BANK_MAX_AGE, Path.of("placement_tests.bin"));
+                    bank.start(BANK_REFILL_PERIOD);
+                    sharedBank = bank;
+                }
+            }
+        }
+        return bank;
+    }
+
+    /**
+     * В кеш попадает только тест, из которого разбирается хотя бы один вопрос
+     */
+    private static boolean isParsable(String test) {
+        return TestTextParser.parsePointsTest(test, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()) > 0;
+    }
 }
@@ -1,9 +1,14 @@
 package org.example.StartTest;
 import org.example.Data.UserData;
+import org.example.Parsing.TestTextParser;
+import org.example.Session.SessionStore;
+import org.example.Session.StreamingTestStart;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Обработка логики теста:
@@ -14,11 +19,25 @@ import java.util.regex.Pattern;
 
 public class TestHandler {
 
-    // Храним данные для каждого пользователя
-    private final Map<Long, UserData> users = new HashMap<>();
+    // Храним данные для каждого пользователя (в общем хранилище сессий)
+    private final SessionStore.Slot<UserData> users;
 
     private static final String ANSWER_ERROR = "Не удалось распознать вопросы в тесте.";
     private static final String AGAIN_TEST = "Сначала начните тест командой /start.";
+    private static final String STREAM_FAILED = "❌ Генерация теста оборвалась, результат не засчитан.\n\n" +
+            "Пройдите тест заново командой /start_test.";
+    private static final String NEXT_QUESTION_GENERATING = "⏳ Следующий вопрос генерируется…";
+
+    // получатель вопросов, которых пользователь ждал, пока тест генерировался
+    private volatile BiConsumer<Long, String> questionListener;
+
+    public TestHandler() {
+        this(new SessionStore());
+    }
+
+    public TestHandler(SessionStore sessionStore) {
+        this.users = sessionStore.slot(SessionStore.Kind.PLACEMENT_TEST, UserData.class, UserData.CODEC);
+    }
 
     /**
      * Разбирает текст теста, извлекает вопросы, варианты ответов и правильные ответы.
@@ -28,52 +47,29 @@ public class TestHandler {
      */
 
     public String generateTest(long chatId, String test) {
-        Pattern pattern = Pattern.compile(
-                "(\\d+).?\\s*\\((\\d+)\\s*[points]*\\)\\s*\\n" +
-                        "(.+?)\\n" +
-                        "(A\\..+?)\\n" +
-                        "(B\\..+?)\\n" +
-                        "(C\\..+?)\\n" +
-                        "(D\\..+?)\\n" +
-                        "Answer:\\s*?([A-D])",
-                Pattern.DOTALL
-        );
-
-        Matcher matcher = pattern.matcher(test);
         List<String> questions = new ArrayList<>();
         List<String> answers = new ArrayList<>();
         List<Integer> pointsList = new ArrayList<>();
 
-        // Обрабатываем каждый вопрос
-        while (matcher.find()) {
-            String points = matcher.group(2);
-            String question = matcher.group(3).trim();
-            String answerA = matcher.group(4).trim();
-            String answerB = matcher.group(5).trim();
-            String answerC = matcher.group(6).trim();
-            String answerD = matcher.group(7).trim();
-            String correctAnswer = matcher.group(8).trim();
-
-            // Сохраняем только текст вопроса без номера и баллов
-            String questionText = question + "\n" +
-                    answerA + "\n" +
-                    answerB + "\n" +
-                    answerC + "\n" +
-                    answerD;
-
-            questions.add(questionText);
-            answers.add(correctAnswer);
-            pointsList.add(Integer.parseInt(points));
-        }
+        // разбор общим однопроходным парсером (текст вопроса - без номера и баллов)
+        TestTextParser.parsePointsTest(test, questions, answers, pointsList);
+
+        return startTest(chatId, questions, answers, pointsList);
+    }
 
+    /**
+     * Запускает уже разобранный тест (например, готовый тест из банка).
+     * Возвращает первый вопрос для отображения.
+     */
+    public String startTest(long chatId, List<String> questions, List<String> answers, List<Integer> pointsList) {
         if (questions.isEmpty()) {
             return ANSWER_ERROR;
         }
 
         UserData userData = new UserData();
-        userData.setCurrentTest(questions);
-        userData.setCorrectAnswers(answers);
-        userData.setQuestionPoints(pointsList);
+        userData.setCurrentTest(new ArrayList<>(questions));
+        userData.setCorrectAnswers(new ArrayList<>(answers));
+        userData.setQuestionPoints(new ArrayList<>(pointsList));
         userData.setCurrentIndex(0);
         userData.setTotalScore(0);
 
@@ -82,6 +78,65 @@ public class TestHandler {
         return questions.getFirst();
     }
 
+    /**
+     * Включает отложенную доставку вопросов: если пользователь ответил быстрее генерации,
+     * следующий вопрос (или итог теста) отправляется через listener, как только готов.
+     * Без listener пользователь получает его следующим нажатием кнопки
+     */
+    public void setQuestionListener(BiConsumer<Long, String> questionListener) {
+        this.questionListener = questionListener;
+    }
+
+    /**
+     * Запускает тест по мере генерации: сессия начинается, как только разобран первый вопрос,
+     * остальные вопросы дописываются в нее, пока идет ответ ии.
+     *
+     * @param generation запуск потоковой генерации: получает куски текста, future завершается концом ответа
+     * @return первый вопрос или null, если генерация не дала ни одного вопроса (тогда нужен обычный запуск)
+     */
+    public String startStreamingTest(long chatId, Function<Consumer<String>, CompletableFuture<String>> generation) {
+        UserData userData = new UserData();
+        userData.startStreaming();
+        StreamingTestStart start = new StreamingTestStart("[TestHandler]", chatId);
+
+        TestTextParser.PointsTestStream parser = new TestTextParser.PointsTestStream((question, answer, points) -> {
+            userData.addQuestion(question, answer, points);
+            start.questionParsed(() -> users.put(chatId, userData), () -> question);
+            deliverWaiting(chatId, userData);
+        });
+
+        return start.run(generation, parser, failed -> {
+            if (failed) {
+                userData.failStreaming();
+            } else {
+                userData.finishStreaming();
+            }
+            deliverWaiting(chatId, userData);
+        });
+    }
+
+    /**
+     * Отправляет пользователю, который ждет следующий вопрос, то, что теперь готово: вопрос или итог теста
+     */
+    private void deliverWaiting(long chatId, UserData userData) {
+        BiConsumer<Long, String> listener = questionListener;
+        if (listener == null) {
+            return;
+        }
+        String next;
+        synchronized (userData) {
+            if (!userData.isWaitingForQuestion() || users.get(chatId) != userData) {
+                return;
+            }
+            next = nextStep(userData, chatId);
+            if (next == null) {
+                return;
+            }
+            userData.setWaitingForQuestion(false);
+        }
+        listener.accept(chatId, next);
+    }
+
     /**
      * Обрабатывает выбор ответа пользователя на вопрос теста (кнопки A/B/C/D).
      * Проверяет правильность ответа, начисляет баллы и возвращает следующий вопрос.
@@ -95,9 +150,26 @@ public class TestHandler {
             return AGAIN_TEST;
         }
 
-        String chosen = callbackData.substring(0, 1);
+        // вопросы генерируемого теста дописываются из другого потока
+        synchronized (userData) {
+            return handleAnswer(userData, callbackData, chatId);
+        }
+    }
 
+    private String handleAnswer(UserData userData, String callbackData, long chatId) {
         int index = userData.getCurrentIndex();
+
+        // нажатие, пока следующий вопрос генерируется: ответа не было, отдаем вопрос, если он уже готов
+        if (index >= userData.getCurrentTest().size()) {
+            String next = nextStep(userData, chatId);
+            if (next == null) {
+                return NEXT_QUESTION_GENERATING;
+            }
+            userData.setWaitingForQuestion(false);
+            return next;
+        }
+
+        String chosen = callbackData.substring(0, 1);
         List<String> correctAnswers = userData.getCorrectAnswers();
         List<Integer> pointsList = userData.getQuestionPoints();
 
@@ -107,32 +179,56 @@ public class TestHandler {
 
         userData.setCurrentIndex(index + 1);
 
-        if (userData.getCurrentIndex() >= userData.getCurrentTest().size()) {
-
-            int totalPoints = pointsList.stream().mapToInt(Integer::intValue).sum();
-            int earnedPoints = userData.getTotalScore();
+        String next = nextStep(userData, chatId);
+        if (next == null) {
+            // ответ быстрее генерации: вопрос придет через listener, поток обработки не ждет
+            userData.setWaitingForQuestion(true);
+            return NEXT_QUESTION_GENERATING;
+        }
+        return next;
+    }
 
-            users.remove(chatId); // очищаем полностью
+    /**
+     * Что показать после ответа: текущий вопрос, итог теста или сообщение об оборванной генерации.
+     * Вызывается под блокировкой userData
+     *
+     * @return null если текущий вопрос еще генерируется
+     */
+    private String nextStep(UserData userData, long chatId) {
+        if (userData.getCurrentIndex() < userData.getCurrentTest().size()) {
+            return userData.getCurrentTest().get(userData.getCurrentIndex());
+        }
+        if (userData.isStreaming()) {
+            return null;
+        }
 
-            String languageLevel;
-            if (earnedPoints <= 6) {
-                languageLevel = "A1-A2 (Начальный)";
-            } else if (earnedPoints <= 12) {
-                languageLevel = "B1-B2 (Средний)";
-            } else {
-                languageLevel = "C1-C2 (Продвинутый)";
-            }
+        if (userData.isStreamFailed()) {
+            // оборванный тест не оцениваем: баллы за часть вопросов дали бы неверный уровень
+            users.remove(chatId, userData);
+            return STREAM_FAILED;
+        }
 
-            return "🎉 *Тест завершён!* 🎉\n\n" +
+        int totalPoints = userData.getQuestionPoints().stream().mapToInt(Integer::intValue).sum();
+        int earnedPoints = userData.getTotalScore();
 
-                    "📊 **Результаты тестирования:**\n" +
-                    "🏆 Набрано баллов: " + earnedPoints + " из " + totalPoints + " возможных\n" +
-                    "📈 Уровень владения языком: " + languageLevel + "\n\n" +
+        users.remove(chatId, userData); // очищаем полностью
 
-                    "✨ **Отличная работа!** ✨\n\n";
+        String languageLevel;
+        if (earnedPoints <= 6) {
+            languageLevel = "A1-A2 (Начальный)";
+        } else if (earnedPoints <= 12) {
+            languageLevel = "B1-B2 (Средний)";
+        } else {
+            languageLevel = "C1-C2 (Продвинутый)";
         }
 
-        return userData.getCurrentTest().get(userData.getCurrentIndex());
+        return "🎉 *Тест завершён!* 🎉\n\n" +
+
+                "📊 **Результаты тестирования:**\n" +
+                "🏆 Набрано баллов: " + earnedPoints + " из " + totalPoints + " возможных\n" +
+                "📈 Уровень владения языком: " + languageLevel + "\n\n" +
+
+                "✨ **Отличная работа!** ✨\n\n";
     }
 
     /**
@@ -141,8 +237,14 @@ public class TestHandler {
 
     public boolean isTestActive(long chatId) {
         UserData userData = users.get(chatId);
-        return userData != null &&
-                userData.getCurrentIndex() < userData.getCurrentTest().size();
+        if (userData == null) {
+            return false;
+        }
+        synchronized (userData) {
+            // пока тест генерируется или не сообщено об оборванной генерации, сессия активна
+            return userData.getCurrentIndex() < userData.getCurrentTest().size()
+                    || userData.isStreaming() || userData.isStreamFailed();
+        }
     }
 
 }
@@ -0,0 +1,56 @@
+package org.example.TestBank;
+
+import org.example.Session.SessionCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * BankedTest - заранее сгенерированный и разобранный тест из банка:
+ * тексты вопросов, правильные ответы и баллы за каждый вопрос
+ */
+public class BankedTest {
+    private final List<String> questions;
+    private final List<String> answers;
+    private final List<Integer> points;
+    private final long createdAt;
+
+    public BankedTest(List<String> questions, List<String> answers, List<Integer> points, long createdAt) {
+        this.questions = List.copyOf(questions);
+        this.answers = List.copyOf(answers);
+        this.points = List.copyOf(points);
+        this.createdAt = createdAt;
+    }
+
+    public List<String> getQuestions() { return questions; }
+
+    public List<String> getAnswers() { return answers; }
+
+    public List<Integer> getPoints() { return points; }
+
+    /** @return время генерации (мс) */
+    public long getCreatedAt() { return createdAt; }
+
+    /**
+     * Компактная запись: время, вопросы, ответы, баллы
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(createdAt);
+        SessionCodec.writeStrings(out, questions);
+        SessionCodec.writeStrings(out, answers);
+        SessionCodec.writeInts(out, points);
+    }
+
+    static BankedTest read(DataInput in) throws IOException {
+        long createdAt = in.readLong();
+        List<String> questions = SessionCodec.readStrings(in);
+        List<String> answers = SessionCodec.readStrings(in);
+        List<Integer> points = SessionCodec.readInts(in);
+        if (questions.size() != answers.size() || questions.size() != points.size()) {
+            throw new IOException("Размеры списков теста не совпадают");
+        }
+        return new BankedTest(questions, answers, points, createdAt);
+    }
+}
@@ -0,0 +1,440 @@
+package org.example.TestBank;
+
+import org.example.Parsing.TestTextParser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * TestBank - банк заранее сгенерированных и разобранных тестов (вводный тест, speed тест).
+ * Запуск теста берет готовый тест из банка без запроса к ии; ии вызывается только при пустом банке.
+ * Фоновое пополнение: до нижней границы - всегда, до полной емкости - только в непиковое время
+ * (ночные часы или когда тесты давно не брали). Тесты выдаются от старых к новым и устаревают
+ * через maxAge, поэтому содержимое банка обновляется.
+ * Банк хранится на диске компактным двоичным файлом (заголовок, тесты, CRC32) и переживает перезапуск.
+ */
+public class TestBank {
+    private static final int MAGIC = 0x47545442; // "GTTB"
+    private static final int VERSION = 1;
+
+    // непиковое время по часам банка
+    private static final int OFF_PEAK_FROM_HOUR = 1;
+    private static final int OFF_PEAK_TO_HOUR = 7;
+    // столько без выдач - тоже непиковое время
+    private static final Duration IDLE_BEFORE_OFF_PEAK = Duration.ofMinutes(15);
+    private static final Duration RATE_WINDOW = Duration.ofHours(1);
+
+    private final String name;
+    private final Supplier<String> generator;
+    private final BooleanSupplier canGenerate;
+    private final int minQuestions;
+    private final int capacity;
+    private final int lowWatermark;
+    private final Duration maxAge;
+    private final Path file;
+    private final Clock clock;
+
+    // от старых к новым; все обращения - под блокировкой банка
+    private final Deque<BankedTest> tests = new ArrayDeque<>();
+    // время выдач за последний час - для скорости расхода
+    private final Deque<Long> recentTakes = new ArrayDeque<>();
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private ScheduledExecutorService refillScheduler;
+    // отсчет простоя - с запуска: сразу после старта время не считается непиковым
+    private volatile long lastTakeAt;
+
+    // метрики
+    private final AtomicLong taken = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * @param name         имя банка для логов и потока
+     * @param generator    генерация текста теста через ии
+     * @param minQuestions сколько вопросов должно разобраться, чтобы тест попал в банк
+     * @param capacity     емкость банка
+     * @param lowWatermark до скольки тестов банк пополняется и в часы пик
+     * @param maxAge       через сколько тест устаревает
+     * @param file         файл банка (null - только в памяти)
+     */
+    public TestBank(String name, Supplier<String> generator, int minQuestions, int capacity, int lowWatermark,
+                    Duration maxAge, Path file) {
+        this(name, generator, () -> true, minQuestions, capacity, lowWatermark, maxAge, file);
+    }
+
+    /**
+     * @param canGenerate доступна ли генерация сейчас (например, есть ли API ключ);
+     *                    если нет - пополнение пропускается, ии не вызывается
+     */
+    public TestBank(String name, Supplier<String> generator, BooleanSupplier canGenerate, int minQuestions,
+                    int capacity, int lowWatermark, Duration maxAge, Path file) {
+        this(name, generator, canGenerate, minQuestions, capacity, lowWatermark, maxAge, file, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock часы банка: время выдач, возраст тестов и непиковые часы (в его часовом поясе)
+     */
+    public TestBank(String name, Supplier<String> generator, BooleanSupplier canGenerate, int minQuestions,
+                    int capacity, int lowWatermark, Duration maxAge, Path file, Clock clock) {
+        this.name = name;
+        this.generator = generator;
+        this.canGenerate = canGenerate;
+        this.minQuestions = minQuestions;
+        this.capacity = capacity;
+        this.lowWatermark = Math.min(lowWatermark, capacity);
+        this.maxAge = maxAge;
+        this.file = file;
+        this.clock = clock;
+        this.lastTakeAt = clock.millis();
+    }
+
+    /**
+     * Загружает банк с диска и запускает фоновое пополнение
+     *
+     * @param period период между пополнениями (одно пополнение - один запрос к ии)
+     */
+    public synchronized void start(Duration period) {
+        if (refillScheduler != null) {
+            return;
+        }
+        load();
+        refillScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "test-bank-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        refillScheduler.scheduleWithFixedDelay(this::refill, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+        System.out.println("[TestBank] " + name + ": фоновое пополнение запущено, " + getStatistics());
+    }
+
+    /**
+     * Останавливает фоновое пополнение и сохраняет банк
+     */
+    public synchronized void stop() {
+        if (refillScheduler != null) {
+            refillScheduler.shutdownNow();
+            refillScheduler = null;
+        }
+        saveIfDirty();
+    }
+
+    /**
+     * Берет самый старый актуальный тест
+     *
+     * @return тест или null если банк пуст (промах)
+     */
+    public BankedTest take() {
+        long now = clock.millis();
+        BankedTest test;
+        synchronized (this) {
+            dropExpired(now);
+            test = tests.pollFirst();
+            if (test != null) {
+                recentTakes.addLast(now);
+                pruneTakes(now);
+            }
+        }
+        lastTakeAt = now;
+        if (test == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        taken.incrementAndGet();
+        dirty.set(true);
+        // запись на диск - в потоке банка, не в потоке пользователя
+        ScheduledExecutorService scheduler = refillScheduler;
+        if (scheduler != null) {
+            try {
+                scheduler.execute(this::saveIfDirty);
+            } catch (RuntimeException e) {
+                // банк останавливается - сохранит stop()
+            }
+        }
+        return test;
+    }
+
+    /**
+     * Разбирает и проверяет тест; годный кладет в банк
+     *
+     * @return true если тест добавлен
+     */
+    public boolean offer(String testText) {
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+        if (TestTextParser.parsePointsTest(testText, questions, answers, points) < minQuestions) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        synchronized (this) {
+            if (tests.size() >= capacity) {
+                return false;
+            }
+            tests.addLast(new BankedTest(questions, answers, points, clock.millis()));
+        }
+        generated.incrementAndGet();
+        dirty.set(true);
+        return true;
+    }
+
+    /**
+     * Одно пополнение: убирает устаревшие тесты и, если нужно по времени суток и запасу,
+     * генерирует один тест
+     *
+     * @return true если тест добавлен
+     */
+    public boolean refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long now = clock.millis();
+            int size;
+            synchronized (this) {
+                dropExpired(now);
+                size = tests.size();
+            }
+            int target = isOffPeak(now) ? capacity : lowWatermark;
+            if (size >= target || !canGenerate.getAsBoolean()) {
+                // без ключа ответ ии - сообщение об ошибке, отклоненным тестом его не считаем
+                return false;
+            }
+
+            boolean added = offer(generator.get());
+            if (added) {
+                System.out.println("[TestBank] " + name + ": +1 тест. " + getStatistics());
+            } else {
+                System.err.println("[TestBank] " + name + ": сгенерированный тест не прошел проверку");
+            }
+            return added;
+        } catch (Exception e) {
+            System.err.println("[TestBank] " + name + ": ошибка пополнения: " + e.getMessage());
+            return false;
+        } finally {
+            saveIfDirty();
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * Непиковое время: ночные часы или давно никто не брал тест
+     */
+    boolean isOffPeak(long now) {
+        int hour = Instant.ofEpochMilli(now).atZone(clock.getZone()).getHour();
+        if (hour >= OFF_PEAK_FROM_HOUR && hour < OFF_PEAK_TO_HOUR) {
+            return true;
+        }
+        return now - lastTakeAt >= IDLE_BEFORE_OFF_PEAK.toMillis();
+    }
+
+    private void dropExpired(long now) {
+        long cutoff = now - maxAge.toMillis();
+        while (!tests.isEmpty() && tests.peekFirst().getCreatedAt() < cutoff) {
+            tests.pollFirst();
+            expired.incrementAndGet();
+            dirty.set(true);
+        }
+    }
+
+    private void pruneTakes(long now) {
+        long cutoff = now - RATE_WINDOW.toMillis();
+        while (!recentTakes.isEmpty() && recentTakes.peekFirst() < cutoff) {
+            recentTakes.pollFirst();
+        }
+    }
+
+    // Диск
+
+    /**
+     * Сохраняет банк, если он менялся с прошлого сохранения
+     */
+    void saveIfDirty() {
+        if (file == null || !dirty.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            dirty.set(true);
+            System.err.println("[TestBank] " + name + ": не удалось сохранить " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает банк во временный файл и атомарно заменяет прежний
+     */
+    public synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileOut, crc)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tests.size());
+            for (BankedTest test : tests) {
+                test.write(out);
+            }
+            out.flush();
+            // CRC считается по всему, что записано до него
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Загружает банк с диска; поврежденный или чужой файл пропускается
+     *
+     * @return сколько тестов загружено
+     */
+    public synchronized int load() {
+        if (file == null || !Files.exists(file)) {
+            return 0;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            System.err.println("[TestBank] " + name + ": не удалось прочитать " + file + ": " + e.getMessage());
+            return 0;
+        }
+        if (data.length < Long.BYTES || !checksumMatches(data)) {
+            System.err.println("[TestBank] " + name + ": файл " + file + " поврежден, пропускаем");
+            return 0;
+        }
+
+        List<BankedTest> loaded = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Long.BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("[TestBank] " + name + ": неизвестный формат " + file + ", пропускаем");
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                loaded.add(BankedTest.read(in));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[TestBank] " + name + ": ошибка чтения " + file + ": " + e.getMessage());
+            return 0;
+        }
+
+        tests.clear();
+        for (BankedTest test : loaded) {
+            if (tests.size() < capacity) {
+                tests.addLast(test);
+            }
+        }
+        dropExpired(clock.millis());
+        System.out.println("[TestBank] " + name + ": загружено тестов: " + tests.size());
+        return tests.size();
+    }
+
+    private static boolean checksumMatches(byte[] data) {
+        int bodyLength = data.length - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, bodyLength);
+        long stored = 0;
+        for (int i = bodyLength; i < data.length; i++) {
+            stored = (stored << 8) | (data[i] & 0xFF);
+        }
+        return stored == crc.getValue();
+    }
+
+    // Метрики
+
+    /** @return текущее количество тестов в банке */
+    public synchronized int getSize() { return tests.size(); }
+
+    /** @return емкость банка */
+    public int getCapacity() { return capacity; }
+
+    /** @return возраст самого старого теста (мс) или 0 если банк пуст */
+    public synchronized long getOldestAgeMillis() {
+        BankedTest oldest = tests.peekFirst();
+        return oldest == null ? 0 : clock.millis() - oldest.getCreatedAt();
+    }
+
+    /** @return средний возраст тестов (мс) или 0 если банк пуст */
+    public synchronized long getAverageAgeMillis() {
+        if (tests.isEmpty()) {
+            return 0;
+        }
+        long now = clock.millis();
+        long total = 0;
+        for (BankedTest test : tests) {
+            total += now - test.getCreatedAt();
+        }
+        return total / tests.size();
+    }
+
+    /** @return сколько тестов взято за последний час */
+    public synchronized int getConsumptionPerHour() {
+        pruneTakes(clock.millis());
+        return recentTakes.size();
+    }
+
+    /** @return количество выдач из банка */
+    public long getTaken() { return taken.get(); }
+
+    /** @return количество обращений к пустому банку */
+    public long getMisses() { return misses.get(); }
+
+    /** @return сколько тестов добавлено */
+    public long getGenerated() { return generated.get(); }
+
+    /** @return сколько ответов ии не прошли проверку */
+    public long getRejected() { return rejected.get(); }
+
+    /** @return сколько тестов удалено по возрасту */
+    public long getExpired() { return expired.get(); }
+
+    /**
+     * @return строка со статистикой для логов
+     */
+    public String getStatistics() {
+        return "в банке=" + getSize() + "/" + capacity +
+                ", старейший=" + Duration.ofMillis(getOldestAgeMillis()).toMinutes() + " мин" +
+                ", средний возраст=" + Duration.ofMillis(getAverageAgeMillis()).toMinutes() + " мин" +
+                ", расход=" + getConsumptionPerHour() + "/ч" +
+                ", выдано=" + taken.get() +
+                ", промахов=" + misses.get() +
+                ", отклонено=" + rejected.get();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.TimePlaner;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DeliveryPlanner - решает, кому из пользователей рассылка положена в текущий тик.
+ * Время делится на периоды пользователя, и у каждого пользователя свой сдвиг (фаза) внутри периода,
+ * вычисленный из хеша chatId и типа рассылки. Поэтому отправки равномерно распределены по периоду,
+ * а не приходятся всем пользователям на один момент. Вне окна отправки пользователь ничего не получает;
+ * пропущенная ночью отправка приходит после открытия окна, тоже со сдвигом.
+ */
+public class DeliveryPlanner {
+    private final String distributionType;
+    // последний период, в котором пользователь получил (или пропустил при первом появлении) рассылку
+    private final ConcurrentHashMap<Long, Long> lastSlots = new ConcurrentHashMap<>();
+
+    public DeliveryPlanner(String distributionType) {
+        this.distributionType = distributionType;
+    }
+
+    /**
+     * Проверяет, положена ли пользователю рассылка сейчас, и если да - отмечает период как использованный
+     *
+     * @param chatId чат пользователя
+     * @param preferences настройки пользователя
+     * @param period частота рассылки для пользователя
+     * @param now текущее время (мс)
+     * @return true если рассылку нужно отправить в этот тик
+     */
+    public boolean claim(long chatId, UserPreferences preferences, Duration period, long now) {
+        if (!preferences.isWithinWindow(now)) {
+            return false;
+        }
+
+        long periodMs = Math.max(1, period.toMillis());
+        long phase = phase(chatId, periodMs);
+        long slot = Math.floorDiv(now - phase, periodMs);
+
+        // отправка периода, начавшегося до открытия окна, сдвигается внутри окна
+        long slotStart = slot * periodMs + phase;
+        long windowStart = preferences.currentWindowStart(now);
+        if (slotStart < windowStart) {
+            long spread = Math.min(periodMs, preferences.getWindowLength().toMillis());
+            if (now < windowStart + Math.floorMod(phase, spread)) {
+                return false;
+            }
+        }
+
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        lastSlots.compute(chatId, (id, last) -> {
+            // новый пользователь получит рассылку в начале своего следующего периода
+            if (last == null) {
+                return slot;
+            }
+            if (last < slot) {
+                claimed.set(true);
+                return slot;
+            }
+            return last;
+        });
+        return claimed.get();
+    }
+
+    /**
+     * Забывает пользователя (например, он отвязал чат)
+     */
+    public void forget(long chatId) {
+        lastSlots.remove(chatId);
+    }
+
+    /**
+     * Стабильный сдвиг пользователя внутри периода
+     */
+    long phase(long chatId, long periodMs) {
+        long h = chatId * 0x9E3779B97F4A7C15L + distributionType.hashCode();
+        // перемешивание битов (финализатор SplitMix64)
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h = h ^ (h >>> 31);
+        return Math.floorMod(h, periodMs);
+    }
+
+    /** @return количество пользователей, известных планировщику */
+    public int size() {
+        return lastSlots.size();
+    }
+}
@@ -0,0 +1,597 @@
+package org.example.TimePlaner;
+
+import org.example.Data.BotResponse;
+import org.example.OpenRouter.LlmException;
+import org.example.OpenRouter.OpenRouterClient;
+import org.example.RateLimit.RateLimitedException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * DistributionEngine - единый движок всех рассылок всех платформ.
+ * Один поток тиков, один UserService и один снимок активных пользователей на тик,
+ * из которого выбираются получатели для каждой зарегистрированной рассылки (платформа + тип).
+ * Генерация и отправка идут на виртуальных потоках с общим лимитом одновременных пользователей
+ * и дедлайном на каждого. Тик не ждет медленную генерацию: пользователь, чья рассылка еще в работе,
+ * в следующих тиках пропускается.
+ */
+public class DistributionEngine {
+    // шаг тика: точность, с которой соблюдаются сдвиги пользователей
+    private static final int TICK_SECONDS = 30;
+    // сколько пользователей всех рассылок обрабатывается одновременно
+    private static final int DEFAULT_MAX_CONCURRENCY = 32;
+    // сколько максимум ждем генерацию и отправку для одного пользователя
+    private static final Duration DEFAULT_USER_DEADLINE = Duration.ofSeconds(120);
+
+    // общий таймер дедлайнов
+    private static final ScheduledExecutorService DEADLINE_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "distribution-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile DistributionEngine shared;
+
+    private final UserService userService;
+    private final PreferencesService preferencesService;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final Duration userDeadline;
+    private final List<Channel> channels = new CopyOnWriteArrayList<>();
+    // чаты, рассылка которым сейчас генерируется или отправляется
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, TypeMetrics> metrics = new ConcurrentHashMap<>();
+
+    // открыт ли сервис генерации: пока он недоступен, тики не раздают рассылки
+    private volatile BooleanSupplier generationGate = () -> true;
+    private final AtomicLong gatedTicks = new AtomicLong();
+
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ExecutorService dispatchExecutor;
+
+    /**
+     * Одна рассылка: тип контента на одной платформе
+     */
+    public static class Channel {
+        private final String platform;
+        private final String distributionType;
+        private final Function<Long, BotResponse> generator;
+        private final UnaryOperator<List<Long>> dueFilter;
+        private final Function<BotResponse, Boolean> messageSender;
+        private final DeliveryPlanner planner;
+        private volatile Duration defaultPeriod = Duration.ofMinutes(5);
+        private volatile long startAfter;
+
+        /**
+         * @param platform "telegram" или "discord"
+         * @param distributionType тип рассылки (UserPreferences.TYPE_*)
+         * @param generator генерация контента для чата (null - пропустить)
+         * @param dueFilter дополнительный отбор чатов, у которых есть что отправить (для повторений)
+         * @param messageSender отправка сообщения на платформу
+         */
+        public Channel(String platform, String distributionType, Function<Long, BotResponse> generator,
+                       UnaryOperator<List<Long>> dueFilter, Function<BotResponse, Boolean> messageSender) {
+            this.platform = platform;
+            this.distributionType = distributionType;
+            this.generator = generator;
+            this.dueFilter = dueFilter;
+            this.messageSender = messageSender;
+            this.planner = new DeliveryPlanner(distributionType);
+        }
+
+        public String getPlatform() { return platform; }
+
+        public String getDistributionType() { return distributionType; }
+
+        @Override
+        public String toString() {
+            return distributionType + "/" + platform;
+        }
+    }
+
+    /**
+     * Счетчики одного типа рассылки (по всем платформам)
+     */
+    public static class TypeMetrics {
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+
+        public long getDispatched() { return dispatched.get(); }
+
+        public long getSent() { return sent.get(); }
+
+        public long getFailed() { return failed.get(); }
+
+        public long getSkipped() { return skipped.get(); }
+
+        public long getTimedOut() { return timedOut.get(); }
+
+        /** @return среднее время обработки пользователя в мс */
+        public long getAverageMillis() {
+            long finished = sent.get() + failed.get() + skipped.get() + timedOut.get();
+            return finished == 0 ? 0 : totalMillis.get() / finished;
+        }
+
+        @Override
+        public String toString() {
+            return "отправлено=" + sent + ", ошибок=" + failed + ", пропущено=" + skipped +
+                    ", по дедлайну=" + timedOut + ", в среднем " + getAverageMillis() + " мс";
+        }
+    }
+
+    public DistributionEngine(UserService userService, PreferencesService preferencesService,
+                              int maxConcurrency, Duration userDeadline) {
+        this.userService = userService;
+        this.preferencesService = preferencesService;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.userDeadline = userDeadline;
+    }
+
+    /**
+     * Возвращает общий движок рассылок
+     */
+    public static DistributionEngine getShared() {
+        DistributionEngine engine = shared;
+        if (engine == null) {
+            synchronized (DistributionEngine.class) {
+                engine = shared;
+                if (engine == null) {
+                    engine = new DistributionEngine(new UserService(), PreferencesService.getShared(),
+                            DEFAULT_MAX_CONCURRENCY, DEFAULT_USER_DEADLINE);
+                    engine.setGenerationGate(() -> OpenRouterClient.getShared().isAvailable());
+                    shared = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Задает проверку доступности генерации. Пока она false, тики пропускаются целиком:
+     * пользователи не выбираются, их периоды и очереди повторений не тратятся, а недоступный сервис
+     * не получает по запросу на каждого пользователя.
+     */
+    public void setGenerationGate(BooleanSupplier generationGate) {
+        this.generationGate = generationGate;
+    }
+
+    /** @return сколько тиков пропущено, пока генерация была недоступна */
+    public long getGatedTicks() {
+        return gatedTicks.get();
+    }
+
+    /**
+     * Подключает рассылку к движку (движок запускается с первой рассылкой)
+     *
+     * @param initialDelay задержка перед первой отправкой
+     * @param defaultPeriod частота для пользователей без своих настроек
+     */
+    public synchronized void register(Channel channel, Duration initialDelay, Duration defaultPeriod) {
+        channel.defaultPeriod = defaultPeriod;
+        channel.startAfter = System.currentTimeMillis() + initialDelay.toMillis();
+        if (!channels.contains(channel)) {
+            channels.add(channel);
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "distribution-engine");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dispatchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            scheduler.scheduleWithFixedDelay(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+            System.out.println("[Distribution] Движок рассылок запущен");
+        }
+        System.out.println("[Distribution] Подключена рассылка " + channel + ", частота по умолчанию " +
+                defaultPeriod.toSeconds() + " с");
+    }
+
+    /**
+     * Отключает рассылку (движок останавливается вместе с последней рассылкой)
+     */
+    public synchronized void unregister(Channel channel) {
+        channels.remove(channel);
+        System.out.println("[Distribution] Отключена рассылка " + channel);
+        if (channels.isEmpty() && scheduler != null) {
+            shutdown(scheduler);
+            shutdown(dispatchExecutor);
+            scheduler = null;
+            dispatchExecutor = null;
+            System.out.println("[Distribution] Движок рассылок остановлен. " + getStatistics());
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Один тик: снимок пользователей и раздача по всем рассылкам.
+     * Вызывается планировщиком движка, открыт для тестов.
+     */
+    public void tick() {
+        ExecutorService executor = dispatchExecutor;
+        if (executor == null) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<Channel> ready = new ArrayList<>();
+            for (Channel channel : channels) {
+                if (now >= channel.startAfter) {
+                    ready.add(channel);
+                }
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            if (!generationGate.getAsBoolean()) {
+                gatedTicks.incrementAndGet();
+                System.out.println("[Distribution] Сервис генерации недоступен, тик пропущен");
+                return;
+            }
+
+            Map<String, List<Long>> snapshot = takeSnapshot(ready);
+            // один чат получает не больше одной рассылки за тик
+            Set<Long> takenThisTick = new HashSet<>();
+            Map<String, Integer> dispatchedByChannel = new LinkedHashMap<>();
+
+            for (Channel channel : ready) {
+                List<Long> recipients = selectRecipients(channel, snapshot.getOrDefault(channel.platform, List.of()),
+                        takenThisTick, now);
+                int dispatched = 0;
+                for (Long chatId : recipients) {
+                    if (dispatch(executor, channel, chatId)) {
+                        takenThisTick.add(chatId);
+                        dispatched++;
+                    }
+                }
+                dispatchedByChannel.put(channel.toString(), dispatched);
+            }
+
+            System.out.println("[Distribution] Тик: " + dispatchedByChannel + ", в работе: " + inFlight.size());
+        } catch (Exception e) {
+            System.err.println("[Distribution] Критическая ошибка тика рассылки: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Активные пользователи каждой платформы - по одному запросу на тик
+     */
+    private Map<String, List<Long>> takeSnapshot(List<Channel> ready) {
+        Map<String, List<Long>> snapshot = new HashMap<>();
+        for (Channel channel : ready) {
+            snapshot.computeIfAbsent(channel.platform, platform -> {
+                Set<Long> users = "telegram".equals(platform) ? userService.getActiveTelegramUsers()
+                        : "discord".equals(platform) ? userService.getActiveDiscordUsers()
+                        : userService.getActiveUsers();
+                return new ArrayList<>(users);
+            });
+        }
+        return snapshot;
+    }
+
+    /**
+     * Отбирает получателей рассылки: окно отправки, сдвиг пользователя в периоде,
+     * для повторений - наступивший срок
+     */
+    private List<Long> selectRecipients(Channel channel, List<Long> users, Set<Long> takenThisTick, long now) {
+        List<Long> selected = new ArrayList<>();
+        boolean ownTiming = channel.dueFilter != null;
+
+        for (Long chatId : users) {
+            // период пользователя не тратится, если он сейчас занят другой рассылкой
+            if (inFlight.contains(chatId) || takenThisTick.contains(chatId)) {
+                continue;
+            }
+            UserPreferences preferences = preferencesService.getForChat(chatId);
+            if (ownTiming) {
+                if (preferences.isWithinWindow(now)) {
+                    selected.add(chatId);
+                }
+            } else if (channel.planner.claim(chatId, preferences,
+                    preferences.getPeriod(channel.distributionType, channel.defaultPeriod), now)) {
+                selected.add(chatId);
+            }
+        }
+
+        if (ownTiming && !selected.isEmpty()) {
+            selected = channel.dueFilter.apply(selected);
+        }
+        return selected;
+    }
+
+    /**
+     * Запускает обработку одного чата в пределах общего лимита
+     *
+     * @return true если обработка запущена
+     */
+    private boolean dispatch(ExecutorService executor, Channel channel, long chatId) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (!inFlight.add(chatId)) {
+            permits.release();
+            return false;
+        }
+
+        TypeMetrics typeMetrics = getMetrics(channel.distributionType);
+        typeMetrics.dispatched.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.currentTimeMillis();
+                try {
+                    switch (deliverWithDeadline(channel, chatId)) {
+                        case SENT -> typeMetrics.sent.incrementAndGet();
+                        case FAILED -> typeMetrics.failed.incrementAndGet();
+                        case SKIPPED -> typeMetrics.skipped.incrementAndGet();
+                        case TIMED_OUT -> typeMetrics.timedOut.incrementAndGet();
+                    }
+                } finally {
+                    typeMetrics.totalMillis.addAndGet(System.currentTimeMillis() - startedAt);
+                    inFlight.remove(chatId);
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // движок остановлен во время тика
+            typeMetrics.skipped.incrementAndGet();
+            inFlight.remove(chatId);
+            permits.release();
+            return false;
+        }
+    }
+
+    /**
+     * Обрабатывает одного пользователя с дедлайном на генерацию.
+     * Если дедлайн истек до начала отправки, поток пользователя прерывается (это отменяет запрос к ии),
+     * а результат засчитывается как TIMED_OUT ровно один раз. Начатую отправку дедлайн не прерывает:
+     * очередь отправки может ждать дольше, а готовый контент уже оплачен
+     */
+    private DeliveryResult deliverWithDeadline(Channel channel, long chatId) {
+        Thread worker = Thread.currentThread();
+        AtomicBoolean settled = new AtomicBoolean(false);
+
+        ScheduledFuture<?> deadline = DEADLINE_TIMER.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                System.out.println("[Distribution] Дедлайн " + userDeadline.toSeconds() + " с истек для пользователя " + chatId);
+                worker.interrupt();
+            }
+        }, userDeadline.toMillis(), TimeUnit.MILLISECONDS);
+
+        AtomicBoolean sending = new AtomicBoolean(false);
+        try {
+            DeliveryResult result = deliverToUser(channel, chatId, () -> {
+                if (settled.compareAndSet(false, true)) {
+                    sending.set(true);
+                }
+                return sending.get();
+            });
+            return sending.get() || settled.compareAndSet(false, true) ? result : DeliveryResult.TIMED_OUT;
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * Генерирует и отправляет контент одному пользователю
+     *
+     * @param startSending забирает у дедлайна право на результат; false - дедлайн уже истек, отправлять нельзя
+     */
+    private DeliveryResult deliverToUser(Channel channel, long chatId, BooleanSupplier startSending) {
+        try {
+            BotResponse response = generateResponse(channel, chatId);
+
+            // Обработка случаев, когда контент не сгенерирован
+            if (response == null) {
+                System.out.println("[Distribution] " + channel + " пропущено для " + chatId + " (контент не сгенерирован)");
+                return DeliveryResult.SKIPPED;
+            }
+
+            if (!response.isValid()) {
+                System.out.println("[Distribution] Невалидный ответ для пользователя " + chatId + ", пропускаем");
+                return DeliveryResult.SKIPPED;
+            }
+
+            if (!startSending.getAsBoolean()) {
+                return DeliveryResult.TIMED_OUT;
+            }
+            if (channel.messageSender.apply(response)) {
+                System.out.println("[Distribution] " + channel + " отправлено: " + chatId);
+                return DeliveryResult.SENT;
+            }
+
+            // Только если отправка не удалась - это ошибка
+            System.out.println("[Distribution] Ошибка отправки для пользователя " + chatId);
+            handleError(channel, chatId, new Exception("Ошибка отправки сообщения"));
+            return DeliveryResult.FAILED;
+
+        } catch (RateLimitedException e) {
+            // Лимит платформы - временная ситуация, пользователя не трогаем
+            System.out.println("[Distribution] Лимит отправки для " + chatId + ": " + e.getMessage() + ", пропускаем");
+            return DeliveryResult.SKIPPED;
+        } catch (ContentGenerationException e) {
+            // Специфичные ошибки генерации контента - пропускаем пользователя
+            System.out.println("[Distribution] Ошибка генерации контента для " + chatId + ": " + e.getMessage());
+            return DeliveryResult.SKIPPED;
+        } catch (ParseException e) {
+            // Ошибки парсинга - пропускаем пользователя
+            System.out.println("[Distribution] Ошибка парсинга для " + chatId + ": " + e.getMessage());
+            handleError(channel, chatId, e);
+            return DeliveryResult.SKIPPED;
+        } catch (Exception e) {
+            // Общие ошибки - логируем и продолжаем с остальными пользователями
+            System.out.println("[Distribution] Неожиданная ошибка для пользователя " + chatId + ": " + e.getMessage());
+            handleError(channel, chatId, e);
+            return DeliveryResult.FAILED;
+        }
+    }
+
+    /**
+     * Генерирует контент и классифицирует ошибки генерации
+     */
+    private BotResponse generateResponse(Channel channel, long chatId) throws ContentGenerationException, ParseException {
+        try {
+            return channel.generator.apply(chatId);
+        } catch (RuntimeException e) {
+            // Ошибка ии приходит типизированной (в цепочке причин)
+            LlmException llmError = findLlmError(e);
+            if (llmError != null) {
+                throw new ContentGenerationException("Ошибка доступа к AI сервису для пользователя " + chatId +
+                        " (" + llmError.getKind() + ")", e);
+            }
+            // Ошибки парсинга различаем по сообщению
+            String errorMessage = e.getMessage();
+            if (errorMessage != null && (errorMessage.contains("Не удалось распарсить") ||
+                    errorMessage.contains("парсин") ||
+                    errorMessage.contains("parse"))) {
+                throw new ParseException("Ошибка парсинга сгенерированного контента для пользователя " + chatId, e);
+            }
+            // Если не удалось классифицировать - пробрасываем как общую ошибку генерации
+            throw new ContentGenerationException("Ошибка генерации контента для пользователя " + chatId, e);
+        }
+    }
+
+    /**
+     * Ищет ошибку ии в цепочке причин
+     */
+    private static LlmException findLlmError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LlmException llmError) {
+                return llmError;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Обрабатывает ошибки отправки сообщений
+     * Различает временные ошибки и критические ошибки канала
+     */
+    private void handleError(Channel channel, long chatId, Exception e) {
+        String errorMessage = e.getMessage();
+
+        // ИГНОРИРУЕМ временные ошибки генерации контента
+        if (errorMessage != null && (
+                errorMessage.contains("Ошибка генерации/отправки") ||
+                        errorMessage.contains("контент не сгенерирован") ||
+                        errorMessage.contains("слово не найдено") ||
+                        errorMessage.contains("пользователь занят") ||
+                        errorMessage.contains("Не удалось распарсить")
+        )) {
+            System.out.println("[Distribution] Игнорируем временную ошибку для пользователя " + chatId + ": " + errorMessage);
+            return;
+        }
+
+        System.err.println("[Distribution] Ошибка " + channel.platform + " пользователю " + chatId + ": " + errorMessage);
+
+        // Передаем только реальные ошибки в UserService
+        userService.handleSendError(chatId, e);
+        channel.planner.forget(chatId);
+    }
+
+    /**
+     * @return счетчики типа рассылки
+     */
+    public TypeMetrics getMetrics(String distributionType) {
+        return metrics.computeIfAbsent(distributionType, type -> new TypeMetrics());
+    }
+
+    /**
+     * @return true если движок запущен
+     */
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * @return сколько чатов сейчас в обработке
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return true если рассылка подключена
+     */
+    public boolean isRegistered(Channel channel) {
+        return channels.contains(channel);
+    }
+
+    /**
+     * Статистика по типам рассылок
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder("[Distribution] Статистика: лимит " + maxConcurrency +
+                " пользователей, рассылок " + channels.size());
+        metrics.forEach((type, typeMetrics) -> sb.append("\n  ").append(type).append(": ").append(typeMetrics));
+        return sb.toString();
+    }
+
+    /**
+     * Итог обработки одного пользователя
+     */
+    private enum DeliveryResult {
+        SENT,
+        FAILED,
+        SKIPPED,
+        TIMED_OUT
+    }
+
+    /**
+     * Исключение для ошибок генерации контента
+     */
+    private static class ContentGenerationException extends Exception {
+        public ContentGenerationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Исключение для ошибок парсинга
+     */
+    private static class ParseException extends Exception {
+        public ParseException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.TimePlaner;
+
+import org.example.Authentication.IdentityCache;
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PreferencesService - хранение настроек рассылок в bot_auth.db.
+ * Настройки читаются из БД один раз и дальше берутся из памяти,
+ * сохранение сразу обновляет и БД, и память.
+ */
+public class PreferencesService {
+    private static volatile PreferencesService shared;
+
+    private final SqliteDatabase database;
+    private final IdentityCache identityCache;
+    private final ConcurrentHashMap<Long, UserPreferences> cache = new ConcurrentHashMap<>();
+
+    public PreferencesService(SqliteDatabase database, IdentityCache identityCache) {
+        this.database = database;
+        this.identityCache = identityCache;
+    }
+
+    /**
+     * Возвращает общий сервис настроек
+     */
+    public static PreferencesService getShared() {
+        PreferencesService service = shared;
+        if (service == null) {
+            synchronized (PreferencesService.class) {
+                service = shared;
+                if (service == null) {
+                    SchemaMigrator.migrate(SchemaMigrator.AUTH_DB, SchemaMigrator.AUTH_MIGRATIONS);
+                    service = new PreferencesService(SqliteDatabase.forFile(SchemaMigrator.AUTH_DB), IdentityCache.getShared());
+                    shared = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Настройки пользователя чата (настройки по умолчанию, если чат не привязан или БД недоступна)
+     */
+    public UserPreferences getForChat(long chatId) {
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(chatId);
+            return identity != null ? get(identity.getUserId()) : UserPreferences.defaults();
+        } catch (SQLException e) {
+            System.err.println("[Preferences] Ошибка чтения настроек для " + chatId + ": " + e.getMessage());
+            return UserPreferences.defaults();
+        }
+    }
+
+    /**
+     * Настройки пользователя
+     */
+    public UserPreferences get(long userId) throws SQLException {
+        UserPreferences preferences = cache.get(userId);
+        if (preferences == null) {
+            preferences = load(userId);
+            cache.put(userId, preferences);
+        }
+        return preferences;
+    }
+
+    /**
+     * Сохраняет настройки пользователя
+     */
+    public void save(long userId, UserPreferences preferences) throws SQLException {
+        String sql = "INSERT INTO user_preferences (user_id, time_zone, window_start, window_end, word_period_minutes, test_period_minutes) " +
+                "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(user_id) DO UPDATE SET " +
+                "time_zone = excluded.time_zone, window_start = excluded.window_start, window_end = excluded.window_end, " +
+                "word_period_minutes = excluded.word_period_minutes, test_period_minutes = excluded.test_period_minutes, " +
+                "updated_at = CURRENT_TIMESTAMP";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            pstmt.setString(2, preferences.getZone().getId());
+            pstmt.setInt(3, preferences.getWindowStart());
+            pstmt.setInt(4, preferences.getWindowEnd());
+            setNullableInt(pstmt, 5, preferences.getWordPeriodMinutes());
+            setNullableInt(pstmt, 6, preferences.getTestPeriodMinutes());
+            pstmt.executeUpdate();
+        }
+        cache.put(userId, preferences);
+        System.out.println("[Preferences] Настройки сохранены для userId: " + userId);
+    }
+
+    private UserPreferences load(long userId) throws SQLException {
+        String sql = "SELECT * FROM user_preferences WHERE user_id = ?";
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (!rs.next()) {
+                return UserPreferences.defaults();
+            }
+            ZoneId zone;
+            try {
+                zone = ZoneId.of(rs.getString("time_zone"));
+            } catch (DateTimeException e) {
+                zone = UserPreferences.DEFAULT_ZONE;
+            }
+            return new UserPreferences(zone, rs.getInt("window_start"), rs.getInt("window_end"),
+                    getNullableInt(rs, "word_period_minutes"), getNullableInt(rs, "test_period_minutes"));
+        }
+    }
+
+    private static void setNullableInt(PreparedStatement pstmt, int index, Integer value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.INTEGER);
+        } else {
+            pstmt.setInt(index, value);
+        }
+    }
+
+    private static Integer getNullableInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
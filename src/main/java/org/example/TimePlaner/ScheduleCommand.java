@@ -0,0 +1,143 @@
+package org.example.TimePlaner;
+
+import org.example.Authentication.IdentityCache;
+
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
+/**
+ * ScheduleCommand - команда /schedule: просмотр и изменение настроек рассылок
+ * (часовой пояс, окно отправки, частота новых слов и тестов)
+ */
+public class ScheduleCommand {
+    public static final String COMMAND = "/schedule";
+
+    private static final String USAGE = "⚙️ **Настройка рассылок:**\n" +
+            "• /schedule zone Europe/Moscow - часовой пояс\n" +
+            "• /schedule window 9-22 - окно отправки (в местном времени)\n" +
+            "• /schedule word 240 - новое слово раз в N минут\n" +
+            "• /schedule test 180 - тест раз в N минут\n" +
+            "• /schedule word default - частота по умолчанию\n\n" +
+            "Повторение старых слов приходит по расписанию интервальных повторений, но тоже только в окне отправки.";
+
+    private final PreferencesService preferencesService;
+    private final IdentityCache identityCache;
+
+    public ScheduleCommand() {
+        this(PreferencesService.getShared(), IdentityCache.getShared());
+    }
+
+    public ScheduleCommand(PreferencesService preferencesService, IdentityCache identityCache) {
+        this.preferencesService = preferencesService;
+        this.identityCache = identityCache;
+    }
+
+    /**
+     * @return true если текст - команда /schedule (с аргументами или без)
+     */
+    public static boolean isScheduleCommand(String text) {
+        return text.equals(COMMAND) || text.startsWith(COMMAND + " ");
+    }
+
+    /**
+     * Обрабатывает команду /schedule
+     *
+     * @param text текст команды целиком
+     * @param chatId чат пользователя
+     * @return ответ пользователю
+     */
+    public String handle(String text, long chatId) {
+        try {
+            IdentityCache.Identity identity = identityCache.resolve(chatId);
+            if (identity == null) {
+                return "❌ Настройки доступны только после входа в аккаунт.";
+            }
+            long userId = identity.getUserId();
+            UserPreferences preferences = preferencesService.get(userId);
+
+            String[] args = text.trim().split("\\s+");
+            if (args.length == 1) {
+                return formatPreferences(preferences) + "\n\n" + USAGE;
+            }
+            if (args.length != 3) {
+                return "❌ Неверный формат команды.\n\n" + USAGE;
+            }
+
+            UserPreferences updated;
+            switch (args[1].toLowerCase()) {
+                case "zone" -> updated = preferences.withZone(ZoneId.of(args[2]));
+                case "window" -> updated = parseWindow(preferences, args[2]);
+                case "word" -> updated = preferences.withPeriod(UserPreferences.TYPE_WORD, parsePeriod(args[2]));
+                case "test" -> updated = preferences.withPeriod(UserPreferences.TYPE_TEST, parsePeriod(args[2]));
+                default -> {
+                    return "❌ Неизвестная настройка: " + args[1] + "\n\n" + USAGE;
+                }
+            }
+
+            preferencesService.save(userId, updated);
+            return "✅ Настройки сохранены!\n\n" + formatPreferences(updated);
+
+        } catch (DateTimeException e) {
+            return "❌ Неизвестный часовой пояс. Пример: Europe/Moscow, Asia/Yekaterinburg, UTC";
+        } catch (IllegalArgumentException e) {
+            return "❌ " + e.getMessage() + "\n\n" + USAGE;
+        } catch (SQLException e) {
+            System.err.println("[Schedule] Ошибка сохранения настроек для " + chatId + ": " + e.getMessage());
+            return "❌ Не удалось сохранить настройки. Попробуйте позже.";
+        }
+    }
+
+    /**
+     * Разбирает окно вида "9-22" или "09:30-22:00"
+     */
+    private UserPreferences parseWindow(UserPreferences preferences, String value) {
+        String[] parts = value.split("-");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Окно задается как начало-конец, например 9-22");
+        }
+        return preferences.withWindow(parseTime(parts[0]), parseTime(parts[1]));
+    }
+
+    private int parseTime(String value) {
+        try {
+            String[] parts = value.split(":");
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59) {
+                throw new NumberFormatException();
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное время: " + value);
+        }
+    }
+
+    private Integer parsePeriod(String value) {
+        if ("default".equalsIgnoreCase(value)) {
+            return null;
+        }
+        try {
+            int minutes = Integer.parseInt(value);
+            if (minutes < UserPreferences.MIN_PERIOD_MINUTES) {
+                throw new NumberFormatException();
+            }
+            return minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Частота задается целым числом минут, например 240");
+        }
+    }
+
+    private String formatPreferences(UserPreferences preferences) {
+        return "🕒 **Ваши настройки рассылок:**\n" +
+                "• Часовой пояс: " + preferences.getZone().getId() + "\n" +
+                "• Окно отправки: " + UserPreferences.formatTime(preferences.getWindowStart()) + " - " +
+                UserPreferences.formatTime(preferences.getWindowEnd()) + "\n" +
+                "• Новое слово: " + formatPeriod(preferences.getWordPeriodMinutes()) + "\n" +
+                "• Тест: " + formatPeriod(preferences.getTestPeriodMinutes());
+    }
+
+    private String formatPeriod(Integer minutes) {
+        return minutes == null ? "по умолчанию" : "раз в " + minutes + " мин";
+    }
+}
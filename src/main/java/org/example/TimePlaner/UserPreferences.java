@@ -0,0 +1,125 @@
+package org.example.TimePlaner;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * UserPreferences - настройки рассылок пользователя:
+ * часовой пояс, окно отправки (в местном времени) и частота по типам рассылок.
+ * Объект неизменяемый, изменения создают новый объект.
+ */
+public class UserPreferences {
+    public static final String TYPE_WORD = "ежедневные слова";
+    public static final String TYPE_TEST = "отложенные тесты";
+    public static final String TYPE_OLD_WORD = "старое слово";
+
+    public static final ZoneId DEFAULT_ZONE = ZoneId.of("Europe/Moscow");
+    public static final int DEFAULT_WINDOW_START = 9 * 60;
+    public static final int DEFAULT_WINDOW_END = 22 * 60;
+    public static final int MIN_PERIOD_MINUTES = 1;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final ZoneId zone;
+    private final int windowStart; // минуты от полуночи
+    private final int windowEnd;
+    private final Integer wordPeriodMinutes; // null - частота по умолчанию
+    private final Integer testPeriodMinutes;
+
+    public UserPreferences(ZoneId zone, int windowStart, int windowEnd, Integer wordPeriodMinutes, Integer testPeriodMinutes) {
+        this.zone = zone;
+        this.windowStart = Math.floorMod(windowStart, MINUTES_PER_DAY);
+        this.windowEnd = Math.floorMod(windowEnd, MINUTES_PER_DAY);
+        this.wordPeriodMinutes = wordPeriodMinutes;
+        this.testPeriodMinutes = testPeriodMinutes;
+    }
+
+    /**
+     * Настройки по умолчанию (Москва, 9:00-22:00, частота платформы)
+     */
+    public static UserPreferences defaults() {
+        return new UserPreferences(DEFAULT_ZONE, DEFAULT_WINDOW_START, DEFAULT_WINDOW_END, null, null);
+    }
+
+    public ZoneId getZone() { return zone; }
+
+    public int getWindowStart() { return windowStart; }
+
+    public int getWindowEnd() { return windowEnd; }
+
+    public Integer getWordPeriodMinutes() { return wordPeriodMinutes; }
+
+    public Integer getTestPeriodMinutes() { return testPeriodMinutes; }
+
+    public UserPreferences withZone(ZoneId newZone) {
+        return new UserPreferences(newZone, windowStart, windowEnd, wordPeriodMinutes, testPeriodMinutes);
+    }
+
+    public UserPreferences withWindow(int newStart, int newEnd) {
+        return new UserPreferences(zone, newStart, newEnd, wordPeriodMinutes, testPeriodMinutes);
+    }
+
+    /**
+     * @param type тип рассылки (TYPE_WORD или TYPE_TEST)
+     * @param minutes частота в минутах или null для частоты по умолчанию
+     */
+    public UserPreferences withPeriod(String type, Integer minutes) {
+        if (TYPE_WORD.equals(type)) {
+            return new UserPreferences(zone, windowStart, windowEnd, minutes, testPeriodMinutes);
+        }
+        if (TYPE_TEST.equals(type)) {
+            return new UserPreferences(zone, windowStart, windowEnd, wordPeriodMinutes, minutes);
+        }
+        throw new IllegalArgumentException("Частота не настраивается для рассылки: " + type);
+    }
+
+    /**
+     * Частота рассылки данного типа для пользователя
+     *
+     * @param fallback частота платформы по умолчанию
+     */
+    public Duration getPeriod(String type, Duration fallback) {
+        Integer minutes = TYPE_WORD.equals(type) ? wordPeriodMinutes : TYPE_TEST.equals(type) ? testPeriodMinutes : null;
+        return minutes != null ? Duration.ofMinutes(Math.max(MIN_PERIOD_MINUTES, minutes)) : fallback;
+    }
+
+    /**
+     * @return длина окна отправки (начало == конец - круглые сутки)
+     */
+    public Duration getWindowLength() {
+        int length = Math.floorMod(windowEnd - windowStart, MINUTES_PER_DAY);
+        return Duration.ofMinutes(length == 0 ? MINUTES_PER_DAY : length);
+    }
+
+    /**
+     * Проверяет, попадает ли момент в окно отправки (окно может переходить через полночь)
+     */
+    public boolean isWithinWindow(long nowMillis) {
+        return Duration.between(Instant.ofEpochMilli(currentWindowStart(nowMillis)), Instant.ofEpochMilli(nowMillis))
+                .compareTo(getWindowLength()) < 0;
+    }
+
+    /**
+     * Время (мс) последнего открытия окна отправки не позже данного момента
+     */
+    public long currentWindowStart(long nowMillis) {
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        LocalDate day = now.toLocalDate();
+        ZonedDateTime start = day.atTime(LocalTime.MIN.plusMinutes(windowStart)).atZone(zone);
+        if (start.isAfter(now)) {
+            start = day.minusDays(1).atTime(LocalTime.MIN.plusMinutes(windowStart)).atZone(zone);
+        }
+        return start.toInstant().toEpochMilli();
+    }
+
+    /**
+     * Форматирует минуты от полуночи как ЧЧ:ММ
+     */
+    public static String formatTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
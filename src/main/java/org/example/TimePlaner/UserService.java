@@ -3,6 +3,7 @@ package org.example.TimePlaner;
 import org.example.Authentication.AuthService;
 import org.example.Authentication.AuthServiceImpl;
 
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -12,26 +13,36 @@ import java.util.Set;
 public class UserService {
     /**
      * Заблокированные пользователи - не получают рассылки
-     * Блокируются когда: заняты тестом, не авторизованы, недоступен канал
+     * Блокируются когда: заняты тестом, не авторизованы, недоступен канал.
+     * Реестр общий для всех экземпляров UserService (BotLogic и движок рассылок видят одно и то же)
      */
-    private final Set<Long> blockedUsers = new HashSet<>();
+    private final UserStateRegistry stateRegistry;
 
     private final AuthService authService;
 
-    private Set<Long> telegramUsersCache;
-    private Set<Long> discordUsersCache;
-    private long lastCacheUpdate = 0;
+    private volatile Set<Long> telegramUsersCache;
+    private volatile Set<Long> discordUsersCache;
+    private volatile long lastCacheUpdate = 0;
     private static final long CACHE_TTL = 30000; // 30 секунд
 
     public UserService() {
-        this.authService = new AuthServiceImpl();
+        this(UserStateRegistry.getShared());
+    }
+
+    public UserService(UserStateRegistry stateRegistry) {
+        this(stateRegistry, new AuthServiceImpl());
+    }
+
+    public UserService(UserStateRegistry stateRegistry, AuthService authService) {
+        this.stateRegistry = stateRegistry;
+        this.authService = authService;
         updateCache();
     }
 
     /**
      * Обновляет кэш списков пользователей
      */
-    private void updateCache() {
+    private synchronized void updateCache() {
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastCacheUpdate > CACHE_TTL) {
             this.telegramUsersCache = authService.getAllTelegramUsers();
@@ -82,30 +93,53 @@ public class UserService {
     }
 
     /**
-     * БЛОКИРУЕТ пользователя - добавляет в blockedUsers
+     * БЛОКИРУЕТ пользователя (состояние BUSY без срока)
      * Пользователь перестает получать рассылки
      */
     public void blockUser(long chatId) {
-        blockedUsers.add(chatId);
-        System.out.println("[UserService] * Заблокирован: " + chatId);
-        logStatistics();
+        setState(chatId, UserStateRegistry.State.BUSY, null, null);
     }
 
     /**
-     * РАЗБЛОКИРУЕТ пользователя - убирает из blockedUsers
+     * РАЗБЛОКИРУЕТ пользователя - снимает все состояния
      * Пользователь снова может получать рассылки
      */
     public void unblockUser(long chatId) {
-        blockedUsers.remove(chatId);
+        stateRegistry.clearAll(chatId);
         System.out.println("[UserService] Разблокирован: " + chatId);
-        logStatistics();
+    }
+
+    /**
+     * Ставит пользователю состояние, при котором ему не идут рассылки
+     *
+     * @param reason причина (для логов)
+     * @param ttl через сколько состояние снимется само, null - бессрочно
+     */
+    public void setState(long chatId, UserStateRegistry.State state, String reason, Duration ttl) {
+        stateRegistry.mark(chatId, state, reason, ttl);
+        System.out.println("[UserService] * Заблокирован: " + chatId + " - " + state +
+                (reason != null ? " (" + reason + ")" : ""));
+    }
+
+    /**
+     * Снимает с пользователя одно состояние (остальные остаются)
+     */
+    public void clearState(long chatId, UserStateRegistry.State state) {
+        stateRegistry.clear(chatId, state);
+    }
+
+    /**
+     * Проверяет, действует ли у пользователя состояние
+     */
+    public boolean hasState(long chatId, UserStateRegistry.State state) {
+        return stateRegistry.has(chatId, state);
     }
 
     /**
      * Проверяет, заблокирован ли пользователь для рассылок
      */
     public boolean isUserBlocked(long chatId) {
-        return blockedUsers.contains(chatId);
+        return stateRegistry.isBlocked(chatId);
     }
 
     /**
@@ -130,7 +164,8 @@ public class UserService {
         if (error != null && (error.contains("не найден"))) {
             System.out.println("Discord канал недоступен, отвязываем: " + userId);
             authService.unlinkCurrentChat(userId);
-            blockUser(userId); // Блокируем чтобы больше не пытаться отправлять
+            // Блокируем чтобы больше не пытаться отправлять
+            setState(userId, UserStateRegistry.State.UNREACHABLE, error, null);
             updateCache();
         }
         // Telegram ошибки - логируем
@@ -141,7 +176,8 @@ public class UserService {
         else {
             System.out.println("[UserService]"+" Ошибка отправки: " + userId + " (" + platform + ") - " + error);
             authService.unlinkCurrentChat(userId);
-            blockUser(userId); // Блокируем при любых других ошибках
+            // Блокируем при любых других ошибках
+            setState(userId, UserStateRegistry.State.UNREACHABLE, error, null);
             updateCache();
         }
     }
@@ -188,16 +224,20 @@ public class UserService {
         System.out.println("[UserService] Статистика: " +
                 "всего=" + total +
                 " (TG:" + telegramUsersCache.size() + ",DC:" + discordUsersCache.size() + ")" +
-                ", заблокировано=" + blockedUsers.size());
+                ", заблокировано=" + stateRegistry.size());
     }
 
     public void cleanupInactiveUsers() {
         System.out.println("[UserService] Очистка неактивных пользователей");
+        int expired = stateRegistry.purgeExpired();
+        if (expired > 0) {
+            System.out.println("[UserService] Сняты просроченные блокировки: " + expired);
+        }
         updateCache();
     }
 
     public void unfreezeAllUsers() {
-        blockedUsers.clear();
+        stateRegistry.clearAll();
         System.out.println("[UserService] Все пользователи разблокированы");
         logStatistics();
     }
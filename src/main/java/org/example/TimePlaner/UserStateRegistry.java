@@ -0,0 +1,202 @@
+package org.example.TimePlaner;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UserStateRegistry - общий реестр состояний чатов, из-за которых им не идут рассылки
+ * (занят действием, не авторизован, канал недоступен).
+ * Один экземпляр на процесс: блокировку, поставленную BotLogic, сразу видит движок рассылок.
+ * У каждого состояния своя причина и необязательный срок жизни - просроченное состояние
+ * снимается само при следующей проверке. Проверка - одно чтение из ConcurrentHashMap без блокировок,
+ * изменения одного чата атомарны (compute по ключу).
+ */
+public class UserStateRegistry {
+    private static volatile UserStateRegistry shared;
+
+    /**
+     * Состояния чата
+     */
+    public enum State {
+        // пользователь проходит тест или ждет ответа бота
+        BUSY,
+        // чат не привязан к аккаунту
+        UNAUTHORIZED,
+        // отправка в чат не удалась, чат отвязан
+        UNREACHABLE
+    }
+
+    private static final State[] STATES = State.values();
+
+    /**
+     * Одно состояние чата
+     */
+    public static class Mark {
+        private final State state;
+        private final String reason;
+        private final long since;
+        private final long expiresAt; // 0 - бессрочно
+
+        Mark(State state, String reason, long since, long expiresAt) {
+            this.state = state;
+            this.reason = reason;
+            this.since = since;
+            this.expiresAt = expiresAt;
+        }
+
+        public State getState() { return state; }
+
+        public String getReason() { return reason; }
+
+        public long getSince() { return since; }
+
+        public long getExpiresAt() { return expiresAt; }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+
+        @Override
+        public String toString() {
+            return state + (reason != null ? " (" + reason + ")" : "");
+        }
+    }
+
+    // состояния чата по индексу State.ordinal(), массив не изменяется после публикации
+    private final ConcurrentHashMap<Long, Mark[]> marks = new ConcurrentHashMap<>();
+
+    /**
+     * Возвращает общий реестр
+     */
+    public static UserStateRegistry getShared() {
+        UserStateRegistry registry = shared;
+        if (registry == null) {
+            synchronized (UserStateRegistry.class) {
+                registry = shared;
+                if (registry == null) {
+                    registry = new UserStateRegistry();
+                    shared = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Ставит чату состояние (повторная установка заменяет причину и срок)
+     *
+     * @param ttl срок жизни состояния, null - бессрочно
+     */
+    public void mark(long chatId, State state, String reason, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Mark mark = new Mark(state, reason, now, ttl == null ? 0 : now + Math.max(1, ttl.toMillis()));
+        marks.compute(chatId, (id, current) -> {
+            Mark[] updated = current == null ? new Mark[STATES.length] : current.clone();
+            updated[state.ordinal()] = mark;
+            return updated;
+        });
+    }
+
+    /**
+     * Ставит чату бессрочное состояние
+     */
+    public void mark(long chatId, State state, String reason) {
+        mark(chatId, state, reason, null);
+    }
+
+    /**
+     * Снимает с чата одно состояние
+     */
+    public void clear(long chatId, State state) {
+        marks.computeIfPresent(chatId, (id, current) -> {
+            if (current[state.ordinal()] == null) {
+                return current;
+            }
+            Mark[] updated = current.clone();
+            updated[state.ordinal()] = null;
+            return isEmpty(updated, System.currentTimeMillis()) ? null : updated;
+        });
+    }
+
+    /**
+     * Снимает с чата все состояния
+     */
+    public void clearAll(long chatId) {
+        marks.remove(chatId);
+    }
+
+    /**
+     * Снимает все состояния со всех чатов
+     */
+    public void clearAll() {
+        marks.clear();
+    }
+
+    /**
+     * @return true если у чата есть хотя бы одно действующее состояние
+     */
+    public boolean isBlocked(long chatId) {
+        Mark[] current = marks.get(chatId);
+        if (current == null) {
+            return false;
+        }
+        if (!isEmpty(current, System.currentTimeMillis())) {
+            return true;
+        }
+        // все состояния просрочены - убираем запись, если ее не успели обновить
+        marks.remove(chatId, current);
+        return false;
+    }
+
+    /**
+     * @return true если у чата действует указанное состояние
+     */
+    public boolean has(long chatId, State state) {
+        return get(chatId, state) != null;
+    }
+
+    /**
+     * @return действующее состояние чата или null
+     */
+    public Mark get(long chatId, State state) {
+        Mark[] current = marks.get(chatId);
+        if (current == null) {
+            return null;
+        }
+        Mark mark = current[state.ordinal()];
+        return mark == null || mark.isExpired(System.currentTimeMillis()) ? null : mark;
+    }
+
+    /**
+     * Убирает записи, у которых все состояния просрочены
+     *
+     * @return сколько записей убрано
+     */
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map.Entry<Long, Mark[]> entry : marks.entrySet()) {
+            if (isEmpty(entry.getValue(), now) && marks.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return сколько чатов сейчас в реестре (включая еще не убранные просроченные)
+     */
+    public int size() {
+        return marks.size();
+    }
+
+    private static boolean isEmpty(Mark[] states, long now) {
+        for (Mark mark : states) {
+            if (mark != null && !mark.isExpired(now)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -6,15 +6,19 @@ import org.example.ScheduledOldWord.OldWordData;
 import org.example.ScheduledOldWord.OldWordParser;
 import org.example.ScheduledTests.TestsData;
 import org.example.ScheduledTests.TestsParser;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.util.List;
+
 /**
  * AllParsersTests - тестирует все парсеры в системе
  * Тестируемые парсеры:
  * - MessageParser (ScheduledNewWord) - парсит структурированные данные слов для ежедневных слов
  * - OldWordParser (ScheduledOldWord) - парсит тесты для слов с низким приоритетом
  * - TestsParser (ScheduledTests) - парсит комплексные тесты с множеством вопросов
+ * а также разбор структурированных (JSON) ответов тех же генераторов
  */
 public class AllParsersTests {
 
@@ -99,6 +103,41 @@ public class AllParsersTests {
         Assertions.assertEquals(0, result.getRelatedWords().size(), "Список связанных слов должен быть пустым");
     }
 
+    /**
+     * Тест парсера MessageParser с пачкой слов
+     * Проверяет разбиение ответа на слова и пропуск неполных записей
+     */
+    @Test
+    public void testMessageParser_Batch() {
+        MessageParser parser = new MessageParser();
+
+        String input = "WORD: journey\n" +
+                "TRANSLATION: путешествие\n" +
+                "LEVEL: B1\n" +
+                "RELATED_WORDS: trip, travel\n" +
+                "TOPIC: travel\n" +
+                "\n" +
+                "WORD: broken\n" +
+                "LEVEL: A2\n" +
+                "\n" +
+                "  WORD: kitchen\n" +
+                "TRANSLATION: кухня\r\n" +
+                "Лишняя строка без ключа\n" +
+                "TOPIC: food & cooking";
+
+        List<WordData> result = parser.parseWords(input);
+
+        Assertions.assertEquals(2, result.size(), "Слово без перевода должно быть пропущено");
+        Assertions.assertEquals("journey", result.get(0).getWord());
+        Assertions.assertEquals(List.of("trip", "travel"), result.get(0).getRelatedWords());
+        Assertions.assertEquals("kitchen", result.get(1).getWord());
+        Assertions.assertEquals("кухня", result.get(1).getTranslation());
+        Assertions.assertEquals("food & cooking", result.get(1).getTopic());
+
+        Assertions.assertTrue(parser.parseWords("").isEmpty());
+        Assertions.assertTrue(parser.parseWords(null).isEmpty());
+    }
+
     /**
      * Тест парсера OldWordParser с валидными входными данными
      * Проверяет извлечение вопроса и правильного ответа
@@ -417,4 +456,72 @@ public class AllParsersTests {
         Assertions.assertEquals("D", question.getCorrectAnswer(), "Правильный ответ должен быть 'D'");
         Assertions.assertEquals("НОВОЕ", question.getWordType(), "Тип слова должен быть 'НОВОЕ'");
     }
-}
\ No newline at end of file
+
+    /**
+     * Структурированный ответ со словами разбирается в WordData, неполные слова пропускаются
+     */
+    @Test
+    public void testMessageParser_Json() {
+        MessageParser parser = new MessageParser();
+        JSONObject json = new JSONObject("""
+                {"words": [
+                  {"word": "journey", "translation": "путешествие", "level": "B1", "part_of_speech": "noun",
+                   "example": "It was a long journey.", "example_translation": "Это было долгое путешествие.",
+                   "related_words": ["trip", " travel "], "topic": "travel"},
+                  {"word": "", "translation": "пусто", "level": "A1", "part_of_speech": "noun",
+                   "example": "", "example_translation": "", "related_words": [], "topic": ""}
+                ]}""");
+
+        List<WordData> words = parser.parseWordsJson(json);
+
+        Assertions.assertEquals(1, words.size(), "Слово без английского написания пропускается");
+        WordData word = words.get(0);
+        Assertions.assertEquals("journey", word.getWord());
+        Assertions.assertEquals("путешествие", word.getTranslation());
+        Assertions.assertEquals("noun", word.getPartOfSpeech());
+        Assertions.assertEquals(List.of("trip", "travel"), word.getRelatedWords());
+        Assertions.assertTrue(parser.parseWordsJson(new JSONObject("{}")).isEmpty());
+    }
+
+    /**
+     * Структурированный отложенный тест: текст вопроса собирается с вариантами A) - D)
+     */
+    @Test
+    public void testTestsParser_Json() {
+        TestsParser parser = new TestsParser();
+        JSONObject json = new JSONObject("""
+                {"questions": [
+                  {"question": "Выберите правильный перевод слова «stable»", "options": ["хрупкий", "B) устойчивый", "временный", "гибкий"],
+                   "answer": "B", "type": "ПРИОРИТЕТНОЕ", "word": "stable", "translation": "устойчивый"},
+                  {"question": "Три варианта", "options": ["a", "b", "c"], "answer": "A", "type": "НОВОЕ", "word": "three", "translation": "три"},
+                  {"question": "Нет слова", "options": ["a", "b", "c", "d"], "answer": "A", "type": "НОВОЕ", "word": "Н/Д", "translation": "нет"}
+                ]}""");
+
+        TestsData result = parser.parseTestJson(json);
+
+        Assertions.assertEquals(1, result.getQuestions().size(), "Вопросы без 4 вариантов или без слова пропускаются");
+        TestsData.QuestionData question = result.getQuestions().get(0);
+        Assertions.assertEquals("Выберите правильный перевод слова «stable»\n\nA) хрупкий\nB) устойчивый\nC) временный\nD) гибкий",
+                question.getQuestionText());
+        Assertions.assertEquals("B", question.getCorrectAnswer());
+        Assertions.assertEquals("ПРИОРИТЕТНОЕ", question.getWordType());
+    }
+
+    /**
+     * Структурированный тест на старое слово; ответ не по схеме отклоняется (нужен текстовый запрос)
+     */
+    @Test
+    public void testOldWordParser_Json() {
+        OldWordParser parser = new OldWordParser();
+        JSONObject json = new JSONObject("""
+                {"question": "Какое слово означает «достижение»?", "options": ["failure", "accomplishment", "beginning", "obstacle"], "answer": "b"}""");
+
+        OldWordData result = parser.parseTestJson(json, "accomplishment", "достижение");
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("B", result.getCorrectAnswer());
+        Assertions.assertTrue(result.getFullQuestion().endsWith("D) obstacle"));
+        Assertions.assertNull(parser.parseTestJson(new JSONObject("{\"question\": \"q\", \"options\": [], \"answer\": \"A\"}"),
+                "accomplishment", "достижение"));
+    }
+}
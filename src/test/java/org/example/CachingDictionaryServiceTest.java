@@ -0,0 +1,170 @@
+package org.example;
+
+import org.example.Dictionary.CachingDictionaryService;
+import org.example.Dictionary.DictionaryService;
+import org.example.Dictionary.Word;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тесты кеша словарей: чтение из памяти, запись сквозь кеш и ограничение числа пользователей
+ */
+public class CachingDictionaryServiceTest {
+    private CountingDictionaryService storage;
+    private CachingDictionaryService cache;
+
+    /**
+     * Хранилище в памяти, считающее загрузки словаря
+     */
+    private static class CountingDictionaryService implements DictionaryService {
+        private final List<Word> words = new ArrayList<>();
+        private int nextId = 1;
+        int loads = 0;
+
+        @Override
+        public int addWord(long userId, String englishWord, String translation, int priority) {
+            Word word = new Word(nextId++, userId, englishWord, translation, priority);
+            words.add(word);
+            return word.getId();
+        }
+
+        @Override
+        public List<Word> getAllWords(long userId) {
+            loads++;
+            return words.stream().filter(w -> w.getUserId() == userId).toList();
+        }
+
+        @Override
+        public List<Word> getWordsByPriority(long userId, int priority) {
+            throw new AssertionError("Должно обслуживаться из кеша");
+        }
+
+        @Override
+        public Word getWordById(long userId, int wordId) {
+            throw new AssertionError("Должно обслуживаться из кеша");
+        }
+
+        @Override
+        public Word getWordByEnglish(long userId, String englishWord) {
+            throw new AssertionError("Должно обслуживаться из кеша");
+        }
+
+        @Override
+        public void updateWord(long userId, int wordId, String newEnglishWord, String newTranslation, Integer newPriority) {
+            words.replaceAll(w -> w.getId() == wordId
+                    ? new Word(wordId, userId, newEnglishWord, newTranslation, newPriority != null ? newPriority : 2) : w);
+        }
+
+        @Override
+        public void updateWordPriority(long userId, int wordId, int newPriority) {
+            words.replaceAll(w -> w.getId() == wordId
+                    ? new Word(wordId, userId, w.getEnglishWord(), w.getTranslation(), newPriority) : w);
+        }
+
+        @Override
+        public void deleteWord(long userId, int wordId) {
+            words.removeIf(w -> w.getId() == wordId);
+        }
+
+        @Override
+        public long getUserIdByChatId(long chatId) {
+            return chatId;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        storage = new CountingDictionaryService();
+        cache = new CachingDictionaryService(storage, 2);
+        cache.addWord(1, "apple", "яблоко", 1);
+        cache.addWord(1, "Book", "книга", 3);
+        cache.addWord(1, "cat", "кошка", 3);
+    }
+
+    /**
+     * Словарь загружается один раз, остальные запросы идут из памяти
+     */
+    @Test
+    void testReadsServedFromMemory() throws SQLException {
+        Assertions.assertEquals(3, cache.getAllWords(1).size());
+        Assertions.assertEquals("книга", cache.getWordByEnglish(1, " book ").getTranslation());
+        Assertions.assertEquals("cat", cache.getWordById(1, 3).getEnglishWord());
+        Assertions.assertEquals(List.of("Book", "cat"),
+                cache.getWordsByPriority(1, 3).stream().map(Word::getEnglishWord).toList());
+
+        Assertions.assertEquals(1, storage.loads);
+        Assertions.assertEquals(1, cache.getLoads());
+    }
+
+    /**
+     * Изменения видны сразу: добавление, обновление и удаление правят кеш без перечитывания словаря
+     */
+    @Test
+    void testWriteThrough() throws SQLException {
+        cache.getAllWords(1);
+
+        cache.updateWordPriority(1, 1, 3);
+        cache.updateWord(1, 2, "novel", "роман", null);
+        cache.deleteWord(1, 3);
+        Assertions.assertEquals(1, storage.loads, "Изменения не должны перечитывать словарь");
+
+        Assertions.assertEquals(List.of("apple"),
+                cache.getWordsByPriority(1, 3).stream().map(Word::getEnglishWord).toList());
+        Assertions.assertNull(cache.getWordByEnglish(1, "book"));
+        Assertions.assertEquals(2, cache.getWordByEnglish(1, "novel").getPriority());
+        Assertions.assertNull(cache.getWordById(1, 3));
+
+        int dogId = cache.addWord(1, "dog", "собака", 2);
+        Assertions.assertEquals(3, cache.getAllWords(1).size());
+        Assertions.assertEquals("dog", cache.getWordById(1, dogId).getEnglishWord());
+        Assertions.assertEquals("собака", cache.getWordByEnglish(1, "Dog").getTranslation());
+        Assertions.assertEquals(List.of("novel", "dog"),
+                cache.getWordsByPriority(1, 2).stream().map(Word::getEnglishWord).toList());
+        Assertions.assertEquals(1, storage.loads, "Добавление не должно перечитывать словарь");
+    }
+
+    /**
+     * Выборки по приоритету из кеша совпадают с реализацией по умолчанию (куча по всем словам)
+     */
+    @Test
+    void testPrioritySelections() throws SQLException {
+        cache.addWord(1, "dog", "собака", 1);
+        cache.addWord(1, "egg", "яйцо", 5);
+
+        Assertions.assertEquals(List.of("egg", "Book", "cat"),
+                cache.topKByPriority(1, 3).stream().map(Word::getEnglishWord).toList());
+        Assertions.assertEquals(List.of("egg", "Book", "cat"),
+                storage.topKByPriority(1, 3).stream().map(Word::getEnglishWord).toList());
+        Assertions.assertEquals(5, cache.topKByPriority(1, 10).size());
+        Assertions.assertTrue(cache.topKByPriority(1, 0).isEmpty());
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(1, cache.randomAmongMinPriority(1).getPriority());
+            Assertions.assertEquals(1, storage.randomAmongMinPriority(1).getPriority());
+        }
+        Assertions.assertNull(cache.randomAmongMinPriority(42));
+    }
+
+    /**
+     * Вытесняется словарь пользователя, к которому дольше всего не обращались
+     */
+    @Test
+    void testLeastRecentlyUsedEviction() throws SQLException {
+        cache.getAllWords(1);
+        cache.getAllWords(2);
+        cache.getAllWords(1);
+        cache.getAllWords(3);
+
+        Assertions.assertEquals(2, cache.getCachedUsers());
+        int loads = storage.loads;
+        cache.getAllWords(1);
+        Assertions.assertEquals(loads, storage.loads, "Недавний пользователь остается в кеше");
+        cache.getAllWords(2);
+        Assertions.assertEquals(loads + 1, storage.loads, "Давний пользователь вытеснен");
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import org.example.TimePlaner.DeliveryPlanner;
+import org.example.TimePlaner.UserPreferences;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Тесты планирования рассылок: равномерный разнос пользователей по периоду,
+ * окно отправки в часовом поясе пользователя
+ */
+public class DeliveryPlannerTest {
+    private static final ZoneId UTC = ZoneId.of("UTC");
+    private static final long TICK_MS = 30_000;
+
+    private static long at(int hour, int minute) {
+        return ZonedDateTime.of(2025, 3, 10, hour, minute, 0, 0, UTC).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Каждый пользователь получает рассылку раз в период, и отправки не собираются в один тик
+     */
+    @Test
+    void testDeliveriesSpreadAcrossPeriod() {
+        DeliveryPlanner planner = new DeliveryPlanner(UserPreferences.TYPE_WORD);
+        UserPreferences allDay = new UserPreferences(UTC, 0, 0, null, null);
+        Duration period = Duration.ofMinutes(10);
+        int users = 2000;
+        int[] perUser = new int[users];
+        int maxPerTick = 0;
+
+        long start = at(12, 0);
+        long end = start + 3 * period.toMillis();
+        for (long now = start; now < end; now += TICK_MS) {
+            int claimed = 0;
+            for (int chatId = 0; chatId < users; chatId++) {
+                if (planner.claim(chatId, allDay, period, now)) {
+                    perUser[chatId]++;
+                    claimed++;
+                }
+            }
+            maxPerTick = Math.max(maxPerTick, claimed);
+        }
+
+        // первый период только запоминает пользователей, дальше - ровно одна отправка за период
+        for (int count : perUser) {
+            Assertions.assertTrue(count >= 2 && count <= 3, "Отправок пользователю: " + count);
+        }
+        // в среднем 2000 * 30 с / 10 мин = 100 отправок за тик
+        Assertions.assertTrue(maxPerTick < 200, "Слишком много отправок за тик: " + maxPerTick);
+    }
+
+    /**
+     * Вне окна ничего не отправляется, отложенная отправка приходит после открытия окна
+     */
+    @Test
+    void testQuietHours() {
+        DeliveryPlanner planner = new DeliveryPlanner(UserPreferences.TYPE_TEST);
+        UserPreferences preferences = new UserPreferences(UTC, 9 * 60, 22 * 60, null, null);
+        Duration period = Duration.ofHours(2);
+        long chatId = 42;
+
+        Assertions.assertFalse(preferences.isWithinWindow(at(23, 0)));
+        Assertions.assertTrue(preferences.isWithinWindow(at(9, 0)));
+
+        // знакомство с пользователем днем, ночью отправок нет
+        planner.claim(chatId, preferences, period, at(20, 0));
+        for (long now = at(22, 0); now < at(22, 0) + 10 * 3_600_000L; now += TICK_MS) {
+            Assertions.assertFalse(planner.claim(chatId, preferences, period, now));
+        }
+
+        boolean delivered = false;
+        for (long now = at(9, 0) + 24 * 3_600_000L; now < at(11, 0) + 24 * 3_600_000L && !delivered; now += TICK_MS) {
+            delivered = planner.claim(chatId, preferences, period, now);
+        }
+        Assertions.assertTrue(delivered, "После открытия окна пропущенная отправка приходит");
+    }
+
+    /**
+     * Окно через полночь и часовой пояс пользователя
+     */
+    @Test
+    void testWindowAcrossMidnightAndZone() {
+        UserPreferences night = new UserPreferences(UTC, 22 * 60, 2 * 60, null, null);
+        Assertions.assertTrue(night.isWithinWindow(at(23, 30)));
+        Assertions.assertTrue(night.isWithinWindow(at(1, 0)));
+        Assertions.assertFalse(night.isWithinWindow(at(12, 0)));
+        Assertions.assertEquals(Duration.ofHours(4), night.getWindowLength());
+
+        UserPreferences moscow = UserPreferences.defaults();
+        // 7:00 UTC = 10:00 МСК - внутри окна 9-22, 20:00 UTC = 23:00 МСК - вне окна
+        Assertions.assertTrue(moscow.isWithinWindow(at(7, 0)));
+        Assertions.assertFalse(moscow.isWithinWindow(at(20, 0)));
+
+        Assertions.assertEquals(Duration.ofMinutes(90),
+                moscow.withPeriod(UserPreferences.TYPE_WORD, 90).getPeriod(UserPreferences.TYPE_WORD, Duration.ofMinutes(5)));
+        Assertions.assertEquals(Duration.ofMinutes(5),
+                moscow.getPeriod(UserPreferences.TYPE_TEST, Duration.ofMinutes(5)));
+    }
+}
@@ -49,14 +49,16 @@ public class DictionaryCommandTest {
         }
 
         @Override
-        public void addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
             // Проверяем, нет ли уже такого слова
             if (getWordByEnglish(userId, englishWord) != null) {
                 throw new SQLException("Слово уже существует в словаре");
             }
 
+            int id = nextId++;
             storage.computeIfAbsent(userId, k -> new ArrayList<>())
-                    .add(new DictionaryWord(nextId++, userId, englishWord, translation, priority));
+                    .add(new DictionaryWord(id, userId, englishWord, translation, priority));
+            return id;
         }
 
         @Override
@@ -0,0 +1,274 @@
+package org.example;
+
+import org.example.Data.BotResponse;
+import org.example.OpenRouter.LlmException;
+import org.example.TimePlaner.DistributionEngine;
+import org.example.TimePlaner.PreferencesService;
+import org.example.TimePlaner.UserPreferences;
+import org.example.TimePlaner.UserService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тесты общего движка рассылок: один снимок пользователей на тик,
+ * общий лимит одновременных отправок и счетчики по типам
+ */
+public class DistributionEngineTest {
+
+    /**
+     * Fake UserService: фиксированные пользователи и подсчет запросов к БД
+     */
+    private static class FakeUserService extends UserService {
+        private final Set<Long> telegramUsers;
+        private final Set<Long> discordUsers;
+        private final AtomicInteger telegramQueries = new AtomicInteger();
+        private final AtomicInteger discordQueries = new AtomicInteger();
+
+        FakeUserService(Set<Long> telegramUsers, Set<Long> discordUsers) {
+            this.telegramUsers = telegramUsers;
+            this.discordUsers = discordUsers;
+        }
+
+        @Override
+        public Set<Long> getActiveTelegramUsers() {
+            telegramQueries.incrementAndGet();
+            return telegramUsers;
+        }
+
+        @Override
+        public Set<Long> getActiveDiscordUsers() {
+            discordQueries.incrementAndGet();
+            return discordUsers;
+        }
+    }
+
+    /**
+     * Настройки без ограничений окна для всех чатов
+     */
+    private static class AllDayPreferences extends PreferencesService {
+        AllDayPreferences() {
+            super(null, null);
+        }
+
+        @Override
+        public UserPreferences getForChat(long chatId) {
+            return new UserPreferences(ZoneId.of("UTC"), 0, 0, null, null);
+        }
+    }
+
+    private static DistributionEngine.Channel channel(String platform, String type, List<Long> generatedFor,
+                                                      AtomicInteger sent) {
+        return new DistributionEngine.Channel(platform, type, chatId -> {
+            synchronized (generatedFor) {
+                generatedFor.add(chatId);
+            }
+            return new BotResponse(chatId, type);
+        }, chats -> chats, response -> {
+            sent.incrementAndGet();
+            return true;
+        });
+    }
+
+    private static void awaitIdle(DistributionEngine engine) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (engine.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, engine.getInFlightCount(), "Все отправки тика завершены");
+    }
+
+    /**
+     * Один запрос пользователей на платформу за тик, и чат получает не больше одной рассылки за тик
+     */
+    @Test
+    void testSingleSnapshotPerTick() throws InterruptedException {
+        FakeUserService users = new FakeUserService(Set.of(1L, 2L, 3L), Set.of(100L));
+        DistributionEngine engine = new DistributionEngine(users, new AllDayPreferences(), 8, Duration.ofSeconds(5));
+
+        List<Long> words = new ArrayList<>();
+        List<Long> tests = new ArrayList<>();
+        List<Long> discordWords = new ArrayList<>();
+        AtomicInteger sent = new AtomicInteger();
+        DistributionEngine.Channel telegramWord = channel("telegram", UserPreferences.TYPE_WORD, words, sent);
+        DistributionEngine.Channel telegramTest = channel("telegram", UserPreferences.TYPE_TEST, tests, sent);
+        DistributionEngine.Channel discordWord = channel("discord", UserPreferences.TYPE_WORD, discordWords, sent);
+
+        engine.register(telegramWord, Duration.ZERO, Duration.ofMinutes(5));
+        engine.register(telegramTest, Duration.ZERO, Duration.ofMinutes(5));
+        engine.register(discordWord, Duration.ZERO, Duration.ofMinutes(5));
+        try {
+            engine.tick();
+            awaitIdle(engine);
+
+            Assertions.assertEquals(1, users.telegramQueries.get(), "Telegram пользователи запрошены один раз");
+            Assertions.assertEquals(1, users.discordQueries.get(), "Discord пользователи запрошены один раз");
+            // первая рассылка забирает всех telegram пользователей тика
+            Assertions.assertEquals(3, words.size());
+            Assertions.assertTrue(tests.isEmpty());
+            Assertions.assertEquals(List.of(100L), discordWords);
+            Assertions.assertEquals(4, sent.get());
+            Assertions.assertEquals(4, engine.getMetrics(UserPreferences.TYPE_WORD).getSent());
+
+            engine.tick();
+            awaitIdle(engine);
+            Assertions.assertEquals(2, users.telegramQueries.get());
+            Assertions.assertEquals(8, engine.getMetrics(UserPreferences.TYPE_WORD).getDispatched());
+        } finally {
+            engine.unregister(telegramWord);
+            engine.unregister(telegramTest);
+            engine.unregister(discordWord);
+        }
+        Assertions.assertFalse(engine.isRunning(), "Движок останавливается с последней рассылкой");
+    }
+
+    /**
+     * Общий лимит одновременных пользователей и пропуск чатов, рассылка которым еще в работе
+     */
+    @Test
+    void testSharedBudgetAndInFlightSkip() throws InterruptedException {
+        Set<Long> chats = Set.of(1L, 2L, 3L, 4L, 5L, 6L);
+        FakeUserService users = new FakeUserService(chats, Set.of());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        DistributionEngine busyEngine = new DistributionEngine(users, new AllDayPreferences(), 2, Duration.ofSeconds(5));
+        CountDownLatch hold = new CountDownLatch(1);
+        DistributionEngine.Channel blocking = new DistributionEngine.Channel("telegram", UserPreferences.TYPE_WORD, chatId -> {
+            int now = running.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            try {
+                hold.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return new BotResponse(chatId, "слово");
+        }, list -> list.subList(0, Math.min(2, list.size())), response -> true);
+        DistributionEngine.Channel fast = new DistributionEngine.Channel("telegram", UserPreferences.TYPE_OLD_WORD,
+                chatId -> new BotResponse(chatId, "старое слово"), list -> list, response -> true);
+
+        busyEngine.register(blocking, Duration.ZERO, Duration.ofMinutes(5));
+        busyEngine.register(fast, Duration.ZERO, Duration.ofMinutes(5));
+        try {
+            // два чата заняты медленной генерацией, лимит исчерпан - тик ждет только освобождения места
+            Thread ticker = new Thread(busyEngine::tick);
+            ticker.start();
+            Thread.sleep(200);
+            Assertions.assertEquals(2, busyEngine.getInFlightCount());
+            Assertions.assertTrue(peak.get() <= 2, "Одновременно не больше лимита: " + peak.get());
+
+            hold.countDown();
+            ticker.join(5000);
+            awaitIdle(busyEngine);
+
+            Assertions.assertEquals(2, busyEngine.getMetrics(UserPreferences.TYPE_WORD).getSent());
+            // занятые в этом тике чаты повторение не получают
+            Assertions.assertEquals(4, busyEngine.getMetrics(UserPreferences.TYPE_OLD_WORD).getSent());
+        } finally {
+            hold.countDown();
+            busyEngine.unregister(blocking);
+            busyEngine.unregister(fast);
+        }
+    }
+
+    /**
+     * Пока генерация недоступна, тик никого не выбирает; типизированная ошибка ии - пропуск, а не сбой
+     */
+    @Test
+    void testGenerationGateAndTypedErrors() throws InterruptedException {
+        FakeUserService users = new FakeUserService(Set.of(1L, 2L), Set.of());
+        DistributionEngine engine = new DistributionEngine(users, new AllDayPreferences(), 4, Duration.ofSeconds(5));
+        AtomicBoolean available = new AtomicBoolean(false);
+        engine.setGenerationGate(available::get);
+        AtomicInteger generated = new AtomicInteger();
+        DistributionEngine.Channel failing = new DistributionEngine.Channel("telegram", UserPreferences.TYPE_WORD, chatId -> {
+            generated.incrementAndGet();
+            throw new IllegalStateException("генерация не удалась",
+                    new LlmException(LlmException.Kind.UNAVAILABLE, "HTTP Error: 503"));
+        }, chats -> chats, response -> true);
+
+        engine.register(failing, Duration.ZERO, Duration.ofMinutes(5));
+        try {
+            engine.tick();
+            Assertions.assertEquals(0, users.telegramQueries.get(), "Закрытый тик не запрашивает пользователей");
+            Assertions.assertEquals(0, generated.get());
+            Assertions.assertEquals(1, engine.getGatedTicks());
+
+            // очередь пользователей не потрачена закрытым тиком - они выбираются сразу
+            available.set(true);
+            engine.tick();
+            awaitIdle(engine);
+            Assertions.assertEquals(2, generated.get());
+            Assertions.assertEquals(2, engine.getMetrics(UserPreferences.TYPE_WORD).getSkipped());
+            Assertions.assertEquals(0, engine.getMetrics(UserPreferences.TYPE_WORD).getFailed());
+        } finally {
+            engine.unregister(failing);
+        }
+    }
+
+    /**
+     * Дедлайн ограничивает только генерацию: начатая отправка не прерывается и засчитывается,
+     * а контент, не успевший сгенерироваться, не отправляется
+     */
+    @Test
+    void testDeadlineCoversGenerationOnly() throws InterruptedException {
+        FakeUserService users = new FakeUserService(Set.of(1L), Set.of());
+        DistributionEngine engine = new DistributionEngine(users, new AllDayPreferences(), 2, Duration.ofMillis(200));
+
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        DistributionEngine.Channel slowSend = new DistributionEngine.Channel("telegram", UserPreferences.TYPE_WORD,
+                chatId -> new BotResponse(chatId, "слово"), chats -> chats, response -> {
+            try {
+                // отправка ждет токен дольше дедлайна
+                Thread.sleep(600);
+                return true;
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                return false;
+            }
+        });
+        engine.register(slowSend, Duration.ZERO, Duration.ofMinutes(5));
+        try {
+            engine.tick();
+            awaitIdle(engine);
+            Assertions.assertFalse(interrupted.get(), "Начатая отправка не прерывается дедлайном");
+            Assertions.assertEquals(1, engine.getMetrics(UserPreferences.TYPE_WORD).getSent());
+            Assertions.assertEquals(0, engine.getMetrics(UserPreferences.TYPE_WORD).getTimedOut());
+        } finally {
+            engine.unregister(slowSend);
+        }
+
+        AtomicInteger sent = new AtomicInteger();
+        DistributionEngine.Channel slowGeneration = new DistributionEngine.Channel("telegram", UserPreferences.TYPE_TEST,
+                chatId -> {
+                    // генерация не прерывается и опаздывает
+                    long until = System.currentTimeMillis() + 600;
+                    while (System.currentTimeMillis() < until) {
+                        Thread.onSpinWait();
+                    }
+                    return new BotResponse(chatId, "тест");
+                }, chats -> chats, response -> {
+            sent.incrementAndGet();
+            return true;
+        });
+        engine.register(slowGeneration, Duration.ZERO, Duration.ofMinutes(5));
+        try {
+            engine.tick();
+            awaitIdle(engine);
+            Assertions.assertEquals(0, sent.get(), "Опоздавший контент не отправляется");
+            Assertions.assertEquals(1, engine.getMetrics(UserPreferences.TYPE_TEST).getTimedOut());
+        } finally {
+            engine.unregister(slowGeneration);
+        }
+    }
+}
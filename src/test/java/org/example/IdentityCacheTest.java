@@ -0,0 +1,144 @@
+package org.example;
+
+import org.example.Authentication.IdentityCache;
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Тесты кеша "chatId -> пользователь": попадания без запросов к БД,
+ * кеширование отсутствия, явный сброс и ограничение размера
+ */
+public class IdentityCacheTest {
+    private static final String DB_FILE = "target/identity-cache-test.db";
+    private static SqliteDatabase database;
+    private IdentityCache cache;
+
+    @BeforeAll
+    static void setUpDatabase() throws SQLException {
+        deleteFiles();
+        SchemaMigrator.migrate(DB_FILE, SchemaMigrator.AUTH_MIGRATIONS);
+        database = SqliteDatabase.forFile(DB_FILE);
+        execute("INSERT INTO users (original_username, current_username, password_hash, telegram_chat_id, discord_channel_id) " +
+                "VALUES ('alice', 'alice', 'hash', 100, 200)");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.close();
+        deleteFiles();
+    }
+
+    @BeforeEach
+    void setUp() {
+        cache = new IdentityCache(database, 3);
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static void deleteFiles() {
+        new File(DB_FILE).delete();
+        new File(DB_FILE + "-wal").delete();
+        new File(DB_FILE + "-shm").delete();
+    }
+
+    /**
+     * Чат определяется по обоим столбцам, повторный запрос идет из памяти
+     */
+    @Test
+    void testResolveAndHit() throws SQLException {
+        IdentityCache.Identity telegram = cache.resolve(100);
+        Assertions.assertNotNull(telegram);
+        Assertions.assertEquals("alice", telegram.getUsername());
+        Assertions.assertTrue(telegram.isTelegram());
+        Assertions.assertFalse(telegram.isDiscord());
+
+        IdentityCache.Identity discord = cache.resolve(200);
+        Assertions.assertEquals("discord", discord.getPlatform());
+        Assertions.assertEquals(telegram.getUserId(), discord.getUserId());
+
+        cache.resolve(100);
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(1, cache.getHits());
+    }
+
+    /**
+     * Отсутствие пользователя кешируется, после сброса чат читается заново
+     */
+    @Test
+    void testNegativeEntryAndInvalidate() throws SQLException {
+        Assertions.assertNull(cache.resolve(300));
+        Assertions.assertNull(cache.resolve(300));
+        Assertions.assertEquals(1, cache.getMisses());
+
+        execute("INSERT INTO users (original_username, current_username, password_hash, telegram_chat_id) " +
+                "VALUES ('bob', 'bob', 'hash', 300)");
+        try {
+            Assertions.assertNull(cache.resolve(300), "До сброса кеш отдает старое значение");
+            cache.invalidate(300);
+            Assertions.assertEquals("bob", cache.resolve(300).getUsername());
+
+            cache.invalidateUsername("bob");
+            cache.resolve(300);
+            Assertions.assertEquals(3, cache.getMisses());
+        } finally {
+            execute("DELETE FROM users WHERE current_username = 'bob'");
+        }
+    }
+
+    /**
+     * Кеш не растет больше заданного размера
+     */
+    @Test
+    void testBoundedSize() throws SQLException {
+        for (long chatId = 1000; chatId < 1010; chatId++) {
+            cache.resolve(chatId);
+        }
+        Assertions.assertTrue(cache.size() <= 3, "Размер кеша: " + cache.size());
+    }
+
+    /**
+     * Привязка чата во время запроса к БД: устаревший ответ "не привязан" не остается в кеше
+     */
+    @Test
+    void testInvalidateDuringLoad() throws SQLException {
+        IdentityCache racing = new IdentityCache(database, 3) {
+            private boolean linked;
+
+            @Override
+            protected Identity load(long chatId) throws SQLException {
+                Identity identity = super.load(chatId);
+                if (!linked) {
+                    // чат привязывается, пока первый запрос еще не вернулся
+                    linked = true;
+                    execute("INSERT INTO users (original_username, current_username, password_hash, telegram_chat_id) " +
+                            "VALUES ('carol', 'carol', 'hash', 400)");
+                    invalidate(chatId);
+                }
+                return identity;
+            }
+        };
+        try {
+            Assertions.assertNull(racing.resolve(400), "Первый запрос прочитал чат до привязки");
+            Assertions.assertEquals(0, racing.size(), "Прочитанное до сброса не кешируется");
+            Assertions.assertEquals("carol", racing.resolve(400).getUsername());
+            Assertions.assertEquals(1, racing.size());
+        } finally {
+            execute("DELETE FROM users WHERE current_username = 'carol'");
+        }
+    }
+}
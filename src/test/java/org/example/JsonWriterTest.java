@@ -0,0 +1,189 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.example.OpenRouter.CircuitBreaker;
+import org.example.OpenRouter.JsonWriter;
+import org.example.OpenRouter.LlmGateway;
+import org.example.OpenRouter.ModelSettings;
+import org.example.OpenRouter.OpenRouterClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Тесты записи тела запроса к ии: JsonWriter на случайных промптах (проверка разбором org.json),
+ * расстановка запятых и параметры запроса из ModelSettings
+ */
+public class JsonWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    // символы, на которых ломалось экранирование через String.format
+    private static final char[] SPECIAL = {'"', '\\', '\n', '\r', '\t', '\b', '\f', '\u0000', '\u001f', '/',
+            '\u007f', '\u2028', '\u2029', 'ё', '€', '\uD83D', '\uDE00', '\uDBFF', '\uDC00', '\uFFFF'};
+
+    /**
+     * Случайная строка: ASCII, кириллица, спецсимволы, пары и одиночные суррогаты
+     */
+    private static String randomText(Random random) {
+        int length = random.nextInt(200);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(5)) {
+                case 0 -> text.append((char) (0x20 + random.nextInt(0x5F)));
+                case 1 -> text.append((char) ('а' + random.nextInt(32)));
+                case 2 -> text.append(SPECIAL[random.nextInt(SPECIAL.length)]);
+                case 3 -> text.appendCodePoint(0x1F300 + random.nextInt(0x300));
+                default -> text.append((char) random.nextInt(0x10000));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Любой промпт после записи и разбора org.json возвращается без изменений
+     */
+    @Test
+    void testFuzzRoundTrip() {
+        Random random = new Random(20240601);
+        JsonWriter json = new JsonWriter(16);
+        for (int i = 0; i < 2000; i++) {
+            String prompt = randomText(random);
+            String name = randomText(random);
+            double temperature = random.nextDouble() * 2;
+            long tokens = random.nextLong();
+
+            byte[] body = json.reset().beginObject()
+                    .name("messages").beginArray()
+                    .beginObject().name("role").value("user").name("content").value(prompt).endObject()
+                    .endArray()
+                    .name(name).value(tokens)
+                    .name("temperature").value(temperature)
+                    .name("stream").value(i % 2 == 0)
+                    .name("nothing").value((String) null)
+                    .endObject().toByteArray();
+
+            JSONObject parsed = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            Assertions.assertEquals(prompt, parsed.getJSONArray("messages").getJSONObject(0).getString("content"));
+            Assertions.assertEquals(tokens, parsed.getLong(name));
+            Assertions.assertEquals(temperature, parsed.getDouble("temperature"));
+            Assertions.assertEquals(i % 2 == 0, parsed.getBoolean("stream"));
+            Assertions.assertTrue(parsed.isNull("nothing"));
+        }
+    }
+
+    /**
+     * Запятые во вложенных объектах и массивах, готовый JSON как значение, ошибки структуры
+     */
+    @Test
+    void testStructure() {
+        JSONObject schema = new JSONObject().put("type", "object").put("required", List.of("a", "b"));
+        String text = new String(new JsonWriter(4).beginArray()
+                .value(1).value("два").beginObject().endObject().beginArray().endArray()
+                .beginObject().name("schema").jsonValue(schema.toString()).name("x").value(false).endObject()
+                .endArray().toByteArray(), StandardCharsets.UTF_8);
+
+        JSONArray parsed = new JSONArray(text);
+        Assertions.assertEquals(5, parsed.length());
+        Assertions.assertEquals("два", parsed.getString(1));
+        Assertions.assertEquals("object", parsed.getJSONObject(4).getJSONObject("schema").getString("type"));
+        Assertions.assertTrue(text.startsWith("[1,\"два\",{},[],{\"schema\":{"), text);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new JsonWriter(16).value(Double.NaN));
+        Assertions.assertThrows(IllegalStateException.class, () -> new JsonWriter(16).beginObject().toByteArray());
+        Assertions.assertThrows(IllegalStateException.class, () -> new JsonWriter(16).endArray());
+    }
+
+    /**
+     * Готовый JSON с русскими строками (enum схемы отложенного теста) записывается в UTF-8
+     */
+    @Test
+    void testNonAsciiJsonValue() {
+        JSONObject schema = new JSONObject().put("type", "string").put("enum", List.of("ПРИОРИТЕТНОЕ", "НОВОЕ", "ёж 😀"));
+        byte[] body = new JsonWriter(8).beginObject().name("schema").jsonValue(schema.toString()).endObject().toByteArray();
+
+        JSONObject parsed = new JSONObject(new String(body, StandardCharsets.UTF_8));
+        Assertions.assertEquals(List.of("ПРИОРИТЕТНОЕ", "НОВОЕ", "ёж 😀"),
+                parsed.getJSONObject("schema").getJSONArray("enum").toList());
+    }
+
+    /**
+     * Модель, temperature, max_tokens и системный промпт из настроек доходят до api;
+     * многострочный промпт со слешами и кавычками приходит без изменений
+     */
+    @Test
+    void testClientSendsSettings() throws Exception {
+        Path file = tempDir.resolve("openrouter.properties");
+        Files.writeString(file, """
+                models = custom/model, backup/model
+                temperature = 0.4
+                max_tokens = 900
+                system_prompt = Ты преподаватель английского.
+                """);
+        ModelSettings settings = ModelSettings.load(file);
+        Assertions.assertEquals(List.of("custom/model", "backup/model"), settings.getModels());
+        Files.writeString(file, "temperature = горячо\n");
+        Assertions.assertNull(ModelSettings.load(file).getTemperature(), "Некорректные значения - по умолчанию");
+        Assertions.assertEquals(LlmGateway.DEFAULT_MODELS, ModelSettings.load(tempDir.resolve("missing")).getModels());
+
+        List<JSONObject> requests = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/chat/completions", exchange -> {
+            requests.add(new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            byte[] body = new JSONObject().put("choices", List.of(
+                    Map.of("message", Map.of("role", "assistant", "content", "ok")))).toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            LlmGateway gateway = new LlmGateway(settings.getModels(), 1, Duration.ofMillis(10), Duration.ofMillis(100),
+                    new CircuitBreaker("stub", 10, Duration.ofSeconds(30)));
+            URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/chat/completions");
+            OpenRouterClient client = new OpenRouterClient("test-key",
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), endpoint,
+                    Duration.ofSeconds(5), 4, gateway, settings);
+
+            String prompt = "Слово: \"path\" - C:\\Users\\test\nВторая строка\tс табуляцией";
+            Assertions.assertEquals("ok", client.sendRequest(prompt));
+
+            JSONObject request = requests.getFirst();
+            Assertions.assertEquals("custom/model", request.getString("model"));
+            Assertions.assertEquals(0.4, request.getDouble("temperature"));
+            Assertions.assertEquals(900, request.getInt("max_tokens"));
+            JSONArray messages = request.getJSONArray("messages");
+            Assertions.assertEquals("Ты преподаватель английского.", messages.getJSONObject(0).getString("content"));
+            Assertions.assertEquals(prompt, messages.getJSONObject(1).getString("content"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Без файла настроек параметры модели не отправляются
+     */
+    @Test
+    void testDefaultSettings() {
+        ModelSettings settings = ModelSettings.createDefault();
+        Assertions.assertNull(settings.getTemperature());
+        Assertions.assertNull(settings.getMaxTokens());
+        Assertions.assertEquals(ModelSettings.DEFAULT_SYSTEM_PROMPT, settings.getSystemPrompt());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ModelSettings(List.of("m"), 3.0, null, null));
+    }
+}
@@ -0,0 +1,201 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.OpenRouter.CircuitBreaker;
+import org.example.OpenRouter.LlmException;
+import org.example.OpenRouter.LlmGateway;
+import org.example.OpenRouter.OpenRouterClient;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Тесты шлюза запросов к ии на локальной заглушке OpenRouter:
+ * типизированные ошибки, повторы, запасные модели и предохранитель
+ */
+public class LlmGatewayTest {
+
+    /**
+     * Ответ заглушки: статус, тело и заголовок Retry-After (null - без заголовка)
+     */
+    private record Reply(int status, String body, String retryAfter) {
+        static Reply ok(String content) {
+            return new Reply(200, new JSONObject().put("choices", List.of(
+                    Map.of("message", Map.of("role", "assistant", "content", content)))).toString(), null);
+        }
+
+        static Reply error(int status, String message) {
+            return new Reply(status, new JSONObject().put("error", Map.of("message", message, "code", status)).toString(), null);
+        }
+    }
+
+    private HttpServer server;
+    // сценарий ответов по моделям, когда сценарий кончился - последний ответ повторяется
+    private final Map<String, ConcurrentLinkedQueue<Reply>> script = new ConcurrentHashMap<>();
+    private final Map<String, Reply> lastReply = new ConcurrentHashMap<>();
+    // модели запросов в порядке поступления
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String model = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                .getString("model");
+        requests.add(model);
+
+        ConcurrentLinkedQueue<Reply> queue = script.get(model);
+        Reply reply = queue != null ? queue.poll() : null;
+        if (reply == null) {
+            reply = lastReply.getOrDefault(model, Reply.error(404, "No endpoints found for " + model));
+        }
+        lastReply.put(model, reply);
+
+        if (reply.retryAfter() != null) {
+            exchange.getResponseHeaders().add("Retry-After", reply.retryAfter());
+        }
+        byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(reply.status(), body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private void reply(String model, Reply... replies) {
+        script.computeIfAbsent(model, key -> new ConcurrentLinkedQueue<>()).addAll(List.of(replies));
+    }
+
+    private OpenRouterClient client(List<String> models, int maxAttempts, CircuitBreaker breaker) {
+        LlmGateway gateway = new LlmGateway(models, maxAttempts, Duration.ofMillis(10), Duration.ofMillis(100), breaker);
+        URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/chat/completions");
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return new OpenRouterClient("test-key", httpClient, endpoint, Duration.ofSeconds(5), 4, gateway);
+    }
+
+    private static CircuitBreaker breaker(int threshold, Duration openDuration) {
+        return new CircuitBreaker("stub", threshold, openDuration);
+    }
+
+    /**
+     * Временные ошибки повторяются, 429 с Retry-After тоже
+     */
+    @Test
+    void testRetriesTransientErrors() throws Exception {
+        reply("main", Reply.error(503, "Service Unavailable"),
+                new Reply(429, Reply.error(429, "Rate limit").body(), "0"),
+                Reply.ok("hello"));
+        OpenRouterClient client = client(List.of("main"), 3, breaker(10, Duration.ofSeconds(30)));
+
+        Assertions.assertEquals("hello", client.sendRequest("prompt"));
+        Assertions.assertEquals(List.of("main", "main", "main"), requests);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, client.getGateway().getCircuitBreaker().getState());
+    }
+
+    /**
+     * Ошибка ключа не повторяется и приходит типизированной
+     */
+    @Test
+    void testAuthErrorNotRetried() {
+        reply("main", Reply.error(401, "No auth credentials found"));
+        reply("backup", Reply.ok("never"));
+        OpenRouterClient client = client(List.of("main", "backup"), 3, breaker(10, Duration.ofSeconds(30)));
+
+        LlmException error = Assertions.assertThrows(LlmException.class, () -> client.sendRequest("prompt"));
+        Assertions.assertEquals(LlmException.Kind.AUTH, error.getKind());
+        Assertions.assertEquals(401, error.getStatusCode());
+        Assertions.assertEquals(List.of("main"), requests);
+    }
+
+    /**
+     * Недоступная модель и исчерпанные повторы переводят запрос на следующую модель
+     */
+    @Test
+    void testFallsBackToNextModel() throws Exception {
+        reply("main", Reply.error(502, "Provider returned error"));
+        reply("missing", Reply.error(404, "No endpoints found"));
+        reply("backup", Reply.ok("from backup"));
+        OpenRouterClient client = client(List.of("main", "missing", "backup"), 2, breaker(10, Duration.ofSeconds(30)));
+
+        Assertions.assertEquals("from backup", client.sendRequest("prompt"));
+        Assertions.assertEquals(List.of("main", "main", "missing", "backup"), requests);
+
+        // структурированный ответ: невалидный JSON основной модели - тоже повод взять запасную
+        requests.clear();
+        script.clear();
+        lastReply.clear();
+        reply("main", Reply.ok("not a json"));
+        reply("backup", Reply.ok("{\"ok\": true}"));
+        OpenRouterClient structured = client(List.of("main", "backup"), 2, breaker(10, Duration.ofSeconds(30)));
+        JSONObject json = structured.sendStructuredRequest("prompt", "test", new JSONObject());
+        Assertions.assertTrue(json.getBoolean("ok"));
+        Assertions.assertEquals(List.of("main", "backup"), requests);
+    }
+
+    /**
+     * Пока сервис недоступен, предохранитель не пропускает запросы, после паузы пробный запрос его замыкает
+     */
+    @Test
+    void testCircuitBreakerShedsLoad() throws Exception {
+        reply("main", Reply.error(503, "down"), Reply.error(503, "down"), Reply.ok("back"));
+        CircuitBreaker breaker = breaker(2, Duration.ofMillis(300));
+        OpenRouterClient client = client(List.of("main"), 1, breaker);
+
+        for (int i = 0; i < 2; i++) {
+            LlmException error = Assertions.assertThrows(LlmException.class, () -> client.sendRequest("prompt"));
+            Assertions.assertEquals(LlmException.Kind.UNAVAILABLE, error.getKind());
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(client.isAvailable());
+
+        LlmException shed = Assertions.assertThrows(LlmException.class, () -> client.sendRequest("prompt"));
+        Assertions.assertEquals(LlmException.Kind.CIRCUIT_OPEN, shed.getKind());
+        Assertions.assertEquals(2, requests.size(), "Разомкнутый предохранитель не отправляет запрос");
+        Assertions.assertEquals(1, breaker.getRejectedCount());
+
+        Thread.sleep(350);
+        Assertions.assertTrue(client.isAvailable());
+        Assertions.assertEquals("back", client.sendRequest("prompt"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Задержки повторов растут экспоненциально, не превышают максимум и разбросаны
+     */
+    @Test
+    void testBackoffJitter() {
+        LlmGateway gateway = new LlmGateway(List.of("main"), 5, Duration.ofMillis(100), Duration.ofMillis(1000),
+                breaker(1, Duration.ofSeconds(1)));
+        for (int i = 0; i < 50; i++) {
+            long first = gateway.backoff(0).toMillis();
+            long third = gateway.backoff(2).toMillis();
+            long capped = gateway.backoff(10).toMillis();
+            Assertions.assertTrue(first >= 50 && first <= 100, "Первая задержка " + first);
+            Assertions.assertTrue(third >= 200 && third <= 400, "Третья задержка " + third);
+            Assertions.assertTrue(capped >= 500 && capped <= 1000, "Задержка после максимума " + capped);
+        }
+    }
+}
@@ -67,7 +67,7 @@ public class MessageTest {
         }
 
         @Override
-        public void addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
             List<Word> words = userWords.computeIfAbsent(userId, k -> new ArrayList<>());
 
             if (words.stream().anyMatch(word -> word.getEnglishWord().equalsIgnoreCase(englishWord))) {
@@ -76,6 +76,7 @@ public class MessageTest {
 
             Word newWord = new Word(nextWordId++, userId, englishWord, translation, priority);
             words.add(newWord);
+            return newWord.getId();
         }
 
         @Override
@@ -62,7 +62,7 @@ public class OldWordTest {
         }
 
         @Override
-        public void addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
             List<Word> words = userWords.computeIfAbsent(userId, k -> new ArrayList<>());
 
             if (words.stream().anyMatch(word -> word.getEnglishWord().equalsIgnoreCase(englishWord))) {
@@ -71,6 +71,7 @@ public class OldWordTest {
 
             Word newWord = new Word(nextWordId++, userId, englishWord, translation, priority);
             words.add(newWord);
+            return newWord.getId();
         }
 
         @Override
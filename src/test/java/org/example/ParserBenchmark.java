@@ -0,0 +1,231 @@
+package org.example;
+
+import org.example.Parsing.TestTextParser;
+import org.example.ScheduledTests.TestsData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Сравнение однопроходного TestTextParser с прежним разбором регулярными выражениями.
+ * Прежние реализации оставлены здесь как эталон, с ними же сверяется TestTextParserTest.
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ * (например, mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.example.ParserBenchmark).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    static final String POINTS_TEST = buildPointsTest(10);
+    static final String WORD_TEST = buildWordTest(10);
+
+    @Benchmark
+    public void pointsTestRegex(Blackhole blackhole) {
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+        legacyParsePointsTest(POINTS_TEST, questions, answers, points);
+        blackhole.consume(questions);
+    }
+
+    @Benchmark
+    public void pointsTestSinglePass(Blackhole blackhole) {
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+        TestTextParser.parsePointsTest(POINTS_TEST, questions, answers, points);
+        blackhole.consume(questions);
+    }
+
+    @Benchmark
+    public void wordTestRegex(Blackhole blackhole) {
+        blackhole.consume(legacyParseWordTest(WORD_TEST));
+    }
+
+    @Benchmark
+    public void wordTestSinglePass(Blackhole blackhole) {
+        TestsData testsData = new TestsData();
+        TestTextParser.parseWordTest(WORD_TEST, testsData);
+        blackhole.consume(testsData);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    static String buildPointsTest(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            sb.append(i).append(". (").append(i % 3 + 1).append(" points)\n")
+                    .append("Choose the correct form of the verb in sentence number ").append(i).append(":\n")
+                    .append("A. goes\n")
+                    .append("B. went\n")
+                    .append("C. gone\n")
+                    .append("D. going\n")
+                    .append("Answer: ").append((char) ('A' + i % 4)).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    static String buildWordTest(int count) {
+        StringBuilder sb = new StringBuilder("ТЕСТ НА ЗНАНИЕ СЛОВ\n\n");
+        for (int i = 1; i <= count; i++) {
+            sb.append("Вопрос ").append(i).append(":\n")
+                    .append("Выберите правильный перевод слова \"word").append(i).append("\"\n\n")
+                    .append("A) слово").append(i).append('\n')
+                    .append("B) дело\n")
+                    .append("C) тело\n")
+                    .append("D) мело\n\n")
+                    .append("Ответ: A\n")
+                    .append("Тип: ").append(i % 2 == 0 ? "НОВОЕ" : "ПРИОРИТЕТНОЕ").append('\n')
+                    .append("Слово: word").append(i).append(" - слово").append(i).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Прежний разбор вводного и speed теста (TestHandler/SpeedTestHandler.generateTest)
+     */
+    static void legacyParsePointsTest(String test, List<String> questions, List<String> answers, List<Integer> pointsList) {
+        Pattern pattern = Pattern.compile(
+                "(\\d+).?\\s*\\((\\d+)\\s*[points]*\\)\\s*\\n" +
+                        "(.+?)\\n" +
+                        "(A\\..+?)\\n" +
+                        "(B\\..+?)\\n" +
+                        "(C\\..+?)\\n" +
+                        "(D\\..+?)\\n" +
+                        "Answer:\\s*?([A-D])",
+                Pattern.DOTALL
+        );
+        Matcher matcher = pattern.matcher(test);
+        while (matcher.find()) {
+            questions.add(matcher.group(3).trim() + "\n" +
+                    matcher.group(4).trim() + "\n" +
+                    matcher.group(5).trim() + "\n" +
+                    matcher.group(6).trim() + "\n" +
+                    matcher.group(7).trim());
+            answers.add(matcher.group(8).trim());
+            pointsList.add(Integer.parseInt(matcher.group(2)));
+        }
+    }
+
+    /**
+     * Прежний разбор отложенного теста (TestsParser.parseTest без логирования)
+     */
+    static TestsData legacyParseWordTest(String testText) {
+        TestsData testsData = new TestsData();
+        for (String questionBlock : testText.split("(?=Вопрос\\s*\\d*:|Вопрос:)")) {
+            String block = questionBlock.trim();
+            if (block.isEmpty() || block.startsWith("ТЕСТ НА ЗНАНИЕ") ||
+                    block.startsWith("Проверьте свой") || block.length() < 20) {
+                continue;
+            }
+            TestsData.QuestionData question = legacyParseQuestion(block);
+            if (question != null) {
+                testsData.addQuestion(question);
+            }
+        }
+        return testsData;
+    }
+
+    private static TestsData.QuestionData legacyParseQuestion(String block) {
+        Pattern wordPattern = Pattern.compile("Слово:\\s*([^\\-\n\r]+)\\s*-\\s*([^\n\r]+)", Pattern.CASE_INSENSITIVE);
+        Pattern typePattern = Pattern.compile("Тип:\\s*(ПРИОРИТЕТНОЕ|НОВОЕ)", Pattern.CASE_INSENSITIVE);
+        Pattern correctPattern = Pattern.compile("Ответ:\\s*([A-D])", Pattern.CASE_INSENSITIVE);
+
+        String englishWord;
+        String translation;
+        String wordType = "НОВОЕ";
+        String correctAnswer = "A";
+
+        Matcher wordMatcher = wordPattern.matcher(block);
+        if (wordMatcher.find()) {
+            englishWord = wordMatcher.group(1).trim();
+            translation = wordMatcher.group(2).trim();
+        } else {
+            Pattern altWordPattern = Pattern.compile("Слов[ао]:?\\s*([^\\-\n\r]+)\\s*-\\s*([^\n\r]+)", Pattern.CASE_INSENSITIVE);
+            Matcher altWordMatcher = altWordPattern.matcher(block);
+            if (!altWordMatcher.find()) {
+                return null;
+            }
+            englishWord = altWordMatcher.group(1).trim();
+            translation = altWordMatcher.group(2).trim();
+        }
+        Matcher typeMatcher = typePattern.matcher(block);
+        if (typeMatcher.find()) {
+            wordType = typeMatcher.group(1);
+        }
+        Matcher correctMatcher = correctPattern.matcher(block);
+        if (correctMatcher.find()) {
+            correctAnswer = correctMatcher.group(1);
+        }
+        if (englishWord.isEmpty() || englishWord.equals("Н/Д") || translation.isEmpty()) {
+            return null;
+        }
+        return new TestsData.QuestionData(legacyQuestionText(block, englishWord), correctAnswer, wordType, englishWord, translation);
+    }
+
+    private static String legacyQuestionText(String block, String englishWord) {
+        StringBuilder sb = new StringBuilder();
+        boolean inQuestion = false;
+        boolean foundOptions = false;
+        int optionsCount = 0;
+        StringBuilder questionBody = new StringBuilder();
+
+        for (String line : block.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.startsWith("Ответ:") || line.startsWith("Тип:") || line.startsWith("Слово")) {
+                continue;
+            }
+            if (!inQuestion && !line.matches("[A-D]\\)\\s*.+")) {
+                inQuestion = true;
+            }
+            if (inQuestion) {
+                if (line.matches("[A-D]\\)\\s*.+")) {
+                    if (questionBody.length() > 0 && !foundOptions) {
+                        sb.append(questionBody).append("\n");
+                        questionBody.setLength(0);
+                    }
+                    sb.append(line).append("\n");
+                    optionsCount++;
+                    foundOptions = true;
+                } else if (!foundOptions) {
+                    questionBody.append(line).append("\n");
+                }
+            }
+            if (optionsCount >= 4) break;
+        }
+
+        if (sb.length() == 0 && questionBody.length() == 0) {
+            sb.append("Выберите правильный перевод слова \"").append(englishWord).append("\"\n");
+        } else if (questionBody.length() > 0 && !foundOptions) {
+            sb.insert(0, questionBody);
+        }
+        String result = sb.toString().trim();
+        if (!foundOptions || optionsCount < 4) {
+            result += "\nA) вариант перевода 1\nB) вариант перевода 2\nC) вариант перевода 3\nD) вариант перевода 4";
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import org.example.Data.BotResponse;
+import org.example.RateLimit.OutboundQueue;
+import org.example.RateLimit.RateLimitedException;
+import org.example.RateLimit.TokenBucket;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тесты ограничения частоты исходящих сообщений:
+ * ведро токенов, очередь отправки и повтор после ответа 429
+ */
+public class RateLimitTest {
+
+    /**
+     * Ведро отдает burst токенов сразу, дальше - с ожиданием
+     */
+    @Test
+    void testTokenBucketBurstAndReserve() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+
+        Assertions.assertEquals(0, bucket.reserve());
+        Assertions.assertEquals(0, bucket.reserve());
+        Assertions.assertEquals(0, bucket.reserve());
+
+        long wait = bucket.reserve();
+        Assertions.assertTrue(wait > 0 && wait <= 100_000_000L, "Четвертый токен через ~100 мс, а не " + wait);
+        Assertions.assertFalse(bucket.tryAcquire());
+    }
+
+    /**
+     * После паузы (retry-after) ведро не выдает токены до ее окончания
+     */
+    @Test
+    void testTokenBucketPause() {
+        TokenBucket bucket = new TokenBucket(100, 10);
+        bucket.pause(Duration.ofSeconds(5).toNanos());
+
+        Assertions.assertFalse(bucket.tryAcquire());
+        Assertions.assertTrue(bucket.reserve() > Duration.ofSeconds(4).toNanos());
+        Assertions.assertFalse(bucket.isIdle());
+    }
+
+    /**
+     * Вспышка сообщений в один чат растягивается по лимиту чата
+     */
+    @Test
+    void testQueuePacesPerChat() {
+        List<Long> sentAt = new ArrayList<>();
+        OutboundQueue queue = new OutboundQueue("test", response -> {
+            sentAt.add(System.nanoTime());
+            return true;
+        }, 1000, 1000, 20, 1, 10, Duration.ofSeconds(5));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(queue.send(new BotResponse(1L, "msg " + i)));
+        }
+
+        // 1 сообщение сразу и еще 3 с шагом 50 мс
+        long elapsedMs = (sentAt.get(3) - start) / 1_000_000;
+        Assertions.assertTrue(elapsedMs >= 130, "Сообщения в один чат должны идти с паузами, прошло " + elapsedMs + " мс");
+        Assertions.assertEquals(4, queue.getSent());
+        Assertions.assertTrue(queue.getDelayed() >= 3);
+    }
+
+    /**
+     * Ответ 429 не считается ошибкой: отправка повторяется после retry-after
+     */
+    @Test
+    void testQueueRetriesAfterRateLimit() {
+        AtomicInteger calls = new AtomicInteger();
+        OutboundQueue queue = new OutboundQueue("test", response -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new RateLimitedException("429", Duration.ofMillis(50), false);
+            }
+            return true;
+        }, 1000, 1000, 1000, 10, 10, Duration.ofSeconds(5));
+
+        long start = System.nanoTime();
+        Assertions.assertTrue(queue.send(new BotResponse(7L, "hello")));
+
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(1, queue.getRateLimited());
+        Assertions.assertEquals(0, queue.getFailed());
+        Assertions.assertTrue((System.nanoTime() - start) / 1_000_000 >= 40, "Повтор только после retry-after");
+    }
+
+    /**
+     * Если лимит не снимается, наружу выходит RateLimitedException, а не false
+     */
+    @Test
+    void testQueueGivesUpAfterRetries() {
+        OutboundQueue queue = new OutboundQueue("test", response -> {
+            throw new RateLimitedException("429", Duration.ofMillis(1), true);
+        }, 1000, 1000, 1000, 10, 10, Duration.ofSeconds(5));
+
+        Assertions.assertThrows(RateLimitedException.class, () -> queue.send(new BotResponse(7L, "hello")));
+        Assertions.assertEquals(4, queue.getRateLimited());
+    }
+}
@@ -0,0 +1,133 @@
+package org.example;
+
+import org.example.OpenRouter.ResponseCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Тесты кеша ответов ии: варианты по кругу, время жизни, ограничение размера
+ * и один общий запрос для одновременных одинаковых промптов
+ */
+public class ResponseCacheTest {
+
+    /**
+     * Загрузчик, который отвечает "ответ N" и считает запросы
+     */
+    private static Supplier<CompletableFuture<String>> counting(AtomicInteger calls) {
+        return () -> CompletableFuture.completedFuture("ответ " + calls.incrementAndGet());
+    }
+
+    /**
+     * Сначала набираются варианты, затем выдаются по кругу без запросов к ии
+     */
+    @Test
+    void testVariantsRotate() throws Exception {
+        ResponseCache cache = new ResponseCache(10, Duration.ofMinutes(5), 2);
+        AtomicInteger calls = new AtomicInteger();
+        String key = ResponseCache.key("text", "prompt");
+
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            answers.add(cache.get(key, counting(calls), value -> true).get());
+        }
+
+        Assertions.assertEquals(2, calls.get(), "Запросов к ии столько, сколько вариантов");
+        Assertions.assertEquals(List.of("ответ 1", "ответ 2"), answers.subList(0, 2));
+        Assertions.assertEquals(new HashSet<>(List.of("ответ 1", "ответ 2")), new HashSet<>(answers.subList(2, 6)));
+        Assertions.assertNotEquals(answers.get(2), answers.get(3), "Варианты чередуются");
+        Assertions.assertEquals(4, cache.getHits());
+
+        // другой промпт - другой ключ
+        Assertions.assertNotEquals(key, ResponseCache.key("text", "prompt2"));
+        Assertions.assertNotEquals(ResponseCache.key("ab", "c"), ResponseCache.key("a", "bc"));
+    }
+
+    /**
+     * Устаревшие и непригодные ответы заново запрашиваются, ошибки не кешируются
+     */
+    @Test
+    void testTtlRejectedAndFailedAnswers() throws Exception {
+        ResponseCache cache = new ResponseCache(10, Duration.ofMillis(100), 1);
+        AtomicInteger calls = new AtomicInteger();
+        String key = ResponseCache.key("text", "prompt");
+
+        Assertions.assertEquals("ответ 1", cache.get(key, counting(calls), value -> true).get());
+        Assertions.assertEquals("ответ 1", cache.get(key, counting(calls), value -> true).get());
+        Thread.sleep(150);
+        Assertions.assertEquals("ответ 2", cache.get(key, counting(calls), value -> true).get());
+
+        String other = ResponseCache.key("text", "broken");
+        Assertions.assertEquals("ответ 3", cache.get(other, counting(calls), value -> false).get());
+        Assertions.assertEquals("ответ 4", cache.get(other, counting(calls), value -> false).get(),
+                "Непригодный ответ не выдается повторно");
+
+        CompletableFuture<String> failed = cache.get(ResponseCache.key("text", "fail"),
+                () -> CompletableFuture.failedFuture(new IllegalStateException("503")), value -> true);
+        Assertions.assertThrows(ExecutionException.class, failed::get);
+        Assertions.assertEquals("ответ 5", cache.get(ResponseCache.key("text", "fail"), counting(calls), value -> true).get());
+    }
+
+    /**
+     * Одновременные одинаковые запросы ждут один запрос к ии; отмена ожидания одним не отменяет его для других
+     */
+    @Test
+    void testConcurrentRequestsCoalesced() throws Exception {
+        ResponseCache cache = new ResponseCache(10, Duration.ofMinutes(5), 3);
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        String key = ResponseCache.key("text", "prompt");
+
+        List<CompletableFuture<String>> waiting = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiting.add(cache.get(key, () -> {
+                calls.incrementAndGet();
+                return upstream;
+            }, value -> true));
+        }
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(4, cache.getCoalesced());
+
+        waiting.getFirst().cancel(true);
+        upstream.complete("общий ответ");
+        for (CompletableFuture<String> future : waiting.subList(1, waiting.size())) {
+            Assertions.assertEquals("общий ответ", future.get());
+        }
+
+        // пока идет запрос за вторым вариантом, остальные получают первый без ожидания
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> filling = cache.get(key, () -> second, value -> true);
+        Assertions.assertEquals("общий ответ", cache.get(key, counting(calls), value -> true).getNow(null));
+        second.complete("второй ответ");
+        Assertions.assertEquals("второй ответ", filling.get());
+    }
+
+    /**
+     * Число промптов ограничено, вытесняется давно не запрошенный
+     */
+    @Test
+    void testSizeBound() throws Exception {
+        ResponseCache cache = new ResponseCache(2, Duration.ofMinutes(5), 1);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("a", counting(calls), value -> true).get();
+        cache.get("b", counting(calls), value -> true).get();
+        cache.get("a", counting(calls), value -> true).get();
+        cache.get("c", counting(calls), value -> true).get();
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(3, calls.get());
+
+        cache.get("a", counting(calls), value -> true).get();
+        Assertions.assertEquals(3, calls.get(), "Недавно запрошенный промпт остался");
+        cache.get("b", counting(calls), value -> true).get();
+        Assertions.assertEquals(4, calls.get(), "Давно не запрошенный промпт вытеснен");
+    }
+}
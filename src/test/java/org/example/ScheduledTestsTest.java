@@ -121,7 +121,7 @@ public class ScheduledTestsTest {
         }
 
         @Override
-        public void addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
+        public int addWord(long userId, String englishWord, String translation, int priority) throws SQLException {
             if (englishWord == null || translation == null) {
                 throw new SQLException("Английское слово и перевод не могут быть null");
             }
@@ -136,6 +136,7 @@ public class ScheduledTestsTest {
 
             Word newWord = new Word(nextWordId++, userId, englishWord, translation, priority);
             words.add(newWord);
+            return newWord.getId();
         }
 
         @Override
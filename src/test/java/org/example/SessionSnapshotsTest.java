@@ -0,0 +1,134 @@
+package org.example;
+
+import org.example.ScheduledOldWord.OldWordData;
+import org.example.ScheduledTests.TestSession;
+import org.example.ScheduledTests.TestsData;
+import org.example.Session.SessionCodec;
+import org.example.Session.SessionSnapshots;
+import org.example.Session.SessionStore;
+import org.example.SpeedTest.SpeedTestHandler;
+import org.example.StartTest.TestHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Тесты снимков сессий: после перезапуска тесты продолжаются с того же места
+ */
+public class SessionSnapshotsTest {
+
+    private static final String TWO_QUESTIONS = "1. (1 points)\n" +
+            "Choose the correct form: I ___ a student.\n" +
+            "A. am\n" +
+            "B. is\n" +
+            "C. are\n" +
+            "D. be\n" +
+            "Answer: A\n" +
+            "2. (3 points)\n" +
+            "What is the past tense of 'go'?\n" +
+            "A. goed\n" +
+            "B. gone\n" +
+            "C. went\n" +
+            "D. going\n" +
+            "Answer: C\n";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Все виды сессий переживают сохранение и загрузку в новое хранилище
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        Path file = tempDir.resolve("sessions.bin");
+
+        SessionStore store = new SessionStore();
+        TestHandler testHandler = new TestHandler(store);
+        SpeedTestHandler speedTestHandler = new SpeedTestHandler(store);
+        SessionStore.Slot<TestSession> scheduled = store.slot(SessionStore.Kind.SCHEDULED_TEST, TestSession.class, TestSession.CODEC);
+        SessionStore.Slot<OldWordData> oldWords = store.slot(SessionStore.Kind.OLD_WORD, OldWordData.class, OldWordData.CODEC);
+        SessionStore.Slot<String> auth = store.slot(SessionStore.Kind.AUTH, String.class, SessionCodec.STRING);
+
+        testHandler.generateTest(1L, TWO_QUESTIONS);
+        testHandler.handleAnswer("A_button", 1L);
+        speedTestHandler.generateTest(2L, TWO_QUESTIONS);
+        speedTestHandler.stopTimer(2L);
+
+        TestsData testsData = new TestsData();
+        testsData.addQuestion(new TestsData.QuestionData("Перевод слова apple?", "B", "НОВОЕ", "apple", "яблоко"));
+        testsData.addQuestion(new TestsData.QuestionData("Перевод слова house?", "A", "ПРИОРИТЕТНОЕ", "house", "дом"));
+        TestSession session = new TestSession(testsData, 77L);
+        session.checkAnswer("B");
+        session.nextQuestion();
+        scheduled.put(3L, session);
+
+        OldWordData oldWord = new OldWordData("Что значит cat?", "C", "cat", "кот");
+        oldWord.setWordId(15);
+        oldWord.setCurrentPriority(4);
+        oldWords.put(4L, oldWord);
+        auth.put(5L, "waiting_sing_in_password:alice");
+
+        Assertions.assertEquals(5, new SessionSnapshots(store, file).save());
+
+        // "перезапуск": новое хранилище и новые обработчики
+        SessionStore restoredStore = new SessionStore();
+        TestHandler restoredTests = new TestHandler(restoredStore);
+        SpeedTestHandler restoredSpeed = new SpeedTestHandler(restoredStore);
+        SessionStore.Slot<TestSession> restoredScheduled = restoredStore.slot(SessionStore.Kind.SCHEDULED_TEST, TestSession.class, TestSession.CODEC);
+        SessionStore.Slot<OldWordData> restoredOldWords = restoredStore.slot(SessionStore.Kind.OLD_WORD, OldWordData.class, OldWordData.CODEC);
+        SessionStore.Slot<String> restoredAuth = restoredStore.slot(SessionStore.Kind.AUTH, String.class, SessionCodec.STRING);
+
+        Assertions.assertEquals(5, new SessionSnapshots(restoredStore, file).load());
+
+        // вводный тест продолжается со второго вопроса, первый ответ уже засчитан
+        Assertions.assertTrue(restoredTests.isTestActive(1L));
+        String result = restoredTests.handleAnswer("C_button", 1L);
+        Assertions.assertTrue(result.contains("Набрано баллов: 4 из 4"), result);
+
+        Assertions.assertTrue(restoredSpeed.isTestActive(2L));
+        Assertions.assertEquals("A", restoredSpeed.getCurrentCorrectAnswer(2L));
+        Assertions.assertEquals(1, restoredSpeed.resumeTimers());
+        restoredSpeed.stopTimer(2L);
+
+        TestSession restoredSession = restoredScheduled.get(3L);
+        Assertions.assertEquals(77L, restoredSession.getUserId());
+        Assertions.assertEquals(1, restoredSession.getCorrectAnswersCount());
+        Assertions.assertEquals("house", restoredSession.getCurrentQuestionData().getEnglishWord());
+        Assertions.assertEquals(1, restoredSession.getNewCorrectWords().size());
+
+        OldWordData restoredOldWord = restoredOldWords.get(4L);
+        Assertions.assertEquals("кот", restoredOldWord.getTranslation());
+        Assertions.assertEquals(15, restoredOldWord.getWordId());
+        Assertions.assertEquals(4, restoredOldWord.getCurrentPriority());
+
+        Assertions.assertEquals("waiting_sing_in_password:alice", restoredAuth.get(5L));
+        Assertions.assertTrue(restoredStore.isBusy(1L) || restoredStore.isBusy(3L), "Восстановленные тесты занимают пользователя");
+    }
+
+    /**
+     * Поврежденный снимок пропускается, а не восстанавливается частично
+     */
+    @Test
+    void testCorruptedSnapshotIgnored() throws IOException {
+        Path file = tempDir.resolve("sessions.bin");
+        SessionStore store = new SessionStore();
+        SessionStore.Slot<String> auth = store.slot(SessionStore.Kind.AUTH, String.class, SessionCodec.STRING);
+        auth.put(1L, "waiting_reg_login");
+        new SessionSnapshots(store, file).save();
+
+        byte[] data = Files.readAllBytes(file);
+        data[20] ^= 0x5A;
+        Files.write(file, data);
+
+        SessionStore restored = new SessionStore();
+        restored.slot(SessionStore.Kind.AUTH, String.class, SessionCodec.STRING);
+        Assertions.assertEquals(0, new SessionSnapshots(restored, file).load());
+        Assertions.assertEquals(0, restored.size());
+
+        Assertions.assertEquals(0, new SessionSnapshots(restored, tempDir.resolve("missing.bin")).load());
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+import org.example.Session.SessionStore;
+import org.example.SpeedTest.SpeedTestHandler;
+import org.example.StartTest.TestHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тесты единого хранилища сессий: занятость одной проверкой, атомарные изменения, очистка брошенных сессий
+ */
+public class SessionStoreTest {
+
+    private static final String TEST_TEXT = "1. (2 points)\n" +
+            "What is the capital of Great Britain?\n" +
+            "A. Paris\n" +
+            "B. London\n" +
+            "C. Berlin\n" +
+            "D. Madrid\n" +
+            "Answer: B\n";
+
+    /**
+     * Занятость определяется по любому тесту в хранилище, ввод в словаре пользователя не занимает
+     */
+    @Test
+    void testBusyLookup() {
+        SessionStore store = new SessionStore();
+        TestHandler testHandler = new TestHandler(store);
+        long chatId = 5L;
+
+        SessionStore.Slot<String> dictionary = store.slot(SessionStore.Kind.DICTIONARY, String.class);
+        dictionary.put(chatId, "waiting_add_word");
+        Assertions.assertFalse(store.isBusy(chatId), "Ввод в словаре не мешает рассылкам");
+
+        testHandler.generateTest(chatId, TEST_TEXT);
+        Assertions.assertTrue(store.isBusy(chatId), "Начатый тест занимает пользователя");
+        Assertions.assertEquals("waiting_add_word", dictionary.get(chatId), "Сессии разных видов не мешают друг другу");
+
+        testHandler.handleAnswer("B_button", chatId);
+        Assertions.assertFalse(store.isBusy(chatId), "Завершенный тест освобождает пользователя");
+
+        dictionary.remove(chatId);
+        Assertions.assertEquals(0, store.size(), "Чат без сессий удаляется из хранилища");
+    }
+
+    /**
+     * Параллельные изменения одной сессии не теряются
+     */
+    @Test
+    void testAtomicCompute() throws InterruptedException {
+        SessionStore store = new SessionStore();
+        SessionStore.Slot<Integer> counter = store.slot(SessionStore.Kind.SPEED_TEST, Integer.class);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    counter.compute(1L, value -> value == null ? 1 : value + 1);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(8000, counter.get(1L));
+    }
+
+    /**
+     * Брошенные сессии удаляются, а их ресурсы освобождаются
+     */
+    @Test
+    void testIdleEviction() throws InterruptedException {
+        SessionStore store = new SessionStore();
+        AtomicInteger released = new AtomicInteger();
+        store.onEvict(SessionStore.Kind.SPEED_TEST, chatId -> released.incrementAndGet());
+
+        store.put(1L, SessionStore.Kind.SPEED_TEST, "брошенный тест");
+        store.put(2L, SessionStore.Kind.AUTH, "waiting_reg_login");
+        Thread.sleep(50);
+        store.put(3L, SessionStore.Kind.OLD_WORD, "активный тест");
+
+        Assertions.assertEquals(2, store.evictIdle(Duration.ofMillis(25)));
+        Assertions.assertEquals(1, released.get(), "Таймер брошенной сессии остановлен");
+        Assertions.assertFalse(store.isBusy(1L));
+        Assertions.assertNull(store.get(2L, SessionStore.Kind.AUTH));
+        Assertions.assertTrue(store.isBusy(3L), "Активная сессия остается");
+        Assertions.assertEquals(2, store.getEvictedCount());
+    }
+
+    /**
+     * Брошенный speed тест удаляется вместе с таймером вопроса
+     */
+    @Test
+    void testEvictionCancelsSpeedTestTimer() throws InterruptedException {
+        SessionStore store = new SessionStore();
+        SpeedTestHandler handler = new SpeedTestHandler(store);
+        handler.startTest(5L, List.of("Question?"), List.of("A"), List.of(3));
+        Assertions.assertEquals(1, handler.getActiveTimerCount());
+
+        Thread.sleep(50);
+        Assertions.assertEquals(1, store.evictIdle(Duration.ofMillis(25)));
+        Assertions.assertEquals(0, handler.getActiveTimerCount(), "Таймер брошенного теста остановлен");
+        Assertions.assertFalse(handler.isTestActive(5L));
+    }
+}
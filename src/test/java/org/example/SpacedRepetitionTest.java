@@ -0,0 +1,95 @@
+package org.example;
+
+import org.example.Dictionary.DictionaryServiceImpl;
+import org.example.Dictionary.SpacedRepetition;
+import org.example.Dictionary.Word;
+import org.example.ScheduledOldWord.ReviewQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Тесты интервальных повторений: расчет SM-2, очередь чатов по сроку
+ * и выборка слов, срок которых наступил
+ */
+public class SpacedRepetitionTest {
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    /**
+     * Правильные ответы растягивают интервал, ошибка сбрасывает серию
+     */
+    @Test
+    void testSm2Intervals() {
+        long now = 1_000_000L;
+        SpacedRepetition.ReviewState state = new SpacedRepetition.ReviewState(0, 0, SpacedRepetition.DEFAULT_EASE, now);
+
+        state = SpacedRepetition.review(state, true, now);
+        Assertions.assertEquals(1, state.getRepetitions());
+        Assertions.assertEquals(now + DAY, state.getDueAt());
+
+        state = SpacedRepetition.review(state, true, now);
+        Assertions.assertEquals(6 * 24 * 60, state.getIntervalMinutes());
+
+        SpacedRepetition.ReviewState third = SpacedRepetition.review(state, true, now);
+        Assertions.assertTrue(third.getIntervalMinutes() > state.getIntervalMinutes() * 2, "Интервал растет в ease раз");
+
+        SpacedRepetition.ReviewState lapse = SpacedRepetition.review(third, false, now);
+        Assertions.assertEquals(0, lapse.getRepetitions());
+        Assertions.assertEquals(now + SpacedRepetition.LAPSE_INTERVAL_MINUTES * MINUTE, lapse.getDueAt());
+        Assertions.assertTrue(lapse.getEase() < third.getEase());
+        Assertions.assertTrue(lapse.getEase() >= SpacedRepetition.MIN_EASE);
+    }
+
+    /**
+     * Очередь отдает только наступившие сроки, перенос чата отменяет прежний срок
+     */
+    @Test
+    void testReviewQueue() {
+        ReviewQueue queue = new ReviewQueue();
+        queue.schedule(1, 100);
+        queue.schedule(2, 300);
+        queue.schedule(3, 200);
+        queue.schedule(1, 500); // перенос
+
+        Assertions.assertEquals(List.of(3L), queue.pollDue(250));
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals(List.of(2L, 1L), queue.pollDue(1000));
+        Assertions.assertTrue(queue.pollDue(Long.MAX_VALUE).isEmpty());
+        Assertions.assertFalse(queue.isScheduled(1));
+    }
+
+    /**
+     * Новое слово ждет первого повторения сутки, после ответа срок переносится по SM-2
+     */
+    @Test
+    void testDueWordsInDatabase() throws SQLException {
+        DictionaryServiceImpl dictionary = new DictionaryServiceImpl();
+        long userId = 987_654_321L;
+        long now = System.currentTimeMillis();
+
+        int wordId = dictionary.addWord(userId, "schedule", "расписание", 2);
+        try {
+            Word word = dictionary.getWordByEnglish(userId, "schedule");
+            Assertions.assertEquals(word.getId(), wordId, "addWord возвращает id, выданный БД");
+            Assertions.assertNull(dictionary.nextDueWord(userId, now), "Новое слово не повторяется сразу");
+            Assertions.assertTrue(dictionary.earliestDueAt(userId) > now + DAY - MINUTE);
+
+            Assertions.assertEquals(word.getId(), dictionary.nextDueWord(userId, now + 2 * DAY).getId());
+
+            dictionary.recordReview(userId, word.getId(), false, now);
+            Assertions.assertEquals(word.getId(), dictionary.nextDueWord(userId, now + 11 * MINUTE).getId(),
+                    "После ошибки слово возвращается через несколько минут");
+
+            dictionary.recordReview(userId, word.getId(), true, now);
+            Assertions.assertNull(dictionary.nextDueWord(userId, now + DAY / 2));
+        } finally {
+            for (Word word : dictionary.getAllWords(userId)) {
+                dictionary.deleteWord(userId, word.getId());
+            }
+        }
+        Assertions.assertNull(dictionary.earliestDueAt(userId));
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+
+import org.example.Database.Migration;
+import org.example.Database.SchemaMigrator;
+import org.example.Database.SqliteDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Тесты общего пула соединений SQLite:
+ * настройки WAL, возврат соединений в пул, кеш подготовленных запросов
+ * и версионные миграции схемы
+ */
+public class SqliteDatabaseTest {
+    private static final String DB_FILE = "target/sqlite-pool-test.db";
+    private static SqliteDatabase database;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        deleteFiles();
+        database = SqliteDatabase.forFile(DB_FILE);
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS items (id INTEGER PRIMARY KEY, name TEXT)");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.close();
+        deleteFiles();
+    }
+
+    private static void deleteFiles() {
+        new File(DB_FILE).delete();
+        new File(DB_FILE + "-wal").delete();
+        new File(DB_FILE + "-shm").delete();
+    }
+
+    /**
+     * Для одного файла существует один пул
+     */
+    @Test
+    void testSharedPerFile() {
+        Assertions.assertSame(database, SqliteDatabase.forFile(DB_FILE));
+    }
+
+    /**
+     * Соединения работают в режиме WAL
+     */
+    @Test
+    void testWalJournalMode() throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals("wal", rs.getString(1).toLowerCase());
+        }
+    }
+
+    /**
+     * Закрытое соединение возвращается в пул и не открывается заново
+     */
+    @Test
+    void testConnectionReturnedToPool() throws SQLException {
+        Connection first = database.getConnection();
+        first.close();
+        int open = database.getOpenConnections();
+
+        for (int i = 0; i < 20; i++) {
+            try (Connection connection = database.getConnection()) {
+                Assertions.assertFalse(connection.isClosed());
+            }
+        }
+
+        Assertions.assertEquals(open, database.getOpenConnections(), "Новые соединения открываться не должны");
+        Assertions.assertTrue(first.isClosed(), "Возвращенное соединение недоступно вызывающему");
+        Assertions.assertThrows(SQLException.class, () -> first.prepareStatement("SELECT 1"));
+    }
+
+    /**
+     * Подготовленный запрос переиспользуется после close() и продолжает работать
+     */
+    @Test
+    void testCachedStatementsReused() throws SQLException {
+        String insert = "INSERT INTO items (name) VALUES (?)";
+        String select = "SELECT COUNT(*) FROM items WHERE name = ?";
+
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = database.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(insert)) {
+                stmt.setString(1, "cached");
+                stmt.executeUpdate();
+            }
+        }
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(select)) {
+            stmt.setString(1, "cached");
+            ResultSet rs = stmt.executeQuery();
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(3, rs.getInt(1));
+        }
+    }
+
+    /**
+     * Миграции словаря создают индексы, и поиск слова использует индекс, а не полный скан
+     */
+    @Test
+    void testDictionaryMigrationsCreateIndexes() throws SQLException {
+        SchemaMigrator.migrate(DB_FILE, SchemaMigrator.DICTIONARY_MIGRATIONS);
+
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement()) {
+            ResultSet version = stmt.executeQuery("SELECT MAX(version) FROM schema_version");
+            Assertions.assertEquals(SchemaMigrator.DICTIONARY_MIGRATIONS.size(), version.getInt(1));
+            version.close();
+
+            ResultSet plan = stmt.executeQuery("EXPLAIN QUERY PLAN SELECT * FROM dictionary " +
+                    "WHERE user_id = 1 AND LOWER(english_word) = LOWER('Word')");
+            StringBuilder details = new StringBuilder();
+            while (plan.next()) {
+                details.append(plan.getString("detail"));
+            }
+            plan.close();
+            Assertions.assertTrue(details.toString().contains("idx_dictionary_user_word"),
+                    "Ожидался поиск по индексу, план: " + details);
+        }
+    }
+
+    /**
+     * Повторный запуск не применяет уже записанные миграции заново
+     */
+    @Test
+    void testMigrationsAppliedIncrementally() throws SQLException {
+        String file = "target/sqlite-migration-test.db";
+        new File(file).delete();
+        List<Migration> migrations = List.of(
+                new Migration(1, "таблица", "CREATE TABLE notes (id INTEGER PRIMARY KEY, text TEXT)"));
+
+        SchemaMigrator.migrate(file, migrations);
+        // повторный вызов в том же процессе ничего не делает
+        SchemaMigrator.migrate(file, migrations);
+
+        try (Connection connection = SqliteDatabase.forFile(file).getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            Assertions.assertEquals(1, rs.getInt(1));
+        } finally {
+            SqliteDatabase.forFile(file).close();
+            new File(file).delete();
+            new File(file + "-wal").delete();
+            new File(file + "-shm").delete();
+        }
+    }
+}
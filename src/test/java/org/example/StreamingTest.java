@@ -0,0 +1,378 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.OpenRouter.CircuitBreaker;
+import org.example.OpenRouter.LlmException;
+import org.example.OpenRouter.LlmGateway;
+import org.example.OpenRouter.OpenRouterClient;
+import org.example.Parsing.TestTextParser;
+import org.example.ScheduledTests.ScheduleTestHandler;
+import org.example.ScheduledTests.TestsData;
+import org.example.Session.SessionStore;
+import org.example.StartTest.TestHandler;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Тесты потоковой генерации: разбор вопросов по кускам текста, потоковый ответ OpenRouter
+ * (server-sent events) на локальной заглушке и запуск теста с первого готового вопроса
+ */
+public class StreamingTest {
+
+    private static final String PLACEMENT_TEST = """
+            1. (1 points)
+            What is the capital of Great Britain?
+            A. Paris
+            B. London
+            C. Berlin
+            D. Madrid
+            Answer: B
+
+            2. (2 points)
+            Choose the correct form: She ___ to school every day.
+            A. go
+            B. goes
+            C. going
+            D. gone
+            Answer: B
+
+            3. (3 points)
+            Which word is a synonym of "happy"?
+            A. sad
+            B. angry
+            C. glad
+            D. tired
+            Answer: C""";
+
+    private static final String WORD_TEST = """
+            Вопрос:
+            Выберите правильный перевод слова "accomplishment"
+
+            A) неудача
+            B) достижение
+            C) начало
+            D) препятствие
+
+            Ответ: B
+            Тип: ПРИОРИТЕТНОЕ
+            Слово: accomplishment - достижение
+
+            Вопрос:
+            Какое слово означает "устойчивый, стабильный"?
+
+            A) fragile
+            B) stable
+            C) temporary
+            D) flexible
+
+            Ответ: B
+            Тип: НОВОЕ
+            Слово: stable - устойчивый, стабильный
+            """;
+
+    private HttpServer server;
+    // сценарий заглушки по номеру запроса: куски событий или статус ошибки
+    private final List<StreamReply> script = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    // заглушка ждет этот сигнал перед последними событиями ответа
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Ответ заглушки: статус, события до паузы и события после сигнала release
+     */
+    private record StreamReply(int status, List<String> head, List<String> tail) {
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JSONObject request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        StreamReply reply = script.get(Math.min(requests.getAndIncrement(), script.size() - 1));
+
+        if (reply.status() != 200) {
+            byte[] body = new JSONObject().put("error", Map.of("message", "Service Unavailable", "code", reply.status()))
+                    .toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return;
+        }
+
+        Assertions.assertTrue(request.getBoolean("stream"), "Запрос потоковый");
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(": OPENROUTER PROCESSING\n\n".getBytes(StandardCharsets.UTF_8));
+            writeEvents(out, reply.head());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeEvents(out, reply.tail());
+        }
+    }
+
+    private static void writeEvents(OutputStream out, List<String> events) throws IOException {
+        for (String event : events) {
+            out.write(("data: " + event + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private static String delta(String content) {
+        return new JSONObject().put("choices", List.of(Map.of("delta", Map.of("content", content)))).toString();
+    }
+
+    private OpenRouterClient client(List<String> models) {
+        LlmGateway gateway = new LlmGateway(models, 3, Duration.ofMillis(10), Duration.ofMillis(100),
+                new CircuitBreaker("stub", 10, Duration.ofSeconds(30)));
+        URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/chat/completions");
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return new OpenRouterClient("test-key", httpClient, endpoint, Duration.ofSeconds(5), 4, gateway);
+    }
+
+    /**
+     * Текст, разрезанный на случайные куски
+     */
+    private static List<String> chunks(String text, long seed) {
+        Random random = new Random(seed);
+        List<String> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < text.length()) {
+            int to = Math.min(text.length(), from + 1 + random.nextInt(12));
+            chunks.add(text.substring(from, to));
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Потоковый разбор по любым кускам дает то же, что разбор целого текста,
+     * и отдает вопрос сразу после его строки "Answer:"
+     */
+    @Test
+    void testPointsStreamMatchesFullParse() {
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+        Assertions.assertEquals(3, TestTextParser.parsePointsTest(PLACEMENT_TEST, questions, answers, points));
+
+        for (long seed = 0; seed < 20; seed++) {
+            List<String> streamed = new ArrayList<>();
+            List<String> streamedAnswers = new ArrayList<>();
+            List<Integer> streamedPoints = new ArrayList<>();
+            TestTextParser.PointsTestStream stream = new TestTextParser.PointsTestStream((question, answer, blockPoints) -> {
+                streamed.add(question);
+                streamedAnswers.add(answer);
+                streamedPoints.add(blockPoints);
+            });
+            for (String chunk : chunks(PLACEMENT_TEST, seed)) {
+                stream.append(chunk);
+            }
+            Assertions.assertEquals(3, stream.finish());
+            Assertions.assertEquals(questions, streamed);
+            Assertions.assertEquals(answers, streamedAnswers);
+            Assertions.assertEquals(points, streamedPoints);
+        }
+
+        List<String> streamed = new ArrayList<>();
+        TestTextParser.PointsTestStream stream = new TestTextParser.PointsTestStream((question, answer, blockPoints) -> streamed.add(question));
+        int firstAnswer = PLACEMENT_TEST.indexOf("Answer: B\n") + "Answer: B\n".length();
+        stream.append(PLACEMENT_TEST.substring(0, firstAnswer));
+        Assertions.assertEquals(List.of(questions.getFirst()), streamed, "Первый вопрос готов до конца ответа");
+    }
+
+    /**
+     * Потоковый разбор отложенного теста совпадает с целым; блок готов, когда пришел следующий заголовок
+     */
+    @Test
+    void testWordStreamMatchesFullParse() {
+        TestsData full = new TestsData();
+        Assertions.assertEquals(2, TestTextParser.parseWordTest(WORD_TEST, full));
+
+        for (long seed = 0; seed < 20; seed++) {
+            List<TestsData.QuestionData> streamed = new ArrayList<>();
+            TestTextParser.WordTestStream stream = new TestTextParser.WordTestStream(streamed::add);
+            for (String chunk : chunks(WORD_TEST, seed)) {
+                stream.append(chunk);
+            }
+            Assertions.assertEquals(2, stream.finish());
+            for (int i = 0; i < 2; i++) {
+                Assertions.assertEquals(full.getQuestions().get(i).getQuestionText(), streamed.get(i).getQuestionText());
+                Assertions.assertEquals(full.getQuestions().get(i).getEnglishWord(), streamed.get(i).getEnglishWord());
+                Assertions.assertEquals(full.getQuestions().get(i).getWordType(), streamed.get(i).getWordType());
+            }
+        }
+
+        List<TestsData.QuestionData> streamed = new ArrayList<>();
+        TestTextParser.WordTestStream stream = new TestTextParser.WordTestStream(streamed::add);
+        stream.append(WORD_TEST.substring(0, WORD_TEST.indexOf("Вопрос:", 10) + "Вопрос:\n".length()));
+        Assertions.assertEquals(1, streamed.size());
+        Assertions.assertEquals("accomplishment", streamed.getFirst().getEnglishWord());
+    }
+
+    /**
+     * Куски ответа приходят до конца генерации; ошибка до первого куска повторяется
+     */
+    @Test
+    void testClientStreamsDeltasBeforeCompletion() throws Exception {
+        script.add(new StreamReply(503, List.of(), List.of()));
+        script.add(new StreamReply(200, List.of(delta("Hello"), delta(", ")), List.of(delta("world"), "[DONE]")));
+        OpenRouterClient client = client(List.of("main"));
+
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        CountDownLatch firstDelta = new CountDownLatch(1);
+        CompletableFuture<String> response = client.streamRequestAsync("prompt", delta -> {
+            deltas.add(delta);
+            firstDelta.countDown();
+        });
+
+        Assertions.assertTrue(firstDelta.await(5, TimeUnit.SECONDS), "Первый кусок пришел до конца ответа");
+        Assertions.assertFalse(response.isDone());
+        release.countDown();
+        Assertions.assertEquals("Hello, world", response.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("Hello", ", ", "world"), deltas);
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    /**
+     * Ошибка посреди потока приходит типизированной и не повторяется - куски уже отданы
+     */
+    @Test
+    void testErrorMidStreamNotRetried() throws Exception {
+        String error = new JSONObject().put("error", Map.of("code", 502, "message", "Provider disconnected")).toString();
+        script.add(new StreamReply(200, List.of(delta("Hello")), List.of(error)));
+        OpenRouterClient client = client(List.of("main", "fallback"));
+        release.countDown();
+
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> response = client.streamRequestAsync("prompt", deltas::add);
+        ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        LlmException llmError = Assertions.assertInstanceOf(LlmException.class, thrown.getCause());
+        Assertions.assertEquals(LlmException.Kind.UNAVAILABLE, llmError.getKind());
+        Assertions.assertEquals(List.of("Hello"), deltas);
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    /**
+     * Тест начинается с первого вопроса, пока остальные генерируются;
+     * ответ быстрее генерации не блокирует обработку - вопрос и итог приходят через listener
+     */
+    @Test
+    void testSessionStartsOnFirstQuestion() throws Exception {
+        TestHandler handler = new TestHandler(new SessionStore());
+        BlockingQueue<String> delivered = new LinkedBlockingQueue<>();
+        handler.setQuestionListener((chatId, text) -> delivered.add(text));
+        CompletableFuture<String> generation = new CompletableFuture<>();
+        List<Consumer<String>> receiver = new ArrayList<>();
+
+        int secondBlock = PLACEMENT_TEST.indexOf("2. (2 points)");
+        String first = handler.startStreamingTest(1L, onDelta -> {
+            receiver.add(onDelta);
+            onDelta.accept(PLACEMENT_TEST.substring(0, secondBlock));
+            return generation;
+        });
+        Assertions.assertEquals("What is the capital of Great Britain?\nA. Paris\nB. London\nC. Berlin\nD. Madrid", first);
+        Assertions.assertTrue(handler.isTestActive(1L));
+
+        // ответ раньше, чем готов второй вопрос: сразу сообщение о генерации
+        String waiting = handler.handleAnswer("B_button", 1L);
+        Assertions.assertTrue(waiting.contains("генерируется"), waiting);
+        Assertions.assertTrue(handler.isTestActive(1L));
+        Assertions.assertTrue(handler.handleAnswer("A_button", 1L).contains("генерируется"),
+                "Нажатие во время генерации не считается ответом");
+
+        // остаток теста приходит (ответ ии еще не закончен) - ждущий вопрос отправляется через listener
+        receiver.getFirst().accept(PLACEMENT_TEST.substring(secondBlock) + "\n");
+        String second = delivered.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(second);
+        Assertions.assertTrue(second.startsWith("Choose the correct form"), second);
+
+        Assertions.assertTrue(handler.handleAnswer("B_button", 1L).startsWith("Which word is a synonym"));
+        // последний ответ до конца генерации: итог придет, когда ответ ии закончится
+        Assertions.assertTrue(handler.handleAnswer("C_button", 1L).contains("генерируется"));
+        generation.complete(PLACEMENT_TEST);
+        String result = delivered.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(result);
+        Assertions.assertTrue(result.contains("Набрано баллов: 6 из 6"), result);
+        Assertions.assertFalse(handler.isTestActive(1L));
+        Assertions.assertTrue(delivered.isEmpty());
+
+        // генерация без вопросов - обычный запуск
+        Assertions.assertNull(handler.startStreamingTest(2L,
+                onDelta -> CompletableFuture.failedFuture(new IOException("503"))));
+        Assertions.assertFalse(handler.isTestActive(2L));
+    }
+
+    /**
+     * Генерация оборвалась после первого вопроса: частичный тест не оценивается,
+     * пользователь узнает, что результат не засчитан
+     */
+    @Test
+    void testBrokenStreamNotGraded() {
+        TestHandler handler = new TestHandler(new SessionStore());
+        int secondBlock = PLACEMENT_TEST.indexOf("2. (2 points)");
+        CompletableFuture<String> generation = new CompletableFuture<>();
+        Assertions.assertNotNull(handler.startStreamingTest(1L, onDelta -> {
+            onDelta.accept(PLACEMENT_TEST.substring(0, secondBlock));
+            return generation;
+        }));
+        generation.completeExceptionally(new IOException("connection reset"));
+
+        String result = handler.handleAnswer("B_button", 1L);
+        Assertions.assertFalse(result.contains("Тест завершён"), result);
+        Assertions.assertTrue(result.contains("не засчитан"), result);
+        Assertions.assertFalse(handler.isTestActive(1L));
+
+        ScheduleTestHandler scheduleHandler = new ScheduleTestHandler(null, new SessionStore());
+        // первый блок готов, когда пришел заголовок второго
+        int secondQuestion = WORD_TEST.indexOf("Вопрос:", 10) + "Вопрос:\n".length();
+        CompletableFuture<String> wordGeneration = new CompletableFuture<>();
+        Assertions.assertNotNull(scheduleHandler.startStreamingTest(2L, 7L, onDelta -> {
+            onDelta.accept(WORD_TEST.substring(0, secondQuestion));
+            return wordGeneration;
+        }));
+        wordGeneration.completeExceptionally(new IOException("connection reset"));
+
+        String scheduleResult = scheduleHandler.handleAnswer(2L, "B_button");
+        Assertions.assertTrue(scheduleResult.contains("не засчитан"), scheduleResult);
+        Assertions.assertFalse(scheduleHandler.isTestActive(2L));
+    }
+}
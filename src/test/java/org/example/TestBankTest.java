@@ -0,0 +1,196 @@
+package org.example;
+
+import org.example.Session.SessionStore;
+import org.example.SpeedTest.SpeedTestCommand;
+import org.example.SpeedTest.SpeedTestHandler;
+import org.example.SpeedTest.SpeedTestYesButton;
+import org.example.StartTest.StartCommand;
+import org.example.StartTest.StartYesButton;
+import org.example.StartTest.TestHandler;
+import org.example.TestBank.BankedTest;
+import org.example.TestBank.TestBank;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Тесты банка готовых тестов: проверка при пополнении, выдача от старых к новым,
+ * хранение на диске и мгновенный запуск теста из банка
+ */
+public class TestBankTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Генератор: каждый тест из трех вопросов, вопросы помечены номером генерации
+     */
+    private static String threeQuestions(int number) {
+        StringBuilder test = new StringBuilder();
+        for (int i = 1; i <= 3; i++) {
+            test.append(i).append(" (").append(i).append(")\n")
+                    .append("Test ").append(number).append(" question ").append(i).append("?\n")
+                    .append("A. one\nB. two\nC. three\nD. four\n")
+                    .append("Answer: ").append("ABC".charAt(i - 1)).append("\n\n");
+        }
+        return test.toString();
+    }
+
+    /**
+     * В банк попадают только тесты с достаточным числом вопросов; выдаются от старых к новым
+     */
+    @Test
+    void testRefillValidatesAndTakesOldestFirst() {
+        AtomicInteger calls = new AtomicInteger();
+        TestBank bank = new TestBank("test", () -> {
+            int number = calls.incrementAndGet();
+            return number == 2 ? "ошибка при генерации теста: 503" : threeQuestions(number);
+        }, 3, 5, 5, Duration.ofDays(1), null);
+
+        for (int i = 0; i < 4; i++) {
+            bank.refill();
+        }
+        Assertions.assertEquals(3, bank.getSize());
+        Assertions.assertEquals(1, bank.getRejected());
+
+        BankedTest first = bank.take();
+        Assertions.assertEquals("Test 1 question 1?\nA. one\nB. two\nC. three\nD. four", first.getQuestions().getFirst());
+        Assertions.assertEquals(List.of("A", "B", "C"), first.getAnswers());
+        Assertions.assertEquals(List.of(1, 2, 3), first.getPoints());
+        Assertions.assertTrue(bank.take().getQuestions().getFirst().startsWith("Test 3"));
+        Assertions.assertEquals(2, bank.getConsumptionPerHour());
+
+        // полный банк не пополняется
+        for (int i = 0; i < 10; i++) {
+            bank.refill();
+        }
+        Assertions.assertEquals(5, bank.getSize());
+        Assertions.assertFalse(bank.offer(threeQuestions(100)));
+    }
+
+    /**
+     * Устаревшие тесты не выдаются
+     */
+    @Test
+    void testExpiredTestsDropped() throws InterruptedException {
+        TestBank bank = new TestBank("test", () -> threeQuestions(1), 3, 5, 5, Duration.ofMillis(50), null);
+        bank.refill();
+        Assertions.assertEquals(1, bank.getSize());
+        Thread.sleep(80);
+
+        Assertions.assertNull(bank.take());
+        Assertions.assertEquals(1, bank.getExpired());
+        Assertions.assertEquals(1, bank.getMisses());
+    }
+
+    /**
+     * Банк переживает перезапуск; поврежденный файл пропускается
+     */
+    @Test
+    void testSaveAndLoad() throws IOException {
+        Path file = tempDir.resolve("bank.bin");
+        AtomicInteger calls = new AtomicInteger();
+        TestBank bank = new TestBank("test", () -> threeQuestions(calls.incrementAndGet()), 3, 5, 5, Duration.ofDays(1), file);
+        bank.refill();
+        bank.refill();
+        Assertions.assertTrue(Files.exists(file), "Пополнение сохраняет банк");
+
+        TestBank restarted = new TestBank("test", () -> "", 3, 5, 5, Duration.ofDays(1), file);
+        Assertions.assertEquals(2, restarted.load());
+        Assertions.assertTrue(restarted.getOldestAgeMillis() >= 0);
+        Assertions.assertTrue(restarted.take().getQuestions().getFirst().startsWith("Test 1"));
+
+        byte[] data = Files.readAllBytes(file);
+        data[12] ^= 0x7F;
+        Files.write(file, data);
+        Assertions.assertEquals(0, new TestBank("test", () -> "", 3, 5, 5, Duration.ofDays(1), file).load());
+    }
+
+    /**
+     * Запуск теста из банка не обращается к ии; пустой банк - обычная генерация
+     */
+    @Test
+    void testCommandsUseBank() {
+        AtomicInteger liveCalls = new AtomicInteger();
+        StartYesButton live = new StartYesButton() {
+            @Override
+            public String generateTest() {
+                liveCalls.incrementAndGet();
+                return threeQuestions(99);
+            }
+
+            @Override
+            public CompletableFuture<String> streamTest(Consumer<String> onDelta) {
+                return CompletableFuture.failedFuture(new IOException("поток недоступен"));
+            }
+        };
+        TestBank bank = new TestBank("placement", () -> threeQuestions(1), 3, 5, 5, Duration.ofDays(1), null);
+        bank.refill();
+
+        StartCommand startCommand = new StartCommand(new TestHandler(new SessionStore()), live, bank);
+        Assertions.assertTrue(startCommand.handleButtonClick("yes_button", 1L).startsWith("Test 1 question 1?"));
+        Assertions.assertEquals(0, liveCalls.get());
+        Assertions.assertTrue(startCommand.handleButtonClick("yes_button", 2L).startsWith("Test 99 question 1?"));
+        Assertions.assertEquals(1, liveCalls.get());
+
+        SpeedTestHandler speedTestHandler = new SpeedTestHandler(new SessionStore());
+        TestBank speedBank = new TestBank("speed", () -> threeQuestions(5), 3, 5, 5, Duration.ofDays(1), null);
+        speedBank.refill();
+        SpeedTestCommand speedTestCommand = new SpeedTestCommand(speedTestHandler, new SpeedTestYesButton(), speedBank);
+        String first = speedTestCommand.handleButtonClick("speed_yes_button", 3L);
+        Assertions.assertTrue(first.startsWith("Test 5 question 1?"));
+        Assertions.assertTrue(first.contains("Время на ответ: 5 секунд"));
+        Assertions.assertEquals(1, speedTestHandler.getActiveTimerCount());
+        speedTestHandler.stopTimer(3L);
+    }
+
+    /**
+     * Без API ключа банк не пополняется и не считает ответ об ошибке отклоненным тестом
+     */
+    @Test
+    void testRefillSkippedWithoutKey() {
+        AtomicInteger calls = new AtomicInteger();
+        TestBank noKey = new TestBank("test", () -> {
+            calls.incrementAndGet();
+            return "API ключ не найден";
+        }, () -> false, 3, 5, 2, Duration.ofDays(1), null);
+        Assertions.assertFalse(noKey.refill());
+        Assertions.assertEquals(0, calls.get(), "Без ключа ии не вызывается");
+        Assertions.assertEquals(0, noKey.getRejected());
+    }
+
+    /**
+     * Сразу после запуска банк днем пополняется только до нижней границы, а ночью - до полной емкости
+     */
+    @Test
+    void testNotOffPeakAtStart() {
+        AtomicInteger calls = new AtomicInteger();
+        Clock noon = Clock.fixed(Instant.parse("2024-03-01T12:00:00Z"), ZoneOffset.UTC);
+        TestBank bank = new TestBank("test", () -> threeQuestions(calls.incrementAndGet()), () -> true, 3, 5, 2,
+                Duration.ofDays(1), null, noon);
+        for (int i = 0; i < 5; i++) {
+            bank.refill();
+        }
+        Assertions.assertEquals(2, bank.getSize(), "Сразу после запуска время не непиковое");
+
+        Clock night = Clock.fixed(Instant.parse("2024-03-01T03:00:00Z"), ZoneOffset.UTC);
+        TestBank nightBank = new TestBank("test", () -> threeQuestions(calls.incrementAndGet()), () -> true, 3, 5, 2,
+                Duration.ofDays(1), null, night);
+        for (int i = 0; i < 5; i++) {
+            nightBank.refill();
+        }
+        Assertions.assertEquals(5, nightBank.getSize(), "Ночью банк пополняется до полной емкости");
+    }
+}
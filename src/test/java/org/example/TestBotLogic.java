@@ -1,12 +1,18 @@
 package org.example;
 
+import org.example.Authentication.AuthService;
 import org.example.Data.BotResponse;
+import org.example.TimePlaner.UserService;
+import org.example.TimePlaner.UserStateRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Proxy;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * TestBotLogic - тестирует основную логику бота без зависимостей от баз данных
@@ -773,4 +779,78 @@ public class TestBotLogic {
         Assertions.assertNotEquals(authResponse.getText(), unauthResponse.getText(),
                 "Текст ответа на обычное сообщение должен различаться для авторизованных и неавторизованных пользователей");
     }
-}
\ No newline at end of file
+
+    /**
+     * Успешная проверка авторизации снимает только UNAUTHORIZED: занятость тестом остается,
+     * и рассылка занятому пользователю не уходит
+     */
+    @Test
+    public void testAuthorizationKeepsBusyState_Strict() {
+        long chatId = 7_015_001L;
+        // заглушка: чат привязан к Telegram, остальные методы не нужны
+        AuthService authService = (AuthService) Proxy.newProxyInstance(AuthService.class.getClassLoader(),
+                new Class<?>[]{AuthService.class},
+                (proxy, method, args) -> method.getReturnType() == boolean.class
+                        ? method.getName().equals("isTelegramUserAuthorized") : null);
+        BotLogic realBotLogic = new BotLogic(authService);
+        UserService userService = new UserService();
+        try {
+            userService.setState(chatId, UserStateRegistry.State.UNAUTHORIZED, "чат не привязан", null);
+            userService.setState(chatId, UserStateRegistry.State.BUSY, "проходит тест", Duration.ofMinutes(5));
+
+            Assertions.assertFalse(realBotLogic.canReceiveScheduledMessages(chatId),
+                    "Занятому пользователю рассылка не отправляется");
+            Assertions.assertTrue(userService.hasState(chatId, UserStateRegistry.State.BUSY),
+                    "Проверка авторизации не должна снимать занятость");
+            Assertions.assertFalse(userService.hasState(chatId, UserStateRegistry.State.UNAUTHORIZED),
+                    "Авторизованный пользователь не помечен как неавторизованный");
+        } finally {
+            userService.unblockUser(chatId);
+        }
+    }
+
+    /**
+     * Строгий тест: чат, отвязанный после ошибки отправки, после повторного входа
+     * снова попадает в рассылки - недоступность снимается вместе с неавторизованностью
+     */
+    @Test
+    public void testReauthorizationClearsUnreachableState_Strict() {
+        long chatId = 7_015_002L;
+        AtomicBoolean linked = new AtomicBoolean(true);
+        // заглушка: вход всегда успешен, привязка и отвязка меняют флаг
+        AuthService authService = (AuthService) Proxy.newProxyInstance(AuthService.class.getClassLoader(),
+                new Class<?>[]{AuthService.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isTelegramUserAuthorized" -> linked.get();
+                    case "authenticate" -> true;
+                    case "linkTelegramChat" -> {
+                        linked.set(true);
+                        yield true;
+                    }
+                    case "unlinkCurrentChat" -> linked.getAndSet(false);
+                    case "getAllTelegramUsers" -> Set.of(chatId);
+                    case "getAllDiscordUsers" -> Set.of();
+                    default -> method.getReturnType() == boolean.class ? false : null;
+                });
+        BotLogic realBotLogic = new BotLogic(authService);
+        UserService distributionUsers = new UserService(UserStateRegistry.getShared(), authService);
+        try {
+            distributionUsers.handleSendError(chatId, new RuntimeException("канал не найден"));
+            Assertions.assertTrue(distributionUsers.hasState(chatId, UserStateRegistry.State.UNREACHABLE));
+            Assertions.assertFalse(distributionUsers.getActiveTelegramUsers().contains(chatId),
+                    "Недоступный чат не получает рассылки");
+
+            realBotLogic.processCallback("sing_in_button", chatId);
+            realBotLogic.processMessage("user", chatId);
+            realBotLogic.processMessage("password", chatId);
+
+            Assertions.assertTrue(linked.get(), "Чат привязан заново");
+            Assertions.assertFalse(distributionUsers.hasState(chatId, UserStateRegistry.State.UNREACHABLE),
+                    "После входа чат снова достижим");
+            Assertions.assertTrue(distributionUsers.getActiveTelegramUsers().contains(chatId),
+                    "После входа чат снова получает рассылки");
+        } finally {
+            distributionUsers.unblockUser(chatId);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example;
+
+import org.example.Parsing.TestTextParser;
+import org.example.ScheduledTests.TestsData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тесты однопроходного парсера тестов: результат совпадает с прежним разбором регулярными выражениями,
+ * блоки с нарушенной структурой отбрасываются
+ */
+public class TestTextParserTest {
+
+    private static final String POINTS_TEST = """
+            1 (1 points)
+            What is the capital of France?
+            A. London
+            B. Paris
+            C. Madrid
+            D. Rome
+            Answer: B
+
+            2. (2 points)
+            Which word is a verb?
+            A. Apple
+            B. Run
+            C. Table
+            D. House
+            Answer: D
+
+            **3) (3 point)
+            Choose the correct sentence:
+            A. He go to school.
+            B. He goes to school.
+            C. He going to school.
+            D. He gone to school.
+            Answer:  C
+            """;
+
+    private static final String WORD_TEST = """
+            ТЕСТ НА ЗНАНИЕ СЛОВ
+
+            Вопрос 1:
+            Выберите правильный перевод слова "stable"
+
+            A) хрупкий
+            B) устойчивый
+            C) временный
+            D) гибкий
+
+            Ответ: B
+            Тип: НОВОЕ
+            Слово: stable - устойчивый
+
+            Вопрос:
+            Какое слово означает "начало"?
+
+            A) end
+            B) beginning
+
+            Ответ: b
+            Тип: ПРИОРИТЕТНОЕ
+            Слово: beginning - начало
+
+            Вопрос 3:
+            Слово: Н/Д - нет
+            Ответ: A
+            """;
+
+    /**
+     * Вводный и speed тест разбираются так же, как прежним регулярным выражением
+     */
+    @Test
+    void testPointsTestMatchesRegex() {
+        for (String text : List.of(POINTS_TEST, ParserBenchmark.buildPointsTest(12))) {
+            List<String> questions = new ArrayList<>();
+            List<String> answers = new ArrayList<>();
+            List<Integer> points = new ArrayList<>();
+            List<String> expectedQuestions = new ArrayList<>();
+            List<String> expectedAnswers = new ArrayList<>();
+            List<Integer> expectedPoints = new ArrayList<>();
+
+            int parsed = TestTextParser.parsePointsTest(text, questions, answers, points);
+            ParserBenchmark.legacyParsePointsTest(text, expectedQuestions, expectedAnswers, expectedPoints);
+
+            Assertions.assertEquals(expectedQuestions.size(), parsed);
+            Assertions.assertEquals(expectedQuestions, questions);
+            Assertions.assertEquals(expectedAnswers, answers);
+            Assertions.assertEquals(expectedPoints, points);
+        }
+        List<String> answers = new ArrayList<>();
+        TestTextParser.parsePointsTest(POINTS_TEST, new ArrayList<>(), answers, new ArrayList<>());
+        Assertions.assertEquals(List.of("B", "D", "C"), answers);
+    }
+
+    /**
+     * Блок без варианта или без ответа отбрасывается, следующий блок разбирается
+     */
+    @Test
+    void testMalformedPointsBlockRejected() {
+        String text = """
+                1 (2 points)
+                Question without options
+                A. one
+                B. two
+                2 (3 points)
+                Good question?
+                A. yes
+                B. no
+                C. maybe
+                D. never
+                Answer: A
+                3 (1 points)
+                Bad answer letter
+                A. a
+                B. b
+                C. c
+                D. d
+                Answer: E
+                """;
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+
+        Assertions.assertEquals(1, TestTextParser.parsePointsTest(text, questions, answers, points));
+        Assertions.assertEquals("Good question?\nA. yes\nB. no\nC. maybe\nD. never", questions.getFirst());
+        Assertions.assertEquals(List.of(3), points);
+        Assertions.assertEquals(0, TestTextParser.parsePointsTest(null, questions, answers, points));
+    }
+
+    /**
+     * Отложенный тест по словам разбирается так же, как прежним TestsParser
+     */
+    @Test
+    void testWordTestMatchesLegacyParser() {
+        for (String text : List.of(WORD_TEST, ParserBenchmark.buildWordTest(8))) {
+            TestsData testsData = new TestsData();
+            int parsed = TestTextParser.parseWordTest(text, testsData);
+            List<TestsData.QuestionData> expected = ParserBenchmark.legacyParseWordTest(text).getQuestions();
+
+            Assertions.assertEquals(expected.size(), parsed);
+            for (int i = 0; i < parsed; i++) {
+                TestsData.QuestionData actual = testsData.getQuestions().get(i);
+                Assertions.assertEquals(expected.get(i).getQuestionText(), actual.getQuestionText());
+                Assertions.assertEquals(expected.get(i).getEnglishWord(), actual.getEnglishWord());
+                Assertions.assertEquals(expected.get(i).getTranslation(), actual.getTranslation());
+                Assertions.assertEquals(expected.get(i).getWordType(), actual.getWordType());
+                Assertions.assertEquals(expected.get(i).getCorrectAnswer().toUpperCase(), actual.getCorrectAnswer());
+            }
+        }
+
+        TestsData testsData = new TestsData();
+        TestTextParser.parseWordTest(WORD_TEST, testsData);
+        Assertions.assertEquals(2, testsData.getQuestions().size(), "Блок со словом Н/Д отбрасывается");
+        TestsData.QuestionData second = testsData.getQuestions().get(1);
+        Assertions.assertEquals("B", second.getCorrectAnswer());
+        Assertions.assertTrue(second.getQuestionText().endsWith("D) вариант перевода 4"), "Недостающие варианты дополняются");
+    }
+}
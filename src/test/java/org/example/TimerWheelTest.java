@@ -0,0 +1,119 @@
+package org.example;
+
+import org.example.SpeedTest.SpeedTestSession;
+import org.example.SpeedTest.TimerWheel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тесты колеса таймеров speed теста и сроков ответа в сессии
+ */
+public class TimerWheelTest {
+
+    /**
+     * Таймер срабатывает не раньше срока и один раз
+     */
+    @Test
+    void testExpiresAfterDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long[] firedAt = new long[1];
+        TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 16, key -> {
+            firedAt[0] = System.currentTimeMillis();
+            fired.countDown();
+        });
+
+        long startedAt = System.currentTimeMillis();
+        wheel.schedule(1L, Duration.ofMillis(150));
+        Assertions.assertTrue(wheel.isScheduled(1L));
+
+        Assertions.assertTrue(fired.await(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(firedAt[0] - startedAt >= 150, "Сработал раньше срока");
+        Assertions.assertFalse(wheel.isScheduled(1L));
+        Assertions.assertEquals(0, wheel.size());
+        Assertions.assertEquals(1, wheel.getExpiredCount());
+    }
+
+    /**
+     * Отмененный таймер не срабатывает, новый таймер ключа заменяет прежний
+     */
+    @Test
+    void testCancelAndReplace() throws InterruptedException {
+        Set<Long> expired = ConcurrentHashMap.newKeySet();
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 8, key -> {
+            expired.add(key);
+            fired.countDown();
+        });
+
+        wheel.schedule(1L, Duration.ofMillis(50));
+        wheel.schedule(2L, Duration.ofSeconds(30));
+        wheel.schedule(2L, Duration.ofMillis(400));
+        Assertions.assertTrue(wheel.cancel(1L));
+        Assertions.assertFalse(wheel.cancel(1L));
+        Assertions.assertEquals(1, wheel.size());
+
+        Assertions.assertTrue(fired.await(2, TimeUnit.SECONDS));
+        Assertions.assertEquals(Set.of(2L), expired);
+    }
+
+    /**
+     * Таймеры дольше одного оборота колеса ждут своего оборота
+     */
+    @Test
+    void testManyTimersAcrossRotations() throws InterruptedException {
+        List<Long> keys = List.of(1L, 2L, 3L, 4L, 5L);
+        CountDownLatch fired = new CountDownLatch(keys.size());
+        Set<Long> expired = ConcurrentHashMap.newKeySet();
+        // оборот колеса - 40 мс, сроки до 200 мс
+        TimerWheel wheel = new TimerWheel("test-wheel", Duration.ofMillis(10), 4, key -> {
+            expired.add(key);
+            fired.countDown();
+        });
+
+        for (long key : keys) {
+            wheel.schedule(key, Duration.ofMillis(key * 40));
+        }
+        Thread.sleep(60);
+        Assertions.assertTrue(wheel.size() >= 3, "Дальние таймеры не должны сработать на первом обороте");
+
+        Assertions.assertTrue(fired.await(2, TimeUnit.SECONDS));
+        Assertions.assertEquals(Set.copyOf(keys), expired);
+        Assertions.assertEquals(0, wheel.size());
+
+        // после остановки потока колесо снова запускается
+        CountDownLatch again = new CountDownLatch(1);
+        TimerWheel restarted = new TimerWheel("test-wheel", Duration.ofMillis(10), 4, key -> again.countDown());
+        restarted.schedule(7L, Duration.ofMillis(20));
+        Assertions.assertTrue(again.await(2, TimeUnit.SECONDS));
+        restarted.schedule(8L, Duration.ofMillis(20));
+        Assertions.assertTrue(restarted.isScheduled(8L));
+    }
+
+    /**
+     * Ответ после срока не засчитывается, старый таймер не просрочивает новый вопрос
+     */
+    @Test
+    void testSessionDeadline() {
+        SpeedTestSession session = new SpeedTestSession(List.of("Q1", "Q2"), List.of("A", "B"), List.of(1, 1));
+        long now = System.currentTimeMillis();
+
+        session.startQuestion(now + 1000);
+        Assertions.assertFalse(session.tryExpire(now), "Срок еще не наступил");
+        Assertions.assertTrue(session.tryAnswer(now + 500));
+        Assertions.assertFalse(session.tryAnswer(now + 600), "Повторный ответ не принимается");
+        Assertions.assertFalse(session.tryExpire(now + 2000), "Отвеченный вопрос не просрочивается");
+
+        session.setCurrentIndex(1);
+        session.startQuestion(now + 1000);
+        Assertions.assertFalse(session.tryAnswer(now + 1500));
+        Assertions.assertEquals(SpeedTestSession.QuestionState.TIMED_OUT, session.getQuestionState());
+        Assertions.assertFalse(session.tryExpire(now + 2000), "Просроченный вопрос отмечается один раз");
+    }
+}
@@ -0,0 +1,91 @@
+package org.example;
+
+import org.example.TimePlaner.UserStateRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тесты общего реестра блокировок: состояния с причинами, срок жизни, параллельные изменения
+ */
+public class UserStateRegistryTest {
+
+    /**
+     * Состояния независимы: снятие одного не снимает другие
+     */
+    @Test
+    void testStatesAndReasons() {
+        UserStateRegistry registry = new UserStateRegistry();
+        long chatId = 10L;
+
+        Assertions.assertFalse(registry.isBlocked(chatId));
+
+        registry.mark(chatId, UserStateRegistry.State.BUSY, "тест");
+        registry.mark(chatId, UserStateRegistry.State.UNREACHABLE, "канал не найден");
+        Assertions.assertTrue(registry.isBlocked(chatId));
+        Assertions.assertEquals("канал не найден", registry.get(chatId, UserStateRegistry.State.UNREACHABLE).getReason());
+
+        registry.clear(chatId, UserStateRegistry.State.BUSY);
+        Assertions.assertFalse(registry.has(chatId, UserStateRegistry.State.BUSY));
+        Assertions.assertTrue(registry.isBlocked(chatId), "Недоступный канал остается заблокированным");
+
+        registry.clear(chatId, UserStateRegistry.State.UNREACHABLE);
+        Assertions.assertFalse(registry.isBlocked(chatId));
+        Assertions.assertEquals(0, registry.size(), "Пустая запись удаляется");
+
+        registry.mark(chatId, UserStateRegistry.State.UNAUTHORIZED, null);
+        registry.clearAll(chatId);
+        Assertions.assertFalse(registry.isBlocked(chatId));
+    }
+
+    /**
+     * Просроченное состояние снимается само
+     */
+    @Test
+    void testTtlExpiry() throws InterruptedException {
+        UserStateRegistry registry = new UserStateRegistry();
+
+        registry.mark(1L, UserStateRegistry.State.BUSY, "брошенный тест", Duration.ofMillis(30));
+        registry.mark(2L, UserStateRegistry.State.BUSY, "брошенный тест", Duration.ofMillis(30));
+        registry.mark(3L, UserStateRegistry.State.BUSY, "долгий тест", Duration.ofMinutes(10));
+        Assertions.assertTrue(registry.isBlocked(1L));
+
+        Thread.sleep(60);
+
+        Assertions.assertFalse(registry.isBlocked(1L));
+        Assertions.assertNull(registry.get(2L, UserStateRegistry.State.BUSY));
+        Assertions.assertTrue(registry.isBlocked(3L));
+
+        Assertions.assertEquals(1, registry.purgeExpired());
+        Assertions.assertEquals(1, registry.size());
+    }
+
+    /**
+     * Параллельные изменения разных состояний одного чата не теряются
+     */
+    @Test
+    void testConcurrentUpdates() throws InterruptedException {
+        UserStateRegistry registry = new UserStateRegistry();
+        List<Thread> threads = new ArrayList<>();
+
+        for (UserStateRegistry.State state : UserStateRegistry.State.values()) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (long chatId = 0; chatId < 1000; chatId++) {
+                    registry.mark(chatId, state, state.name());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (long chatId = 0; chatId < 1000; chatId++) {
+            for (UserStateRegistry.State state : UserStateRegistry.State.values()) {
+                Assertions.assertTrue(registry.has(chatId, state), "Состояние потеряно: " + chatId + " " + state);
+            }
+        }
+    }
+}
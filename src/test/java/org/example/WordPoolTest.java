@@ -0,0 +1,161 @@
+package org.example;
+
+import org.example.ScheduledNewWord.MessageParser;
+import org.example.ScheduledNewWord.ScheduleGenerateMessage;
+import org.example.ScheduledNewWord.WordData;
+import org.example.ScheduledNewWord.WordPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Тесты пула заранее сгенерированных слов: пополнение пачками,
+ * группировка по уровню и теме, ограничение размера и метрики
+ */
+public class WordPoolTest {
+
+    private WordPool wordPool;
+    private TestScheduleGenerateMessage testGenerator;
+
+    /**
+     * Генератор, который по кругу отдает заготовленные слова без обращения к ии
+     */
+    private static class TestScheduleGenerateMessage extends ScheduleGenerateMessage {
+        private final List<String> testWords = Arrays.asList(
+                "WORD: persistent\nTRANSLATION: настойчивый\nLEVEL: B2\nPART_OF_SPEECH: adjective\nEXAMPLE: She is very persistent.\nEXAMPLE_TRANSLATION: Она очень настойчивая.\nTOPIC: Character",
+                "WORD: diligent\nTRANSLATION: усердный\nLEVEL: B1\nPART_OF_SPEECH: adjective\nEXAMPLE: She is a diligent student.\nEXAMPLE_TRANSLATION: Она усердная студентка.\nTOPIC: Character",
+                "WORD: airport\nTRANSLATION: аэропорт\nLEVEL: A2\nPART_OF_SPEECH: noun\nEXAMPLE: We went to the airport.\nEXAMPLE_TRANSLATION: Мы поехали в аэропорт.\nTOPIC: Travel"
+        );
+        private int currentIndex = 0;
+        private int calls = 0;
+
+        @Override
+        public String generateWord() {
+            calls++;
+            String word = testWords.get(currentIndex);
+            currentIndex = (currentIndex + 1) % testWords.size();
+            return word;
+        }
+
+        @Override
+        public String generateWords(int count) {
+            // пачка - это те же слова через пустую строку
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                batch.append(generateWord()).append("\n\n");
+            }
+            return batch.toString();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        testGenerator = new TestScheduleGenerateMessage();
+        wordPool = new WordPool(testGenerator, new MessageParser(), 5, 3);
+    }
+
+    /**
+     * Пустой пул засчитывает промах и возвращает null
+     */
+    @Test
+    void testPollFromEmptyPoolIsMiss() {
+        Assertions.assertNull(wordPool.poll());
+        Assertions.assertEquals(1, wordPool.getMisses());
+        Assertions.assertEquals(0, wordPool.getHits());
+    }
+
+    /**
+     * Пополнение добавляет одну пачку слов и разбивает их по группам
+     */
+    @Test
+    void testRefillAddsBatchGroupedByLevelAndTopic() {
+        int added = wordPool.refill();
+
+        Assertions.assertEquals(3, added);
+        Assertions.assertEquals(3, wordPool.getSize());
+        Assertions.assertEquals(1, wordPool.getRefillBatches());
+
+        Map<String, Integer> depth = wordPool.getDepthByGroup();
+        Assertions.assertEquals(3, depth.size());
+        Assertions.assertEquals(1, depth.get("B2/character"));
+        Assertions.assertEquals(1, depth.get("A2/travel"));
+    }
+
+    /**
+     * Пул не хранит дубликаты и не превышает емкость
+     */
+    @Test
+    void testPoolIsBoundedAndDeduplicated() {
+        wordPool.refill();
+        wordPool.refill();
+        wordPool.refill();
+
+        // всего 3 разных слова, повторы отбрасываются
+        Assertions.assertEquals(3, wordPool.getSize());
+        Assertions.assertTrue(wordPool.getSize() <= wordPool.getCapacity());
+
+        WordData extra = new WordData();
+        extra.setWord("journey");
+        extra.setLevel("B1");
+        extra.setTopic("Travel");
+        Assertions.assertTrue(wordPool.offer(extra));
+
+        WordData another = new WordData();
+        another.setWord("luggage");
+        another.setLevel("A2");
+        another.setTopic("Travel");
+        Assertions.assertTrue(wordPool.offer(another));
+
+        WordData overflow = new WordData();
+        overflow.setWord("passport");
+        overflow.setLevel("A2");
+        overflow.setTopic("Travel");
+        Assertions.assertFalse(wordPool.offer(overflow), "Пул заполнен");
+        Assertions.assertEquals(5, wordPool.getSize());
+
+        // заполненный пул не обращается к генератору
+        int callsBefore = testGenerator.calls;
+        Assertions.assertEquals(0, wordPool.refill());
+        Assertions.assertEquals(callsBefore, testGenerator.calls);
+    }
+
+    /**
+     * Генерация при промахе отдает первое слово пачки, остальные кладет в пул
+     */
+    @Test
+    void testGenerateAndTakeKeepsExtrasInPool() {
+        WordData word = wordPool.generateAndTake();
+
+        Assertions.assertNotNull(word);
+        Assertions.assertEquals("persistent", word.getWord());
+        Assertions.assertEquals(2, wordPool.getSize());
+        Assertions.assertEquals(3, testGenerator.calls);
+    }
+
+    /**
+     * Выдача из пула считает попадания и освобождает место
+     */
+    @Test
+    void testPollReturnsPooledWords() {
+        wordPool.refill();
+
+        Set<String> polled = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            WordData word = wordPool.poll();
+            Assertions.assertNotNull(word);
+            polled.add(word.getWord());
+        }
+
+        Assertions.assertEquals(Set.of("persistent", "diligent", "airport"), polled);
+        Assertions.assertEquals(3, wordPool.getHits());
+        Assertions.assertEquals(0, wordPool.getSize());
+        Assertions.assertNull(wordPool.poll());
+        Assertions.assertEquals(1, wordPool.getMisses());
+    }
+}